@@ -0,0 +1,112 @@
+package io.alvintures.co2sensorapi.compression;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.alvintures.co2sensorapi.dto.SensorMetrics;
+import io.alvintures.co2sensorapi.dto.SensorMetricsResponse;
+import io.alvintures.co2sensorapi.dto.SensorSeries;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * The CPU cost of compressing responses per request, at the level Tomcat uses (the default, 6) and at the fastest and
+ * the smallest ones: a day of per-minute series, the largest response, and the metrics of a fleet over three periods,
+ * a small one. The bytes on the wire of each are printed once per trial.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompressionBenchmark {
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    private byte[] series;
+    private byte[] metrics;
+    private Deflater deflater;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+
+    @Setup
+    public void setUp() throws IOException {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        series = objectMapper.writeValueAsBytes(daySeries());
+        metrics = objectMapper.writeValueAsBytes(fleetMetrics());
+        deflater = new Deflater(level, true);
+        System.out.printf("%nlevel %d: series %d -> %d bytes, metrics %d -> %d bytes%n", level,
+                series.length, compress(series), metrics.length, compress(metrics));
+    }
+
+    @Benchmark
+    public int series() throws IOException {
+        return compress(series);
+    }
+
+    @Benchmark
+    public int metrics() throws IOException {
+        return compress(metrics);
+    }
+
+    /**
+     * Deflates like the gzip stream of Tomcat, without the few bytes of gzip header and trailer, and returns the
+     * compressed size.
+     */
+    private int compress(final byte[] response) throws IOException {
+        out.reset();
+        deflater.reset();
+        try (DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, 8192)) {
+            deflated.write(response);
+        }
+        return out.size();
+    }
+
+    private static SensorSeries daySeries() {
+        final Random random = new Random(42);
+        final List<Object[]> points = new ArrayList<>();
+        ZonedDateTime time = ZonedDateTime.parse("2020-07-13T00:00:00Z");
+        long co2Level = 800;
+        for (int minute = 0; minute < 24 * 60; minute++) {
+            co2Level = Math.max(400, Math.min(3000, co2Level + random.nextInt(81) - 40));
+            points.add(new Object[]{TimestampUtil.toIsoDateTime(TimestampUtil.toUtcTimestamp(time)),
+                    co2Level, co2Level + random.nextInt(60), co2Level - random.nextInt(60)});
+            time = time.plusMinutes(1);
+        }
+        final SensorSeries series = new SensorSeries();
+        series.setBucket("1m");
+        series.setColumns(Arrays.asList("time", "avg", "max", "min"));
+        series.setPoints(points);
+        return series;
+    }
+
+    private static SensorMetricsResponse fleetMetrics() {
+        final List<SensorMetrics> metrics = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final SensorMetrics periodMetrics = new SensorMetrics();
+            periodMetrics.setMax(2400L + i * 100);
+            periodMetrics.setAverage(1210L + i * 10);
+            periodMetrics.setP50(1150L + i * 10);
+            periodMetrics.setP95(2050L + i * 50);
+            periodMetrics.setP99(2300L + i * 50);
+            metrics.add(periodMetrics);
+        }
+        return new SensorMetricsResponse(Arrays.asList(1, 7, 30), metrics);
+    }
+}
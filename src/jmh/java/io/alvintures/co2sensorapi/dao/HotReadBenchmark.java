@@ -0,0 +1,141 @@
+package io.alvintures.co2sensorapi.dao;
+
+import io.alvintures.co2sensorapi.archive.ArchiveStore;
+import io.alvintures.co2sensorapi.dao.dialect.H2Dialect;
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.dto.Sensor;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the three hottest reads of {@link SensorDao} against an in-memory H2 database with the application schema,
+ * next to the same reads done as before: {@code SELECT *}, a new mapper per call and columns looked up by name.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HotReadBenchmark {
+
+    private static final int SENSOR_COUNT = 100;
+    private static final int READINGS_PER_SENSOR = 1_000;
+
+    private final List<String> sensorUuids = new ArrayList<>();
+    private final SensorDao sensorDao = new SensorDao();
+    private JdbcTemplate jdbcTemplate;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        final SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:benchmark;QUERY_CACHE_SIZE=64", "sa", "", true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        final Field jdbcTemplateField = SensorDao.class.getDeclaredField("jdbcTemplate");
+        jdbcTemplateField.setAccessible(true);
+        jdbcTemplateField.set(sensorDao, jdbcTemplate);
+        final Field archiveStoreField = SensorDao.class.getDeclaredField("archiveStore");
+        archiveStoreField.setAccessible(true);
+        archiveStoreField.set(sensorDao, new ArchiveStore());
+        final Field sqlDialectField = SensorDao.class.getDeclaredField("sqlDialect");
+        sqlDialectField.setAccessible(true);
+        sqlDialectField.set(sensorDao, new H2Dialect());
+
+        for (int i = 0; i < SENSOR_COUNT; i++) {
+            final Sensor sensor = new Sensor();
+            sensor.setUuid(UUID.randomUUID().toString());
+            sensor.setStatus(SensorStatus.OK);
+            sensorDao.createSensor(sensor);
+            sensorUuids.add(sensor.getUuid());
+
+            final List<Measurement> measurements = new ArrayList<>();
+            for (int minute = 0; minute < READINGS_PER_SENSOR; minute++) {
+                final Measurement measurement = new Measurement();
+                measurement.setSensorUUID(sensor.getUuid());
+                measurement.setTime(20200713000000L + minute / 60 * 10_000 + minute % 60 * 100);
+                measurement.setCo2Level(minute % 50 == 0 ? 2500L : 900L);
+                measurement.setAlert(minute % 50 == 0);
+                measurements.add(measurement);
+            }
+            sensorDao.createMeasurements(measurements);
+        }
+    }
+
+    @Benchmark
+    public Optional<Sensor> getSensor() {
+        return sensorDao.getSensor(nextSensor());
+    }
+
+    @Benchmark
+    public List<Measurement> getRecentMeasurements() {
+        return sensorDao.getRecentMeasurements(nextSensor(), 2);
+    }
+
+    @Benchmark
+    public List<Measurement> getAlerts() {
+        return sensorDao.getAlerts(nextSensor(), 3);
+    }
+
+    @Benchmark
+    public List<Sensor> getSensorSelectAll() {
+        return jdbcTemplate.query("SELECT * FROM sensor WHERE uuid = ?", new Object[]{nextSensor()}, new RowMapper<Sensor>() {
+            @Override
+            public Sensor mapRow(ResultSet rs, int rowNum) throws SQLException {
+                final Sensor sensor = new Sensor();
+                sensor.setUuid(rs.getString("uuid"));
+                sensor.setStatus(SensorStatus.valueOf(rs.getString("status")));
+                return sensor;
+            }
+        });
+    }
+
+    @Benchmark
+    public List<Measurement> getRecentMeasurementsSelectAll() {
+        return jdbcTemplate.query("SELECT * FROM measurement WHERE sensor_uuid = ? ORDER BY timestamp_utc DESC LIMIT ?",
+                new Object[]{nextSensor(), 2}, new ByNameMeasurementMapper());
+    }
+
+    @Benchmark
+    public List<Measurement> getAlertsSelectAll() {
+        return jdbcTemplate.query("SELECT * FROM measurement WHERE sensor_uuid = ? AND is_alert = TRUE "
+                + "ORDER BY timestamp_utc DESC LIMIT ?", new Object[]{nextSensor(), 3}, new ByNameMeasurementMapper());
+    }
+
+    private String nextSensor() {
+        next = (next + 1) % SENSOR_COUNT;
+        return sensorUuids.get(next);
+    }
+
+    private static class ByNameMeasurementMapper implements RowMapper<Measurement> {
+        @Override
+        public Measurement mapRow(ResultSet rs, int rowNum) throws SQLException {
+            final Measurement measurement = new Measurement();
+            measurement.setSensorUUID(rs.getString("sensor_uuid"));
+            measurement.setCo2Level(rs.getLong("co2_level"));
+            measurement.setTime(rs.getLong("timestamp_utc"));
+            measurement.setAlert(rs.getBoolean("is_alert"));
+            return measurement;
+        }
+    }
+}
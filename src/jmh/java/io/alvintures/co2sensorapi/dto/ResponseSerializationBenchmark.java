@@ -0,0 +1,80 @@
+package io.alvintures.co2sensorapi.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing the metrics and alerts responses with their streaming serializers against building the maps with
+ * concatenated keys they used to be, and serializing those.
+ * <p>
+ * Run with {@code ./gradlew jmh}; the gc profiler reports the bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseSerializationBenchmark {
+
+    private static final long[] ALERT_TIMES = {20200713125519L, 20200713125619L, 20200713125719L};
+    private static final long[] ALERT_LEVELS = {2500L, 2300L, 2100L};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OutputStream out = ByteStreams.nullOutputStream();
+    private final SensorMetrics metrics = new SensorMetrics();
+
+    public ResponseSerializationBenchmark() {
+        metrics.setMax(2400L);
+        metrics.setAverage(1210L);
+        metrics.setP50(1150L);
+        metrics.setP95(2050L);
+        metrics.setP99(2300L);
+    }
+
+    @Benchmark
+    public void metricsStreaming() throws IOException {
+        objectMapper.writeValue(out, new SensorMetricsResponse(30, metrics));
+    }
+
+    @Benchmark
+    public void metricsMap() throws IOException {
+        final int periodInDays = 30;
+        final String daysLabel = periodInDays > 1 ? "Days" : "Day";
+        final Map<String, Long> response = new LinkedHashMap<>();
+        response.put("maxLast" + periodInDays + daysLabel, metrics.getMax());
+        response.put("avgLast" + periodInDays + daysLabel, metrics.getAverage());
+        response.put("p50Last" + periodInDays + daysLabel, metrics.getP50());
+        response.put("p95Last" + periodInDays + daysLabel, metrics.getP95());
+        response.put("p99Last" + periodInDays + daysLabel, metrics.getP99());
+        objectMapper.writeValue(out, response);
+    }
+
+    @Benchmark
+    public void alertsStreaming() throws IOException {
+        final long[] co2Levels = new long[ALERT_LEVELS.length];
+        System.arraycopy(ALERT_LEVELS, 0, co2Levels, 0, co2Levels.length);
+        objectMapper.writeValue(out, new SensorAlertsResponse(ALERT_TIMES[0], ALERT_TIMES[2], co2Levels));
+    }
+
+    @Benchmark
+    public void alertsMap() throws IOException {
+        final Map<String, Object> response = new LinkedHashMap<>();
+        response.put("startTime", TimestampUtil.toIsoDateTime(ALERT_TIMES[0]));
+        response.put("endTime", TimestampUtil.toIsoDateTime(ALERT_TIMES[2]));
+        for (int i = 0; i < ALERT_LEVELS.length; i++) {
+            response.put("measurement" + (i + 1), ALERT_LEVELS[i]);
+        }
+        objectMapper.writeValue(out, response);
+    }
+}
@@ -0,0 +1,91 @@
+package io.alvintures.co2sensorapi.exception;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of rejecting a reading with the cost of accepting one, and with the rejection path as it was
+ * before: exception with a stack trace, parse failure caught from {@link ZonedDateTime#parse} and a response body
+ * serialized for every rejection.
+ * <p>
+ * Run with {@code ./gradlew jmh}; the gc profiler reports the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RejectionPathBenchmark {
+
+    private static final String VALID_TIME = "2020-07-13T12:55:19+01:00";
+    private static final String INVALID_TIME = "2020-07-13 12:55";
+    private static final SensorApiException SAME_MINUTE_CONFLICT =
+            new SensorApiException(HttpStatus.CONFLICT, "New measurement should not be recorded on the same minute.");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CustomApiExceptionHandler handler = new CustomApiExceptionHandler(objectMapper);
+
+    @Benchmark
+    public long acceptValidTime() {
+        return TimestampUtil.parseIsoToUtcTimestamp(VALID_TIME);
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> rejectInvalidTime() throws Exception {
+        final long utcTimestamp = TimestampUtil.parseIsoToUtcTimestamp(INVALID_TIME);
+        if (utcTimestamp == TimestampUtil.INVALID_TIMESTAMP) {
+            return handler.handleSensorApiException(
+                    new SensorApiException(HttpStatus.BAD_REQUEST, "time " + INVALID_TIME + " is in invalid format."));
+        }
+        throw new IllegalStateException("should be rejected");
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> rejectSameMinute() throws Exception {
+        try {
+            throw SAME_MINUTE_CONFLICT;
+        } catch (SensorApiException ex) {
+            return handler.handleSensorApiException(ex);
+        }
+    }
+
+    @Benchmark
+    public byte[] rejectInvalidTimeWithStackTrace() throws Exception {
+        try {
+            TimestampUtil.toUtcTimestamp(ZonedDateTime.parse(INVALID_TIME));
+            throw new IllegalStateException("should be rejected");
+        } catch (Exception parseFailure) {
+            final StackfulApiException ex = new StackfulApiException("time " + INVALID_TIME + " is in invalid format.");
+            return objectMapper.writeValueAsBytes(
+                    new CustomApiExceptionHandler.ApiExceptionResponse(HttpStatus.BAD_REQUEST, ex.getMessage()));
+        }
+    }
+
+    @Benchmark
+    public byte[] rejectSameMinuteWithStackTrace() throws Exception {
+        try {
+            throw new StackfulApiException("New measurement should not be recorded on the same minute.");
+        } catch (StackfulApiException ex) {
+            return objectMapper.writeValueAsBytes(
+                    new CustomApiExceptionHandler.ApiExceptionResponse(HttpStatus.CONFLICT, ex.getMessage()));
+        }
+    }
+
+    /**
+     * The rejection as it was before: a regular exception that fills in its stack trace.
+     */
+    private static class StackfulApiException extends RuntimeException {
+        StackfulApiException(String message) {
+            super(message);
+        }
+    }
+}
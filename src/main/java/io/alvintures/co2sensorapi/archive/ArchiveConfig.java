@@ -0,0 +1,11 @@
+package io.alvintures.co2sensorapi.archive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(value = "app.archive.enabled", havingValue = "true")
+public class ArchiveConfig {
+}
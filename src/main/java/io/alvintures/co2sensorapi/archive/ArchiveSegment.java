@@ -0,0 +1,78 @@
+package io.alvintures.co2sensorapi.archive;
+
+import java.nio.file.Path;
+
+/**
+ * The header of an archive segment: the archived readings of one sensor between {@link #firstTime} and
+ * {@link #lastTime}, with their summary so metrics over whole segments are computed without decoding them.
+ */
+public class ArchiveSegment {
+
+    private final String sensorUuid;
+    private final long firstTime;
+    private final long lastTime;
+    private final int count;
+    private final long co2Sum;
+    private final long co2Max;
+    private final int alertCount;
+    private final Path path;
+
+    public ArchiveSegment(String sensorUuid, long firstTime, long lastTime, int count, long co2Sum, long co2Max,
+                          int alertCount, Path path) {
+        this.sensorUuid = sensorUuid;
+        this.firstTime = firstTime;
+        this.lastTime = lastTime;
+        this.count = count;
+        this.co2Sum = co2Sum;
+        this.co2Max = co2Max;
+        this.alertCount = alertCount;
+        this.path = path;
+    }
+
+    public ArchiveSegment withPath(Path path) {
+        return new ArchiveSegment(sensorUuid, firstTime, lastTime, count, co2Sum, co2Max, alertCount, path);
+    }
+
+    public String getSensorUuid() {
+        return sensorUuid;
+    }
+
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getCo2Sum() {
+        return co2Sum;
+    }
+
+    public long getCo2Max() {
+        return co2Max;
+    }
+
+    public int getAlertCount() {
+        return alertCount;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns whether all the readings of the segment are between startDate and endDate (inclusive).
+     */
+    public boolean isWithin(long startDate, long endDate) {
+        return firstTime >= startDate && lastTime <= endDate;
+    }
+
+    public boolean overlaps(long startDate, long endDate) {
+        return firstTime <= endDate && lastTime >= startDate;
+    }
+}
@@ -0,0 +1,187 @@
+package io.alvintures.co2sensorapi.archive;
+
+import com.google.common.io.BaseEncoding;
+import io.alvintures.co2sensorapi.dto.Measurement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The cold tier: archived readings stored as {@link SegmentCodec} files on local disk, one directory per sensor.
+ * <p>
+ * The headers of all the segments are loaded on start-up and kept in memory, so finding the segments of a period,
+ * and summing up the ones fully inside it, needs no disk access.
+ */
+@Component
+public class ArchiveStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveStore.class);
+
+    private static final String SEGMENT_EXTENSION = ".seg";
+    private static final Pattern SAFE_DIRECTORY_NAME = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    @Value("${app.archive.directory:data/archive}")
+    private String directory;
+
+    /**
+     * Segments of each sensor by first reading time.
+     */
+    private final Map<String, NavigableMap<Long, ArchiveSegment>> segmentsBySensor = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void loadSegments() throws IOException {
+        final Path root = Paths.get(directory);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(SEGMENT_EXTENSION)).collect(Collectors.toList())) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    register(SegmentCodec.readHeader(in).withPath(file));
+                } catch (IOException ex) {
+                    LOGGER.warn("Skipping unreadable archive segment {}", file, ex);
+                }
+            }
+        }
+        LOGGER.info("Loaded {} archive segments of {} sensors from {}",
+                segmentsBySensor.values().stream().mapToInt(Map::size).sum(), segmentsBySensor.size(), root);
+    }
+
+    public boolean isEmpty() {
+        return segmentsBySensor.isEmpty();
+    }
+
+    /**
+     * Returns the time of the last archived reading of the sensor, or 0 if none was archived.
+     * The readings up to that time are read from the archive only.
+     */
+    public long archivedUntil(final String sensorUuid) {
+        final NavigableMap<Long, ArchiveSegment> segments = segmentsBySensor.get(sensorUuid);
+        return segments == null || segments.isEmpty() ? 0L : segments.lastEntry().getValue().getLastTime();
+    }
+
+    /**
+     * Returns the segments of the sensor with readings between startDate and endDate, oldest first.
+     */
+    public List<ArchiveSegment> getSegments(final String sensorUuid, final long startDate, final long endDate) {
+        final NavigableMap<Long, ArchiveSegment> segments = segmentsBySensor.get(sensorUuid);
+        if (segments == null) {
+            return new ArrayList<>();
+        }
+        return segments.headMap(endDate, true).values().stream()
+                .filter(segment -> segment.overlaps(startDate, endDate))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Same with {@link this#getSegments(String, long, long)} but for all the sensors.
+     */
+    public List<ArchiveSegment> getSegments(final long startDate, final long endDate) {
+        final List<ArchiveSegment> overlapping = new ArrayList<>();
+        segmentsBySensor.keySet().forEach(sensorUuid -> overlapping.addAll(getSegments(sensorUuid, startDate, endDate)));
+        return overlapping;
+    }
+
+    /**
+     * Returns all the segments of the sensor, most recent first.
+     */
+    public List<ArchiveSegment> getSegmentsMostRecentFirst(final String sensorUuid) {
+        final NavigableMap<Long, ArchiveSegment> segments = segmentsBySensor.get(sensorUuid);
+        return segments == null ? new ArrayList<>() : new ArrayList<>(segments.descendingMap().values());
+    }
+
+    /**
+     * Returns the readings of the segment, oldest first.
+     */
+    public List<Measurement> read(final ArchiveSegment segment) {
+        try {
+            return SegmentCodec.decode(Files.readAllBytes(segment.getPath()));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to read archive segment " + segment.getPath(), ex);
+        }
+    }
+
+    /**
+     * Writes the readings of the sensor, oldest first, to a new segment and returns it.
+     * The segment is only visible to readers once it is fully written and synced to disk.
+     */
+    public ArchiveSegment write(final String sensorUuid, final List<Measurement> measurements) throws IOException {
+        final byte[] encoded = SegmentCodec.encode(sensorUuid, measurements);
+        final Path sensorDirectory = Files.createDirectories(Paths.get(directory, directoryName(sensorUuid)));
+        final Path file = sensorDirectory.resolve(measurements.get(0).getTime() + "-"
+                + measurements.get(measurements.size() - 1).getTime() + SEGMENT_EXTENSION);
+        final Path temporaryFile = sensorDirectory.resolve(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(encoded);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        try (InputStream in = Files.newInputStream(file)) {
+            final ArchiveSegment segment = SegmentCodec.readHeader(in).withPath(file);
+            register(segment);
+            return segment;
+        }
+    }
+
+    /**
+     * Deletes the segments whose readings are all older than the given time and returns how many readings they held.
+     */
+    public long deleteSegmentsBefore(final long time) throws IOException {
+        long deletedCount = 0;
+        for (Map.Entry<String, NavigableMap<Long, ArchiveSegment>> sensorSegments : segmentsBySensor.entrySet()) {
+            for (ArchiveSegment segment : sensorSegments.getValue().headMap(time, false).values()) {
+                if (segment.getLastTime() < time) {
+                    // Unregistered first, so no new read opens a file about to be deleted.
+                    sensorSegments.getValue().remove(segment.getFirstTime());
+                    Files.deleteIfExists(segment.getPath());
+                    deletedCount += segment.getCount();
+                }
+            }
+            if (sensorSegments.getValue().isEmpty()) {
+                segmentsBySensor.remove(sensorSegments.getKey(), sensorSegments.getValue());
+            }
+        }
+        return deletedCount;
+    }
+
+    private void register(final ArchiveSegment segment) {
+        segmentsBySensor.computeIfAbsent(segment.getSensorUuid(), sensorUuid -> new ConcurrentSkipListMap<>())
+                .put(segment.getFirstTime(), segment);
+    }
+
+    /**
+     * Sensor ids come from the request path, so anything but a plain id is hex encoded to stay inside the archive.
+     */
+    private static String directoryName(final String sensorUuid) {
+        return SAFE_DIRECTORY_NAME.matcher(sensorUuid).matches() ? sensorUuid
+                : "_" + BaseEncoding.base16().lowerCase().encode(sensorUuid.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,107 @@
+package io.alvintures.co2sensorapi.archive;
+
+import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.service.SensorLocks;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Moves the readings older than {@code app.archive.age-days} from the measurement table to the {@link ArchiveStore},
+ * so the live table only holds the recent readings most queries are about.
+ * <p>
+ * A segment is written and synced before the readings it holds are deleted, and only the readings of its period are
+ * deleted. If the deletion does not happen, the readings left behind are ignored by the reads, which only look at the
+ * live readings after {@link ArchiveStore#archivedUntil}, and are deleted at the start of the next run. Readings are
+ * never added to the archived period afterwards, the importer skips them: each segment is read, written and deleted
+ * holding the {@link SensorLocks} of its sensor, which the importer and the ingest hold while checking and inserting
+ * readings, so no reading is inserted into the period of a segment before it is deleted.
+ */
+@Component
+@ConditionalOnProperty(value = "app.archive.enabled", havingValue = "true")
+public class MeasurementArchiver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeasurementArchiver.class);
+
+    @Value("${app.archive.age-days:30}")
+    private int ageInDays;
+
+    @Value("${app.archive.segment-size:50000}")
+    private int segmentSize;
+
+    @Autowired
+    private SensorDao sensorDao;
+
+    @Autowired
+    private ArchiveStore archiveStore;
+
+    @Autowired
+    private SensorLocks sensorLocks;
+
+    @Scheduled(cron = "${app.archive.cron:0 30 2 * * *}", zone = "UTC")
+    public void archive() {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        final long cutoff = TimestampUtil.toUtcTimestamp(now.minusDays(ageInDays).toLocalDate().atStartOfDay(now.getZone()));
+        final long start = System.nanoTime();
+        long archivedCount = 0;
+        long archivedBytes = 0;
+
+        for (String sensorUuid : sensorDao.getSensorUuidsWithMeasurementsBefore(cutoff)) {
+            try {
+                ArchiveSegment segment;
+                do {
+                    segment = sensorLocks.withLocks(Collections.singletonList(sensorUuid),
+                            () -> archiveNextSegment(sensorUuid, cutoff));
+                    if (segment != null) {
+                        archivedCount += segment.getCount();
+                        archivedBytes += segment.getPath().toFile().length();
+                    }
+                } while (segment != null && segment.getCount() == segmentSize);
+            } catch (RuntimeException ex) {
+                LOGGER.error("Failed to archive the readings of sensor {}, retrying on the next run", sensorUuid, ex);
+            }
+        }
+
+        LOGGER.info("Archived {} readings older than {} in {} bytes ({} ms)",
+                archivedCount, cutoff, archivedBytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Deletes the readings left behind by the last segment, then moves the next readings before the cutoff to a new
+     * segment and returns it, or null if there are none.
+     */
+    private ArchiveSegment archiveNextSegment(final String sensorUuid, final long cutoff) {
+        // Only the last segment can have readings left behind, each segment is deleted before the next one.
+        final List<ArchiveSegment> segments = archiveStore.getSegmentsMostRecentFirst(sensorUuid);
+        if (!segments.isEmpty()) {
+            sensorDao.deleteMeasurementsOf(segments.get(0));
+        }
+        final long archivedUntil = archiveStore.archivedUntil(sensorUuid);
+        final List<Measurement> measurements = sensorDao.getMeasurementsBetween(sensorUuid, archivedUntil, cutoff,
+                segmentSize);
+        if (measurements.isEmpty()) {
+            return null;
+        }
+        final ArchiveSegment segment;
+        try {
+            segment = archiveStore.write(sensorUuid, measurements);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        sensorDao.deleteMeasurementsOf(segment);
+        return segment;
+    }
+}
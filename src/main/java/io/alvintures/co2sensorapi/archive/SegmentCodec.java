@@ -0,0 +1,194 @@
+package io.alvintures.co2sensorapi.archive;
+
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes the readings of one sensor, oldest first, into a compact columnar segment.
+ * <p>
+ * A plain header (sensor, time range, count, sum, max and number of alerts) is followed by three deflated columns:
+ * <ul>
+ *     <li>times as epoch seconds: the first one, then the first delta, then the delta of each delta, which is 0 for
+ *     readings sent every minute</li>
+ *     <li>CO2 levels: the first one, then the difference with the previous one</li>
+ *     <li>alert flags as a bitset</li>
+ * </ul>
+ * Numbers are written as zigzag varints, so small values, positive or negative, take a single byte.
+ */
+public class SegmentCodec {
+
+    private static final int MAGIC = 0x434f3253; // "CO2S"
+    private static final byte VERSION = 1;
+
+    public static byte[] encode(final String sensorUuid, final List<Measurement> measurements) {
+        if (measurements.isEmpty()) {
+            throw new IllegalArgumentException("A segment should have at least one reading.");
+        }
+        final int count = measurements.size();
+        long co2Sum = 0;
+        long co2Max = Long.MIN_VALUE;
+        int alertCount = 0;
+        for (Measurement measurement : measurements) {
+            co2Sum += measurement.getCo2Level();
+            co2Max = Math.max(co2Max, measurement.getCo2Level());
+            alertCount += measurement.isAlert() ? 1 : 0;
+        }
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * 2);
+            final DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeUTF(sensorUuid);
+            header.writeInt(count);
+            header.writeLong(measurements.get(0).getTime());
+            header.writeLong(measurements.get(count - 1).getTime());
+            header.writeLong(co2Sum);
+            header.writeLong(co2Max);
+            header.writeInt(alertCount);
+            header.flush();
+
+            final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream body = new DeflaterOutputStream(bytes, deflater)) {
+                long previousTime = 0;
+                long previousDelta = 0;
+                for (int i = 0; i < count; i++) {
+                    final long time = TimestampUtil.toEpochSecond(measurements.get(i).getTime());
+                    if (i == 0) {
+                        writeVarLong(body, zigzag(time));
+                    } else {
+                        final long delta = time - previousTime;
+                        writeVarLong(body, zigzag(i == 1 ? delta : delta - previousDelta));
+                        previousDelta = delta;
+                    }
+                    previousTime = time;
+                }
+
+                long previousLevel = 0;
+                for (Measurement measurement : measurements) {
+                    writeVarLong(body, zigzag(measurement.getCo2Level() - previousLevel));
+                    previousLevel = measurement.getCo2Level();
+                }
+
+                final byte[] alerts = new byte[(count + 7) / 8];
+                for (int i = 0; i < count; i++) {
+                    if (measurements.get(i).isAlert()) {
+                        alerts[i / 8] |= 1 << (i % 8);
+                    }
+                }
+                body.write(alerts);
+            } finally {
+                deflater.end();
+            }
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to encode segment of sensor " + sensorUuid, ex);
+        }
+    }
+
+    /**
+     * Reads the header of a segment, without the readings.
+     */
+    public static ArchiveSegment readHeader(final InputStream in) throws IOException {
+        final DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not an archive segment.");
+        }
+        final byte version = header.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive segment version " + version);
+        }
+        final String sensorUuid = header.readUTF();
+        final int count = header.readInt();
+        final long firstTime = header.readLong();
+        final long lastTime = header.readLong();
+        final long co2Sum = header.readLong();
+        final long co2Max = header.readLong();
+        final int alertCount = header.readInt();
+        return new ArchiveSegment(sensorUuid, firstTime, lastTime, count, co2Sum, co2Max, alertCount, null);
+    }
+
+    public static List<Measurement> decode(final byte[] segment) throws IOException {
+        final ByteArrayInputStream in = new ByteArrayInputStream(segment);
+        final ArchiveSegment header = readHeader(in);
+        final int count = header.getCount();
+        final long[] epochSeconds = new long[count];
+        final long[] levels = new long[count];
+        final byte[] alerts = new byte[(count + 7) / 8];
+
+        try (InputStream body = new InflaterInputStream(in)) {
+            long delta = 0;
+            for (int i = 0; i < count; i++) {
+                final long value = unzigzag(readVarLong(body));
+                if (i == 0) {
+                    epochSeconds[i] = value;
+                } else {
+                    delta = i == 1 ? value : delta + value;
+                    epochSeconds[i] = epochSeconds[i - 1] + delta;
+                }
+            }
+            long level = 0;
+            for (int i = 0; i < count; i++) {
+                level += unzigzag(readVarLong(body));
+                levels[i] = level;
+            }
+            new DataInputStream(body).readFully(alerts);
+        }
+
+        final List<Measurement> measurements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Measurement measurement = new Measurement();
+            measurement.setSensorUUID(header.getSensorUuid());
+            measurement.setTime(TimestampUtil.fromEpochSecond(epochSeconds[i]));
+            measurement.setCo2Level(levels[i]);
+            measurement.setAlert((alerts[i / 8] & (1 << (i % 8))) != 0);
+            measurements.add(measurement);
+        }
+        return measurements;
+    }
+
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(final OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(final InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated archive segment.");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in archive segment.");
+    }
+}
@@ -0,0 +1,76 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.dto.SensorStatusBatchGetParams;
+import io.alvintures.co2sensorapi.exception.SensorApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads from the other nodes of the cluster what only they know, e.g. the status of the sensors they own.
+ * <p>
+ * The requests are marked with {@link SensorOwnershipInterceptor#FORWARDED_BY_HEADER} and the cluster secret, so the
+ * node answers them from its own state instead of routing them again.
+ */
+@Component
+public class ClusterClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterClient.class);
+
+    private final ClusterMembership clusterMembership;
+    private final RestTemplate restTemplate;
+
+    @Autowired
+    public ClusterClient(ClusterMembership clusterMembership, RestTemplateBuilder restTemplateBuilder) {
+        this.clusterMembership = clusterMembership;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(2))
+                .setReadTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Returns the status of the sensors known to the node, keyed by sensor.
+     */
+    public Map<String, SensorStatus> getStatuses(final String nodeUrl, final List<String> sensorUuids) {
+        final SensorStatusBatchGetParams params = new SensorStatusBatchGetParams();
+        params.setUuids(sensorUuids);
+        final Map<String, SensorStatus> statuses = post(nodeUrl, "/status:batchGet", params,
+                new ParameterizedTypeReference<Map<String, SensorStatus>>() {
+                });
+        return statuses != null ? statuses : Collections.emptyMap();
+    }
+
+    private <T> T post(final String nodeUrl, final String path, final Object body,
+                       final ParameterizedTypeReference<T> responseType) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(SensorOwnershipInterceptor.FORWARDED_BY_HEADER, clusterMembership.getSelfUrl());
+        headers.set(SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, clusterMembership.getSecret());
+
+        LOGGER.debug("Reading {} from {}", path, nodeUrl);
+        try {
+            return restTemplate.exchange(nodeUrl + path, HttpMethod.POST, new HttpEntity<>(body, headers), responseType)
+                    .getBody();
+        } catch (RestClientException ex) {
+            LOGGER.warn("Failed to read {} from {}", path, nodeUrl, ex);
+            throw new SensorApiException(HttpStatus.BAD_GATEWAY, "Node " + nodeUrl + " could not be reached.");
+        }
+    }
+}
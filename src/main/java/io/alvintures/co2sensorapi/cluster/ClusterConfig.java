@@ -0,0 +1,31 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class ClusterConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private SensorOwnershipInterceptor sensorOwnershipInterceptor;
+
+    @Bean
+    public FilterRegistrationBean<ForwardedByHeaderFilter> forwardedByHeaderFilter(ClusterMembership clusterMembership) {
+        final FilterRegistrationBean<ForwardedByHeaderFilter> registration =
+                new FilterRegistrationBean<>(new ForwardedByHeaderFilter(clusterMembership));
+        // Right after the gzip filter, before anything reads the header.
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(sensorOwnershipInterceptor).addPathPatterns("/*", "/*/measurements", "/*/location",
+                "/*/metrics", "/*/alerts", "/*/alerts/history", "/*/series");
+    }
+}
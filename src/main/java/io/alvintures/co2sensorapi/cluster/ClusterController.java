@@ -0,0 +1,62 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import io.alvintures.co2sensorapi.exception.SensorApiException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+/**
+ * Admin endpoints to inspect and change this node's view of the cluster. The orchestrator calls these on every
+ * node when an instance starts or stops; sensor ownership rebalances as soon as the ring is updated. Only nodes sharing
+ * one database can change it, see {@link ClusterMembership}. Changing the ring
+ * requires the cluster secret, otherwise any client could add itself as a node and receive the forwarded requests.
+ */
+@RestController
+public class ClusterController {
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Operation(description = "Lists the base URLs of the nodes in the cluster.")
+    @GetMapping("/cluster/nodes")
+    public Set<String> getNodes() {
+        return clusterMembership.getNodes();
+    }
+
+    @Operation(description = "Adds a node to the cluster.")
+    @PutMapping("/cluster/nodes")
+    public Set<String> joinNode(@Parameter(description = "Base URL of the node") @RequestParam String url,
+                                @Parameter(hidden = true)
+                                @RequestHeader(value = SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, required = false)
+                                String secret) {
+        checkClusterSecret(secret);
+        clusterMembership.join(url);
+        return clusterMembership.getNodes();
+    }
+
+    @Operation(description = "Removes a node from the cluster.")
+    @DeleteMapping("/cluster/nodes")
+    public Set<String> leaveNode(@Parameter(description = "Base URL of the node") @RequestParam String url,
+                                 @Parameter(hidden = true)
+                                 @RequestHeader(value = SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, required = false)
+                                 String secret) {
+        checkClusterSecret(secret);
+        clusterMembership.leave(url);
+        return clusterMembership.getNodes();
+    }
+
+    private void checkClusterSecret(final String secret) {
+        if (!clusterMembership.isClusterSecret(secret)) {
+            throw new SensorApiException(HttpStatus.UNAUTHORIZED, "Changing the cluster requires the cluster secret.");
+        }
+    }
+}
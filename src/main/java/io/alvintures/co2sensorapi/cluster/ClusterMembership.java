@@ -0,0 +1,155 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import io.alvintures.co2sensorapi.exception.SensorApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * This node's view of the cluster: which nodes exist and which of them owns a given sensor.
+ * <p>
+ * The membership is seeded from {@code app.cluster.nodes} and changed at runtime through {@link ClusterController}
+ * when nodes join or leave. Nodes are identified by their base URL, e.g. {@code http://10.0.0.5:8080}.
+ * <p>
+ * Changing the ring at runtime requires the nodes to share one database ({@code app.cluster.shared-database=true}):
+ * the data of a sensor stays where it was written, so a node taking a sensor over only reloads it, see
+ * {@link SensorOwnershipChangedEvent}. With a database per node, a sensor moving to another node would start over
+ * there with no history, status or alert state, so the ring is fixed by {@code app.cluster.nodes}.
+ * <p>
+ * Nodes authenticate their requests to each other, and the changes of the ring, with the shared
+ * {@code app.cluster.secret} sent in {@link SensorOwnershipInterceptor#CLUSTER_SECRET_HEADER}.
+ */
+@Component
+public class ClusterMembership {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterMembership.class);
+
+    @Value("${app.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.cluster.self-url:}")
+    private String selfUrl;
+
+    @Value("${app.cluster.nodes:}")
+    private String[] seedNodes;
+
+    @Value("${app.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${app.cluster.secret:}")
+    private String secret;
+
+    @Value("${app.cluster.shared-database:false}")
+    private boolean sharedDatabase;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private volatile ConsistentHashRing ring;
+
+    @PostConstruct
+    void init() {
+        selfUrl = normalize(selfUrl);
+        final Set<String> nodes = Arrays.stream(seedNodes)
+                .map(ClusterMembership::normalize)
+                .filter(node -> !node.isEmpty())
+                .collect(Collectors.toSet());
+        nodes.add(selfUrl);
+        ring = new ConsistentHashRing(nodes, virtualNodes);
+
+        if (enabled && secret.isEmpty()) {
+            throw new IllegalStateException("app.cluster.secret must be set in cluster mode");
+        }
+        if (enabled) {
+            LOGGER.info("Cluster mode enabled, {} is one of {}", selfUrl, ring.getNodes());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getSelfUrl() {
+        return selfUrl;
+    }
+
+    String getSecret() {
+        return secret;
+    }
+
+    public Set<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Returns the base URL of the node owning the sensor.
+     */
+    public String ownerOf(final String sensorUuid) {
+        return ring.ownerOf(sensorUuid);
+    }
+
+    /**
+     * Returns true if cluster mode is enabled and the node is one of the cluster.
+     */
+    public boolean isMember(final String nodeUrl) {
+        return enabled && ring.getNodes().contains(normalize(nodeUrl));
+    }
+
+    /**
+     * Returns true if cluster mode is enabled and the given secret is the one of the cluster. The comparison takes
+     * the same time whatever the secret sent.
+     */
+    public boolean isClusterSecret(final String candidate) {
+        return enabled && candidate != null && MessageDigest.isEqual(
+                secret.getBytes(StandardCharsets.UTF_8), candidate.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isOwnedLocally(final String sensorUuid) {
+        return !enabled || selfUrl.equals(ring.ownerOf(sensorUuid));
+    }
+
+    public void join(final String nodeUrl) {
+        changeRing(ring -> ring.withNode(normalize(nodeUrl)));
+        LOGGER.info("Node {} joined, cluster is now {}", nodeUrl, getNodes());
+    }
+
+    public void leave(final String nodeUrl) {
+        final String node = normalize(nodeUrl);
+        if (node.equals(selfUrl)) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "A node cannot remove itself from its own view of the cluster.");
+        }
+        changeRing(ring -> ring.withoutNode(node));
+        LOGGER.info("Node {} left, cluster is now {}", nodeUrl, getNodes());
+    }
+
+    /**
+     * Swaps the ring, then lets the sensors taken over be reloaded before the next change. Requests about them may
+     * reach this node in between, as they may reach any node whose view is not updated yet.
+     */
+    private synchronized void changeRing(final UnaryOperator<ConsistentHashRing> change) {
+        if (!sharedDatabase) {
+            throw new SensorApiException(HttpStatus.CONFLICT, "The cluster can only change at runtime when its nodes "
+                    + "share one database, see app.cluster.shared-database.");
+        }
+        final ConsistentHashRing previousRing = ring;
+        ring = change.apply(previousRing);
+        eventPublisher.publishEvent(new SensorOwnershipChangedEvent(this, selfUrl, previousRing, ring));
+    }
+
+    private static String normalize(final String nodeUrl) {
+        final String trimmed = nodeUrl.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
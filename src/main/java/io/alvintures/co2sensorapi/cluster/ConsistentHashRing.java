@@ -0,0 +1,74 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable consistent-hash ring that maps a sensor UUID to the node owning it.
+ * <p>
+ * Every node is placed on the ring several times (virtual nodes) so load spreads evenly, and adding or removing
+ * a node only moves the sensors between that node and its neighbours.
+ */
+public class ConsistentHashRing {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final ImmutableSortedSet<String> nodes;
+    private final int virtualNodesPerNode;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(final Collection<String> nodes, final int virtualNodesPerNode) {
+        if (virtualNodesPerNode < 1) {
+            throw new IllegalArgumentException("virtualNodesPerNode should be at least 1 but was " + virtualNodesPerNode);
+        }
+        this.nodes = ImmutableSortedSet.copyOf(nodes);
+        this.virtualNodesPerNode = virtualNodesPerNode;
+
+        // Nodes are sorted so that hash collisions between virtual nodes resolve the same way on every instance.
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodesPerNode; i++) {
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * Returns the node that owns the given key: the first virtual node clockwise from the key's hash.
+     */
+    public String ownerOf(final String key) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("The ring has no nodes.");
+        }
+        final Map.Entry<Long, String> owner = ring.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    public ConsistentHashRing withNode(final String node) {
+        return new ConsistentHashRing(
+                ImmutableSortedSet.<String>naturalOrder().addAll(nodes).add(node).build(), virtualNodesPerNode
+        );
+    }
+
+    public ConsistentHashRing withoutNode(final String node) {
+        return new ConsistentHashRing(
+                nodes.stream().filter(existing -> !existing.equals(node)).collect(Collectors.toList()), virtualNodesPerNode
+        );
+    }
+
+    public Set<String> getNodes() {
+        return nodes;
+    }
+
+    private static long hash(final String value) {
+        return HASH_FUNCTION.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -0,0 +1,79 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Strips {@link SensorOwnershipInterceptor#FORWARDED_BY_HEADER} from the requests not sent by a node of the cluster,
+ * i.e. without the cluster secret in {@link SensorOwnershipInterceptor#CLUSTER_SECRET_HEADER}. A forwarded request is
+ * neither routed again nor rate limited per sensor, so a client setting the header itself would otherwise bypass both;
+ * the value of the header alone proves nothing, any client can name a node.
+ */
+public class ForwardedByHeaderFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForwardedByHeaderFilter.class);
+
+    private final ClusterMembership clusterMembership;
+
+    public ForwardedByHeaderFilter(final ClusterMembership clusterMembership) {
+        this.clusterMembership = clusterMembership;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final String forwardedBy = request.getHeader(SensorOwnershipInterceptor.FORWARDED_BY_HEADER);
+        if (forwardedBy == null || (clusterMembership.isMember(forwardedBy)
+                && clusterMembership.isClusterSecret(request.getHeader(SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER)))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        LOGGER.debug("Ignoring {} {} from {}, not sent by a node of the cluster",
+                SensorOwnershipInterceptor.FORWARDED_BY_HEADER, forwardedBy, request.getRemoteAddr());
+        filterChain.doFilter(new NotForwardedRequest(request), response);
+    }
+
+    /**
+     * The request without the header.
+     */
+    private static class NotForwardedRequest extends HttpServletRequestWrapper {
+
+        NotForwardedRequest(final HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isForwardedBy(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isForwardedBy(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            final List<String> names = Collections.list(super.getHeaderNames()).stream()
+                    .filter(name -> !isForwardedBy(name))
+                    .collect(Collectors.toList());
+            return Collections.enumeration(names);
+        }
+
+        private static boolean isForwardedBy(final String name) {
+            return SensorOwnershipInterceptor.FORWARDED_BY_HEADER.equalsIgnoreCase(name);
+        }
+    }
+}
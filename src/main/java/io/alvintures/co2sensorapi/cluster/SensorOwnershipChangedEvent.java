@@ -0,0 +1,36 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link ClusterMembership} once a node joined or left this node's view of the cluster, so the sensors
+ * this node takes over can be reloaded from the shared database.
+ */
+public class SensorOwnershipChangedEvent extends ApplicationEvent {
+
+    private final String selfUrl;
+    private final ConsistentHashRing previousRing;
+    private final ConsistentHashRing ring;
+
+    public SensorOwnershipChangedEvent(final ClusterMembership source, final String selfUrl,
+                                       final ConsistentHashRing previousRing, final ConsistentHashRing ring) {
+        super(source);
+        this.selfUrl = selfUrl;
+        this.previousRing = previousRing;
+        this.ring = ring;
+    }
+
+    /**
+     * Returns true if the sensor changed owner.
+     */
+    public boolean isMoved(final String sensorUuid) {
+        return !previousRing.ownerOf(sensorUuid).equals(ring.ownerOf(sensorUuid));
+    }
+
+    /**
+     * Returns true if this node owns the sensor now but did not before.
+     */
+    public boolean isTakenOver(final String sensorUuid) {
+        return selfUrl.equals(ring.ownerOf(sensorUuid)) && !selfUrl.equals(previousRing.ownerOf(sensorUuid));
+    }
+}
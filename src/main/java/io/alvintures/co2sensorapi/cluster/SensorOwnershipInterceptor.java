@@ -0,0 +1,123 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import io.alvintures.co2sensorapi.controller.SensorApiController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Sends the requests about one sensor (ingest, location, status, metrics, alerts and series) owned by another node to
+ * that node, either by proxying the request ({@code app.cluster.routing=forward}) or by answering with a 307 redirect
+ * ({@code app.cluster.routing=redirect}). The status of many sensors at once is gathered by
+ * {@link io.alvintures.co2sensorapi.service.SensorService#getStatuses} instead.
+ * <p>
+ * Forwarded requests are marked with {@link #FORWARDED_BY_HEADER} and always processed by the receiving node, so
+ * two nodes with a momentarily different membership view cannot bounce a request between each other. They carry the
+ * cluster secret in {@link #CLUSTER_SECRET_HEADER}, without which the mark is ignored, see
+ * {@link ForwardedByHeaderFilter}.
+ */
+@Component
+public class SensorOwnershipInterceptor implements HandlerInterceptor {
+
+    public static final String FORWARDED_BY_HEADER = "X-Cluster-Forwarded-By";
+    public static final String CLUSTER_SECRET_HEADER = "X-Cluster-Secret";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorOwnershipInterceptor.class);
+
+    private final ClusterMembership clusterMembership;
+    private final RestTemplate restTemplate;
+
+    @Value("${app.cluster.routing:forward}")
+    private String routing;
+
+    @Autowired
+    public SensorOwnershipInterceptor(ClusterMembership clusterMembership, RestTemplateBuilder restTemplateBuilder) {
+        this.clusterMembership = clusterMembership;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(2))
+                .setReadTimeout(Duration.ofSeconds(10))
+                .errorHandler(new PassThroughErrorHandler())
+                .build();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!clusterMembership.isEnabled() || request.getHeader(FORWARDED_BY_HEADER) != null) {
+            return true;
+        }
+
+        @SuppressWarnings("unchecked") final Map<String, String> pathVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        final String sensorUuid = pathVariables != null ? pathVariables.get("uuid") : null;
+        if (sensorUuid == null || clusterMembership.isOwnedLocally(sensorUuid)) {
+            return true;
+        }
+
+        final String ownerUrl = clusterMembership.ownerOf(sensorUuid) + request.getRequestURI()
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+
+        if ("redirect".equalsIgnoreCase(routing)) {
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION, ownerUrl);
+        } else {
+            forward(request, response, ownerUrl);
+        }
+        return false;
+    }
+
+    private void forward(HttpServletRequest request, HttpServletResponse response, String ownerUrl) throws IOException {
+        final HttpHeaders headers = new HttpHeaders();
+        if (request.getContentType() != null) {
+            headers.set(HttpHeaders.CONTENT_TYPE, request.getContentType());
+        }
+        if (request.getHeader(SensorApiController.IDEMPOTENCY_KEY_HEADER) != null) {
+            headers.set(SensorApiController.IDEMPOTENCY_KEY_HEADER, request.getHeader(SensorApiController.IDEMPOTENCY_KEY_HEADER));
+        }
+        headers.set(FORWARDED_BY_HEADER, clusterMembership.getSelfUrl());
+        headers.set(CLUSTER_SECRET_HEADER, clusterMembership.getSecret());
+        final byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+
+        LOGGER.debug("Forwarding {} {} to {}", request.getMethod(), request.getRequestURI(), ownerUrl);
+        final ResponseEntity<byte[]> ownerResponse = restTemplate.exchange(
+                ownerUrl, HttpMethod.resolve(request.getMethod()), new HttpEntity<>(body, headers), byte[].class
+        );
+
+        response.setStatus(ownerResponse.getStatusCodeValue());
+        if (ownerResponse.getHeaders().getContentType() != null) {
+            response.setContentType(ownerResponse.getHeaders().getContentType().toString());
+        }
+        if (ownerResponse.getBody() != null) {
+            response.getOutputStream().write(ownerResponse.getBody());
+        }
+    }
+
+    /**
+     * The owner's error responses (e.g. 409 for a reading in the same minute) are relayed as they are.
+     */
+    private static class PassThroughErrorHandler extends DefaultResponseErrorHandler {
+        @Override
+        public boolean hasError(ClientHttpResponse response) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.alvintures.co2sensorapi.compression;
+
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Response compression itself is Tomcat's, set up with the {@code server.compression.*} properties. This adds what
+ * Tomcat does not do on its own: inflating gzipped request bodies, and HTTP/2 without TLS (h2c).
+ */
+@Configuration
+public class CompressionConfig {
+
+    @Bean
+    @ConditionalOnProperty(value = "app.compression.request.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<GzipRequestFilter> gzipRequestFilter(
+            @Value("${app.compression.request.max-inflated-bytes:1048576}") int maxInflatedBytes) {
+        final FilterRegistrationBean<GzipRequestFilter> registration =
+                new FilterRegistrationBean<>(new GzipRequestFilter(maxInflatedBytes));
+        // First, so every other filter and interceptor sees the plain body.
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * Spring Boot only enables HTTP/2 with TLS. Without it, this accepts h2c, both through an
+     * {@code Upgrade: h2c} request and with prior knowledge. Compression is set on HTTP/2 as well, since Boot only
+     * configures it on the connectors it set up HTTP/2 for.
+     */
+    @Bean
+    @ConditionalOnProperty(value = "server.http2.enabled", havingValue = "true")
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> h2cCustomizer(ServerProperties serverProperties) {
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            if (connector.findUpgradeProtocols().length > 0) {
+                return;
+            }
+            final Http2Protocol http2Protocol = new Http2Protocol();
+            final Compression compression = serverProperties.getCompression();
+            if (compression.getEnabled()) {
+                http2Protocol.setCompression("on");
+                http2Protocol.setCompressibleMimeType(String.join(",", compression.getMimeTypes()));
+                http2Protocol.setCompressionMinSize((int) compression.getMinResponseSize().toBytes());
+                if (compression.getExcludedUserAgents() != null) {
+                    http2Protocol.setNoCompressionUserAgents(String.join(",", compression.getExcludedUserAgents()));
+                }
+            }
+            connector.addUpgradeProtocol(http2Protocol);
+        });
+    }
+}
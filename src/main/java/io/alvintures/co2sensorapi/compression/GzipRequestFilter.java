@@ -0,0 +1,178 @@
+package io.alvintures.co2sensorapi.compression;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates request bodies sent with {@code Content-Encoding: gzip}, e.g. by gateways batching ingest, so the
+ * controllers and the cluster forwarding read them as plain bodies. Tomcat only compresses responses.
+ * <p>
+ * The body is inflated up front, and at most {@code app.compression.request.max-inflated-bytes} of it: a few KB of
+ * gzip can inflate to gigabytes, so a larger body is answered with 413 instead. Other encodings are answered with 415.
+ */
+public class GzipRequestFilter extends OncePerRequestFilter {
+
+    private final int maxInflatedBytes;
+
+    public GzipRequestFilter(final int maxInflatedBytes) {
+        this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding == null || "identity".equalsIgnoreCase(contentEncoding.trim())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!"gzip".equalsIgnoreCase(contentEncoding.trim()) && !"x-gzip".equalsIgnoreCase(contentEncoding.trim())) {
+            response.sendError(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(), "Content-Encoding " + contentEncoding + " is not supported.");
+            return;
+        }
+
+        final byte[] body;
+        try {
+            body = inflate(request.getInputStream());
+        } catch (ZipException | EOFException ex) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "The request body is not valid gzip.");
+            return;
+        }
+        if (body == null) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "The inflated request body is larger than " + maxInflatedBytes + " bytes.");
+            return;
+        }
+        filterChain.doFilter(new InflatedRequest(request, body), response);
+    }
+
+    /**
+     * Returns the inflated body, or null if it is larger than {@link #maxInflatedBytes}.
+     */
+    private byte[] inflate(final InputStream compressed) throws IOException {
+        final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        try (GZIPInputStream in = new GZIPInputStream(compressed, buffer.length)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (inflated.size() + read > maxInflatedBytes) {
+                    return null;
+                }
+                inflated.write(buffer, 0, read);
+            }
+        }
+        return inflated.toByteArray();
+    }
+
+    /**
+     * The request as if it had been sent uncompressed.
+     */
+    private static class InflatedRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        InflatedRequest(final HttpServletRequest request, final byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            final ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                /**
+                 * The whole body is already in memory, so the listener is told right away that it can be read, then
+                 * that it has all been read.
+                 */
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException ex) {
+                        readListener.onError(ex);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            final String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)) {
+                return null;
+            }
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return String.valueOf(body.length);
+            }
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)) {
+                return Collections.emptyEnumeration();
+            }
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return Collections.enumeration(Collections.singletonList(String.valueOf(body.length)));
+            }
+            return super.getHeaders(name);
+        }
+    }
+}
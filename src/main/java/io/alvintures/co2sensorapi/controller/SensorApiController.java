@@ -1,10 +1,19 @@
 package io.alvintures.co2sensorapi.controller;
 
 import com.google.common.collect.ImmutableMap;
-import io.alvintures.co2sensorapi.dto.SensorMetrics;
+import io.alvintures.co2sensorapi.cluster.SensorOwnershipInterceptor;
+import io.alvintures.co2sensorapi.dto.AlertHistoryResponse;
+import io.alvintures.co2sensorapi.dto.LocationSummary;
+import io.alvintures.co2sensorapi.dto.SensorAlertsResponse;
+import io.alvintures.co2sensorapi.dto.SensorLocation;
+import io.alvintures.co2sensorapi.dto.SensorMetricsBatchGetParams;
+import io.alvintures.co2sensorapi.dto.SensorMetricsResponse;
+import io.alvintures.co2sensorapi.dto.SensorSeries;
 import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.dto.SensorStatusBatchGetParams;
 import io.alvintures.co2sensorapi.dto.StoreMeasurementParams;
 import io.alvintures.co2sensorapi.exception.SensorApiException;
+import io.alvintures.co2sensorapi.service.LocationService;
 import io.alvintures.co2sensorapi.service.SensorService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -17,28 +26,44 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 @RestController("/api/v1/sensors")
 public class SensorApiController {
 
+    /**
+     * Optional header naming a reading, so that a retry of it gets the outcome of the first attempt.
+     */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     @Autowired
     private SensorService sensorService;
 
+    @Autowired
+    private LocationService locationService;
+
     @Operation(description = "Store the CO2 measurement collected by the sensor.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "The measurement has been captured and registered."),
             @ApiResponse(responseCode = "400", description = "One or more of the parameters sent is invalid."),
             @ApiResponse(responseCode = "409", description = "The measurement is rejected due to conflicts (e.g. multiple records for a single minute"),
+            @ApiResponse(responseCode = "422", description = "The measurement is too late, or its idempotency key was already used for another measurement."),
             @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
     })
     @PostMapping("/{uuid}/measurements")
     public void collectMeasurement(@Parameter(description = "The ID of the sensor") @PathVariable String uuid,
+                                   @Parameter(description = "Any unique value naming the measurement, a retry with the same key gets the response of the first attempt")
+                                   @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
                                    @RequestBody StoreMeasurementParams requestBody) {
-        sensorService.storeMeasurement(uuid, requestBody.getCo2(), requestBody.getTime());
+        sensorService.storeMeasurement(uuid, requestBody.getCo2(), requestBody.getTime(), idempotencyKey);
     }
 
     @ApiResponses(value = {
@@ -55,15 +80,59 @@ public class SensorApiController {
                 .orElseThrow(() -> new SensorApiException(HttpStatus.NOT_FOUND, "No records found for sensor with ID " + uuid));
     }
 
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statuses of the sensors found, keyed by sensor ID.",
+                    content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", description = "Too many sensors are requested."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Retrieves the current status of many sensors at once. Sensors not found are left out.")
+    @PostMapping("/status:batchGet")
+    public Map<String, SensorStatus> getSensorStatuses(@Parameter(hidden = true)
+                                                      @RequestHeader(value = SensorOwnershipInterceptor.FORWARDED_BY_HEADER, required = false) String forwardedBy,
+                                                      @RequestBody SensorStatusBatchGetParams requestBody) {
+        return forwardedBy != null
+                ? sensorService.getLocalStatuses(requestBody.getUuids())
+                : sensorService.getStatuses(requestBody.getUuids());
+    }
+
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Metrics has been generated.",
                     content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", description = "Too many or negative periods are requested."),
             @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
     })
-    @Operation(description = "Gives the maximum and average CO2 level recorded from the past 30 days.")
+    @Operation(description = "Gives the maximum, average and percentiles of the CO2 level recorded over each of the "
+            + "past periods of days, the past 30 days by default.")
     @GetMapping("/{uuid}/metrics")
-    public Map<String, Long> getSensorMetrics(@Parameter(description = "The ID of the sensor") @PathVariable String uuid) {
-        return sensorService.getMetrics(uuid, 30);
+    public SensorMetricsResponse getSensorMetrics(@Parameter(description = "The ID of the sensor") @PathVariable String uuid,
+                                                  @Parameter(description = "The numbers of past days, e.g. 1, 7 and 30") @RequestParam(defaultValue = "30") List<Integer> periodInDays) {
+        return sensorService.getMetrics(uuid, periodInDays);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Metrics of the sensors, keyed by sensor ID.",
+                    content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", description = "Too many sensors or periods are requested."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Gives the metrics of many sensors at once, over each of the past periods of days.")
+    @PostMapping("/metrics:batchGet")
+    public Map<String, SensorMetricsResponse> getSensorsMetrics(@RequestBody SensorMetricsBatchGetParams requestBody) {
+        return sensorService.getMetricsOfSensors(requestBody.getUuids(), requestBody.getPeriodInDays() != null
+                ? requestBody.getPeriodInDays() : Collections.singletonList(30));
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Metrics has been generated.",
+                    content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", description = "Too many or negative periods are requested."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Gives the maximum, average and percentiles of the CO2 level recorded by all the sensors.")
+    @GetMapping("/fleet/metrics")
+    public SensorMetricsResponse getFleetMetrics(@Parameter(description = "The numbers of past days") @RequestParam(defaultValue = "30") List<Integer> periodInDays) {
+        return sensorService.getFleetMetrics(periodInDays);
     }
 
     @ApiResponses(value = {
@@ -73,9 +142,97 @@ public class SensorApiController {
     })
     @Operation(description = "Gives the list of alerts recorded on the sensor.")
     @GetMapping("/{uuid}/alerts")
-    public Map<String, Object> getSensorAlerts(@Parameter(description = "The ID of the sensor") @PathVariable String uuid) {
+    public SensorAlertsResponse getSensorAlerts(@Parameter(description = "The ID of the sensor") @PathVariable String uuid) {
         return sensorService.getAlerts(uuid, 3);
     }
 
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Alert history has been provided.",
+                    content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", description = "One or more of the parameters sent is invalid."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Gives the periods the sensor spent in ALERT, most recent first, one page at a time.")
+    @GetMapping("/{uuid}/alerts/history")
+    public AlertHistoryResponse getSensorAlertHistory(
+            @Parameter(description = "The ID of the sensor") @PathVariable String uuid,
+            @Parameter(description = "Only episodes still in ALERT after this ISO-8601 time") @RequestParam(required = false) String from,
+            @Parameter(description = "Only episodes started before this ISO-8601 time") @RequestParam(required = false) String to,
+            @Parameter(description = "The nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Maximum number of episodes returned") @RequestParam(defaultValue = "20") int limit) {
+        return sensorService.getAlertHistory(uuid, from, to, cursor, limit);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Series has been generated.",
+                    content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", description = "One or more of the parameters sent is invalid."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Gives the CO2 levels recorded by the sensor over time, aggregated per bucket and "
+            + "downsampled to at most the requested number of points.")
+    @GetMapping("/{uuid}/series")
+    public SensorSeries getSensorSeries(
+            @Parameter(description = "The ID of the sensor") @PathVariable String uuid,
+            @Parameter(description = "Start of the period in ISO-8601, defaults to one day before the end") @RequestParam(required = false) String from,
+            @Parameter(description = "End of the period in ISO-8601, defaults to now") @RequestParam(required = false) String to,
+            @Parameter(description = "Bucket width: 1m, 5m, 15m, 30m, 1h, 6h or 1d. Raw readings if omitted.") @RequestParam(required = false) String bucket,
+            @Parameter(description = "Aggregations per bucket: avg, max and/or min") @RequestParam(defaultValue = "avg") List<String> agg,
+            @Parameter(description = "Maximum number of points returned") @RequestParam(defaultValue = "1000") int points) {
+        return sensorService.getSeries(uuid, from, to, bucket, agg, points);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The sensor has been placed in the room."),
+            @ApiResponse(responseCode = "400", description = "One or more of the names sent is invalid."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Places the sensor in a room of a building of a site, or moves it there.")
+    @PutMapping("/{uuid}/location")
+    public void assignSensorLocation(@Parameter(description = "The ID of the sensor") @PathVariable String uuid,
+                                     @RequestBody SensorLocation requestBody) {
+        locationService.assignLocation(uuid, requestBody);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Summary of the site.",
+                    content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", description = "No sensor was ever placed in the site."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Gives the number of sensors of the site in each status, and the maximum and average "
+            + "CO2 level they read since the start of the day periodInDays ago, today by default.")
+    @GetMapping("/sites/{site}")
+    public LocationSummary getSiteSummary(@PathVariable String site,
+                                          @Parameter(description = "The number of past days") @RequestParam(defaultValue = "0") int periodInDays) {
+        return locationService.getSummary(site, periodInDays);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Summary of the building.",
+                    content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", description = "No sensor was ever placed in the building."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Same with the summary of a site, for one of its buildings.")
+    @GetMapping("/sites/{site}/buildings/{building}")
+    public LocationSummary getBuildingSummary(@PathVariable String site, @PathVariable String building,
+                                              @Parameter(description = "The number of past days") @RequestParam(defaultValue = "0") int periodInDays) {
+        return locationService.getSummary(site + "/" + building, periodInDays);
+    }
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Summary of the room.",
+                    content = {@Content(mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", description = "No sensor was ever placed in the room."),
+            @ApiResponse(responseCode = "500", description = "Something went wrong (e.g. server temporary issue).")
+    })
+    @Operation(description = "Same with the summary of a site, for one room of one of its buildings.")
+    @GetMapping("/sites/{site}/buildings/{building}/rooms/{room}")
+    public LocationSummary getRoomSummary(@PathVariable String site, @PathVariable String building, @PathVariable String room,
+                                          @Parameter(description = "The number of past days") @RequestParam(defaultValue = "0") int periodInDays) {
+        return locationService.getSummary(site + "/" + building + "/" + room, periodInDays);
+    }
+
 
 }
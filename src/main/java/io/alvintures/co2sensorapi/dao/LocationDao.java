@@ -0,0 +1,115 @@
+package io.alvintures.co2sensorapi.dao;
+
+import io.alvintures.co2sensorapi.dao.dialect.SqlDialect;
+import io.alvintures.co2sensorapi.dto.SensorLocation;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The locations of the sensors and the aggregates kept per site, building and room. The aggregates are only ever
+ * added to, with deltas computed per batch of readings, so a location query reads its precomputed rows and never
+ * the readings of its sensors.
+ * <p>
+ * The deltas are applied in the order of their sorted keys, so two transactions updating the same locations lock
+ * their rows in the same order.
+ */
+@Repository
+public class LocationDao {
+
+    private static final List<String> DAILY_TOTAL_KEY = Arrays.asList("location_path", "day_start");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SqlDialect sqlDialect;
+
+    /**
+     * Streams the location of every located sensor without loading the whole table in memory.
+     */
+    public void forEachLocation(final BiConsumer<String, SensorLocation> consumer) {
+        jdbcTemplate.query(
+                "SELECT sensor_uuid, site, building, room FROM sensor_location",
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString(1),
+                        new SensorLocation(rs.getString(2), rs.getString(3), rs.getString(4)))
+        );
+    }
+
+    public void saveLocation(final String sensorUuid, final SensorLocation location) {
+        jdbcTemplate.update(
+                sqlDialect.upsert("sensor_location", Arrays.asList("sensor_uuid", "site", "building", "room"),
+                        Collections.singletonList("sensor_uuid")),
+                sensorUuid, location.getSite(), location.getBuilding(), location.getRoom()
+        );
+    }
+
+    /**
+     * Adds to the number of sensors in each status of the locations, given per location path as deltas indexed
+     * by {@link SensorStatus#ordinal()}.
+     */
+    public void addToStatusCounts(final SortedMap<String, long[]> deltasByPath) {
+        final List<Object[]> rows = new ArrayList<>(deltasByPath.size());
+        deltasByPath.forEach((path, deltas) -> rows.add(new Object[]{
+                deltas[SensorStatus.OK.ordinal()], deltas[SensorStatus.WARN.ordinal()],
+                deltas[SensorStatus.ALERT.ordinal()], path}));
+        sqlDialect.addToRows(jdbcTemplate, "location_status_count",
+                Arrays.asList("ok_count", "warn_count", "alert_count"), Collections.emptyList(),
+                Collections.singletonList("location_path"), rows);
+    }
+
+    /**
+     * Adds readings to the daily totals of the locations, given per location path and day start as the number, sum
+     * and maximum of their CO2 levels.
+     */
+    public void addToDailyTotals(final SortedMap<String, SortedMap<Long, long[]>> totalsByPathAndDay) {
+        final List<Object[]> rows = new ArrayList<>();
+        totalsByPathAndDay.forEach((path, totalsByDay) -> totalsByDay.forEach((dayStart, totals) ->
+                rows.add(new Object[]{totals[0], totals[1], totals[2], path, dayStart})));
+        sqlDialect.addToRows(jdbcTemplate, "location_daily_total", Arrays.asList("reading_count", "co2_sum"),
+                Collections.singletonList("co2_max"), DAILY_TOTAL_KEY, rows);
+    }
+
+    /**
+     * Returns the number of sensors of the location in each status, indexed by {@link SensorStatus#ordinal()}, or
+     * empty if no sensor was ever placed there.
+     */
+    public Optional<long[]> getStatusCounts(final String path) {
+        final List<long[]> counts = jdbcTemplate.query(
+                "SELECT ok_count, warn_count, alert_count FROM location_status_count WHERE location_path = ?",
+                new Object[]{path},
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}
+        );
+        return counts.isEmpty() ? Optional.empty() : Optional.of(counts.get(0));
+    }
+
+    /**
+     * Returns the number, sum and maximum of the CO2 levels read in the location from the given day on.
+     */
+    public long[] getTotalsSince(final String path, final long fromDayStart) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(reading_count), 0), COALESCE(SUM(co2_sum), 0), COALESCE(MAX(co2_max), 0) "
+                        + "FROM location_daily_total WHERE location_path = ? AND day_start >= ?",
+                new Object[]{path, fromDayStart},
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}
+        );
+    }
+
+    /**
+     * Deletes at most limit daily totals of the days before the given day start and returns how many were deleted.
+     */
+    public int deleteDailyTotalsBefore(final long dayStart, final int limit) {
+        return jdbcTemplate.update(sqlDialect.deleteLimited("location_daily_total", DAILY_TOTAL_KEY, "day_start < ?"),
+                dayStart, limit);
+    }
+}
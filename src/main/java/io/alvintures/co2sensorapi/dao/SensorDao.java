@@ -1,25 +1,81 @@
 package io.alvintures.co2sensorapi.dao;
 
+import io.alvintures.co2sensorapi.archive.ArchiveSegment;
+import io.alvintures.co2sensorapi.archive.ArchiveStore;
+import io.alvintures.co2sensorapi.dao.dialect.SqlDialect;
+import io.alvintures.co2sensorapi.dao.mapper.AlertEpisodeRowMapper;
 import io.alvintures.co2sensorapi.dao.mapper.MeasurementRowMapper;
-import io.alvintures.co2sensorapi.dao.mapper.SensorMetricsRowMapper;
 import io.alvintures.co2sensorapi.dao.mapper.SensorRowMapper;
+import io.alvintures.co2sensorapi.dto.AlertEpisode;
 import io.alvintures.co2sensorapi.dto.Measurement;
 import io.alvintures.co2sensorapi.dto.Sensor;
 import io.alvintures.co2sensorapi.dto.SensorMetrics;
 import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.dto.SeriesBucket;
+import io.alvintures.co2sensorapi.dto.SeriesPoint;
+import io.alvintures.co2sensorapi.dto.SketchBin;
+import io.alvintures.co2sensorapi.util.DDSketch;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Repository
 public class SensorDao {
 
+    /**
+     * Only used to map CO2 levels to their sketch bin.
+     */
+    private static final DDSketch SKETCH_BINNING = DDSketch.forCo2();
+
+    private static final int SKETCH_INSERT_BATCH_SIZE = 1000;
+
+    /**
+     * Sensors whose live totals are read together when each has its own archivedUntil.
+     */
+    private static final int ARCHIVED_SENSORS_PER_QUERY = 200;
+
+    private static final List<String> MEASUREMENT_COLUMNS =
+            Arrays.asList("sensor_uuid", "timestamp_utc", "minute_utc", "co2_level", "is_alert");
+
+    private static final List<String> MEASUREMENT_KEY = Arrays.asList("sensor_uuid", "minute_utc");
+
+    private static final List<String> SKETCH_KEY = Arrays.asList("sensor_uuid", "bucket_start", "bin_index");
+
+    private static final List<String> ALERT_EPISODE_KEY = Arrays.asList("sensor_uuid", "start_utc");
+
+    /**
+     * The tables of schema.sql.
+     */
+    private static final List<String> TABLES = Arrays.asList("sensor", "measurement", "measurement_sketch",
+            "alert_episode", "sensor_location", "location_status_count", "location_daily_total");
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private ArchiveStore archiveStore;
+
+    @Autowired
+    private SqlDialect sqlDialect;
+
     public void createSensor(final Sensor sensor) {
         jdbcTemplate.update(
                 "INSERT INTO sensor (uuid, status) VALUES (?, ?)",
@@ -36,7 +92,7 @@ public class SensorDao {
 
     public Optional<Sensor> getSensor(String uuid) {
         final List<Sensor> sensors = jdbcTemplate.query(
-                "SELECT * FROM sensor WHERE uuid = ?", new Object[]{uuid}, new SensorRowMapper()
+                "SELECT " + SensorRowMapper.COLUMNS + " FROM sensor WHERE uuid = ?", new Object[]{uuid}, SensorRowMapper.INSTANCE
         );
 
         if (sensors.size() == 1) {
@@ -48,36 +104,787 @@ public class SensorDao {
         }
 
     }
+
+    /**
+     * Throws {@link DuplicateKeyException} if the sensor already has a reading in the same minute.
+     */
     public void createMeasurement(final Measurement measurement) {
         jdbcTemplate.update(
-                "INSERT INTO measurement (sensor_uuid, timestamp_utc, co2_level, is_alert) VALUES (?, ?, ?, ?)",
-                measurement.getSensorUUID(), measurement.getTime(), measurement.getCo2Level(), measurement.isAlert()
+                "INSERT INTO measurement (sensor_uuid, timestamp_utc, minute_utc, co2_level, is_alert) VALUES (?, ?, ?, ?, ?)",
+                measurement.getSensorUUID(), measurement.getTime(), measurement.getTime() / 100,
+                measurement.getCo2Level(), measurement.isAlert()
+        );
+    }
+
+    /**
+     * Throws {@link DuplicateKeyException} if one of the sensors already has a reading in the same minute, and none of
+     * the measurements are inserted if it runs in a transaction.
+     */
+    public void createMeasurements(final List<Measurement> measurements) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO measurement (sensor_uuid, timestamp_utc, minute_utc, co2_level, is_alert) VALUES (?, ?, ?, ?, ?)",
+                measurements,
+                measurements.size(),
+                (ps, measurement) -> {
+                    ps.setString(1, measurement.getSensorUUID());
+                    ps.setLong(2, measurement.getTime());
+                    ps.setLong(3, measurement.getTime() / 100);
+                    ps.setLong(4, measurement.getCo2Level());
+                    ps.setBoolean(5, measurement.isAlert());
+                }
+        );
+    }
+
+    /**
+     * Inserts the measurements whose sensor has no reading in the same minute yet, and only one of two readings of
+     * the same minute in the list. Returns the measurements inserted, the others were skipped as duplicates.
+     */
+    public List<Measurement> createMeasurementsOfNewMinutes(final List<Measurement> measurements) {
+        final List<Object[]> rows = new ArrayList<>(measurements.size());
+        for (Measurement measurement : measurements) {
+            rows.add(new Object[]{measurement.getSensorUUID(), measurement.getTime(), measurement.getTime() / 100,
+                    measurement.getCo2Level(), measurement.isAlert()});
+        }
+        final List<Object[]> insertedRows =
+                sqlDialect.insertIfAbsent(jdbcTemplate, "measurement", MEASUREMENT_COLUMNS, MEASUREMENT_KEY, rows);
+        final List<Measurement> inserted = new ArrayList<>(insertedRows.size());
+        for (Object[] row : insertedRows) {
+            final Measurement measurement = new Measurement();
+            measurement.setSensorUUID((String) row[0]);
+            measurement.setTime(((Number) row[1]).longValue());
+            measurement.setCo2Level(((Number) row[3]).longValue());
+            measurement.setAlert((Boolean) row[4]);
+            inserted.add(measurement);
+        }
+        return inserted;
+    }
+
+    public void updateAlertFlags(final List<Measurement> measurements) {
+        jdbcTemplate.batchUpdate(
+                "UPDATE measurement SET is_alert = ? WHERE sensor_uuid = ? AND timestamp_utc = ?",
+                measurements,
+                measurements.size(),
+                (ps, measurement) -> {
+                    ps.setBoolean(1, measurement.isAlert());
+                    ps.setString(2, measurement.getSensorUUID());
+                    ps.setLong(3, measurement.getTime());
+                }
+        );
+    }
+
+    /**
+     * Streams all the live measurements of the sensor, oldest first, without loading them all in memory.
+     * Archived readings are not included.
+     */
+    public void forEachMeasurement(final String sensorUuid, final Consumer<Measurement> consumer) {
+        jdbcTemplate.query(
+                "SELECT " + MeasurementRowMapper.COLUMNS + " FROM measurement WHERE sensor_uuid = ? ORDER BY timestamp_utc",
+                new Object[]{sensorUuid},
+                (RowCallbackHandler) rs -> consumer.accept(MeasurementRowMapper.INSTANCE.mapRow(rs, rs.getRow()))
         );
     }
 
+    /**
+     * Streams the status of every sensor without loading the whole table in memory.
+     */
+    public void forEachSensorStatus(final BiConsumer<String, SensorStatus> consumer) {
+        jdbcTemplate.query(
+                "SELECT " + SensorRowMapper.COLUMNS + " FROM sensor",
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString(1), SensorStatus.valueOf(rs.getString(2)))
+        );
+    }
+
+    /**
+     * Returns the last readings of the sensor, most recent first, falling back to the archive if the live table has
+     * less than limit of them.
+     */
     public List<Measurement> getRecentMeasurements(final String sensorUuid, final int limit) {
+        final List<Measurement> measurements = jdbcTemplate.query(
+                "SELECT " + MeasurementRowMapper.COLUMNS + " FROM measurement WHERE sensor_uuid = ? AND timestamp_utc > ? "
+                        + "ORDER BY timestamp_utc DESC LIMIT ?",
+                new Object[]{sensorUuid, archiveStore.archivedUntil(sensorUuid), limit},
+                MeasurementRowMapper.INSTANCE
+        );
+        if (measurements.size() < limit) {
+            addArchivedMeasurements(measurements, sensorUuid, limit, false);
+        }
+        return measurements;
+    }
+
+    /**
+     * Returns up to limit live readings of the sensor taken before the given time, most recent first.
+     */
+    public List<Measurement> getMeasurementsBefore(final String sensorUuid, final long time, final int limit) {
+        return jdbcTemplate.query(
+                "SELECT " + MeasurementRowMapper.COLUMNS + " FROM measurement WHERE sensor_uuid = ? AND timestamp_utc < ? "
+                        + "ORDER BY timestamp_utc DESC LIMIT ?",
+                new Object[]{sensorUuid, time, limit},
+                MeasurementRowMapper.INSTANCE
+        );
+    }
+
+    /**
+     * Returns up to limit live readings of the sensor taken after the given time, oldest first.
+     */
+    public List<Measurement> getMeasurementsAfter(final String sensorUuid, final long time, final int limit) {
         return jdbcTemplate.query(
-                "SELECT * FROM measurement WHERE sensor_uuid = ? ORDER BY timestamp_utc DESC LIMIT ?",
-                new Object[]{sensorUuid, limit},
-                new MeasurementRowMapper()
+                "SELECT " + MeasurementRowMapper.COLUMNS + " FROM measurement WHERE sensor_uuid = ? AND timestamp_utc > ? "
+                        + "ORDER BY timestamp_utc LIMIT ?",
+                new Object[]{sensorUuid, time, limit},
+                MeasurementRowMapper.INSTANCE
         );
     }
 
+    /**
+     * Same with {@link this#getRecentMeasurements} but only the readings flagged as alerts.
+     */
     public List<Measurement> getAlerts(final String sensorUuid, final int limit) {
+        final List<Measurement> alerts = jdbcTemplate.query(
+                "SELECT " + MeasurementRowMapper.COLUMNS + " FROM measurement WHERE sensor_uuid = ? AND is_alert = TRUE "
+                        + "AND timestamp_utc > ? ORDER BY timestamp_utc DESC LIMIT ?",
+                new Object[]{sensorUuid, archiveStore.archivedUntil(sensorUuid), limit},
+                MeasurementRowMapper.INSTANCE
+        );
+        if (alerts.size() < limit) {
+            addArchivedMeasurements(alerts, sensorUuid, limit, true);
+        }
+        return alerts;
+    }
+
+    /**
+     * Opens an alert episode of the sensor at the reading that switched it to ALERT.
+     */
+    public void openAlertEpisode(final String sensorUuid, final Long startTime, final long co2Level) {
+        jdbcTemplate.update(
+                "INSERT INTO alert_episode (sensor_uuid, start_utc, end_utc, peak_co2_level, reading_count) "
+                        + "VALUES (?, ?, NULL, ?, 1)",
+                sensorUuid, startTime, co2Level
+        );
+    }
+
+    /**
+     * Adds a reading of the sensor still in ALERT to its open episode.
+     */
+    public void extendAlertEpisode(final String sensorUuid, final long co2Level) {
+        jdbcTemplate.update(
+                "UPDATE alert_episode SET peak_co2_level = GREATEST(peak_co2_level, ?), reading_count = reading_count + 1 "
+                        + "WHERE sensor_uuid = ? AND end_utc IS NULL",
+                co2Level, sensorUuid
+        );
+    }
+
+    /**
+     * Closes the open alert episode of the sensor at the reading that switched it back from ALERT.
+     */
+    public void closeAlertEpisode(final String sensorUuid, final Long endTime) {
+        jdbcTemplate.update(
+                "UPDATE alert_episode SET end_utc = ? WHERE sensor_uuid = ? AND end_utc IS NULL",
+                endTime, sensorUuid
+        );
+    }
+
+    /**
+     * Returns up to limit alert episodes of the sensor which started before the given time (exclusive) and did not
+     * end before endedAfter (exclusive), most recent first. Reads the primary key backwards from startedBefore, so
+     * the cost does not depend on the length of the history.
+     */
+    public List<AlertEpisode> getAlertEpisodes(final String sensorUuid, final long startedBefore, final long endedAfter,
+                                               final int limit) {
         return jdbcTemplate.query(
-                "SELECT * FROM measurement WHERE sensor_uuid = ? AND is_alert = 'TRUE' " +
-                        "ORDER BY timestamp_utc DESC LIMIT ?",
-                new Object[]{sensorUuid, limit},
-                new MeasurementRowMapper()
+                "SELECT " + AlertEpisodeRowMapper.COLUMNS + " FROM alert_episode WHERE sensor_uuid = ? AND start_utc < ? "
+                        + "AND (end_utc IS NULL OR end_utc > ?) ORDER BY start_utc DESC LIMIT ?",
+                new Object[]{sensorUuid, startedBefore, endedAfter, limit},
+                AlertEpisodeRowMapper.INSTANCE
         );
     }
 
+    /**
+     * Replaces the alert episodes of the sensor starting from the given time onwards, e.g. after a bulk import.
+     */
+    public void replaceAlertEpisodes(final String sensorUuid, final long fromTime, final List<AlertEpisode> episodes) {
+        jdbcTemplate.update("DELETE FROM alert_episode WHERE sensor_uuid = ? AND start_utc >= ?", sensorUuid, fromTime);
+        if (episodes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO alert_episode (sensor_uuid, start_utc, end_utc, peak_co2_level, reading_count) "
+                        + "VALUES (?, ?, ?, ?, ?)",
+                episodes,
+                episodes.size(),
+                (ps, episode) -> {
+                    ps.setString(1, sensorUuid);
+                    ps.setLong(2, episode.getStartTime());
+                    ps.setObject(3, episode.getEndTime());
+                    ps.setLong(4, episode.getPeakCo2Level());
+                    ps.setInt(5, episode.getReadingCount());
+                }
+        );
+    }
+
+    /**
+     * Returns the ids of the sensors with live readings before the given time, i.e. the ones to archive.
+     */
+    public List<String> getSensorUuidsWithMeasurementsBefore(final Long time) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT sensor_uuid FROM measurement WHERE timestamp_utc < ?", String.class, time
+        );
+    }
+
+    /**
+     * Returns up to limit live readings of the sensor after startDate and before endDate (both exclusive), oldest first.
+     */
+    public List<Measurement> getMeasurementsBetween(final String sensorUuid, final Long startDate, final Long endDate,
+                                                   final int limit) {
+        return jdbcTemplate.query(
+                "SELECT " + MeasurementRowMapper.COLUMNS + " FROM measurement "
+                        + "WHERE sensor_uuid = ? AND timestamp_utc > ? AND timestamp_utc < ? ORDER BY timestamp_utc LIMIT ?",
+                new Object[]{sensorUuid, startDate, endDate, limit},
+                MeasurementRowMapper.INSTANCE
+        );
+    }
+
+    /**
+     * Deletes the live readings of the sensor between the first and last times of the segment (inclusive), once
+     * they are written to it.
+     */
+    public int deleteMeasurementsOf(final ArchiveSegment segment) {
+        return jdbcTemplate.update(
+                "DELETE FROM measurement WHERE sensor_uuid = ? AND timestamp_utc >= ? AND timestamp_utc <= ?",
+                segment.getSensorUuid(), segment.getFirstTime(), segment.getLastTime());
+    }
+
+    /**
+     * Drops the partitions of measurement, and of measurement_hourly, holding only readings older than the given time,
+     * when the dialect partitions them. The rows dropped are not counted; the rest is left to
+     * {@link #deleteMeasurementsBefore}.
+     */
+    public void dropMeasurementPartitionsBefore(final Long time) {
+        sqlDialect.dropPartitionsBefore(jdbcTemplate, "measurement", time / 100);
+        sqlDialect.dropPartitionsBefore(jdbcTemplate, "measurement_hourly", time / 100);
+    }
+
+    /**
+     * Deletes at most limit readings of the sensor older than the given time and returns how many were deleted.
+     * Deleting in small batches keeps each statement short next to the ingest transactions.
+     */
+    public int deleteMeasurementsBefore(final String sensorUuid, final Long time, final int limit) {
+        return jdbcTemplate.update(
+                sqlDialect.deleteLimited("measurement", MEASUREMENT_KEY, "sensor_uuid = ? AND timestamp_utc < ?"),
+                sensorUuid, time, limit);
+    }
+
+    /**
+     * Returns the average, max and min CO2 level per bucket of the sensor in the given period, oldest bucket first.
+     */
+    public List<SeriesPoint> getSeries(String sensorUuid, Long startDate, Long endDate, SeriesBucket bucket) {
+        final long archivedUntil = archiveStore.archivedUntil(sensorUuid);
+        final SqlDialect.Query query = sqlDialect.seriesQuery(sensorUuid, startDate, endDate, archivedUntil, bucket);
+        // The points hold the sum of the CO2 levels until every reading of their bucket is added.
+        final List<SeriesPoint> livePoints = jdbcTemplate.query(
+                query.getSql(),
+                query.getArgs(),
+                (rs, rowNum) -> {
+                    final SeriesPoint point = new SeriesPoint();
+                    point.setTime(rs.getLong("bucket_start"));
+                    point.setAverage(rs.getLong("sum_level"));
+                    point.setMax(rs.getLong("max_level"));
+                    point.setMin(rs.getLong("min_level"));
+                    point.setCount(rs.getLong("level_count"));
+                    return point;
+                }
+        );
+        final TreeMap<Long, SeriesPoint> pointByBucket = new TreeMap<>();
+        if (archivedUntil >= startDate) {
+            // Bucket the archived readings the same way, only the bucket holding archivedUntil can be in both tiers.
+            for (ArchiveSegment segment : archiveStore.getSegments(sensorUuid, startDate, endDate)) {
+                for (Measurement measurement : archiveStore.read(segment)) {
+                    if (measurement.getTime() >= startDate && measurement.getTime() <= endDate) {
+                        addToPoint(pointByBucket.computeIfAbsent(bucket.bucketStartOf(measurement.getTime()), SensorDao::emptyPoint),
+                                measurement.getCo2Level(), measurement.getCo2Level(), measurement.getCo2Level(), 1);
+                    }
+                }
+            }
+        }
+        for (SeriesPoint livePoint : livePoints) {
+            addToPoint(pointByBucket.computeIfAbsent(livePoint.getTime(), SensorDao::emptyPoint),
+                    livePoint.getAverage(), livePoint.getMax(), livePoint.getMin(), livePoint.getCount());
+        }
+        pointByBucket.values().forEach(point -> point.setAverage(point.getAverage() / point.getCount()));
+        return new ArrayList<>(pointByBucket.values());
+    }
+
+    /**
+     * Returns every reading of the sensor in the given period as a series point, oldest first.
+     */
+    public List<SeriesPoint> getRawSeries(String sensorUuid, Long startDate, Long endDate) {
+        final long archivedUntil = archiveStore.archivedUntil(sensorUuid);
+        final List<SeriesPoint> points = new ArrayList<>();
+        if (archivedUntil >= startDate) {
+            for (ArchiveSegment segment : archiveStore.getSegments(sensorUuid, startDate, endDate)) {
+                for (Measurement measurement : archiveStore.read(segment)) {
+                    if (measurement.getTime() >= startDate && measurement.getTime() <= endDate) {
+                        points.add(rawPoint(measurement.getTime(), measurement.getCo2Level()));
+                    }
+                }
+            }
+        }
+        jdbcTemplate.query(
+                "SELECT timestamp_utc, co2_level FROM measurement WHERE sensor_uuid = ? "
+                        + "AND timestamp_utc >= ? AND timestamp_utc <= ? AND timestamp_utc > ? ORDER BY timestamp_utc",
+                new Object[]{sensorUuid, startDate, endDate, archivedUntil},
+                (RowCallbackHandler) rs -> points.add(rawPoint(rs.getLong(1), rs.getLong(2)))
+        );
+        return points;
+    }
+
+    /**
+     * Returns the max, average and percentiles of the CO2 level of the sensor in the given period.
+     * Percentiles are estimated from the hourly sketches, so the period is widened to whole hours for them.
+     */
     public SensorMetrics getMetrics(String sensorUuid, Long startDate, Long endDate) {
-        return jdbcTemplate.queryForObject(
-                "SELECT AVG(co2_level) as ave_level, MAX(co2_level) as max_level FROM measurement "
-                        + "WHERE sensor_uuid = ? AND timestamp_utc >= ? AND timestamp_utc <= ?",
-                new Object[]{sensorUuid, startDate, endDate},
-                new SensorMetricsRowMapper()
+        return getMetrics(Collections.singletonList(sensorUuid), new long[]{startDate}, endDate).get(sensorUuid).get(0);
+    }
+
+    /**
+     * Same with {@link this#getMetrics} for several sensors over several periods ending at endDate, e.g. the last 1, 7
+     * and 30 days. Returns the metrics of every sensor over each period, in the order of startDates.
+     * <p>
+     * All the periods are computed at once with conditional aggregates, in a single scan of the readings and of the
+     * sketches over the widest period.
+     */
+    public Map<String, List<SensorMetrics>> getMetrics(List<String> sensorUuids, long[] startDates, long endDate) {
+        final long widestStartDate = Arrays.stream(startDates).min().orElse(endDate);
+        final List<String> liveSensorUuids = new ArrayList<>();
+        final Map<String, long[][]> totalsBySensor = new HashMap<>();
+        for (String sensorUuid : sensorUuids) {
+            final long archivedUntil = archiveStore.archivedUntil(sensorUuid);
+            if (archivedUntil < widestStartDate) {
+                liveSensorUuids.add(sensorUuid);
+            } else {
+                final long[][] totals = getLiveTotals(Collections.singletonList(sensorUuid), startDates, endDate,
+                        archivedUntil).getOrDefault(sensorUuid, new long[startDates.length][3]);
+                addArchivedTotals(totals, archiveStore.getSegments(sensorUuid, widestStartDate, endDate), startDates, endDate);
+                totalsBySensor.put(sensorUuid, totals);
+            }
+        }
+        if (!liveSensorUuids.isEmpty()) {
+            totalsBySensor.putAll(getLiveTotals(liveSensorUuids, startDates, endDate, 0));
+        }
+        final Map<String, DDSketch[]> sketchesBySensor = getSketches(sensorUuids, startDates, endDate);
+
+        final Map<String, List<SensorMetrics>> metricsBySensor = new LinkedHashMap<>();
+        for (String sensorUuid : sensorUuids) {
+            metricsBySensor.put(sensorUuid, toMetrics(
+                    totalsBySensor.getOrDefault(sensorUuid, new long[startDates.length][3]),
+                    sketchesBySensor.getOrDefault(sensorUuid, emptySketches(startDates.length))));
+        }
+        return metricsBySensor;
+    }
+
+    /**
+     * Same with {@link this#getMetrics} but over the readings of all the sensors.
+     */
+    public SensorMetrics getFleetMetrics(Long startDate, Long endDate) {
+        return getFleetMetrics(new long[]{startDate}, endDate).get(0);
+    }
+
+    /**
+     * Same with {@link this#getMetrics} for several periods but over the readings of all the sensors.
+     * <p>
+     * The live readings are summed up per sensor in one scan. The sensors archived into the period are read again from
+     * their archivedUntil on, so the readings an interrupted archive run left in the table are not counted twice.
+     */
+    public List<SensorMetrics> getFleetMetrics(long[] startDates, long endDate) {
+        final long widestStartDate = Arrays.stream(startDates).min().orElse(endDate);
+        final List<Object> args = new ArrayList<>();
+        final String totalsSql = "SELECT sensor_uuid, " + windowAggregates("timestamp_utc", startDates, args,
+                "COUNT(CASE WHEN %s THEN 1 END)", "SUM(CASE WHEN %s THEN co2_level END)", "MAX(CASE WHEN %s THEN co2_level END)")
+                + " FROM measurement WHERE timestamp_utc >= ? AND timestamp_utc <= ? GROUP BY sensor_uuid";
+        args.add(widestStartDate);
+        args.add(endDate);
+        final long[][] totals = new long[startDates.length][3];
+        final Map<String, Long> archivedUntilBySensor = new LinkedHashMap<>();
+        jdbcTemplate.query(totalsSql, args.toArray(), (RowCallbackHandler) rs -> {
+            final String sensorUuid = rs.getString(1);
+            final long archivedUntil = archiveStore.archivedUntil(sensorUuid);
+            if (archivedUntil < widestStartDate) {
+                addTotals(totals, readTotals(rs, 2, startDates.length));
+            } else {
+                archivedUntilBySensor.put(sensorUuid, archivedUntil);
+            }
+        });
+        final List<String> archivedSensorUuids = new ArrayList<>(archivedUntilBySensor.keySet());
+        for (int i = 0; i < archivedSensorUuids.size(); i += ARCHIVED_SENSORS_PER_QUERY) {
+            final Map<String, Long> chunk = new LinkedHashMap<>();
+            archivedSensorUuids.subList(i, Math.min(i + ARCHIVED_SENSORS_PER_QUERY, archivedSensorUuids.size()))
+                    .forEach(sensorUuid -> chunk.put(sensorUuid, archivedUntilBySensor.get(sensorUuid)));
+            getLiveTotals(chunk, startDates, endDate).values().forEach(sensorTotals -> addTotals(totals, sensorTotals));
+        }
+        if (!archiveStore.isEmpty()) {
+            addArchivedTotals(totals, archiveStore.getSegments(widestStartDate, endDate), startDates, endDate);
+        }
+
+        final DDSketch[] sketches = emptySketches(startDates.length);
+        args.clear();
+        final String sketchSql = "SELECT bin_index, " + windowAggregates("bucket_start", sketchBuckets(startDates), args,
+                "SUM(CASE WHEN %s THEN bin_count ELSE 0 END)")
+                + " FROM measurement_sketch WHERE bucket_start >= ? AND bucket_start <= ? GROUP BY bin_index";
+        args.add(toSketchBucket(widestStartDate));
+        args.add(endDate);
+        jdbcTemplate.query(sketchSql, args.toArray(), (RowCallbackHandler) rs -> addToSketches(sketches, rs, 2));
+        return toMetrics(totals, sketches);
+    }
+
+    /**
+     * Counts the reading in the CO2 sketch of its sensor and hour.
+     */
+    public void addToSketch(final String sensorUuid, final Long time, final long co2Level) {
+        addToSketchBins(Collections.singletonList(sketchBinRow(sensorUuid, time, co2Level)));
+    }
+
+    /**
+     * Same with {@link this#addToSketch} for many readings, in one batch.
+     */
+    public void addToSketches(final List<Measurement> measurements) {
+        final List<Object[]> rows = new ArrayList<>(measurements.size());
+        for (Measurement measurement : measurements) {
+            rows.add(sketchBinRow(measurement.getSensorUUID(), measurement.getTime(), measurement.getCo2Level()));
+        }
+        addToSketchBins(rows);
+    }
+
+    private void addToSketchBins(final List<Object[]> rows) {
+        sqlDialect.addToRows(jdbcTemplate, "measurement_sketch", Collections.singletonList("bin_count"),
+                Collections.emptyList(), SKETCH_KEY, rows);
+    }
+
+    private static Object[] sketchBinRow(final String sensorUuid, final long time, final long co2Level) {
+        return new Object[]{1L, sensorUuid, toSketchBucket(time), SKETCH_BINNING.binOf(co2Level)};
+    }
+
+    /**
+     * Replaces the CO2 sketches of the sensor from the given hour onwards, e.g. after a bulk import.
+     * The sketches of the archived readings, before that hour, are kept.
+     */
+    public void replaceSketches(final String sensorUuid, final long fromBucketStart, final List<SketchBin> bins) {
+        jdbcTemplate.update("DELETE FROM measurement_sketch WHERE sensor_uuid = ? AND bucket_start >= ?",
+                sensorUuid, fromBucketStart);
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO measurement_sketch (sensor_uuid, bucket_start, bin_index, bin_count) VALUES (?, ?, ?, ?)",
+                bins,
+                SKETCH_INSERT_BATCH_SIZE,
+                (ps, bin) -> {
+                    ps.setString(1, sensorUuid);
+                    ps.setLong(2, bin.getBucketStart());
+                    ps.setInt(3, bin.getBinIndex());
+                    ps.setLong(4, bin.getBinCount());
+                }
+        );
+    }
+
+    /**
+     * Deletes at most limit sketch bins of the hours or days starting before the given time and returns how many
+     * were deleted.
+     */
+    public int deleteSketchesBefore(final long bucketStart, final int limit) {
+        return jdbcTemplate.update(sqlDialect.deleteLimited("measurement_sketch", SKETCH_KEY, "bucket_start < ?"),
+                bucketStart, limit);
+    }
+
+    /**
+     * Deletes at most limit alert episodes which ended before the given time and returns how many were deleted. The
+     * episodes still open are kept whenever they started.
+     */
+    public int deleteAlertEpisodesEndedBefore(final long time, final int limit) {
+        return jdbcTemplate.update(sqlDialect.deleteLimited("alert_episode", ALERT_EPISODE_KEY, "end_utc < ?"),
+                time, limit);
+    }
+
+    /**
+     * Returns the start (yyyyMMdd000000) of the days before the given time which still have hourly sketches.
+     */
+    public List<Long> getDaysWithHourlySketchesBefore(final long bucketStart) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT bucket_start / 1000000 * 1000000 FROM measurement_sketch "
+                        + "WHERE bucket_start < ? AND MOD(bucket_start, 1000000) <> 0 ORDER BY 1",
+                Long.class, bucketStart
         );
     }
+
+    public List<String> getSensorUuidsWithHourlySketches(final long dayStart) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT sensor_uuid FROM measurement_sketch WHERE bucket_start > ? AND bucket_start < ?",
+                String.class, dayStart, nextDayStart(dayStart)
+        );
+    }
+
+    /**
+     * Merges the hourly sketches of the sensor over the day into one, stored as the sketch of the first hour of the
+     * day. Metrics periods start at midnight, so they still include or exclude the day as a whole.
+     * Should run in a transaction, so the day is never counted twice or missing. Returns the number of bins deleted.
+     */
+    public int rollUpSketchesOfDay(final String sensorUuid, final long dayStart) {
+        final long nextDayStart = nextDayStart(dayStart);
+        jdbcTemplate.update(
+                sqlDialect.upsertSelect("measurement_sketch",
+                        Arrays.asList("sensor_uuid", "bucket_start", "bin_index", "bin_count"), SKETCH_KEY,
+                        "SELECT sensor_uuid, CAST(? AS BIGINT), bin_index, SUM(bin_count) FROM measurement_sketch "
+                                + "WHERE sensor_uuid = ? AND bucket_start >= ? AND bucket_start < ? "
+                                + "GROUP BY sensor_uuid, bin_index"),
+                dayStart, sensorUuid, dayStart, nextDayStart
+        );
+        return jdbcTemplate.update(
+                "DELETE FROM measurement_sketch WHERE sensor_uuid = ? AND bucket_start > ? AND bucket_start < ?",
+                sensorUuid, dayStart, nextDayStart
+        );
+    }
+
+    /**
+     * Refreshes the statistics the query planner picks indexes with, vacuuming the tables on the dialects that need
+     * it, see {@link SqlDialect#analyze}.
+     */
+    public void analyze() {
+        sqlDialect.analyze(jdbcTemplate, TABLES);
+    }
+
+    /**
+     * Returns the start (yyyyMMddHH0000) of the hour the CO2 sketch of the given reading time belongs to.
+     */
+    public static long toSketchBucket(final long time) {
+        return time / 10_000 * 10_000;
+    }
+
+    private static long nextDayStart(final long dayStart) {
+        return TimestampUtil.fromEpochSecond(TimestampUtil.toEpochSecond(dayStart) + 86_400);
+    }
+
+    /**
+     * Returns the count, sum and max of the live readings of each sensor after the given time, over each period.
+     * Sensors without any reading in the widest period are left out.
+     */
+    private Map<String, long[][]> getLiveTotals(final List<String> sensorUuids, final long[] startDates,
+                                                final long endDate, final long after) {
+        final List<Object> args = new ArrayList<>();
+        final String sql = "SELECT sensor_uuid, " + windowAggregates("timestamp_utc", startDates, args,
+                "COUNT(CASE WHEN %s THEN 1 END)", "SUM(CASE WHEN %s THEN co2_level END)", "MAX(CASE WHEN %s THEN co2_level END)")
+                + " FROM measurement WHERE sensor_uuid IN (" + placeholders(sensorUuids.size()) + ")"
+                + " AND timestamp_utc >= ? AND timestamp_utc <= ? AND timestamp_utc > ? GROUP BY sensor_uuid";
+        args.addAll(sensorUuids);
+        args.add(Arrays.stream(startDates).min().orElse(endDate));
+        args.add(endDate);
+        args.add(after);
+        final Map<String, long[][]> totalsBySensor = new HashMap<>();
+        jdbcTemplate.query(sql, args.toArray(),
+                (RowCallbackHandler) rs -> totalsBySensor.put(rs.getString(1), readTotals(rs, 2, startDates.length)));
+        return totalsBySensor;
+    }
+
+    /**
+     * Same with {@link this#getLiveTotals(List, long[], long, long)} with the live readings of each sensor read after
+     * its own time.
+     */
+    private Map<String, long[][]> getLiveTotals(final Map<String, Long> afterBySensor, final long[] startDates,
+                                                final long endDate) {
+        final List<Object> args = new ArrayList<>();
+        final StringJoiner sensorConditions = new StringJoiner(" OR ", "(", ")");
+        final String totalsColumns = windowAggregates("timestamp_utc", startDates, args,
+                "COUNT(CASE WHEN %s THEN 1 END)", "SUM(CASE WHEN %s THEN co2_level END)", "MAX(CASE WHEN %s THEN co2_level END)");
+        afterBySensor.forEach((sensorUuid, after) -> {
+            sensorConditions.add("(sensor_uuid = ? AND timestamp_utc > ?)");
+            args.add(sensorUuid);
+            args.add(after);
+        });
+        args.add(Arrays.stream(startDates).min().orElse(endDate));
+        args.add(endDate);
+        final Map<String, long[][]> totalsBySensor = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT sensor_uuid, " + totalsColumns + " FROM measurement WHERE " + sensorConditions
+                        + " AND timestamp_utc >= ? AND timestamp_utc <= ? GROUP BY sensor_uuid",
+                args.toArray(),
+                (RowCallbackHandler) rs -> totalsBySensor.put(rs.getString(1), readTotals(rs, 2, startDates.length)));
+        return totalsBySensor;
+    }
+
+    private static void addTotals(final long[][] totals, final long[][] added) {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i][0] += added[i][0];
+            totals[i][1] += added[i][1];
+            totals[i][2] = Math.max(totals[i][2], added[i][2]);
+        }
+    }
+
+    /**
+     * Merges the hourly (or daily, once rolled up) sketches of each sensor into one sketch per period.
+     */
+    private Map<String, DDSketch[]> getSketches(final List<String> sensorUuids, final long[] startDates,
+                                                final long endDate) {
+        final List<Object> args = new ArrayList<>();
+        final String sql = "SELECT sensor_uuid, bin_index, " + windowAggregates("bucket_start", sketchBuckets(startDates), args,
+                "SUM(CASE WHEN %s THEN bin_count ELSE 0 END)")
+                + " FROM measurement_sketch WHERE sensor_uuid IN (" + placeholders(sensorUuids.size()) + ")"
+                + " AND bucket_start >= ? AND bucket_start <= ? GROUP BY sensor_uuid, bin_index";
+        args.addAll(sensorUuids);
+        args.add(toSketchBucket(Arrays.stream(startDates).min().orElse(endDate)));
+        args.add(endDate);
+        final Map<String, DDSketch[]> sketchesBySensor = new HashMap<>();
+        jdbcTemplate.query(sql, args.toArray(), (RowCallbackHandler) rs -> addToSketches(
+                sketchesBySensor.computeIfAbsent(rs.getString(1), sensorUuid -> emptySketches(startDates.length)), rs, 3));
+        return sketchesBySensor;
+    }
+
+    /**
+     * Returns the given aggregates for each period, e.g. {@code MAX(CASE WHEN timestamp_utc >= ? THEN co2_level END)},
+     * with the start of each period added to args.
+     */
+    private static String windowAggregates(final String timeColumn, final long[] startDates, final List<Object> args,
+                                           final String... aggregates) {
+        final StringJoiner columns = new StringJoiner(", ");
+        for (long startDate : startDates) {
+            for (String aggregate : aggregates) {
+                columns.add(String.format(aggregate, timeColumn + " >= ?"));
+                args.add(startDate);
+            }
+        }
+        return columns.toString();
+    }
+
+    private static String placeholders(final int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static long[] sketchBuckets(final long[] startDates) {
+        return Arrays.stream(startDates).map(SensorDao::toSketchBucket).toArray();
+    }
+
+    private static long[][] readTotals(final ResultSet rs, final int firstColumn, final int periodCount)
+            throws SQLException {
+        final long[][] totals = new long[periodCount][3];
+        for (int i = 0; i < periodCount; i++) {
+            for (int j = 0; j < 3; j++) {
+                totals[i][j] = rs.getLong(firstColumn + 3 * i + j);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Adds the bin counts of each period, from firstColumn onwards, to the sketch of the period. The bin index is in
+     * the column before.
+     */
+    private static void addToSketches(final DDSketch[] sketches, final ResultSet rs, final int firstColumn)
+            throws SQLException {
+        final int binIndex = rs.getInt(firstColumn - 1);
+        for (int i = 0; i < sketches.length; i++) {
+            final long binCount = rs.getLong(firstColumn + i);
+            if (binCount > 0) {
+                sketches[i].addToBin(binIndex, binCount);
+            }
+        }
+    }
+
+    private static DDSketch[] emptySketches(final int count) {
+        final DDSketch[] sketches = new DDSketch[count];
+        for (int i = 0; i < count; i++) {
+            sketches[i] = DDSketch.forCo2();
+        }
+        return sketches;
+    }
+
+    /**
+     * Adds the count, sum and max of the archived readings to the totals of each period ending at endDate.
+     * Segments fully inside a period are summed up from their header, the others are read once for all the periods.
+     */
+    private void addArchivedTotals(final long[][] totals, final List<ArchiveSegment> segments, final long[] startDates,
+                                   final long endDate) {
+        for (ArchiveSegment segment : segments) {
+            List<Measurement> archived = null;
+            for (int i = 0; i < startDates.length; i++) {
+                if (segment.isWithin(startDates[i], endDate)) {
+                    totals[i][0] += segment.getCount();
+                    totals[i][1] += segment.getCo2Sum();
+                    totals[i][2] = Math.max(totals[i][2], segment.getCo2Max());
+                } else if (segment.overlaps(startDates[i], endDate)) {
+                    if (archived == null) {
+                        archived = archiveStore.read(segment);
+                    }
+                    for (Measurement measurement : archived) {
+                        if (measurement.getTime() >= startDates[i] && measurement.getTime() <= endDate) {
+                            totals[i][0]++;
+                            totals[i][1] += measurement.getCo2Level();
+                            totals[i][2] = Math.max(totals[i][2], measurement.getCo2Level());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<SensorMetrics> toMetrics(final long[][] totals, final DDSketch[] sketches) {
+        final List<SensorMetrics> metrics = new ArrayList<>(totals.length);
+        for (int i = 0; i < totals.length; i++) {
+            final SensorMetrics sensorMetrics = new SensorMetrics();
+            sensorMetrics.setAverage(totals[i][0] == 0 ? 0L : totals[i][1] / totals[i][0]);
+            sensorMetrics.setMax(totals[i][2]);
+            setPercentiles(sensorMetrics, sketches[i]);
+            metrics.add(sensorMetrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Appends the most recent archived readings of the sensor (only the alerts if alertsOnly) to the given readings,
+     * most recent first, until there are limit of them.
+     */
+    private void addArchivedMeasurements(final List<Measurement> measurements, final String sensorUuid,
+                                         final int limit, final boolean alertsOnly) {
+        for (ArchiveSegment segment : archiveStore.getSegmentsMostRecentFirst(sensorUuid)) {
+            if (alertsOnly && segment.getAlertCount() == 0) {
+                continue;
+            }
+            final List<Measurement> archived = archiveStore.read(segment);
+            for (int i = archived.size() - 1; i >= 0; i--) {
+                if (!alertsOnly || archived.get(i).isAlert()) {
+                    measurements.add(archived.get(i));
+                    if (measurements.size() >= limit) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static SeriesPoint emptyPoint(final long bucketStart) {
+        final SeriesPoint point = new SeriesPoint();
+        point.setTime(bucketStart);
+        point.setMax(Long.MIN_VALUE);
+        point.setMin(Long.MAX_VALUE);
+        return point;
+    }
+
+    private static SeriesPoint rawPoint(final long time, final long co2Level) {
+        final SeriesPoint point = new SeriesPoint();
+        point.setTime(time);
+        point.setAverage(co2Level);
+        point.setMax(co2Level);
+        point.setMin(co2Level);
+        point.setCount(1);
+        return point;
+    }
+
+    /**
+     * Adds readings to a point whose average still holds the sum of the levels.
+     */
+    private static void addToPoint(final SeriesPoint point, final long co2Sum, final long co2Max, final long co2Min,
+                                   final long count) {
+        point.setAverage(point.getAverage() + co2Sum);
+        point.setMax(Math.max(point.getMax(), co2Max));
+        point.setMin(Math.min(point.getMin(), co2Min));
+        point.setCount(point.getCount() + count);
+    }
+
+    private static void setPercentiles(final SensorMetrics sensorMetrics, final DDSketch sketch) {
+        sensorMetrics.setP50(sketch.quantile(0.5));
+        sensorMetrics.setP95(sketch.quantile(0.95));
+        sensorMetrics.setP99(sketch.quantile(0.99));
+    }
 }
@@ -0,0 +1,97 @@
+package io.alvintures.co2sensorapi.dao.dialect;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The default dialect, for the in-memory H2 database.
+ */
+public class H2Dialect extends SqlDialect {
+
+    @Override
+    public String upsert(final String table, final List<String> columns, final List<String> keyColumns) {
+        return "MERGE INTO " + table + " (" + join(columns) + ") KEY (" + join(keyColumns) + ") VALUES ("
+                + placeholders(columns.size()) + ")";
+    }
+
+    @Override
+    public String upsertSelect(final String table, final List<String> columns, final List<String> keyColumns,
+                               final String select) {
+        return "MERGE INTO " + table + " (" + join(columns) + ") KEY (" + join(keyColumns) + ") " + select;
+    }
+
+    /**
+     * Applies the rows with one batched update, then inserts the ones whose row did not exist yet.
+     */
+    @Override
+    public void addToRows(final JdbcTemplate jdbcTemplate, final String table, final List<String> addedColumns,
+                          final List<String> maxColumns, final List<String> keyColumns, final List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        final String updateSql = "UPDATE " + table + " SET "
+                + Stream.concat(
+                        addedColumns.stream().map(column -> column + " = " + column + " + ?"),
+                        maxColumns.stream().map(column -> column + " = GREATEST(" + column + ", ?)"))
+                .collect(Collectors.joining(", "))
+                + " WHERE " + equalToParameters(keyColumns);
+        final List<String> columns = new ArrayList<>(addedColumns);
+        columns.addAll(maxColumns);
+        columns.addAll(keyColumns);
+        final String insertSql = "INSERT INTO " + table + " (" + join(columns) + ") VALUES ("
+                + placeholders(columns.size()) + ")";
+
+        final int[] updatedRows = jdbcTemplate.batchUpdate(updateSql, rows);
+        for (int i = 0; i < updatedRows.length; i++) {
+            if (updatedRows[i] == 0) {
+                try {
+                    jdbcTemplate.update(insertSql, rows.get(i));
+                } catch (DuplicateKeyException concurrentlyInserted) {
+                    jdbcTemplate.update(updateSql, rows.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts each row with an INSERT ... SELECT checking its key does not exist, in one batch.
+     */
+    @Override
+    public List<Object[]> insertIfAbsent(final JdbcTemplate jdbcTemplate, final String table,
+                                         final List<String> columns, final List<String> keyColumns,
+                                         final List<Object[]> rows) {
+        final int[] keyIndexes = keyColumns.stream().mapToInt(columns::indexOf).toArray();
+        final List<Object[]> args = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            final Object[] rowArgs = Arrays.copyOf(row, row.length + keyIndexes.length);
+            for (int i = 0; i < keyIndexes.length; i++) {
+                rowArgs[row.length + i] = row[keyIndexes[i]];
+            }
+            args.add(rowArgs);
+        }
+        final int[] insertedRows = jdbcTemplate.batchUpdate(
+                "INSERT INTO " + table + " (" + join(columns) + ") SELECT " + placeholders(columns.size())
+                        + " FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM " + table + " WHERE "
+                        + equalToParameters(keyColumns) + ")",
+                args
+        );
+        final List<Object[]> inserted = new ArrayList<>(rows.size());
+        for (int i = 0; i < insertedRows.length; i++) {
+            if (insertedRows[i] != 0) {
+                inserted.add(rows.get(i));
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public String deleteLimited(final String table, final List<String> keyColumns, final String condition) {
+        return "DELETE FROM " + table + " WHERE " + condition + " LIMIT ?";
+    }
+}
@@ -0,0 +1,147 @@
+package io.alvintures.co2sensorapi.dao.dialect;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The dialect of PostgreSQL. A statement failing in a transaction aborts it, so the rows which may already exist
+ * are written with INSERT ... ON CONFLICT instead of catching duplicate keys.
+ */
+public class PostgresDialect extends SqlDialect {
+
+    /**
+     * Vacuums the tables too, so the space of the rows deleted by the retention and the rollups is reused instead
+     * of waiting for autovacuum.
+     */
+    @Override
+    public void analyze(final JdbcTemplate jdbcTemplate, final List<String> tables) {
+        tables.forEach(table -> jdbcTemplate.execute("VACUUM (ANALYZE) " + table));
+    }
+
+    @Override
+    public String upsert(final String table, final List<String> columns, final List<String> keyColumns) {
+        return "INSERT INTO " + table + " (" + join(columns) + ") VALUES (" + placeholders(columns.size()) + ")"
+                + onConflictReplace(columns, keyColumns);
+    }
+
+    @Override
+    public String upsertSelect(final String table, final List<String> columns, final List<String> keyColumns,
+                               final String select) {
+        return "INSERT INTO " + table + " (" + join(columns) + ") " + select + onConflictReplace(columns, keyColumns);
+    }
+
+    @Override
+    public void addToRows(final JdbcTemplate jdbcTemplate, final String table, final List<String> addedColumns,
+                          final List<String> maxColumns, final List<String> keyColumns, final List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        final List<String> columns = new ArrayList<>(addedColumns);
+        columns.addAll(maxColumns);
+        columns.addAll(keyColumns);
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO " + table + " (" + join(columns) + ") VALUES (" + placeholders(columns.size()) + ") "
+                        + "ON CONFLICT (" + join(keyColumns) + ") DO UPDATE SET "
+                        + Stream.concat(
+                                addedColumns.stream().map(column ->
+                                        column + " = " + table + "." + column + " + EXCLUDED." + column),
+                                maxColumns.stream().map(column ->
+                                        column + " = GREATEST(" + table + "." + column + ", EXCLUDED." + column + ")"))
+                        .collect(Collectors.joining(", ")),
+                rows
+        );
+    }
+
+    /**
+     * COPYs the rows into a temporary staging table of the session, then moves them to the table with one
+     * INSERT ... ON CONFLICT DO NOTHING, which is much faster than a batch of inserts for an import. The inserted
+     * rows are read back from its RETURNING clause.
+     */
+    @Override
+    public List<Object[]> insertIfAbsent(final JdbcTemplate jdbcTemplate, final String table,
+                                         final List<String> columns, final List<String> keyColumns,
+                                         final List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final String stagingTable = table + "_staging";
+        final StringBuilder csv = new StringBuilder();
+        for (Object[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                appendCsvValue(csv, row[i]);
+            }
+            csv.append('\n');
+        }
+        return jdbcTemplate.execute((ConnectionCallback<List<Object[]>>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TEMPORARY TABLE IF NOT EXISTS " + stagingTable + " (LIKE " + table
+                        + " INCLUDING DEFAULTS)");
+                statement.execute("TRUNCATE " + stagingTable);
+                connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                        "COPY " + stagingTable + " (" + join(columns) + ") FROM STDIN WITH (FORMAT csv)",
+                        new StringReader(csv.toString()));
+                final List<Object[]> inserted = new ArrayList<>(rows.size());
+                try (ResultSet resultSet = statement.executeQuery(
+                        "INSERT INTO " + table + " (" + join(columns) + ") SELECT " + join(columns) + " FROM "
+                                + stagingTable + " ON CONFLICT (" + join(keyColumns) + ") DO NOTHING "
+                                + "RETURNING " + join(columns))) {
+                    while (resultSet.next()) {
+                        final Object[] row = new Object[columns.size()];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = resultSet.getObject(i + 1);
+                        }
+                        inserted.add(row);
+                    }
+                }
+                statement.execute("TRUNCATE " + stagingTable);
+                return inserted;
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to copy the rows into " + stagingTable, ex);
+            }
+        });
+    }
+
+    @Override
+    public String deleteLimited(final String table, final List<String> keyColumns, final String condition) {
+        final String keys = join(keyColumns);
+        return "DELETE FROM " + table + " WHERE (" + keys + ") IN (SELECT " + keys + " FROM " + table + " WHERE "
+                + condition + " LIMIT ?)";
+    }
+
+    private static String onConflictReplace(final List<String> columns, final List<String> keyColumns) {
+        final List<String> replacedColumns = columns.stream()
+                .filter(column -> !keyColumns.contains(column))
+                .collect(Collectors.toList());
+        if (replacedColumns.isEmpty()) {
+            return " ON CONFLICT (" + join(keyColumns) + ") DO NOTHING";
+        }
+        return " ON CONFLICT (" + join(keyColumns) + ") DO UPDATE SET " + replacedColumns.stream()
+                .map(column -> column + " = EXCLUDED." + column)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static void appendCsvValue(final StringBuilder csv, final Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof String) {
+            csv.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+        } else {
+            csv.append(value);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.alvintures.co2sensorapi.dao.dialect;
+
+import io.alvintures.co2sensorapi.dto.SeriesBucket;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The statements the DAOs write differently per database, picked with {@code app.db.dialect} (see
+ * {@link SqlDialectConfig}). Everything else the DAOs run is plain SQL that H2 and PostgreSQL both understand.
+ * <p>
+ * Statements that only differ in syntax are returned as SQL, the ones a database runs best with its own API (e.g.
+ * COPY on PostgreSQL) are run by the dialect itself.
+ */
+public abstract class SqlDialect {
+
+    /**
+     * Returns the INSERT of a row which replaces the row with the same key if there is one. Its parameters are the
+     * values of the columns.
+     */
+    public abstract String upsert(String table, List<String> columns, List<String> keyColumns);
+
+    /**
+     * Same with {@link #upsert} for the rows returned by the select, whose columns are in the same order.
+     */
+    public abstract String upsertSelect(String table, List<String> columns, List<String> keyColumns, String select);
+
+    /**
+     * Adds the rows to the table: a row whose key already exists is added to the existing one, its addedColumns summed
+     * and its maxColumns replaced by the greatest of both. Each row holds the values of the addedColumns, then the
+     * maxColumns, then the keyColumns.
+     * <p>
+     * The rows are applied in their order, so two transactions adding the same keys in the same order lock them in the
+     * same order.
+     */
+    public abstract void addToRows(JdbcTemplate jdbcTemplate, String table, List<String> addedColumns,
+                                   List<String> maxColumns, List<String> keyColumns, List<Object[]> rows);
+
+    /**
+     * Inserts the rows, values of the columns in their order, whose key does not exist yet, and only one of two rows
+     * with the same key. Returns the rows inserted.
+     */
+    public abstract List<Object[]> insertIfAbsent(JdbcTemplate jdbcTemplate, String table, List<String> columns,
+                                                  List<String> keyColumns, List<Object[]> rows);
+
+    /**
+     * Returns the DELETE of at most a given number of the rows matching the condition. Its parameters are the ones of
+     * the condition, then the number of rows.
+     */
+    public abstract String deleteLimited(String table, List<String> keyColumns, String condition);
+
+    /**
+     * Drops the partitions of the table whose rows are all before the given value of its partition column, if the
+     * database partitions it. Does nothing by default: the rows are then deleted in batches with
+     * {@link #deleteLimited}.
+     */
+    public void dropPartitionsBefore(final JdbcTemplate jdbcTemplate, final String table, final long partitionValue) {
+    }
+
+    /**
+     * Refreshes the statistics of the query planner on the tables, after the nightly deletes and rollups. H2 has a
+     * single ANALYZE for the whole database.
+     */
+    public void analyze(final JdbcTemplate jdbcTemplate, final List<String> tables) {
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    /**
+     * Returns the SQL expression of the bucket start of the given yyyyMMddHHmmss column, see
+     * {@link SeriesBucket#toSqlExpression}.
+     */
+    public String bucketStart(final SeriesBucket bucket, final String column) {
+        return bucket.toSqlExpression(column);
+    }
+
+    /**
+     * Returns the query of the sum, max, min and number of the CO2 levels of the sensor per bucket, over the live
+     * readings in the period after archivedUntil, oldest bucket first. Its columns are bucket_start, sum_level,
+     * max_level, min_level and level_count; the sum rather than the average, so buckets can be merged exactly with
+     * the archived readings.
+     */
+    public Query seriesQuery(final String sensorUuid, final long startDate, final long endDate,
+                             final long archivedUntil, final SeriesBucket bucket) {
+        final String bucketStart = bucketStart(bucket, "timestamp_utc");
+        return new Query(
+                "SELECT " + bucketStart + " AS bucket_start, SUM(co2_level) AS sum_level, "
+                        + "MAX(co2_level) AS max_level, MIN(co2_level) AS min_level, COUNT(co2_level) AS level_count "
+                        + "FROM measurement WHERE sensor_uuid = ? AND timestamp_utc >= ? AND timestamp_utc <= ? "
+                        + "AND timestamp_utc > ? GROUP BY " + bucketStart + " ORDER BY bucket_start",
+                sensorUuid, startDate, endDate, archivedUntil
+        );
+    }
+
+    static String join(final List<String> columns) {
+        return String.join(", ", columns);
+    }
+
+    static String placeholders(final int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    static String equalToParameters(final List<String> columns) {
+        return columns.stream().map(column -> column + " = ?").collect(Collectors.joining(" AND "));
+    }
+
+    /**
+     * A statement with its parameters.
+     */
+    public static final class Query {
+        private final String sql;
+        private final Object[] args;
+
+        public Query(String sql, Object... args) {
+            this.sql = sql;
+            this.args = args;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.alvintures.co2sensorapi.dao.dialect;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Picks the {@link SqlDialect} of the database with {@code app.db.dialect=h2|postgresql|timescaledb}, see the
+ * postgresql and timescaledb profiles.
+ */
+@Configuration
+public class SqlDialectConfig {
+
+    @Bean
+    public SqlDialect sqlDialect(@Value("${app.db.dialect:h2}") String dialect) {
+        switch (dialect.toLowerCase()) {
+            case "h2":
+                return new H2Dialect();
+            case "postgresql":
+                return new PostgresDialect();
+            case "timescaledb":
+                return new TimescaleDialect();
+            default:
+                throw new IllegalArgumentException("app.db.dialect should be h2, postgresql or timescaledb, not "
+                        + dialect);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.alvintures.co2sensorapi.dao.dialect;
+
+import io.alvintures.co2sensorapi.dto.SeriesBucket;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The dialect of PostgreSQL with the TimescaleDB extension, on the schema of schema-timescaledb.sql: measurement is a
+ * hypertable partitioned by minute_utc and measurement_hourly a continuous aggregate of its readings per sensor and
+ * hour.
+ */
+public class TimescaleDialect extends PostgresDialect {
+
+    /**
+     * Uses time_bucket when the bucket width divides the next unit, e.g. 5m but not 15m: then rounding the
+     * yyyyMMddHHmmss number down to a multiple of the width is rounding the timestamp down.
+     */
+    @Override
+    public String bucketStart(final SeriesBucket bucket, final String column) {
+        if (100 % bucket.getStep() != 0) {
+            return super.bucketStart(bucket, column);
+        }
+        return "time_bucket(CAST(" + bucket.getDivisor() * bucket.getStep() + " AS BIGINT), " + column + ")";
+    }
+
+    /**
+     * Drops the chunks of the hypertable, or of the continuous aggregate, whose rows are all before the given value.
+     * Rows of the chunk containing the value are left to the batched deletes.
+     */
+    @Override
+    public void dropPartitionsBefore(final JdbcTemplate jdbcTemplate, final String table, final long partitionValue) {
+        jdbcTemplate.queryForList("SELECT drop_chunks('" + table + "', older_than => CAST(? AS BIGINT))",
+                String.class, partitionValue);
+    }
+
+    /**
+     * Reads the whole hours of hourly or daily series from measurement_hourly, and only the readings of the partial
+     * hours at both ends of the period from measurement. Series over archived readings are left to the default
+     * query, the aggregate keeping the archived hours until its next refresh.
+     */
+    @Override
+    public Query seriesQuery(final String sensorUuid, final long startDate, final long endDate,
+                             final long archivedUntil, final SeriesBucket bucket) {
+        final long firstFullHour = startDate % 10_000 == 0 ? startDate : startDate / 10_000 * 10_000 + 10_000;
+        final long lastFullHourEnd = endDate % 10_000 == 5959 ? endDate / 10_000 * 10_000 + 10_000
+                : endDate / 10_000 * 10_000;
+        if (bucket.getDivisor() < 10_000 || archivedUntil >= startDate || firstFullHour >= lastFullHourEnd) {
+            return super.seriesQuery(sensorUuid, startDate, endDate, archivedUntil, bucket);
+        }
+        final String bucketStart = bucketStart(bucket, "t");
+        return new Query(
+                "SELECT " + bucketStart + " AS bucket_start, SUM(co2_sum) AS sum_level, "
+                        + "MAX(co2_max) AS max_level, MIN(co2_min) AS min_level, SUM(reading_count) AS level_count "
+                        + "FROM ("
+                        + "SELECT hour_minute * 100 AS t, reading_count, co2_sum, co2_max, co2_min "
+                        + "FROM measurement_hourly WHERE sensor_uuid = ? AND hour_minute >= ? AND hour_minute < ? "
+                        + "UNION ALL "
+                        + "SELECT timestamp_utc, 1, co2_level, co2_level, co2_level "
+                        + "FROM measurement WHERE sensor_uuid = ? AND timestamp_utc >= ? AND timestamp_utc <= ? "
+                        + "AND (timestamp_utc < ? OR timestamp_utc >= ?)"
+                        + ") readings GROUP BY " + bucketStart + " ORDER BY bucket_start",
+                sensorUuid, firstFullHour / 100, lastFullHourEnd / 100,
+                sensorUuid, startDate, endDate, firstFullHour, lastFullHourEnd
+        );
+    }
+}
@@ -0,0 +1,32 @@
+package io.alvintures.co2sensorapi.dao.mapper;
+
+import io.alvintures.co2sensorapi.dto.AlertEpisode;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the columns of {@link #COLUMNS}, in that order, by index. Stateless, so the {@link #INSTANCE} is shared.
+ */
+public class AlertEpisodeRowMapper implements RowMapper<AlertEpisode> {
+
+    public static final String COLUMNS = "sensor_uuid, start_utc, end_utc, peak_co2_level, reading_count";
+
+    public static final AlertEpisodeRowMapper INSTANCE = new AlertEpisodeRowMapper();
+
+    private AlertEpisodeRowMapper() {
+    }
+
+    @Override
+    public AlertEpisode mapRow(ResultSet rs, int rowNum) throws SQLException {
+        final AlertEpisode episode = new AlertEpisode();
+        episode.setSensorUuid(rs.getString(1));
+        episode.setStartTime(rs.getLong(2));
+        final long endTime = rs.getLong(3);
+        episode.setEndTime(rs.wasNull() ? null : endTime);
+        episode.setPeakCo2Level(rs.getLong(4));
+        episode.setReadingCount(rs.getInt(5));
+        return episode;
+    }
+}
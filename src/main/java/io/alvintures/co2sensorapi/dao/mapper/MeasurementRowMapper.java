@@ -6,15 +6,25 @@ import org.springframework.jdbc.core.RowMapper;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+/**
+ * Maps the columns of {@link #COLUMNS}, in that order, by index. Stateless, so the {@link #INSTANCE} is shared.
+ */
 public class MeasurementRowMapper implements RowMapper<Measurement> {
 
+    public static final String COLUMNS = "sensor_uuid, timestamp_utc, co2_level, is_alert";
+
+    public static final MeasurementRowMapper INSTANCE = new MeasurementRowMapper();
+
+    private MeasurementRowMapper() {
+    }
+
     @Override
     public Measurement mapRow(ResultSet rs, int rowNum) throws SQLException {
         final Measurement measurement = new Measurement();
-        measurement.setSensorUUID(rs.getString("sensor_uuid"));
-        measurement.setCo2Level(rs.getLong("co2_level"));
-        measurement.setTime(rs.getLong("timestamp_utc"));
-        measurement.setAlert(rs.getBoolean("is_alert"));
+        measurement.setSensorUUID(rs.getString(1));
+        measurement.setTime(rs.getLong(2));
+        measurement.setCo2Level(rs.getLong(3));
+        measurement.setAlert(rs.getBoolean(4));
         return measurement;
     }
 }
@@ -7,13 +7,23 @@ import org.springframework.jdbc.core.RowMapper;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+/**
+ * Maps the columns of {@link #COLUMNS}, in that order, by index. Stateless, so the {@link #INSTANCE} is shared.
+ */
 public class SensorRowMapper implements RowMapper<Sensor> {
 
+    public static final String COLUMNS = "uuid, status";
+
+    public static final SensorRowMapper INSTANCE = new SensorRowMapper();
+
+    private SensorRowMapper() {
+    }
+
     @Override
     public Sensor mapRow(ResultSet rs, int rowNum) throws SQLException {
         final Sensor sensor = new Sensor();
-        sensor.setUuid(rs.getString("uuid"));
-        sensor.setStatus(SensorStatus.valueOf(rs.getString("status")));
+        sensor.setUuid(rs.getString(1));
+        sensor.setStatus(SensorStatus.valueOf(rs.getString(2)));
         return sensor;
     }
 }
@@ -0,0 +1,57 @@
+package io.alvintures.co2sensorapi.dto;
+
+/**
+ * A period a sensor spent in {@link SensorStatus#ALERT}: from the reading that switched it to ALERT until the one that
+ * switched it back, with the highest CO2 level and the number of readings in between, the first one included and
+ * the last one not.
+ */
+public class AlertEpisode {
+    private String sensorUuid;
+    private Long startTime;
+    private Long endTime;
+    private Long peakCo2Level;
+    private int readingCount;
+
+    public String getSensorUuid() {
+        return sensorUuid;
+    }
+
+    public void setSensorUuid(String sensorUuid) {
+        this.sensorUuid = sensorUuid;
+    }
+
+    public Long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Long startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * Returns the time the sensor left ALERT, or null if it still is in ALERT.
+     */
+    public Long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(Long endTime) {
+        this.endTime = endTime;
+    }
+
+    public Long getPeakCo2Level() {
+        return peakCo2Level;
+    }
+
+    public void setPeakCo2Level(Long peakCo2Level) {
+        this.peakCo2Level = peakCo2Level;
+    }
+
+    public int getReadingCount() {
+        return readingCount;
+    }
+
+    public void setReadingCount(int readingCount) {
+        this.readingCount = readingCount;
+    }
+}
@@ -0,0 +1,59 @@
+package io.alvintures.co2sensorapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A page of the alert episodes of a sensor, most recent first, serialized as
+ * {@code {"episodes":[{"startTime":"...","endTime":"...","peakCo2Level":2700,"readingCount":12}],"nextCursor":"..."}}.
+ * The endTime of an ongoing episode and the nextCursor of the last page are left out.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AlertHistoryResponse {
+    private final List<Episode> episodes;
+    private final String nextCursor;
+
+    public AlertHistoryResponse(List<AlertEpisode> episodes, String nextCursor) {
+        this.episodes = episodes.stream().map(Episode::new).collect(Collectors.toList());
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Episode> getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * Returns the cursor to pass to get the next page, or null if this is the last one.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Episode {
+        private final AlertEpisode episode;
+
+        Episode(AlertEpisode episode) {
+            this.episode = episode;
+        }
+
+        public String getStartTime() {
+            return TimestampUtil.toIsoDateTime(episode.getStartTime());
+        }
+
+        public String getEndTime() {
+            return episode.getEndTime() != null ? TimestampUtil.toIsoDateTime(episode.getEndTime()) : null;
+        }
+
+        public Long getPeakCo2Level() {
+            return episode.getPeakCo2Level();
+        }
+
+        public int getReadingCount() {
+            return episode.getReadingCount();
+        }
+    }
+}
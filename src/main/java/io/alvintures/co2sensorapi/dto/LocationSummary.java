@@ -0,0 +1,61 @@
+package io.alvintures.co2sensorapi.dto;
+
+import java.util.Map;
+
+/**
+ * The number of sensors in each status of a site, building or room, and the number, maximum and average of the CO2
+ * levels its sensors read over a period.
+ */
+public class LocationSummary {
+    private String location;
+    private Map<SensorStatus, Long> sensorCounts;
+    private long readingCount;
+    private Long max;
+    private Long average;
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public Map<SensorStatus, Long> getSensorCounts() {
+        return sensorCounts;
+    }
+
+    public void setSensorCounts(Map<SensorStatus, Long> sensorCounts) {
+        this.sensorCounts = sensorCounts;
+    }
+
+    public long getReadingCount() {
+        return readingCount;
+    }
+
+    public void setReadingCount(long readingCount) {
+        this.readingCount = readingCount;
+    }
+
+    /**
+     * Returns the maximum CO2 level over the period, or null if there was no reading.
+     */
+    public Long getMax() {
+        return max;
+    }
+
+    public void setMax(Long max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns the average CO2 level over the period, or null if there was no reading.
+     */
+    public Long getAverage() {
+        return average;
+    }
+
+    public void setAverage(Long average) {
+        this.average = average;
+    }
+}
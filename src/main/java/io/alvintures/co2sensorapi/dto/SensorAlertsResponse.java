@@ -0,0 +1,93 @@
+package io.alvintures.co2sensorapi.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+
+import java.io.IOException;
+
+/**
+ * The recent alerts of a sensor, serialized as
+ * {@code {"startTime":"...","endTime":"...","measurement1":2500,"measurement2":2300}}, or {@code {}} if there are none.
+ * <p>
+ * Written by {@link Serializer} straight to the response stream with precomputed keys.
+ */
+@JsonSerialize(using = SensorAlertsResponse.Serializer.class)
+public class SensorAlertsResponse {
+
+    private static final SerializedString START_TIME_KEY = new SerializedString("startTime");
+    private static final SerializedString END_TIME_KEY = new SerializedString("endTime");
+    private static final SerializedString[] MEASUREMENT_KEYS = new SerializedString[64];
+
+    static {
+        for (int i = 0; i < MEASUREMENT_KEYS.length; i++) {
+            MEASUREMENT_KEYS[i] = new SerializedString("measurement" + (i + 1));
+        }
+    }
+
+    private static final SensorAlertsResponse EMPTY = new SensorAlertsResponse(0L, 0L, new long[0]);
+
+    private final long startTime;
+    private final long endTime;
+    private final long[] co2Levels;
+
+    /**
+     * startTime and endTime are UTC timestamps (yyyyMMddHHmmss), co2Levels the levels of the alerts, most recent first.
+     */
+    public SensorAlertsResponse(long startTime, long endTime, long[] co2Levels) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.co2Levels = co2Levels;
+    }
+
+    public static SensorAlertsResponse empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return co2Levels.length == 0;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long[] getCo2Levels() {
+        return co2Levels;
+    }
+
+    public static class Serializer extends StdSerializer<SensorAlertsResponse> {
+
+        public Serializer() {
+            super(SensorAlertsResponse.class);
+        }
+
+        @Override
+        public void serialize(SensorAlertsResponse response, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject();
+            if (!response.isEmpty()) {
+                generator.writeFieldName(START_TIME_KEY);
+                generator.writeString(TimestampUtil.toIsoDateTime(response.startTime));
+                generator.writeFieldName(END_TIME_KEY);
+                generator.writeString(TimestampUtil.toIsoDateTime(response.endTime));
+                for (int i = 0; i < response.co2Levels.length; i++) {
+                    if (i < MEASUREMENT_KEYS.length) {
+                        generator.writeFieldName(MEASUREMENT_KEYS[i]);
+                    } else {
+                        generator.writeFieldName("measurement" + (i + 1));
+                    }
+                    generator.writeNumber(response.co2Levels[i]);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.alvintures.co2sensorapi.dto;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The room of a building of a site a sensor is placed in.
+ */
+public class SensorLocation {
+    private String site;
+    private String building;
+    private String room;
+
+    public SensorLocation() {
+    }
+
+    public SensorLocation(String site, String building, String room) {
+        this.site = site;
+        this.building = building;
+        this.room = room;
+    }
+
+    public String getSite() {
+        return site;
+    }
+
+    public void setSite(String site) {
+        this.site = site;
+    }
+
+    public String getBuilding() {
+        return building;
+    }
+
+    public void setBuilding(String building) {
+        this.building = building;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public void setRoom(String room) {
+        this.room = room;
+    }
+
+    /**
+     * Returns the paths of the site, the building and the room, e.g. "hq", "hq/north" and "hq/north/r101", whose
+     * aggregates a reading of the sensor adds to.
+     */
+    public List<String> paths() {
+        final String buildingPath = site + "/" + building;
+        return Arrays.asList(site, buildingPath, buildingPath + "/" + room);
+    }
+}
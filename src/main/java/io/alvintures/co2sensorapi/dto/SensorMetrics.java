@@ -3,6 +3,9 @@ package io.alvintures.co2sensorapi.dto;
 public class SensorMetrics {
     private Long max;
     private Long average;
+    private Long p50;
+    private Long p95;
+    private Long p99;
 
     public Long getMax() {
         return max;
@@ -19,4 +22,28 @@ public class SensorMetrics {
     public void setAverage(Long average) {
         this.average = average;
     }
+
+    public Long getP50() {
+        return p50;
+    }
+
+    public void setP50(Long p50) {
+        this.p50 = p50;
+    }
+
+    public Long getP95() {
+        return p95;
+    }
+
+    public void setP95(Long p95) {
+        this.p95 = p95;
+    }
+
+    public Long getP99() {
+        return p99;
+    }
+
+    public void setP99(Long p99) {
+        this.p99 = p99;
+    }
 }
@@ -0,0 +1,24 @@
+package io.alvintures.co2sensorapi.dto;
+
+import java.util.List;
+
+public class SensorMetricsBatchGetParams {
+    private List<String> uuids;
+    private List<Integer> periodInDays;
+
+    public List<String> getUuids() {
+        return uuids;
+    }
+
+    public void setUuids(List<String> uuids) {
+        this.uuids = uuids;
+    }
+
+    public List<Integer> getPeriodInDays() {
+        return periodInDays;
+    }
+
+    public void setPeriodInDays(List<Integer> periodInDays) {
+        this.periodInDays = periodInDays;
+    }
+}
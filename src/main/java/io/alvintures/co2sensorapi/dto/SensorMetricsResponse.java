@@ -0,0 +1,115 @@
+package io.alvintures.co2sensorapi.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The metrics of a sensor (or of the fleet) over one or more periods of days, serialized as a flat object whose keys
+ * carry the period, e.g. {@code {"maxLast1Day":2100,...,"maxLast30Days":2400,"avgLast30Days":1200,...}}.
+ * <p>
+ * It is written by {@link Serializer} straight to the response stream with precomputed keys instead of being copied
+ * into a map with concatenated keys and serialized by reflection.
+ */
+@JsonSerialize(using = SensorMetricsResponse.Serializer.class)
+public class SensorMetricsResponse {
+
+    /**
+     * Keys are precomputed for periods up to a year, longer periods get their keys built on every call.
+     */
+    private static final int MAX_PRECOMPUTED_PERIOD = 366;
+    private static final SerializedString[][] KEYS_BY_PERIOD = new SerializedString[MAX_PRECOMPUTED_PERIOD + 1][];
+
+    static {
+        for (int periodInDays = 0; periodInDays <= MAX_PRECOMPUTED_PERIOD; periodInDays++) {
+            KEYS_BY_PERIOD[periodInDays] = buildKeys(periodInDays);
+        }
+    }
+
+    private final List<Integer> periodsInDays;
+    private final List<SensorMetrics> metrics;
+
+    public SensorMetricsResponse(int periodInDays, SensorMetrics metrics) {
+        this(Collections.singletonList(periodInDays), Collections.singletonList(metrics));
+    }
+
+    /**
+     * The metrics are those of the period at the same index, and are written in that order.
+     */
+    public SensorMetricsResponse(List<Integer> periodsInDays, List<SensorMetrics> metrics) {
+        if (periodsInDays.size() != metrics.size()) {
+            throw new IllegalArgumentException(periodsInDays.size() + " periods but " + metrics.size() + " metrics");
+        }
+        this.periodsInDays = periodsInDays;
+        this.metrics = metrics;
+    }
+
+    public List<Integer> getPeriodsInDays() {
+        return periodsInDays;
+    }
+
+    public List<SensorMetrics> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the keys of max, avg, p50, p95 and p99 for the period, e.g. maxLast1Day or avgLast30Days.
+     */
+    static SerializedString[] keysOf(final int periodInDays) {
+        return periodInDays >= 0 && periodInDays <= MAX_PRECOMPUTED_PERIOD
+                ? KEYS_BY_PERIOD[periodInDays] : buildKeys(periodInDays);
+    }
+
+    private static SerializedString[] buildKeys(final int periodInDays) {
+        final String suffix = "Last" + periodInDays + (periodInDays > 1 ? "Days" : "Day");
+        return new SerializedString[]{
+                new SerializedString("max" + suffix),
+                new SerializedString("avg" + suffix),
+                new SerializedString("p50" + suffix),
+                new SerializedString("p95" + suffix),
+                new SerializedString("p99" + suffix)
+        };
+    }
+
+    static void writeMetricFields(final JsonGenerator generator, final SerializedString[] keys,
+                                  final SensorMetrics metrics) throws IOException {
+        writeNumberField(generator, keys[0], metrics.getMax());
+        writeNumberField(generator, keys[1], metrics.getAverage());
+        writeNumberField(generator, keys[2], metrics.getP50());
+        writeNumberField(generator, keys[3], metrics.getP95());
+        writeNumberField(generator, keys[4], metrics.getP99());
+    }
+
+    private static void writeNumberField(final JsonGenerator generator, final SerializedString key,
+                                         final Long value) throws IOException {
+        generator.writeFieldName(key);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value.longValue());
+        }
+    }
+
+    public static class Serializer extends StdSerializer<SensorMetricsResponse> {
+
+        public Serializer() {
+            super(SensorMetricsResponse.class);
+        }
+
+        @Override
+        public void serialize(SensorMetricsResponse response, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < response.periodsInDays.size(); i++) {
+                writeMetricFields(generator, keysOf(response.periodsInDays.get(i)), response.metrics.get(i));
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.alvintures.co2sensorapi.dto;
+
+import java.util.List;
+
+/**
+ * A compact time series: the names of the columns once, then one array of values per point, e.g.
+ * {@code {"bucket":"5m","columns":["time","avg","max"],"points":[["2020-07-13T12:55:00+00:00",1200,1350]]}}.
+ */
+public class SensorSeries {
+    private String bucket;
+    private List<String> columns;
+    private List<Object[]> points;
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public List<Object[]> getPoints() {
+        return points;
+    }
+
+    public void setPoints(List<Object[]> points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,15 @@
+package io.alvintures.co2sensorapi.dto;
+
+import java.util.List;
+
+public class SensorStatusBatchGetParams {
+    private List<String> uuids;
+
+    public List<String> getUuids() {
+        return uuids;
+    }
+
+    public void setUuids(List<String> uuids) {
+        this.uuids = uuids;
+    }
+}
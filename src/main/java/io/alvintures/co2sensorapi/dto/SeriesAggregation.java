@@ -0,0 +1,38 @@
+package io.alvintures.co2sensorapi.dto;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Aggregations of the CO2 level available per bucket in the series API.
+ */
+public enum SeriesAggregation {
+    AVG("avg"),
+    MAX("max"),
+    MIN("min");
+
+    private final String label;
+
+    SeriesAggregation(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long valueOf(final SeriesPoint point) {
+        switch (this) {
+            case MAX:
+                return point.getMax();
+            case MIN:
+                return point.getMin();
+            default:
+                return point.getAverage();
+        }
+    }
+
+    public static Optional<SeriesAggregation> fromLabel(final String label) {
+        return Arrays.stream(values()).filter(aggregation -> aggregation.label.equals(label)).findFirst();
+    }
+}
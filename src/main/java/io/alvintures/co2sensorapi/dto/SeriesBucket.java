@@ -0,0 +1,69 @@
+package io.alvintures.co2sensorapi.dto;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Bucket widths supported by the series API.
+ * <p>
+ * Timestamps are stored as yyyyMMddHHmmss numbers, so a bucket start is found by dropping the trailing digits
+ * ({@link #divisor}) and rounding the remaining minute or hour field down to a multiple of {@link #step}.
+ */
+public enum SeriesBucket {
+    ONE_MINUTE("1m", 100, 1),
+    FIVE_MINUTES("5m", 100, 5),
+    FIFTEEN_MINUTES("15m", 100, 15),
+    THIRTY_MINUTES("30m", 100, 30),
+    ONE_HOUR("1h", 10_000, 1),
+    SIX_HOURS("6h", 10_000, 6),
+    ONE_DAY("1d", 1_000_000, 1);
+
+    private final String label;
+    private final long divisor;
+    private final int step;
+
+    SeriesBucket(String label, long divisor, int step) {
+        this.label = label;
+        this.divisor = divisor;
+        this.step = step;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns 100 for minute buckets, 10000 for hour buckets and 1000000 for day buckets.
+     */
+    public long getDivisor() {
+        return divisor;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Returns the SQL expression of the bucket start (as yyyyMMddHHmmss) of the given timestamp column.
+     * Example for 15m: 20200713125519 falls in the bucket 20200713124500.
+     */
+    public String toSqlExpression(final String column) {
+        final String truncated = column + " / " + divisor;
+        if (step == 1) {
+            return "(" + truncated + ") * " + divisor;
+        }
+        return "(" + truncated + " - MOD(MOD(" + truncated + ", 100), " + step + ")) * " + divisor;
+    }
+
+    /**
+     * Same with {@link this#toSqlExpression} for a timestamp in memory, e.g. a reading read from the archive.
+     */
+    public long bucketStartOf(final long time) {
+        final long truncated = time / divisor;
+        return (truncated - truncated % 100 % step) * divisor;
+    }
+
+    public static Optional<SeriesBucket> fromLabel(final String label) {
+        return Arrays.stream(values()).filter(bucket -> bucket.label.equals(label)).findFirst();
+    }
+}
@@ -0,0 +1,52 @@
+package io.alvintures.co2sensorapi.dto;
+
+/**
+ * The CO2 levels of one bucket of a series. For raw readings all the aggregations hold the reading itself.
+ */
+public class SeriesPoint {
+    private long time;
+    private long average;
+    private long max;
+    private long min;
+    private long count;
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public long getAverage() {
+        return average;
+    }
+
+    public void setAverage(long average) {
+        this.average = average;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public void setMax(long max) {
+        this.max = max;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public void setMin(long min) {
+        this.min = min;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,28 @@
+package io.alvintures.co2sensorapi.dto;
+
+/**
+ * The number of readings of a sensor in one bin of the hourly CO2 sketch.
+ */
+public class SketchBin {
+    private long bucketStart;
+    private int binIndex;
+    private long binCount;
+
+    public SketchBin(long bucketStart, int binIndex, long binCount) {
+        this.bucketStart = bucketStart;
+        this.binIndex = binIndex;
+        this.binCount = binCount;
+    }
+
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public int getBinIndex() {
+        return binIndex;
+    }
+
+    public long getBinCount() {
+        return binCount;
+    }
+}
@@ -1,6 +1,10 @@
 package io.alvintures.co2sensorapi.exception;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -9,20 +13,35 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 @ControllerAdvice
 public class CustomApiExceptionHandler extends ResponseEntityExceptionHandler {
 
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public CustomApiExceptionHandler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes the serialized {@link ApiExceptionResponse}. The body is serialized once per exception instance, so
+     * preallocated exceptions are answered without any serialization.
+     */
     @ExceptionHandler(SensorApiException.class)
-    protected ResponseEntity<Object> handleSensorApiException(SensorApiException exception) {
-        return new ResponseEntity<>(
-                new ApiExceptionResponse(exception.getStatus(), exception.getMessage()),
-                exception.getStatus()
-        );
+    protected ResponseEntity<Object> handleSensorApiException(SensorApiException exception) throws JsonProcessingException {
+        byte[] responseBody = exception.cachedResponseBody;
+        if (responseBody == null) {
+            responseBody = objectMapper.writeValueAsBytes(new ApiExceptionResponse(exception.getStatus(), exception.getMessage()));
+            exception.cachedResponseBody = responseBody;
+        }
+        return ResponseEntity.status(exception.getStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(responseBody);
     }
 
     /**
      * The response to the consumer if tthere is unhandled {@link SensorApiException}.
      */
     public static class ApiExceptionResponse {
-        private String status;
-        private String message;
+        private final String status;
+        private final String message;
 
         public ApiExceptionResponse(HttpStatus status, String message) {
             this.status = status.getReasonPhrase();
@@ -33,16 +52,8 @@ public class CustomApiExceptionHandler extends ResponseEntityExceptionHandler {
             return status;
         }
 
-        public void setStatus(String status) {
-            this.status = status;
-        }
-
         public String getMessage() {
             return message;
         }
-
-        public void setMessage(String message) {
-            this.message = message;
-        }
     }
 }
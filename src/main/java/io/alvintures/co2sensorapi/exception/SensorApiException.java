@@ -2,12 +2,23 @@ package io.alvintures.co2sensorapi.exception;
 
 import org.springframework.http.HttpStatus;
 
+/**
+ * An error reported to the consumer of the API with the given HTTP status.
+ * <p>
+ * These are expected rejections (e.g. a reading in the same minute), so no stack trace is captured. Exceptions with
+ * a fixed message can be preallocated and thrown repeatedly; their response body is then serialized only once.
+ */
 public class SensorApiException extends RuntimeException {
 
     private final HttpStatus status;
 
+    /**
+     * The serialized response body, set by {@link CustomApiExceptionHandler} the first time it handles this instance.
+     */
+    volatile byte[] cachedResponseBody;
+
     public SensorApiException(HttpStatus status, String message) {
-        super(message);
+        super(message, null, false, false);
         this.status = status;
     }
 
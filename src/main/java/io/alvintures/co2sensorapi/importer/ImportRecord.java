@@ -0,0 +1,34 @@
+package io.alvintures.co2sensorapi.importer;
+
+/**
+ * One line of an NDJSON import file, e.g. {@code {"sensorUuid":"...","time":"2020-07-13T12:55:19+00:00","co2":1200}}.
+ */
+public class ImportRecord {
+    private String sensorUuid;
+    private String time;
+    private Long co2;
+
+    public String getSensorUuid() {
+        return sensorUuid;
+    }
+
+    public void setSensorUuid(String sensorUuid) {
+        this.sensorUuid = sensorUuid;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    public void setTime(String time) {
+        this.time = time;
+    }
+
+    public Long getCo2() {
+        return co2;
+    }
+
+    public void setCo2(Long co2) {
+        this.co2 = co2;
+    }
+}
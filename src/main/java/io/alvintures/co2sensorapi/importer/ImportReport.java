@@ -0,0 +1,66 @@
+package io.alvintures.co2sensorapi.importer;
+
+/**
+ * Summary of a finished import.
+ */
+public class ImportReport {
+    private final long rowCount;
+    private final long skippedRowCount;
+    private final long duplicateRowCount;
+    private final long archivedRowCount;
+    private final int sensorCount;
+    private final long changedAlertFlagCount;
+    private final long durationMillis;
+    private final long rowsPerSecond;
+
+    public ImportReport(long rowCount, long skippedRowCount, long duplicateRowCount, long archivedRowCount,
+                        int sensorCount, long changedAlertFlagCount, long durationMillis, long rowsPerSecond) {
+        this.rowCount = rowCount;
+        this.skippedRowCount = skippedRowCount;
+        this.duplicateRowCount = duplicateRowCount;
+        this.archivedRowCount = archivedRowCount;
+        this.sensorCount = sensorCount;
+        this.changedAlertFlagCount = changedAlertFlagCount;
+        this.durationMillis = durationMillis;
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getSkippedRowCount() {
+        return skippedRowCount;
+    }
+
+    /**
+     * The rows not inserted because their sensor already had a reading in the same minute.
+     */
+    public long getDuplicateRowCount() {
+        return duplicateRowCount;
+    }
+
+    /**
+     * The rows not inserted because they are not newer than the archived readings of their sensor: the reads would
+     * ignore them, and the archive segments are never rewritten.
+     */
+    public long getArchivedRowCount() {
+        return archivedRowCount;
+    }
+
+    public int getSensorCount() {
+        return sensorCount;
+    }
+
+    public long getChangedAlertFlagCount() {
+        return changedAlertFlagCount;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+}
@@ -0,0 +1,28 @@
+package io.alvintures.co2sensorapi.importer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * Runs {@link MeasurementImporter} on start-up when {@code app.import.file} is set.
+ */
+@Component
+@ConditionalOnProperty(name = "app.import.file")
+public class MeasurementImportRunner implements CommandLineRunner {
+
+    @Value("${app.import.file}")
+    private String importFile;
+
+    @Autowired
+    private MeasurementImporter measurementImporter;
+
+    @Override
+    public void run(String... args) throws Exception {
+        measurementImporter.importFile(Paths.get(importFile));
+    }
+}
@@ -0,0 +1,381 @@
+package io.alvintures.co2sensorapi.importer;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.alvintures.co2sensorapi.archive.ArchiveSegment;
+import io.alvintures.co2sensorapi.archive.ArchiveStore;
+import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.dto.AlertEpisode;
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.dto.Sensor;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.dto.SketchBin;
+import io.alvintures.co2sensorapi.service.LocationService;
+import io.alvintures.co2sensorapi.service.SensorLocks;
+import io.alvintures.co2sensorapi.service.SensorReadingFold;
+import io.alvintures.co2sensorapi.service.SensorStatusRegistry;
+import io.alvintures.co2sensorapi.state.SensorStateStore;
+import io.alvintures.co2sensorapi.util.DDSketch;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bulk loads historical readings, e.g. when onboarding a site, without going through
+ * {@link io.alvintures.co2sensorapi.service.SensorService#storeMeasurement} for every row.
+ * <p>
+ * Rows are streamed from a CSV ({@code sensor_uuid,time,co2}) or NDJSON ({@code {"sensorUuid", "time", "co2"}})
+ * file and inserted in batches, skipping the rows of a minute the sensor already has a reading in, so importing a
+ * file twice does not duplicate its readings. Afterwards the alert flags, the alert episodes, the final status and
+ * the CO2 sketches of every imported sensor are recomputed in a single ordered pass over its measurements, which also
+ * leaves the in-memory state of the sensor in the {@link SensorStateStore}. The imported readings and status changes
+ * are added to the aggregates of the locations of their sensors, like ingested ones.
+ */
+@Service
+public class MeasurementImporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeasurementImporter.class);
+
+    private static final String CSV_HEADER_FIRST_COLUMN = "sensor_uuid";
+
+    @Value("${app.sensor.threshold:2000}")
+    private long co2LevelThreshold;
+
+    @Value("${app.sensor.alert.trigger.count:3}")
+    private int co2AlertTriggerCount;
+
+    @Value("${app.import.batch-size:1000}")
+    private int batchSize;
+
+    @Autowired
+    private SensorDao sensorDao;
+
+    @Autowired
+    private ArchiveStore archiveStore;
+
+    @Autowired
+    private SensorStatusRegistry sensorStatusRegistry;
+
+    @Autowired
+    private SensorStateStore sensorStateStore;
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private SensorLocks sensorLocks;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public ImportReport importFile(final Path file) throws IOException {
+        final long start = System.nanoTime();
+        final BatchWriter writer = new BatchWriter();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (file.getFileName().toString().endsWith(".ndjson")) {
+                readNdjson(reader, writer);
+            } else {
+                readCsv(reader, writer);
+            }
+        }
+        writer.flush();
+        final long loadedNanos = System.nanoTime() - start;
+        LOGGER.info("Loaded {} rows for {} sensors in {} ms ({} rows/s), {} rows skipped, {} duplicates, {} archived",
+                writer.rowCount, writer.sensorUuids.size(), loadedNanos / 1_000_000,
+                rowsPerSecond(writer.rowCount, loadedNanos), writer.skippedRowCount, writer.duplicateRowCount,
+                writer.archivedRowCount);
+
+        long changedAlertFlags = 0;
+        for (String sensorUuid : writer.sensorUuids) {
+            changedAlertFlags += recomputeSensor(sensorUuid);
+        }
+
+        final long totalNanos = System.nanoTime() - start;
+        final ImportReport report = new ImportReport(writer.rowCount, writer.skippedRowCount, writer.duplicateRowCount,
+                writer.archivedRowCount, writer.sensorUuids.size(), changedAlertFlags, totalNanos / 1_000_000,
+                rowsPerSecond(writer.rowCount, totalNanos));
+        LOGGER.info("Imported {} rows in {} ms ({} rows/s), {} alert flags set",
+                report.getRowCount(), report.getDurationMillis(), report.getRowsPerSecond(), changedAlertFlags);
+        return report;
+    }
+
+    private void readCsv(final BufferedReader reader, final BatchWriter writer) {
+        reader.lines().forEach(line -> {
+            final String[] columns = line.split(",");
+            if (columns.length == 3 && !CSV_HEADER_FIRST_COLUMN.equals(columns[0].trim())) {
+                writer.add(columns[0].trim(), columns[1].trim(), columns[2].trim());
+            } else if (!line.trim().isEmpty() && !CSV_HEADER_FIRST_COLUMN.equals(columns[0].trim())) {
+                writer.skip(line);
+            }
+        });
+    }
+
+    private void readNdjson(final BufferedReader reader, final BatchWriter writer) throws IOException {
+        try (MappingIterator<ImportRecord> records = objectMapper.readerFor(ImportRecord.class).readValues(reader)) {
+            while (records.hasNext()) {
+                final ImportRecord record = records.next();
+                writer.add(record.getSensorUuid(), record.getTime(), String.valueOf(record.getCo2()));
+            }
+        }
+    }
+
+    /**
+     * Replays the status rules over all the measurements of the sensor, oldest first, and stores the alert flags
+     * that changed, the rebuilt alert episodes, the final status and the rebuilt CO2 sketches in one transaction.
+     * Returns the number of changed alert flags. Only the live readings are replayed, from the state the archived
+     * ones left the sensor in (see {@link #resumeFromArchive}); archived ones are left as they are. A status change is
+     * added to the status counts of the location of the sensor, whose {@link SensorLocks} is held meanwhile.
+     */
+    private long recomputeSensor(final String sensorUuid) {
+        return sensorLocks.withLocks(Collections.singletonList(sensorUuid), () -> recomputeLockedSensor(sensorUuid));
+    }
+
+    private long recomputeLockedSensor(final String sensorUuid) {
+        if (sensorStateStore.isEnabled()) {
+            sensorStateStore.markPending(Collections.singletonList(sensorUuid));
+        }
+        final TreeMap<Long, DDSketch> sketchByHour = new TreeMap<>();
+
+        // Only the rows whose flag changed are kept, which is a small fraction of the history.
+        final List<Measurement> changedFlags = new ArrayList<>();
+        final List<AlertEpisode> episodes = new ArrayList<>();
+        final SensorReadingFold fold = resumeFromArchive(sensorUuid, episodes);
+        final long[] firstTime = {Long.MAX_VALUE};
+        boolean recomputed = false;
+        try {
+            // One transaction, so a failure leaves the flags, sketches, episodes and status of the sensor as they were.
+            transactionTemplate.execute(transaction -> {
+                sensorDao.forEachMeasurement(sensorUuid, measurement -> {
+                    firstTime[0] = Math.min(firstTime[0], measurement.getTime());
+                    final SensorStatus previousStatus = fold.getStatus();
+                    final boolean isAlert = fold.accept(measurement.getTime(), measurement.getCo2Level());
+                    if (isAlert != measurement.isAlert()) {
+                        measurement.setAlert(isAlert);
+                        changedFlags.add(measurement);
+                    }
+                    addToAlertEpisodes(episodes, previousStatus, fold.getStatus(), measurement);
+                    sketchByHour.computeIfAbsent(SensorDao.toSketchBucket(measurement.getTime()),
+                            hour -> DDSketch.forCo2()).add(measurement.getCo2Level());
+                });
+                if (!changedFlags.isEmpty()) {
+                    sensorDao.updateAlertFlags(changedFlags);
+                }
+
+                if (!sketchByHour.isEmpty()) {
+                    final List<SketchBin> sketchBins = new ArrayList<>();
+                    sketchByHour.forEach((hour, sketch) -> sketch.getCountByBin()
+                            .forEach((bin, binCount) -> sketchBins.add(new SketchBin(hour, bin, binCount))));
+                    // From midnight, since the hours of that day may have been rolled up into its first hour.
+                    sensorDao.replaceSketches(sensorUuid, sketchByHour.firstKey() / 1_000_000 * 1_000_000, sketchBins);
+                }
+                if (firstTime[0] != Long.MAX_VALUE) {
+                    // Episodes before the first live reading were recorded from the archived readings and are kept,
+                    // but the one still open then, which is rebuilt with the live readings continuing it.
+                    final long fromTime = !episodes.isEmpty() && episodes.get(0).getStartTime() < firstTime[0]
+                            ? episodes.get(0).getStartTime() : firstTime[0];
+                    sensorDao.replaceAlertEpisodes(sensorUuid, fromTime, episodes);
+                }
+
+                final Optional<Sensor> existingSensor = sensorDao.getSensor(sensorUuid);
+                final Sensor sensor = new Sensor();
+                sensor.setUuid(sensorUuid);
+                sensor.setStatus(fold.getStatus());
+                if (!existingSensor.isPresent()) {
+                    sensorDao.createSensor(sensor);
+                } else if (existingSensor.get().getStatus() != fold.getStatus()) {
+                    sensorDao.updateSensorStatus(sensorUuid, fold.getStatus());
+                } else {
+                    return null;
+                }
+                locationService.addToAggregates(Collections.emptyList(), Collections.singletonList(sensor),
+                        Collections.singletonMap(sensorUuid, existingSensor.map(Sensor::getStatus).orElse(null)));
+                return null;
+            });
+            recomputed = true;
+        } finally {
+            if (sensorStateStore.isEnabled()) {
+                // Ended whether the recomputation succeeded or not, like a rolled back ingest batch.
+                sensorStateStore.install(Collections.singletonList(sensorUuid),
+                        recomputed ? Collections.singletonMap(sensorUuid, fold) : Collections.emptyMap());
+            }
+        }
+        sensorStatusRegistry.put(sensorUuid, fold.getStatus());
+        return changedFlags.size();
+    }
+
+    /**
+     * Returns the state the archived readings left the sensor in, to replay its live readings from. If it was in
+     * ALERT then, the episode still open is added to the episodes, with the peak and count of its archived readings
+     * only, so that the live readings extend or close it instead of opening a second one.
+     * <p>
+     * The counters come from the readings of the last archived segment, the status from the episodes, which are kept
+     * when readings are archived.
+     */
+    private SensorReadingFold resumeFromArchive(final String sensorUuid, final List<AlertEpisode> episodes) {
+        final SensorReadingFold archivedFold = new SensorReadingFold(co2LevelThreshold, co2AlertTriggerCount);
+        final long archivedUntil = archiveStore.archivedUntil(sensorUuid);
+        if (archivedUntil == 0) {
+            return archivedFold;
+        }
+        archiveStore.read(archiveStore.getSegmentsMostRecentFirst(sensorUuid).get(0))
+                .forEach(measurement -> archivedFold.accept(measurement.getTime(), measurement.getCo2Level()));
+
+        final List<AlertEpisode> openEpisodes =
+                sensorDao.getAlertEpisodes(sensorUuid, archivedUntil + 1, archivedUntil, 1);
+        if (openEpisodes.isEmpty()) {
+            return archivedFold;
+        }
+        final AlertEpisode openEpisode = openEpisodes.get(0);
+        openEpisode.setEndTime(null);
+        openEpisode.setPeakCo2Level(0L);
+        openEpisode.setReadingCount(0);
+        for (ArchiveSegment segment : archiveStore.getSegments(sensorUuid, openEpisode.getStartTime(), archivedUntil)) {
+            for (Measurement measurement : archiveStore.read(segment)) {
+                if (measurement.getTime() >= openEpisode.getStartTime()) {
+                    openEpisode.setPeakCo2Level(Math.max(openEpisode.getPeakCo2Level(), measurement.getCo2Level()));
+                    openEpisode.setReadingCount(openEpisode.getReadingCount() + 1);
+                }
+            }
+        }
+        episodes.add(openEpisode);
+        return new SensorReadingFold(co2LevelThreshold, co2AlertTriggerCount, SensorStatus.ALERT,
+                archivedFold.getConsecutiveAboveThreshold(), archivedFold.getConsecutiveAtOrBelowThreshold(),
+                archivedFold.getReadingCount(), archivedFold.getLastTime());
+    }
+
+    /**
+     * Opens, extends or closes the last alert episode, from the status of the sensor before and after the reading.
+     */
+    private static void addToAlertEpisodes(final List<AlertEpisode> episodes, final SensorStatus previousStatus,
+                                           final SensorStatus status, final Measurement measurement) {
+        if (status == SensorStatus.ALERT && previousStatus != SensorStatus.ALERT) {
+            final AlertEpisode episode = new AlertEpisode();
+            episode.setSensorUuid(measurement.getSensorUUID());
+            episode.setStartTime(measurement.getTime());
+            episode.setPeakCo2Level(measurement.getCo2Level());
+            episode.setReadingCount(1);
+            episodes.add(episode);
+        } else if (status == SensorStatus.ALERT) {
+            final AlertEpisode episode = episodes.get(episodes.size() - 1);
+            episode.setPeakCo2Level(Math.max(episode.getPeakCo2Level(), measurement.getCo2Level()));
+            episode.setReadingCount(episode.getReadingCount() + 1);
+        } else if (previousStatus == SensorStatus.ALERT) {
+            episodes.get(episodes.size() - 1).setEndTime(measurement.getTime());
+        }
+    }
+
+    private static long rowsPerSecond(final long rows, final long nanos) {
+        return nanos == 0 ? rows : rows * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Collects parsed rows and inserts them once a batch is full.
+     */
+    private class BatchWriter {
+        private final List<Measurement> batch = new ArrayList<>(batchSize);
+        private final Set<String> sensorUuids = new LinkedHashSet<>();
+        private long rowCount;
+        private long skippedRowCount;
+        private long duplicateRowCount;
+        private long archivedRowCount;
+
+        void add(final String sensorUuid, final String time, final String co2) {
+            if (sensorUuid == null || sensorUuid.isEmpty()) {
+                skip(sensorUuid + "," + time + "," + co2);
+                return;
+            }
+
+            final Measurement measurement = new Measurement();
+            try {
+                measurement.setSensorUUID(sensorUuid);
+                measurement.setTime(TimestampUtil.toUtcTimestamp(ZonedDateTime.parse(time)));
+                measurement.setCo2Level(Long.parseLong(co2));
+            } catch (RuntimeException ex) {
+                skip(sensorUuid + "," + time + "," + co2);
+                return;
+            }
+
+            rowCount++;
+            if (measurement.getTime() <= archiveStore.archivedUntil(sensorUuid)) {
+                if (archivedRowCount++ < 10) {
+                    LOGGER.warn("Skipping a row in the archived period of its sensor: {},{},{}", sensorUuid, time, co2);
+                }
+                return;
+            }
+
+            batch.add(measurement);
+            sensorUuids.add(sensorUuid);
+            if (batch.size() >= batchSize) {
+                flush();
+                if (rowCount % (batchSize * 100L) == 0) {
+                    LOGGER.info("Loaded {} rows", rowCount);
+                }
+            }
+        }
+
+        void skip(final String row) {
+            if (skippedRowCount++ < 10) {
+                LOGGER.warn("Skipping invalid row: {}", row);
+            }
+        }
+
+        /**
+         * Inserts the batch, and adds the rows inserted to the daily totals of the locations of their sensors in the
+         * same transaction. The rows are checked against the archived period again holding the {@link SensorLocks}
+         * of their sensors, since a segment may have been archived after they were read.
+         */
+        void flush() {
+            if (!batch.isEmpty()) {
+                final Set<String> batchSensorUuids = new LinkedHashSet<>();
+                batch.forEach(measurement -> batchSensorUuids.add(measurement.getSensorUUID()));
+                final int batchRowCount = batch.size();
+                final List<Measurement> inserted = sensorLocks.withLocks(batchSensorUuids, () -> {
+                    batch.removeIf(measurement ->
+                            measurement.getTime() <= archiveStore.archivedUntil(measurement.getSensorUUID()));
+                    if (batch.isEmpty()) {
+                        return Collections.<Measurement>emptyList();
+                    }
+                    return transactionTemplate.execute(transaction -> {
+                        final List<Measurement> insertedRows = sensorDao.createMeasurementsOfNewMinutes(batch);
+                        locationService.addToAggregates(insertedRows, Collections.emptyList(), Collections.emptyMap());
+                        return insertedRows;
+                    });
+                });
+                archivedRowCount += batchRowCount - batch.size();
+                duplicateRowCount += batch.size() - inserted.size();
+                batch.clear();
+            }
+        }
+    }
+}
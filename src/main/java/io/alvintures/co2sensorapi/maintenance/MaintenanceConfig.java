@@ -0,0 +1,11 @@
+package io.alvintures.co2sensorapi.maintenance;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(value = "app.maintenance.enabled", havingValue = "true")
+public class MaintenanceConfig {
+}
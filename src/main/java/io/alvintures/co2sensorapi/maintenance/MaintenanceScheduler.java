@@ -0,0 +1,211 @@
+package io.alvintures.co2sensorapi.maintenance;
+
+import io.alvintures.co2sensorapi.archive.ArchiveStore;
+import io.alvintures.co2sensorapi.dao.LocationDao;
+import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.service.SensorService;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the database in shape, every night by default ({@code app.maintenance.cron}):
+ * <ol>
+ *     <li>retention: deletes the readings, sketches, closed alert episodes, location daily totals and archive
+ *     segments older than {@code app.maintenance.retention-days}, if set</li>
+ *     <li>sketch rollup: merges the hourly CO2 sketches older than {@code app.maintenance.sketch-rollup-after-days}
+ *     into one per day, which metrics over whole days read just as well</li>
+ *     <li>statistics: refreshes the statistics of the query planner, vacuuming the tables on PostgreSQL, see
+ *     {@link io.alvintures.co2sensorapi.dao.dialect.SqlDialect#analyze}</li>
+ * </ol>
+ * Deletes and rollups are done in small batches, each in its own short transaction, and pause in between for as
+ * long as more than {@code app.maintenance.max-ingest-per-second} measurements are being stored. Each job is timed
+ * in {@code sensor.maintenance.duration} and the rows it removed are counted in {@code sensor.maintenance.rows},
+ * both tagged with the job name.
+ * <p>
+ * The jobs run on the scheduler thread shared with the archiver, so they never run at the same time as it.
+ */
+@Component
+@ConditionalOnProperty(value = "app.maintenance.enabled", havingValue = "true")
+public class MaintenanceScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaintenanceScheduler.class);
+
+    private static final String DURATION_METRIC = "sensor.maintenance.duration";
+    private static final String ROWS_METRIC = "sensor.maintenance.rows";
+
+    /**
+     * A batch runs after this long even if ingest stays busy, so the jobs still finish under sustained load.
+     */
+    private static final long MAX_PAUSE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @Value("${app.maintenance.retention-days:0}")
+    private int retentionDays;
+
+    @Value("${app.maintenance.sketch-rollup-after-days:7}")
+    private int sketchRollupAfterDays;
+
+    @Value("${app.maintenance.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${app.maintenance.batch-pause-millis:20}")
+    private long batchPauseMillis;
+
+    @Value("${app.maintenance.max-ingest-per-second:200}")
+    private double maxIngestPerSecond;
+
+    @Autowired
+    private SensorDao sensorDao;
+
+    @Autowired
+    private LocationDao locationDao;
+
+    @Autowired
+    private ArchiveStore archiveStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Counter measurementsStored;
+    private double lastMeasurementCount;
+    private long lastMeasurementNanos;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        measurementsStored = meterRegistry.counter(SensorService.MEASUREMENTS_STORED_METRIC);
+        lastMeasurementCount = measurementsStored.count();
+        lastMeasurementNanos = System.nanoTime();
+    }
+
+    @Scheduled(cron = "${app.maintenance.cron:0 0 3 * * *}", zone = "UTC")
+    public void runMaintenance() {
+        final ZonedDateTime today = ZonedDateTime.now(ZoneOffset.UTC).toLocalDate().atStartOfDay(ZoneOffset.UTC);
+        if (retentionDays > 0) {
+            runJob("retention", () -> deleteExpired(TimestampUtil.toUtcTimestamp(today.minusDays(retentionDays))));
+        }
+        runJob("sketch-rollup", () -> rollUpSketches(TimestampUtil.toUtcTimestamp(today.minusDays(sketchRollupAfterDays))));
+        runJob("analyze", () -> {
+            sensorDao.analyze();
+            return 0L;
+        });
+    }
+
+    private void runJob(final String job, final LongSupplier task) {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        long rowCount = 0;
+        try {
+            rowCount = task.getAsLong();
+        } catch (RuntimeException ex) {
+            LOGGER.error("Maintenance job {} failed, retrying on the next run", job, ex);
+        }
+        final long durationNanos = sample.stop(meterRegistry.timer(DURATION_METRIC, "job", job));
+        meterRegistry.counter(ROWS_METRIC, "job", job).increment(rowCount);
+        LOGGER.info("Maintenance job {} removed {} rows in {} ms", job, rowCount, durationNanos / 1_000_000);
+    }
+
+    /**
+     * Deletes everything older than the cutoff, which is a midnight like the archive cutoff, so a day is never
+     * partly kept. On TimescaleDB the readings of whole days go with their chunks first.
+     */
+    private long deleteExpired(final long cutoff) {
+        long deletedCount = 0;
+        sensorDao.dropMeasurementPartitionsBefore(cutoff);
+        for (String sensorUuid : sensorDao.getSensorUuidsWithMeasurementsBefore(cutoff)) {
+            int deleted;
+            do {
+                pauseForIngest();
+                deleted = sensorDao.deleteMeasurementsBefore(sensorUuid, cutoff, batchSize);
+                deletedCount += deleted;
+            } while (deleted == batchSize);
+        }
+
+        deletedCount += deleteInBatches(() -> sensorDao.deleteSketchesBefore(cutoff, batchSize));
+        deletedCount += deleteInBatches(() -> sensorDao.deleteAlertEpisodesEndedBefore(cutoff, batchSize));
+        deletedCount += deleteInBatches(() -> locationDao.deleteDailyTotalsBefore(cutoff, batchSize));
+
+        try {
+            return deletedCount + archiveStore.deleteSegmentsBefore(cutoff);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Runs the batch delete until it deletes less than a batch, and returns the number of rows deleted.
+     */
+    private long deleteInBatches(final IntSupplier deleteBatch) {
+        long deletedCount = 0;
+        int deleted;
+        do {
+            pauseForIngest();
+            deleted = deleteBatch.getAsInt();
+            deletedCount += deleted;
+        } while (deleted == batchSize);
+        return deletedCount;
+    }
+
+    private long rollUpSketches(final long before) {
+        long deletedCount = 0;
+        for (Long dayStart : sensorDao.getDaysWithHourlySketchesBefore(before)) {
+            for (String sensorUuid : sensorDao.getSensorUuidsWithHourlySketches(dayStart)) {
+                pauseForIngest();
+                deletedCount += transactionTemplate.execute(transaction -> sensorDao.rollUpSketchesOfDay(sensorUuid, dayStart));
+            }
+        }
+        return deletedCount;
+    }
+
+    /**
+     * Pauses before the next batch, and keeps pausing while ingest is busy, so maintenance never holds locks or
+     * connections ingest is waiting for for long.
+     */
+    private void pauseForIngest() {
+        long pausedMillis = 0;
+        do {
+            try {
+                Thread.sleep(batchPauseMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pausedMillis += batchPauseMillis;
+        } while (currentIngestRate() > maxIngestPerSecond && pausedMillis < MAX_PAUSE_MILLIS);
+    }
+
+    /**
+     * Returns the measurements stored per second since the previous call.
+     */
+    private double currentIngestRate() {
+        final double measurementCount = measurementsStored.count();
+        final long now = System.nanoTime();
+        final double rate = (measurementCount - lastMeasurementCount) * 1e9 / Math.max(1, now - lastMeasurementNanos);
+        lastMeasurementCount = measurementCount;
+        lastMeasurementNanos = now;
+        return rate;
+    }
+}
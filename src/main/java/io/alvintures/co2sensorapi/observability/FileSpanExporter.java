@@ -0,0 +1,79 @@
+package io.alvintures.co2sensorapi.observability;
+
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Appends the spans to a file, one JSON object per line:
+ * {@code {"traceId":"...","spanId":"...","parentSpanId":"...","name":"SensorDao.createMeasurements",
+ * "startEpochMicros":1594644919000000,"durationMicros":250,"error":false}}.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private final BufferedWriter writer;
+
+    public FileSpanExporter(final Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(final Collection<SpanData> spans) {
+        try {
+            for (SpanData span : spans) {
+                writer.write(toJson(span));
+                writer.newLine();
+            }
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to write {} spans", spans.size(), ex);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        try {
+            writer.close();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException ex) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    /**
+     * Span names are class and method names, so they need no escaping.
+     */
+    static String toJson(final SpanData span) {
+        return "{\"traceId\":\"" + span.getTraceId()
+                + "\",\"spanId\":\"" + span.getSpanId()
+                + "\",\"parentSpanId\":\"" + span.getParentSpanId()
+                + "\",\"name\":\"" + span.getName()
+                + "\",\"startEpochMicros\":" + span.getStartEpochNanos() / 1_000
+                + ",\"durationMicros\":" + (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000
+                + ",\"error\":" + (span.getStatus().getStatusCode() == StatusCode.ERROR)
+                + "}";
+    }
+}
@@ -0,0 +1,96 @@
+package io.alvintures.co2sensorapi.observability;
+
+import io.alvintures.co2sensorapi.exception.SensorApiException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Admin endpoints to record the JVM with Java Flight Recorder while a latency spike is going on, then download the
+ * recording to open it in JDK Mission Control. At most one recording runs at a time, and it stops on its own after
+ * maxDurationSeconds if it is never stopped.
+ * <p>
+ * Only enabled with {@code app.admin.jfr.enabled=true}. JFR costs nothing until a recording is started.
+ */
+@RestController
+@ConditionalOnProperty(value = "app.admin.jfr.enabled", havingValue = "true")
+public class JfrRecordingController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrRecordingController.class);
+
+    private Recording recording;
+
+    @Operation(description = "Starts a JFR recording with the default (about 1% overhead) or profile (about 2%) settings.")
+    @PostMapping("/admin/jfr/start")
+    public synchronized void startRecording(
+            @Parameter(description = "JFR settings: default or profile") @RequestParam(defaultValue = "profile") String settings,
+            @Parameter(description = "The recording stops on its own after this many seconds") @RequestParam(defaultValue = "600") int maxDurationSeconds) {
+        if (!"default".equals(settings) && !"profile".equals(settings)) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "settings should be default or profile.");
+        }
+        if (recording != null) {
+            throw new SensorApiException(HttpStatus.CONFLICT, "A recording is already started.");
+        }
+        try {
+            final Recording newRecording = new Recording(Configuration.getConfiguration(settings));
+            newRecording.setName("co2-sensor-api");
+            newRecording.setDuration(Duration.ofSeconds(maxDurationSeconds));
+            newRecording.setToDisk(true);
+            newRecording.start();
+            recording = newRecording;
+        } catch (IOException | ParseException ex) {
+            throw new IllegalStateException("Failed to read the JFR " + settings + " settings", ex);
+        }
+        LOGGER.info("Started a JFR recording with the {} settings for at most {} s", settings, maxDurationSeconds);
+    }
+
+    @Operation(description = "Stops the JFR recording and returns it as a .jfr file.")
+    @PostMapping("/admin/jfr/stop")
+    public synchronized ResponseEntity<StreamingResponseBody> stopRecording() throws IOException {
+        if (recording == null) {
+            throw new SensorApiException(HttpStatus.CONFLICT, "No recording is started.");
+        }
+        final Path file = Files.createTempFile("co2-sensor-api-", ".jfr");
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            recording.dump(file);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        LOGGER.info("Stopped the JFR recording, {} bytes", Files.size(file));
+
+        final StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+}
@@ -0,0 +1,40 @@
+package io.alvintures.co2sensorapi.observability;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Wraps every public method of the controllers, services and DAOs, and every commit, in a span named after the class
+ * and the method, e.g. {@code SensorDao.getRecentMeasurements}. Spans started inside the call are its children.
+ */
+@Aspect
+public class TracingAspect {
+
+    private final Tracer tracer;
+
+    public TracingAspect(final Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Around("within(io.alvintures.co2sensorapi.controller..*) || within(io.alvintures.co2sensorapi.service..*) "
+            + "|| within(io.alvintures.co2sensorapi.dao..*) "
+            + "|| execution(* org.springframework.transaction.PlatformTransactionManager.commit(..))")
+    public Object trace(final ProceedingJoinPoint joinPoint) throws Throwable {
+        final Span span = tracer.spanBuilder(
+                joinPoint.getTarget().getClass().getSimpleName() + "." + joinPoint.getSignature().getName()).startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return joinPoint.proceed();
+        } catch (Throwable ex) {
+            span.setStatus(StatusCode.ERROR);
+            span.recordException(ex);
+            throw ex;
+        } finally {
+            span.end();
+        }
+    }
+}
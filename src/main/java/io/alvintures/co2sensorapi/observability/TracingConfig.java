@@ -0,0 +1,57 @@
+package io.alvintures.co2sensorapi.observability;
+
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.TracerProvider;
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Tracing spans around the controllers, the services, the DAOs and the commits, exported to the logs or to a file
+ * of one JSON span per line ({@code app.tracing.exporter=log|file}).
+ * <p>
+ * Only enabled with {@code app.tracing.enabled=true}. Otherwise there is no aspect, so no bean is proxied, and the
+ * few spans started in the code go to a no-op {@link Tracer}.
+ */
+@Configuration
+public class TracingConfig {
+
+    private static final String INSTRUMENTATION_NAME = "io.alvintures.co2sensorapi";
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(value = "app.tracing.enabled", havingValue = "true")
+    public SdkTracerProvider sdkTracerProvider(@Value("${app.tracing.exporter:log}") String exporter,
+                                               @Value("${app.tracing.file:traces/spans.jsonl}") String file)
+            throws IOException {
+        final SpanExporter spanExporter = "file".equalsIgnoreCase(exporter)
+                ? new FileSpanExporter(Paths.get(file))
+                : new LoggingSpanExporter();
+        // Spans are exported in the background, never on the request thread.
+        return SdkTracerProvider.builder()
+                .addSpanProcessor(BatchSpanProcessor.builder(spanExporter).build())
+                .build();
+    }
+
+    @Bean
+    public Tracer tracer(ObjectProvider<SdkTracerProvider> sdkTracerProvider) {
+        final SdkTracerProvider tracerProvider = sdkTracerProvider.getIfAvailable();
+        return tracerProvider != null
+                ? tracerProvider.get(INSTRUMENTATION_NAME)
+                : TracerProvider.noop().get(INSTRUMENTATION_NAME);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "app.tracing.enabled", havingValue = "true")
+    public TracingAspect tracingAspect(Tracer tracer) {
+        return new TracingAspect(tracer);
+    }
+}
@@ -0,0 +1,146 @@
+package io.alvintures.co2sensorapi.ratelimit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.alvintures.co2sensorapi.cluster.SensorOwnershipInterceptor;
+import io.alvintures.co2sensorapi.exception.SensorApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control in front of the API, answering 429 instead of queueing on Tomcat threads and JDBC connections:
+ * <ul>
+ *     <li>a {@link TokenBucket} per sensor on ingest requests, so one flooding sensor cannot starve the others</li>
+ *     <li>a {@link TokenBucket} per client (the {@code app.rate-limit.client.header} header, or the remote address)</li>
+ *     <li>a cap on the requests in progress, kept a bit above the JDBC pool size so requests are shed before they
+ *     queue for a connection</li>
+ * </ul>
+ * Rejections are counted in the {@code sensor.api.throttled} counter, tagged with the limit that was hit. Only enabled
+ * with {@code app.rate-limit.enabled=true}.
+ */
+@Component
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".permit";
+
+    private static final SensorApiException SENSOR_RATE_EXCEEDED =
+            new SensorApiException(HttpStatus.TOO_MANY_REQUESTS, "Too many measurements sent by this sensor.");
+    private static final SensorApiException CLIENT_RATE_EXCEEDED =
+            new SensorApiException(HttpStatus.TOO_MANY_REQUESTS, "Too many requests sent by this client.");
+    private static final SensorApiException OVERLOADED =
+            new SensorApiException(HttpStatus.TOO_MANY_REQUESTS, "The service is overloaded, retry later.");
+
+    private final boolean enabled;
+    private final double sensorPermitsPerSecond;
+    private final int sensorBurst;
+    private final double clientPermitsPerSecond;
+    private final int clientBurst;
+    private final String clientHeader;
+    private final Semaphore inProgress;
+
+    private final Cache<String, TokenBucket> sensorBuckets;
+    private final Cache<String, TokenBucket> clientBuckets;
+
+    private final Counter sensorThrottled;
+    private final Counter clientThrottled;
+    private final Counter concurrencyThrottled;
+
+    @Autowired
+    public AdmissionControlInterceptor(@Value("${app.rate-limit.enabled:false}") boolean enabled,
+                                       @Value("${app.rate-limit.sensor.permits-per-minute:6}") double sensorPermitsPerMinute,
+                                       @Value("${app.rate-limit.sensor.burst:10}") int sensorBurst,
+                                       @Value("${app.rate-limit.client.permits-per-second:0}") double clientPermitsPerSecond,
+                                       @Value("${app.rate-limit.client.burst:200}") int clientBurst,
+                                       @Value("${app.rate-limit.client.header:}") String clientHeader,
+                                       @Value("${app.rate-limit.max-concurrent-requests:32}") int maxConcurrentRequests,
+                                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.sensorPermitsPerSecond = sensorPermitsPerMinute / 60;
+        this.sensorBurst = sensorBurst;
+        this.clientPermitsPerSecond = clientPermitsPerSecond;
+        this.clientBurst = clientBurst;
+        this.clientHeader = clientHeader;
+        this.inProgress = new Semaphore(maxConcurrentRequests);
+
+        // A bucket idle for longer than it takes to refill is full again, so it can be evicted and recreated.
+        this.sensorBuckets = CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES).maximumSize(1_000_000).build();
+        this.clientBuckets = CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES).maximumSize(100_000).build();
+
+        this.sensorThrottled = meterRegistry.counter("sensor.api.throttled", "limit", "sensor");
+        this.clientThrottled = meterRegistry.counter("sensor.api.throttled", "limit", "client");
+        this.concurrencyThrottled = meterRegistry.counter("sensor.api.throttled", "limit", "concurrency");
+        Gauge.builder("sensor.api.requests.in-progress", inProgress,
+                semaphore -> maxConcurrentRequests - semaphore.availablePermits()).register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws ExecutionException {
+        if (!enabled) {
+            return true;
+        }
+
+        final String sensorUuid = ingestedSensor(request);
+        if (sensorUuid != null && !sensorBuckets.get(sensorUuid, () -> new TokenBucket(sensorPermitsPerSecond, sensorBurst)).tryAcquire()) {
+            sensorThrottled.increment();
+            throw reject(response, SENSOR_RATE_EXCEEDED);
+        }
+        if (clientPermitsPerSecond > 0
+                && !clientBuckets.get(clientOf(request), () -> new TokenBucket(clientPermitsPerSecond, clientBurst)).tryAcquire()) {
+            clientThrottled.increment();
+            throw reject(response, CLIENT_RATE_EXCEEDED);
+        }
+        if (!inProgress.tryAcquire()) {
+            concurrencyThrottled.increment();
+            throw reject(response, OVERLOADED);
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            inProgress.release();
+        }
+    }
+
+    /**
+     * Returns the sensor of an ingest request, or null for other requests and for requests already admitted by the
+     * cluster node that forwarded them. The header is only left on the requests of a node of the cluster, see
+     * {@link io.alvintures.co2sensorapi.cluster.ForwardedByHeaderFilter}.
+     */
+    @SuppressWarnings("unchecked")
+    private String ingestedSensor(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod()) || request.getHeader(SensorOwnershipInterceptor.FORWARDED_BY_HEADER) != null) {
+            return null;
+        }
+        final Map<String, String> pathVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return pathVariables == null ? null : pathVariables.get("uuid");
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        final String client = clientHeader.isEmpty() ? null : request.getHeader(clientHeader);
+        return client != null ? client : request.getRemoteAddr();
+    }
+
+    private static SensorApiException reject(HttpServletResponse response, SensorApiException exception) {
+        response.setHeader("Retry-After", "1");
+        return exception;
+    }
+}
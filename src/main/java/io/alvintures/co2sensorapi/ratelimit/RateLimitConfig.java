@@ -0,0 +1,23 @@
+package io.alvintures.co2sensorapi.ratelimit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private AdmissionControlInterceptor admissionControlInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Before the cluster routing, so requests are admitted before being forwarded.
+        registry.addInterceptor(admissionControlInterceptor)
+                .addPathPatterns("/**")
+                .excludePathPatterns("/actuator/**", "/swagger-ui/**", "/swagger-ui.html", "/v3/api-docs/**")
+                .order(Ordered.HIGHEST_PRECEDENCE);
+    }
+}
@@ -0,0 +1,51 @@
+package io.alvintures.co2sensorapi.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket, implemented as the equivalent "virtual scheduling" form: instead of a token count it
+ * keeps the time at which the bucket will be full again, and a request is admitted if taking one token does not push
+ * that time more than {@code burst} intervals ahead of now. The whole state is one {@link AtomicLong}, updated with a
+ * single compare-and-set.
+ */
+public class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAtNanos;
+
+    /**
+     * A bucket refilled with permitsPerSecond tokens per second and holding up to burst tokens, full when created.
+     */
+    public TokenBucket(final double permitsPerSecond, final int burst) {
+        this(permitsPerSecond, burst, System.nanoTime());
+    }
+
+    TokenBucket(final double permitsPerSecond, final int burst, final long nowNanos) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst should be positive.");
+        }
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = nanosPerToken * burst;
+        this.fullAtNanos = new AtomicLong(nowNanos);
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    boolean tryAcquire(final long nowNanos) {
+        while (true) {
+            final long fullAt = fullAtNanos.get();
+            // A bucket full since before now does not keep more than burst tokens.
+            final long newFullAt = Math.max(fullAt - nowNanos, 0) + nowNanos + nanosPerToken;
+            if (newFullAt - nowNanos > burstNanos) {
+                return false;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, newFullAt)) {
+                return true;
+            }
+        }
+    }
+}
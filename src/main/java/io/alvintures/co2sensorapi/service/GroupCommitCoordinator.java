@@ -0,0 +1,191 @@
+package io.alvintures.co2sensorapi.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Merges concurrent requests into batches handled in one transaction (group commit), while each caller still gets
+ * its own result.
+ * <p>
+ * There is no background thread: the first caller to find no batch in progress becomes the leader and handles the
+ * requests queued so far, the others wait for their result. Requests arriving while a batch commits are naturally
+ * queued for the next one. The leader only waits for more requests when the previous batches show concurrent
+ * traffic: the wait doubles while batches are large and drops to zero as soon as a request comes alone, so a single
+ * request at low traffic is never delayed.
+ * <p>
+ * Requests with the same key (e.g. the same sensor) are never in the same batch, so each batch can be handled as if
+ * its requests were independent; the later ones are deferred to the next batch, in order.
+ */
+public class GroupCommitCoordinator<T> {
+
+    /**
+     * Handles a batch in one transaction.
+     */
+    public interface BatchHandler<T> {
+
+        /**
+         * Returns, for each request in order, null if it succeeded or the exception rejecting it. Throws if the batch
+         * as a whole failed, in which case its requests are retried one by one.
+         */
+        List<RuntimeException> handle(List<T> batch);
+    }
+
+    private static final long MIN_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Function<T, ?> keyOf;
+    private final BatchHandler<T> batchHandler;
+
+    private final ConcurrentLinkedDeque<Entry<T>> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean leading = new AtomicBoolean();
+
+    /**
+     * Only read and written by the leader, the leadership handover publishes it.
+     */
+    private long waitNanos;
+
+    public GroupCommitCoordinator(int maxBatchSize, long maxWaitNanos, Function<T, ?> keyOf, BatchHandler<T> batchHandler) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWaitNanos;
+        this.keyOf = keyOf;
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * Handles the request within a batch and returns once it is committed, or throws the exception rejecting it.
+     */
+    public void submit(final T request) {
+        final Entry<T> entry = new Entry<>(request, Thread.currentThread());
+        queue.add(entry);
+
+        while (!entry.done) {
+            if (leading.compareAndSet(false, true)) {
+                try {
+                    if (!entry.done) {
+                        handleNextBatch();
+                    }
+                } finally {
+                    leading.set(false);
+                }
+                // Hand the leadership over to a waiting caller, if any.
+                final Entry<T> next = queue.peekFirst();
+                if (next != null) {
+                    LockSupport.unpark(next.caller);
+                }
+            } else {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+
+        if (entry.error != null) {
+            throw entry.error;
+        }
+    }
+
+    long getWaitNanos() {
+        return waitNanos;
+    }
+
+    private void handleNextBatch() {
+        if (waitNanos > 0 && queue.size() < maxBatchSize) {
+            LockSupport.parkNanos(this, waitNanos);
+        }
+
+        final List<Entry<T>> batch = new ArrayList<>();
+        final List<Entry<T>> deferred = new ArrayList<>();
+        final Set<Object> keys = new HashSet<>();
+        Entry<T> entry;
+        while (batch.size() < maxBatchSize && (entry = queue.pollFirst()) != null) {
+            if (keys.add(keyOf.apply(entry.request))) {
+                batch.add(entry);
+            } else {
+                deferred.add(entry);
+            }
+        }
+        for (int i = deferred.size() - 1; i >= 0; i--) {
+            queue.addFirst(deferred.get(i));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        handle(batch);
+        adaptWait(batch.size());
+    }
+
+    private void handle(final List<Entry<T>> batch) {
+        final List<T> requests = new ArrayList<>(batch.size());
+        batch.forEach(entry -> requests.add(entry.request));
+        try {
+            handle(batch, requests);
+        } catch (Error error) {
+            // The entries are off the queue already, their callers would wait forever.
+            for (Entry<T> entry : batch) {
+                if (!entry.done) {
+                    entry.complete(new IllegalStateException("Failed to handle the batch", error));
+                }
+            }
+            throw error;
+        }
+    }
+
+    private void handle(final List<Entry<T>> batch, final List<T> requests) {
+        try {
+            final List<RuntimeException> errors = batchHandler.handle(requests);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(errors.get(i));
+            }
+        } catch (RuntimeException batchError) {
+            if (batch.size() == 1) {
+                batch.get(0).complete(batchError);
+                return;
+            }
+            // Something outside the per-request validation failed, find out which request by handling them alone.
+            for (Entry<T> entry : batch) {
+                try {
+                    entry.complete(batchHandler.handle(Collections.singletonList(entry.request)).get(0));
+                } catch (RuntimeException error) {
+                    entry.complete(error);
+                }
+            }
+        }
+    }
+
+    private void adaptWait(final int batchSize) {
+        if (batchSize == 1) {
+            waitNanos = 0;
+        } else if (batchSize >= maxBatchSize / 2) {
+            waitNanos = Math.min(maxWaitNanos, Math.max(MIN_WAIT_NANOS, waitNanos * 2));
+        } else {
+            waitNanos = waitNanos / 2;
+        }
+    }
+
+    private static class Entry<T> {
+        private final T request;
+        private final Thread caller;
+        private volatile boolean done;
+        private RuntimeException error;
+
+        Entry(T request, Thread caller) {
+            this.request = request;
+            this.caller = caller;
+        }
+
+        void complete(final RuntimeException error) {
+            this.error = error;
+            this.done = true;
+            LockSupport.unpark(caller);
+        }
+    }
+}
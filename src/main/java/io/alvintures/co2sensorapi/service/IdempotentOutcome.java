@@ -0,0 +1,52 @@
+package io.alvintures.co2sensorapi.service;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The outcome of a reading sent to {@link SensorService#storeMeasurement(String, long, String, String)} with an
+ * idempotency key, replayed to its retries. It is pending until the first attempt finishes.
+ */
+class IdempotentOutcome {
+    private final long co2Level;
+    private final String timestamp;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    IdempotentOutcome(long co2Level, String timestamp) {
+        this.co2Level = co2Level;
+        this.timestamp = timestamp;
+    }
+
+    boolean isSameReading(long co2Level, String timestamp) {
+        return this.co2Level == co2Level && Objects.equals(this.timestamp, timestamp);
+    }
+
+    void stored() {
+        result.complete(null);
+    }
+
+    /**
+     * Ends the first attempt with the exception, or the error, it failed with.
+     */
+    void failed(Throwable error) {
+        result.completeExceptionally(error);
+    }
+
+    /**
+     * Waits for the first attempt, then returns if the reading was stored or throws the same exception or error.
+     */
+    void replay() {
+        try {
+            result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+}
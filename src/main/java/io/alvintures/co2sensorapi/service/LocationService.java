@@ -0,0 +1,182 @@
+package io.alvintures.co2sensorapi.service;
+
+import io.alvintures.co2sensorapi.dao.LocationDao;
+import io.alvintures.co2sensorapi.dto.LocationSummary;
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.dto.Sensor;
+import io.alvintures.co2sensorapi.dto.SensorLocation;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.exception.SensorApiException;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Places sensors in a site → building → room hierarchy and keeps, for every site, building and room, the number of
+ * its sensors in each status and its daily CO2 totals, so a location is summarized from a few precomputed rows
+ * instead of from the readings of all its sensors.
+ * <p>
+ * The aggregates are updated in the ingest and import transactions, once per batch and location whatever the number
+ * of readings (see {@link #addToAggregates}). The location of every sensor is kept in memory, so ingest does not look
+ * it up.
+ */
+@Service
+public class LocationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocationService.class);
+
+    private static final int MAX_NAME_LENGTH = 64;
+
+    @Autowired
+    private LocationDao locationDao;
+
+    @Autowired
+    private SensorStatusRegistry sensorStatusRegistry;
+
+    @Autowired
+    private SensorLocks sensorLocks;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<String, SensorLocation> locationBySensor = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void load() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        locationDao.forEachLocation(locationBySensor::put);
+        LOGGER.info("Loaded the location of {} sensors", locationBySensor.size());
+    }
+
+    /**
+     * Places the sensor in the given room, or moves it there, and moves its status to the counts of the new site,
+     * building and room. Readings already aggregated stay with the previous location. The {@link SensorLocks} of the
+     * sensor is held, so its status cannot change meanwhile.
+     */
+    public void assignLocation(final String sensorUuid, final SensorLocation location) {
+        validateName("site", location.getSite());
+        validateName("building", location.getBuilding());
+        validateName("room", location.getRoom());
+
+        sensorLocks.withLocks(Collections.singletonList(sensorUuid), () -> {
+            final SensorLocation previousLocation = locationBySensor.get(sensorUuid);
+            final Optional<SensorStatus> status = sensorStatusRegistry.get(sensorUuid);
+            transactionTemplate.execute(transaction -> {
+                locationDao.saveLocation(sensorUuid, location);
+                if (status.isPresent()) {
+                    final SortedMap<String, long[]> deltasByPath = new TreeMap<>();
+                    if (previousLocation != null) {
+                        addToStatusDeltas(deltasByPath, previousLocation, status.get(), -1);
+                    }
+                    addToStatusDeltas(deltasByPath, location, status.get(), 1);
+                    locationDao.addToStatusCounts(deltasByPath);
+                }
+                return null;
+            });
+            locationBySensor.put(sensorUuid, location);
+            return null;
+        });
+    }
+
+    /**
+     * Adds a batch of stored readings, and the status changes they caused, to the aggregates of the locations of
+     * their sensors. It has to be called in the transaction storing them. previousStatuses holds the status before
+     * the batch of the sensors whose status changed, null for the new ones.
+     */
+    public void addToAggregates(final List<Measurement> measurements, final List<Sensor> updatedSensors,
+                                final Map<String, SensorStatus> previousStatuses) {
+        if (locationBySensor.isEmpty()) {
+            return;
+        }
+        final SortedMap<String, SortedMap<Long, long[]>> totalsByPathAndDay = new TreeMap<>();
+        for (Measurement measurement : measurements) {
+            final SensorLocation location = locationBySensor.get(measurement.getSensorUUID());
+            if (location == null) {
+                continue;
+            }
+            final long dayStart = measurement.getTime() / 1_000_000 * 1_000_000;
+            for (String path : location.paths()) {
+                final long[] totals = totalsByPathAndDay.computeIfAbsent(path, p -> new TreeMap<>())
+                        .computeIfAbsent(dayStart, day -> new long[3]);
+                totals[0]++;
+                totals[1] += measurement.getCo2Level();
+                totals[2] = Math.max(totals[2], measurement.getCo2Level());
+            }
+        }
+
+        final SortedMap<String, long[]> deltasByPath = new TreeMap<>();
+        for (Sensor sensor : updatedSensors) {
+            final SensorLocation location = locationBySensor.get(sensor.getUuid());
+            if (location == null || !previousStatuses.containsKey(sensor.getUuid())) {
+                continue;
+            }
+            final SensorStatus previousStatus = previousStatuses.get(sensor.getUuid());
+            if (previousStatus != null) {
+                addToStatusDeltas(deltasByPath, location, previousStatus, -1);
+            }
+            addToStatusDeltas(deltasByPath, location, sensor.getStatus(), 1);
+        }
+
+        locationDao.addToStatusCounts(deltasByPath);
+        locationDao.addToDailyTotals(totalsByPathAndDay);
+    }
+
+    /**
+     * Summarizes the location with the given path ("site", "site/building" or "site/building/room"): the current
+     * number of its sensors in each status, and its readings since the start of the day periodInDays ago.
+     */
+    public LocationSummary getSummary(final String path, final int periodInDays) {
+        if (periodInDays < 0) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "periodInDays should be 0 or more.");
+        }
+        final long[] statusCounts = locationDao.getStatusCounts(path)
+                .orElseThrow(() -> new SensorApiException(HttpStatus.NOT_FOUND, "No sensors found in " + path));
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        final long fromDayStart = TimestampUtil.toUtcTimestamp(now.minusDays(periodInDays).toLocalDate().atStartOfDay(now.getZone()));
+        final long[] totals = locationDao.getTotalsSince(path, fromDayStart);
+
+        final Map<SensorStatus, Long> sensorCounts = new EnumMap<>(SensorStatus.class);
+        for (SensorStatus status : SensorStatus.values()) {
+            sensorCounts.put(status, statusCounts[status.ordinal()]);
+        }
+        final LocationSummary summary = new LocationSummary();
+        summary.setLocation(path);
+        summary.setSensorCounts(sensorCounts);
+        summary.setReadingCount(totals[0]);
+        summary.setMax(totals[0] > 0 ? totals[2] : null);
+        summary.setAverage(totals[0] > 0 ? totals[1] / totals[0] : null);
+        return summary;
+    }
+
+    private static void addToStatusDeltas(final SortedMap<String, long[]> deltasByPath, final SensorLocation location,
+                                          final SensorStatus status, final int delta) {
+        for (String path : location.paths()) {
+            deltasByPath.computeIfAbsent(path, p -> new long[SensorStatus.values().length])[status.ordinal()] += delta;
+        }
+    }
+
+    private static void validateName(final String level, final String name) {
+        if (name == null || name.trim().isEmpty() || name.length() > MAX_NAME_LENGTH || name.contains("/")) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, level + " should be 1 to " + MAX_NAME_LENGTH + " characters, without '/'.");
+        }
+    }
+}
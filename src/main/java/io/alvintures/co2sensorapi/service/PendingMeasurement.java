@@ -0,0 +1,28 @@
+package io.alvintures.co2sensorapi.service;
+
+/**
+ * A measurement sent to {@link SensorService#storeMeasurement}, waiting to be stored in the next group commit.
+ */
+class PendingMeasurement {
+    private final String sensorUuid;
+    private final long co2Level;
+    private final String timestamp;
+
+    PendingMeasurement(String sensorUuid, long co2Level, String timestamp) {
+        this.sensorUuid = sensorUuid;
+        this.co2Level = co2Level;
+        this.timestamp = timestamp;
+    }
+
+    String getSensorUuid() {
+        return sensorUuid;
+    }
+
+    long getCo2Level() {
+        return co2Level;
+    }
+
+    String getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,43 @@
+package io.alvintures.co2sensorapi.service;
+
+import com.google.common.util.concurrent.Striped;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes the changes of a sensor which derive the location aggregates from its status and location: ingest, the
+ * recomputation of an import and the assignment of a location. Without it, a location assigned while a reading
+ * changes the status of its sensor would move the status counts from a stale status.
+ * <p>
+ * Sensors share a fixed number of striped locks. Locks of many sensors are always taken in the order of their stripe,
+ * so two batches cannot deadlock.
+ */
+@Component
+public class SensorLocks {
+
+    private static final int STRIPES = 1024;
+
+    private final Striped<Lock> locks = Striped.lock(STRIPES);
+
+    /**
+     * Runs the action holding the locks of all the sensors, and returns its result.
+     */
+    public <T> T withLocks(final Iterable<String> sensorUuids, final Supplier<T> action) {
+        final List<Lock> heldLocks = new ArrayList<>();
+        try {
+            for (Lock lock : locks.bulkGet(sensorUuids)) {
+                lock.lock();
+                heldLocks.add(lock);
+            }
+            return action.get();
+        } finally {
+            for (int i = heldLocks.size() - 1; i >= 0; i--) {
+                heldLocks.get(i).unlock();
+            }
+        }
+    }
+}
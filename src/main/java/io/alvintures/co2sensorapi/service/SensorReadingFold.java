@@ -0,0 +1,132 @@
+package io.alvintures.co2sensorapi.service;
+
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+
+import java.util.List;
+
+/**
+ * Applies the same status rules as {@link SensorService#storeMeasurement} to the readings of one sensor, fed one by
+ * one in time order, without reading the recent measurements back from the database.
+ * <p>
+ * Instead of keeping the last readings it counts how many consecutive readings were above and at or below the
+ * threshold, which is all the rules need to know about the recent window.
+ */
+public class SensorReadingFold {
+
+    private final long co2LevelThreshold;
+    private final int co2AlertTriggerCount;
+
+    private SensorStatus status;
+    private int consecutiveAboveThreshold;
+    private int consecutiveAtOrBelowThreshold;
+    private long readingCount;
+    private long lastTime;
+
+    public SensorReadingFold(final long co2LevelThreshold, final int co2AlertTriggerCount) {
+        this.co2LevelThreshold = co2LevelThreshold;
+        this.co2AlertTriggerCount = co2AlertTriggerCount;
+    }
+
+    /**
+     * Resumes from a state saved with the getters, e.g. in a snapshot.
+     */
+    public SensorReadingFold(final long co2LevelThreshold, final int co2AlertTriggerCount, final SensorStatus status,
+                             final int consecutiveAboveThreshold, final int consecutiveAtOrBelowThreshold,
+                             final long readingCount, final long lastTime) {
+        this(co2LevelThreshold, co2AlertTriggerCount);
+        this.status = status;
+        this.consecutiveAboveThreshold = consecutiveAboveThreshold;
+        this.consecutiveAtOrBelowThreshold = consecutiveAtOrBelowThreshold;
+        this.readingCount = readingCount;
+        this.lastTime = lastTime;
+    }
+
+    public SensorReadingFold(final SensorReadingFold other) {
+        this(other.co2LevelThreshold, other.co2AlertTriggerCount, other.status, other.consecutiveAboveThreshold,
+                other.consecutiveAtOrBelowThreshold, other.readingCount, other.lastTime);
+    }
+
+    /**
+     * Resumes from the stored status of a sensor and its last (trigger count - 1) readings, most recent first, as
+     * {@link io.alvintures.co2sensorapi.dao.SensorDao#getRecentMeasurements} returns them.
+     */
+    public static SensorReadingFold resume(final long co2LevelThreshold, final int co2AlertTriggerCount,
+                                           final SensorStatus status, final List<Measurement> recentMeasurements) {
+        final SensorReadingFold fold = new SensorReadingFold(co2LevelThreshold, co2AlertTriggerCount);
+        for (int i = recentMeasurements.size() - 1; i >= 0; i--) {
+            fold.accept(recentMeasurements.get(i).getTime(), recentMeasurements.get(i).getCo2Level());
+        }
+        fold.status = status;
+        return fold;
+    }
+
+    /**
+     * Same with {@link #accept(long)}, also keeping track of the time of the most recent reading.
+     */
+    public boolean accept(final long time, final long co2Level) {
+        lastTime = Math.max(lastTime, time);
+        return accept(co2Level);
+    }
+
+    /**
+     * Adds the next reading of the sensor and returns whether it is flagged as an alert.
+     */
+    public boolean accept(final long co2Level) {
+        readingCount++;
+        if (co2Level > co2LevelThreshold) {
+            consecutiveAboveThreshold = Math.min(consecutiveAboveThreshold + 1, co2AlertTriggerCount);
+            consecutiveAtOrBelowThreshold = 0;
+        } else {
+            consecutiveAtOrBelowThreshold = Math.min(consecutiveAtOrBelowThreshold + 1, co2AlertTriggerCount);
+            consecutiveAboveThreshold = 0;
+        }
+
+        // The recent window holds the new reading and up to (trigger count - 1) readings before it.
+        final int windowSize = (int) Math.min(readingCount, co2AlertTriggerCount);
+        final SensorStatus computedStatus;
+        if (consecutiveAboveThreshold >= windowSize) {
+            computedStatus = SensorStatus.ALERT;
+        } else if (consecutiveAtOrBelowThreshold >= windowSize) {
+            computedStatus = SensorStatus.OK;
+        } else {
+            computedStatus = null;
+        }
+
+        if (status == null) {
+            status = co2Level > co2LevelThreshold ? SensorStatus.WARN : SensorStatus.OK;
+        } else if (computedStatus != null) {
+            status = computedStatus;
+        } else if (status == SensorStatus.OK) {
+            status = SensorStatus.WARN;
+        }
+
+        return computedStatus == SensorStatus.ALERT && windowSize == co2AlertTriggerCount;
+    }
+
+    /**
+     * Returns the status of the sensor after the readings seen so far, or null if there were none.
+     */
+    public SensorStatus getStatus() {
+        return status;
+    }
+
+    public int getConsecutiveAboveThreshold() {
+        return consecutiveAboveThreshold;
+    }
+
+    public int getConsecutiveAtOrBelowThreshold() {
+        return consecutiveAtOrBelowThreshold;
+    }
+
+    public long getReadingCount() {
+        return readingCount;
+    }
+
+    /**
+     * Returns the time (yyyyMMddHHmmss) of the most recent reading given with its time, or 0 if there was none.
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+}
@@ -1,28 +1,54 @@
 package io.alvintures.co2sensorapi.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.alvintures.co2sensorapi.cluster.ClusterClient;
+import io.alvintures.co2sensorapi.cluster.ClusterMembership;
 import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.dto.AlertEpisode;
+import io.alvintures.co2sensorapi.dto.AlertHistoryResponse;
 import io.alvintures.co2sensorapi.dto.Measurement;
 import io.alvintures.co2sensorapi.dto.Sensor;
+import io.alvintures.co2sensorapi.dto.SensorAlertsResponse;
 import io.alvintures.co2sensorapi.dto.SensorMetrics;
+import io.alvintures.co2sensorapi.dto.SensorMetricsResponse;
+import io.alvintures.co2sensorapi.dto.SensorSeries;
 import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.dto.SeriesAggregation;
+import io.alvintures.co2sensorapi.dto.SeriesBucket;
+import io.alvintures.co2sensorapi.dto.SeriesPoint;
 import io.alvintures.co2sensorapi.exception.SensorApiException;
+import io.alvintures.co2sensorapi.state.SensorStateStore;
+import io.alvintures.co2sensorapi.util.Lttb;
 import io.alvintures.co2sensorapi.util.TimestampUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.LongSummaryStatistics;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -31,110 +57,592 @@ public class SensorService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Sensor.class);
 
+    /**
+     * Counter of the measurements stored, which the maintenance jobs watch to stay out of the way of ingest.
+     */
+    public static final String MEASUREMENTS_STORED_METRIC = "sensor.ingest.measurements";
+
+    private static final SensorApiException SAME_MINUTE_CONFLICT =
+            new SensorApiException(HttpStatus.CONFLICT, "New measurement should not be recorded on the same minute.");
+
     @Value("${app.sensor.threshold:2000}")
     private long co2LevelThreshold;
 
     @Value("${app.sensor.alert.trigger.count:3}")
     private int co2AlertTriggerCount;
 
+    @Value("${app.status.batch-get.max-sensors:1000}")
+    private int batchGetMaxSensors;
+
+    @Value("${app.metrics.max-periods:8}")
+    private int metricsMaxPeriods;
+
+    @Value("${app.metrics.batch-get.max-sensors:100}")
+    private int metricsBatchGetMaxSensors;
+
+    @Value("${app.alerts.history.max-page-size:100}")
+    private int alertHistoryMaxPageSize;
+
+    @Value("${app.ingest.group-commit.enabled:true}")
+    private boolean groupCommitEnabled;
+
+    @Value("${app.ingest.group-commit.max-batch-size:64}")
+    private int groupCommitMaxBatchSize;
+
+    @Value("${app.ingest.group-commit.max-wait-micros:2000}")
+    private long groupCommitMaxWaitMicros;
+
+    @Value("${app.ingest.max-lateness-minutes:60}")
+    private long maxLatenessMinutes;
+
+    @Value("${app.ingest.idempotency.max-keys:100000}")
+    private long idempotencyMaxKeys;
+
+    @Value("${app.ingest.idempotency.ttl-seconds:600}")
+    private long idempotencyTtlSeconds;
+
     @Autowired
     private SensorDao sensorDao;
 
+    @Autowired
+    private SensorStatusRegistry sensorStatusRegistry;
+
+    @Autowired
+    private SensorStateStore sensorStateStore;
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private SensorLocks sensorLocks;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private ClusterClient clusterClient;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Tracer tracer;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Counter measurementsStored;
+
+    private Counter retriesAbsorbed;
+
+    private GroupCommitCoordinator<PendingMeasurement> groupCommitCoordinator;
+
+    /**
+     * The outcome of the readings sent with an idempotency key, keyed by sensor and key.
+     */
+    private Cache<String, IdempotentOutcome> idempotentOutcomes;
+
+    @PostConstruct
+    void init() {
+        measurementsStored = meterRegistry.counter(MEASUREMENTS_STORED_METRIC);
+        retriesAbsorbed = meterRegistry.counter("sensor.ingest.retries.absorbed");
+        idempotentOutcomes = CacheBuilder.newBuilder()
+                .maximumSize(idempotencyMaxKeys)
+                .expireAfterWrite(idempotencyTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        groupCommitCoordinator = new GroupCommitCoordinator<>(groupCommitMaxBatchSize,
+                TimeUnit.MICROSECONDS.toNanos(groupCommitMaxWaitMicros), PendingMeasurement::getSensorUuid, this::storeBatch);
+    }
+
     /**
      * This stores the new measurement if it is valid.
      * This method will also upsert the sensor based on the initial measurement for new sensor
      * or on the recent measurements if previous reading has already been collected for the sensor.
+     * <p>
+     * Concurrent calls are committed together by the {@link GroupCommitCoordinator}, unless group commit is disabled.
      */
-    @Transactional
     public void storeMeasurement(final String sensorUuid, final long co2Level, final String timestamp) {
-        final Optional<SensorStatus> sensorComputedStatus = getSensorStatusFromNewMeasurement(sensorUuid, co2Level, timestamp);
+        final PendingMeasurement pendingMeasurement = new PendingMeasurement(sensorUuid, co2Level, timestamp);
+        if (groupCommitEnabled) {
+            groupCommitCoordinator.submit(pendingMeasurement);
+        } else {
+            final RuntimeException error = storeBatch(Collections.singletonList(pendingMeasurement)).get(0);
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #storeMeasurement(String, long, String)}, but a retry with the same idempotency key gets the outcome
+     * of the first attempt instead of storing the reading again: nothing if it was stored, the same
+     * {@link SensorApiException} if it was rejected. A retry arriving while the first attempt is still running waits
+     * for it. The outcomes are kept in memory for a while, a retry coming later is still caught by the unique minute
+     * of the readings and answered the same way if the stored reading is the one retried.
+     * <p>
+     * Reusing a key with a different reading is rejected, and an attempt failing for another reason (e.g. the
+     * database being unavailable) is not remembered, so its retry stores the reading.
+     */
+    public void storeMeasurement(final String sensorUuid, final long co2Level, final String timestamp,
+                                 final String idempotencyKey) {
+        if (idempotencyKey == null) {
+            storeMeasurement(sensorUuid, co2Level, timestamp);
+            return;
+        }
+        final IdempotentOutcome outcome = new IdempotentOutcome(co2Level, timestamp);
+        final String cacheKey = sensorUuid + '\n' + idempotencyKey;
+        final IdempotentOutcome firstOutcome = idempotentOutcomes.asMap().putIfAbsent(cacheKey, outcome);
+        if (firstOutcome != null) {
+            if (!firstOutcome.isSameReading(co2Level, timestamp)) {
+                throw new SensorApiException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key " + idempotencyKey + " was already used for another reading.");
+            }
+            retriesAbsorbed.increment();
+            firstOutcome.replay();
+            return;
+        }
+
+        try {
+            storeMeasurement(sensorUuid, co2Level, timestamp);
+            outcome.stored();
+        } catch (SensorApiException rejected) {
+            if (rejected == SAME_MINUTE_CONFLICT && isStored(sensorUuid, co2Level, timestamp)) {
+                // The first attempt was stored, but its outcome is no longer in memory.
+                retriesAbsorbed.increment();
+                outcome.stored();
+                return;
+            }
+            outcome.failed(rejected);
+            throw rejected;
+        } catch (RuntimeException | Error ex) {
+            // Completed whatever the failure, or the retries waiting for it would wait forever.
+            idempotentOutcomes.asMap().remove(cacheKey, outcome);
+            outcome.failed(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns true if the sensor has the given reading. Only read for a retry whose outcome was forgotten.
+     */
+    private boolean isStored(final String sensorUuid, final long co2Level, final String timestamp) {
+        final long time = TimestampUtil.parseIsoToUtcTimestamp(timestamp);
+        // The reading taken at the time or just before it.
+        return sensorDao.getMeasurementsBefore(sensorUuid, time + 1, 1).stream()
+                .anyMatch(measurement -> measurement.getTime() == time && measurement.getCo2Level() == co2Level);
+    }
+
+    /**
+     * Stores the valid measurements of the batch in one transaction, with one batched insert for all of them and one
+     * update of the aggregates of each of their locations, then records the new sensor states in the
+     * {@link SensorStateStore} and statuses in the {@link SensorStatusRegistry}. The {@link SensorLocks} of the
+     * sensors are held until then. Returns for each one null if it was stored, or the exception rejecting it.
+     */
+    private List<RuntimeException> storeBatch(final List<PendingMeasurement> batch) {
+        final List<String> batchSensorUuids = batch.stream()
+                .map(PendingMeasurement::getSensorUuid)
+                .collect(Collectors.toList());
+        return sensorLocks.withLocks(batchSensorUuids, () -> storeLockedBatch(batch));
+    }
+
+    private List<RuntimeException> storeLockedBatch(final List<PendingMeasurement> batch) {
+        final List<Sensor> updatedSensors = new ArrayList<>(batch.size());
+        final Map<String, SensorReadingFold> updatedStates = new LinkedHashMap<>();
+        final Map<String, SensorStatus> previousStatuses = new HashMap<>();
+        final List<String> sensorUuids = sensorStateStore.isEnabled()
+                ? batch.stream().map(PendingMeasurement::getSensorUuid).collect(Collectors.toList())
+                : Collections.emptyList();
+        if (!sensorUuids.isEmpty()) {
+            sensorStateStore.markPending(sensorUuids);
+        }
+        final List<RuntimeException> errors;
+        boolean committed = false;
+        try {
+            errors = transactionTemplate.execute(transaction -> {
+                final List<RuntimeException> batchErrors = new ArrayList<>(batch.size());
+                final List<Measurement> measurements = new ArrayList<>(batch.size());
+                // Parsing and the status rules are not calls of their own, this span accounts for them.
+                final Span applySpan = tracer.spanBuilder("SensorService.applyMeasurements")
+                        .setAttribute("batch.size", batch.size()).startSpan();
+                try (Scope ignored = applySpan.makeCurrent()) {
+                    for (PendingMeasurement pendingMeasurement : batch) {
+                        try {
+                            updatedSensors.add(applyMeasurement(pendingMeasurement, measurements, updatedStates, previousStatuses));
+                            batchErrors.add(null);
+                        } catch (SensorApiException rejected) {
+                            batchErrors.add(rejected);
+                        }
+                    }
+                } finally {
+                    applySpan.end();
+                }
+                if (!measurements.isEmpty()) {
+                    insertMeasurements(measurements, batch.size());
+                    sensorDao.addToSketches(measurements);
+                    locationService.addToAggregates(measurements, updatedSensors, previousStatuses);
+                }
+                return batchErrors;
+            });
+            committed = true;
+        } finally {
+            if (!sensorUuids.isEmpty()) {
+                sensorStateStore.install(sensorUuids, committed ? updatedStates : Collections.emptyMap());
+            }
+        }
+        updatedSensors.forEach(sensor -> sensorStatusRegistry.put(sensor.getUuid(), sensor.getStatus()));
+        measurementsStored.increment(updatedSensors.size());
+        return errors;
+    }
+
+    /**
+     * Inserts the measurements of the batch. A reading racing another one of the same minute of its sensor, which the
+     * in-memory checks could not see, breaks the unique minute of the readings: a batch of one reading is rejected
+     * like any reading of the same minute, a bigger batch fails as a whole to be retried one reading at a time.
+     */
+    private void insertMeasurements(final List<Measurement> measurements, final int batchSize) {
+        try {
+            sensorDao.createMeasurements(measurements);
+        } catch (DuplicateKeyException raced) {
+            if (batchSize > 1) {
+                throw raced;
+            }
+            throw SAME_MINUTE_CONFLICT;
+        }
+    }
+
+    /**
+     * Validates the new measurement, upserts its sensor and adds the measurement to insert to measurements.
+     * Returns the sensor with its new status, and adds its previous one to previousStatuses if it changed.
+     * Throws {@link SensorApiException}, before writing anything, if the measurement is rejected.
+     */
+    private Sensor applyMeasurement(final PendingMeasurement pendingMeasurement, final List<Measurement> measurements,
+                                    final Map<String, SensorReadingFold> updatedStates,
+                                    final Map<String, SensorStatus> previousStatuses) {
+        final Measurement newMeasurement = toMeasurement(pendingMeasurement.getSensorUuid(),
+                pendingMeasurement.getCo2Level(), convertIsoTimeToSystemTimestamp(pendingMeasurement.getTimestamp()));
+        final Sensor sensor = sensorStateStore.isEnabled()
+                ? applyToSensorState(newMeasurement, updatedStates, previousStatuses)
+                : applyToStoredSensor(newMeasurement, previousStatuses);
+        measurements.add(newMeasurement);
+        return sensor;
+    }
+
+    /**
+     * Applies the status rules from the recent measurements and the sensor read back from the database.
+     */
+    private Sensor applyToStoredSensor(final Measurement newMeasurement,
+                                       final Map<String, SensorStatus> previousStatuses) {
+        final String sensorUuid = newMeasurement.getSensorUUID();
+        final List<Measurement> sensorLatestMeasurements =
+                sensorDao.getRecentMeasurements(sensorUuid, co2AlertTriggerCount - 1);
+        if (!sensorLatestMeasurements.isEmpty() && isLate(sensorLatestMeasurements.get(0).getTime(), newMeasurement.getTime())) {
+            final Sensor sensor = sensorDao.getSensor(sensorUuid)
+                    .orElseThrow(() -> new IllegalStateException("No sensor found for the readings of " + sensorUuid));
+            final SensorReadingFold reevaluatedState = applyLateMeasurement(newMeasurement,
+                    sensorLatestMeasurements.get(0).getTime(), sensor.getStatus(), previousStatuses);
+            if (reevaluatedState != null) {
+                sensor.setStatus(reevaluatedState.getStatus());
+            }
+            return sensor;
+        }
+        final Optional<SensorStatus> sensorComputedStatus =
+                getSensorStatusFromNewMeasurement(newMeasurement, sensorLatestMeasurements);
 
         // create or update sensor
         Optional<Sensor> sensorOpt = sensorDao.getSensor(sensorUuid);
+        final Sensor sensor;
+        final SensorStatus previousStatus = sensorOpt.map(Sensor::getStatus).orElse(null);
         if(!sensorOpt.isPresent()) {
-            final Sensor sensorToCreate = new Sensor();
-            sensorToCreate.setUuid(sensorUuid);
-            sensorToCreate.setStatus(co2Level > co2LevelThreshold ? SensorStatus.WARN : SensorStatus.OK);
-            sensorDao.createSensor(sensorToCreate);
+            sensor = new Sensor();
+            sensor.setUuid(sensorUuid);
+            sensor.setStatus(newMeasurement.getCo2Level() > co2LevelThreshold ? SensorStatus.WARN : SensorStatus.OK);
+            sensorDao.createSensor(sensor);
         } else {
-            final Sensor existingSensor = sensorOpt.get();
+            sensor = sensorOpt.get();
             if (sensorComputedStatus.isPresent()) {
-                if (sensorComputedStatus.get() != existingSensor.getStatus()) {
+                if (sensorComputedStatus.get() != sensor.getStatus()) {
                     sensorDao.updateSensorStatus(sensorUuid, sensorComputedStatus.get());
+                    sensor.setStatus(sensorComputedStatus.get());
                 }
             } else {
-                if (existingSensor.getStatus() == SensorStatus.OK) {
+                if (sensor.getStatus() == SensorStatus.OK) {
                     sensorDao.updateSensorStatus(sensorUuid, SensorStatus.WARN);
+                    sensor.setStatus(SensorStatus.WARN);
                 }
 
             }
         }
+        recordStatusChange(previousStatus, sensor.getStatus(), newMeasurement, previousStatuses);
+        return sensor;
     }
 
+    /**
+     * Applies the same status rules to the in-memory state of the sensor, so only the changes are written.
+     * The new state is added to updatedStates, to install once committed.
+     */
+    private Sensor applyToSensorState(final Measurement newMeasurement,
+                                      final Map<String, SensorReadingFold> updatedStates,
+                                      final Map<String, SensorStatus> previousStatuses) {
+        final String sensorUuid = newMeasurement.getSensorUUID();
+        final SensorReadingFold state = sensorStateStore.getForUpdate(sensorUuid);
+        if (state.getLastTime() != 0) {
+            ensureNewReadingBelongsToNewMinute(state.getLastTime(), newMeasurement.getTime());
+        }
+        if (state.getLastTime() != 0 && isLate(state.getLastTime(), newMeasurement.getTime())) {
+            final SensorReadingFold reevaluatedState = applyLateMeasurement(newMeasurement, state.getLastTime(),
+                    state.getStatus(), previousStatuses);
+            final SensorReadingFold newState = reevaluatedState != null ? reevaluatedState : state;
+            final Sensor sensor = new Sensor();
+            sensor.setUuid(sensorUuid);
+            sensor.setStatus(newState.getStatus());
+            updatedStates.put(sensorUuid, newState);
+            return sensor;
+        }
+
+        final SensorStatus previousStatus = state.getStatus();
+        newMeasurement.setAlert(state.accept(newMeasurement.getTime(), newMeasurement.getCo2Level()));
+        final Sensor sensor = new Sensor();
+        sensor.setUuid(sensorUuid);
+        sensor.setStatus(state.getStatus());
+        if (previousStatus == null) {
+            sensorDao.createSensor(sensor);
+        } else if (previousStatus != state.getStatus()) {
+            sensorDao.updateSensorStatus(sensorUuid, state.getStatus());
+        }
+        recordStatusChange(previousStatus, state.getStatus(), newMeasurement, previousStatuses);
+        updatedStates.put(sensorUuid, state);
+        return sensor;
+    }
+
+    /**
+     * Returns the current status of the sensor from the {@link SensorStatusRegistry}, without a database round trip.
+     * It already reflects every measurement stored before.
+     */
     public Optional<SensorStatus> getStatus(String sensorUuid) {
-        return sensorDao.getSensor(sensorUuid).map(Sensor::getStatus);
+        return sensorStatusRegistry.get(sensorUuid);
+    }
+
+    /**
+     * Same with {@link this#getStatus} for many sensors at once. Unknown sensors are left out of the result.
+     * <p>
+     * In cluster mode, the status of the sensors owned by other nodes is read from their owner, one request per node.
+     */
+    public Map<String, SensorStatus> getStatuses(List<String> sensorUuids) {
+        checkStatusesRequested(sensorUuids);
+        if (!clusterMembership.isEnabled()) {
+            return getRegisteredStatuses(sensorUuids);
+        }
+        final Map<String, List<String>> sensorsByOwner = sensorUuids.stream()
+                .distinct()
+                .collect(Collectors.groupingBy(clusterMembership::ownerOf, LinkedHashMap::new, Collectors.toList()));
+        final Map<String, SensorStatus> foundStatuses = new HashMap<>();
+        sensorsByOwner.forEach((owner, ownedSensorUuids) -> foundStatuses.putAll(
+                owner.equals(clusterMembership.getSelfUrl())
+                        ? getRegisteredStatuses(ownedSensorUuids)
+                        : clusterClient.getStatuses(owner, ownedSensorUuids)));
+
+        final Map<String, SensorStatus> statusBySensor = new LinkedHashMap<>();
+        for (String sensorUuid : sensorUuids) {
+            if (foundStatuses.containsKey(sensorUuid)) {
+                statusBySensor.put(sensorUuid, foundStatuses.get(sensorUuid));
+            }
+        }
+        return statusBySensor;
+    }
+
+    /**
+     * Same with {@link this#getStatuses} but only from the status of this node, for the requests another node of the
+     * cluster forwarded.
+     */
+    public Map<String, SensorStatus> getLocalStatuses(List<String> sensorUuids) {
+        checkStatusesRequested(sensorUuids);
+        return getRegisteredStatuses(sensorUuids);
+    }
+
+    private void checkStatusesRequested(List<String> sensorUuids) {
+        if (sensorUuids == null || sensorUuids.size() > batchGetMaxSensors) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "Between 0 and " + batchGetMaxSensors + " uuids should be requested.");
+        }
+    }
+
+    private Map<String, SensorStatus> getRegisteredStatuses(List<String> sensorUuids) {
+        final Map<String, SensorStatus> statusBySensor = new LinkedHashMap<>();
+        for (String sensorUuid : sensorUuids) {
+            sensorStatusRegistry.get(sensorUuid).ifPresent(status -> statusBySensor.put(sensorUuid, status));
+        }
+        return statusBySensor;
+    }
+
+    /**
+     * Returns sensor metrics which include the max, average and percentiles of the CO2 level in the specified
+     * period of days.
+     */
+    public SensorMetricsResponse getMetrics(String sensorUuid, int periodInDays) {
+        return getMetrics(sensorUuid, Collections.singletonList(periodInDays));
+    }
+
+    /**
+     * Same with {@link this#getMetrics(String, int)} over several periods at once, e.g. 1, 7 and 30 days, all computed
+     * in a single pass over the widest one.
+     */
+    public SensorMetricsResponse getMetrics(String sensorUuid, List<Integer> periodsInDays) {
+        return getMetricsOfSensors(Collections.singletonList(sensorUuid), periodsInDays).get(sensorUuid);
     }
 
     /**
-     * Returns sensor metrics which include the max and average CO2 level in the specified period of days.
+     * Same with {@link this#getMetrics(String, List)} for many sensors at once, keyed by sensor.
      */
-    public Map<String, Long> getMetrics(String sensorUuid, int periodInDays) {
+    public Map<String, SensorMetricsResponse> getMetricsOfSensors(List<String> sensorUuids, List<Integer> periodsInDays) {
+        if (sensorUuids == null || sensorUuids.isEmpty() || sensorUuids.size() > metricsBatchGetMaxSensors) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "Between 1 and " + metricsBatchGetMaxSensors + " uuids should be requested.");
+        }
+        final List<Integer> periods = distinctPeriods(periodsInDays);
         final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
-        final Long startDate = TimestampUtil.toUtcTimestamp(
-                now.minusDays(periodInDays).toLocalDate().atStartOfDay(now.getZone())
-        );
+        final long[] startDates = periods.stream().mapToLong(periodInDays -> startOfPeriod(now, periodInDays)).toArray();
         final Long endDate = TimestampUtil.toUtcTimestamp(now);
-        LOGGER.info("Retrieving metrics from {} to {}", startDate, endDate);
-        final SensorMetrics sensorMetrics = sensorDao.getMetrics(sensorUuid, startDate, endDate);
+        LOGGER.info("Retrieving metrics of {} sensors over the last {} days until {}", sensorUuids.size(), periods, endDate);
+        final Map<String, List<SensorMetrics>> metricsBySensor =
+                sensorDao.getMetrics(new ArrayList<>(new LinkedHashSet<>(sensorUuids)), startDates, endDate);
+
+        final Map<String, SensorMetricsResponse> responseBySensor = new LinkedHashMap<>();
+        metricsBySensor.forEach((sensorUuid, metrics) ->
+                responseBySensor.put(sensorUuid, new SensorMetricsResponse(periods, metrics)));
+        return responseBySensor;
+    }
 
-        final String daysLabel = periodInDays > 1 ? "Days" : "Day";
-        final Map<String, Long> metrics = new LinkedHashMap<>();
-        metrics.put("maxLast" + periodInDays + daysLabel, sensorMetrics.getMax());
-        metrics.put("avgLast" + periodInDays + daysLabel, sensorMetrics.getAverage());
-        return metrics;
+    /**
+     * Same with {@link this#getMetrics(String, int)} but over the readings of all the sensors.
+     */
+    public SensorMetricsResponse getFleetMetrics(int periodInDays) {
+        return getFleetMetrics(Collections.singletonList(periodInDays));
+    }
+
+    /**
+     * Same with {@link this#getMetrics(String, List)} but over the readings of all the sensors.
+     */
+    public SensorMetricsResponse getFleetMetrics(List<Integer> periodsInDays) {
+        final List<Integer> periods = distinctPeriods(periodsInDays);
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        final long[] startDates = periods.stream().mapToLong(periodInDays -> startOfPeriod(now, periodInDays)).toArray();
+        final Long endDate = TimestampUtil.toUtcTimestamp(now);
+        LOGGER.info("Retrieving fleet metrics over the last {} days until {}", periods, endDate);
+        return new SensorMetricsResponse(periods, sensorDao.getFleetMetrics(startDates, endDate));
     }
 
     /**
      * Returns the recent ALERT triggered by the sensor as well as the start and end date.
      */
-    public Map<String, Object> getAlerts(String sensorUuid, int limit) {
+    public SensorAlertsResponse getAlerts(String sensorUuid, int limit) {
         final List<Measurement> alerts = sensorDao.getAlerts(sensorUuid, limit);
 
         if (alerts.isEmpty()) {
-            return Collections.emptyMap();
+            return SensorAlertsResponse.empty();
         }
 
-        final Map<String, Object> metrics = new LinkedHashMap<>();
-
-        final LongSummaryStatistics alertStats = alerts.stream().mapToLong(Measurement::getTime).summaryStatistics();
-        metrics.put("startTime", TimestampUtil.toIsoDateTime(alertStats.getMin()));
-        metrics.put("endTime", TimestampUtil.toIsoDateTime(alertStats.getMax()));
+        long startTime = Long.MAX_VALUE;
+        long endTime = Long.MIN_VALUE;
+        final long[] co2Levels = new long[alerts.size()];
+        for (int i = 0; i < alerts.size(); i++) {
+            final Measurement alert = alerts.get(i);
+            startTime = Math.min(startTime, alert.getTime());
+            endTime = Math.max(endTime, alert.getTime());
+            co2Levels[i] = alert.getCo2Level();
+        }
+        return new SensorAlertsResponse(startTime, endTime, co2Levels);
+    }
 
-        final Map<String, Long> co2Measurements = IntStream.range(0, alerts.size())
-                .boxed()
-                .collect(Collectors.toMap(
-                        counter -> "measurement" + (counter + 1),
-                        counter -> alerts.get(counter).getCo2Level()
-                ));
-        metrics.putAll(co2Measurements);
+    /**
+     * Returns a page of at most limit alert episodes of the sensor, most recent first, which overlap the period
+     * between from and to (ISO-8601, both optional). The next page is requested with the cursor of the previous one.
+     */
+    public AlertHistoryResponse getAlertHistory(String sensorUuid, String from, String to, String cursor, int limit) {
+        if (limit < 1 || limit > alertHistoryMaxPageSize) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "Between 1 and " + alertHistoryMaxPageSize + " episodes should be requested.");
+        }
+        final long endedAfter = from != null ? TimestampUtil.toUtcTimestamp(parseQueryTime("from", from)) : 0L;
+        long startedBefore = to != null ? TimestampUtil.toUtcTimestamp(parseQueryTime("to", to)) : Long.MAX_VALUE;
+        if (cursor != null) {
+            startedBefore = Math.min(startedBefore, parseCursor(cursor));
+        }
 
-        return metrics;
+        final List<AlertEpisode> episodes = sensorDao.getAlertEpisodes(sensorUuid, startedBefore, endedAfter, limit + 1);
+        if (episodes.size() <= limit) {
+            return new AlertHistoryResponse(episodes, null);
+        }
+        final List<AlertEpisode> page = episodes.subList(0, limit);
+        return new AlertHistoryResponse(page, String.valueOf(page.get(limit - 1).getStartTime()));
     }
 
     /**
-     * This stores the new measurement and returns a sensor status if recent measurements falls on the same
-     * reading based on the {@link this#co2LevelThreshold}.
+     * Returns the CO2 levels of the sensor between from and to (ISO-8601, defaults to the last day), aggregated per
+     * bucket when a bucket width is given. Series longer than maxPoints are downsampled with {@link Lttb} on the
+     * first aggregation, so the size of the response is bounded whatever period is requested.
      */
-    private Optional<SensorStatus> getSensorStatusFromNewMeasurement(String sensorUuid, long co2Level, String timestamp) {
-        final Long newMeasurementTime = convertIsoTimeToSystemTimestamp(timestamp);
-        final List<Measurement> sensorLatestMeasurements = sensorDao.getRecentMeasurements(sensorUuid, co2AlertTriggerCount - 1);
+    public SensorSeries getSeries(String sensorUuid, String from, String to, String bucketLabel,
+                                  List<String> aggregationLabels, int maxPoints) {
+        final ZonedDateTime end = to != null ? parseQueryTime("to", to) : ZonedDateTime.now(ZoneOffset.UTC);
+        final ZonedDateTime start = from != null ? parseQueryTime("from", from) : end.minusDays(1);
+        final SeriesBucket bucket = bucketLabel == null ? null : SeriesBucket.fromLabel(bucketLabel)
+                .orElseThrow(() -> new SensorApiException(HttpStatus.BAD_REQUEST, "bucket " + bucketLabel + " is not supported."));
+        final List<SeriesAggregation> aggregations = aggregationLabels.stream()
+                .map(label -> SeriesAggregation.fromLabel(label)
+                        .orElseThrow(() -> new SensorApiException(HttpStatus.BAD_REQUEST, "agg " + label + " is not supported.")))
+                .collect(Collectors.toList());
+        if (aggregations.isEmpty() || maxPoints < 3) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "At least one agg and 3 points should be requested.");
+        }
+
+        final Long startDate = TimestampUtil.toUtcTimestamp(start);
+        final Long endDate = TimestampUtil.toUtcTimestamp(end);
+        final List<SeriesPoint> points = bucket != null
+                ? sensorDao.getSeries(sensorUuid, startDate, endDate, bucket)
+                : sensorDao.getRawSeries(sensorUuid, startDate, endDate);
+
+        final double[] x = new double[points.size()];
+        final double[] y = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            x[i] = TimestampUtil.toEpochSecond(points.get(i).getTime());
+            y[i] = aggregations.get(0).valueOf(points.get(i));
+        }
+        final int[] keptIndexes = points.size() > maxPoints ? Lttb.downsample(x, y, maxPoints)
+                : IntStream.range(0, points.size()).toArray();
+
+        final List<Object[]> values = new ArrayList<>(keptIndexes.length);
+        for (int index : keptIndexes) {
+            final SeriesPoint point = points.get(index);
+            final Object[] row = new Object[aggregations.size() + 1];
+            row[0] = TimestampUtil.toIsoDateTime(point.getTime());
+            for (int i = 0; i < aggregations.size(); i++) {
+                row[i + 1] = aggregations.get(i).valueOf(point);
+            }
+            values.add(row);
+        }
+
+        final List<String> columns = new ArrayList<>();
+        columns.add("time");
+        aggregations.forEach(aggregation -> columns.add(aggregation.getLabel()));
 
+        final SensorSeries series = new SensorSeries();
+        series.setBucket(bucket != null ? bucket.getLabel() : null);
+        series.setColumns(columns);
+        series.setPoints(values);
+        return series;
+    }
+
+    /**
+     * This flags the new measurement as an alert or not and returns a sensor status if recent measurements falls
+     * on the same reading based on the {@link this#co2LevelThreshold}.
+     */
+    private Optional<SensorStatus> getSensorStatusFromNewMeasurement(final Measurement newMeasurement,
+                                                                     final List<Measurement> sensorLatestMeasurements) {
         // Ensure that new measurement does not belong to the same minute of the day.
         if (!sensorLatestMeasurements.isEmpty()) {
-            ensureNewReadingBelongsToNewMinute(sensorLatestMeasurements.get(0).getTime(), newMeasurementTime);
+            ensureNewReadingBelongsToNewMinute(sensorLatestMeasurements.get(0).getTime(), newMeasurement.getTime());
         }
 
-        final Measurement newMeasurement = toMeasurement(sensorUuid, co2Level, newMeasurementTime);
         sensorLatestMeasurements.add(newMeasurement);
 
         final Optional<SensorStatus> sensorComputedStatus = analyzeSensorStatus(sensorLatestMeasurements);
@@ -147,11 +655,24 @@ public class SensorService {
         LOGGER.info("New measurement isAlert: {}", isAlert);
         newMeasurement.setAlert(isAlert);
 
-        sensorDao.createMeasurement(newMeasurement);
-
         return sensorComputedStatus;
     }
 
+    /**
+     * Returns the requested periods without duplicates, in the order requested.
+     */
+    private List<Integer> distinctPeriods(final List<Integer> periodsInDays) {
+        if (periodsInDays == null || periodsInDays.isEmpty() || periodsInDays.size() > metricsMaxPeriods
+                || periodsInDays.stream().anyMatch(periodInDays -> periodInDays == null || periodInDays < 0)) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "Between 1 and " + metricsMaxPeriods + " periodInDays of 0 or more should be requested.");
+        }
+        return new ArrayList<>(new LinkedHashSet<>(periodsInDays));
+    }
+
+    private Long startOfPeriod(final ZonedDateTime now, final int periodInDays) {
+        return TimestampUtil.toUtcTimestamp(now.minusDays(periodInDays).toLocalDate().atStartOfDay(now.getZone()));
+    }
+
     private Measurement toMeasurement(final String sensorUuid, final long co2Level, final Long timestamp) {
         final Measurement measurement = new Measurement();
         measurement.setSensorUUID(sensorUuid);
@@ -161,27 +682,152 @@ public class SensorService {
     }
 
     private Long convertIsoTimeToSystemTimestamp(String timestamp) {
-        try {
-            return TimestampUtil.toUtcTimestamp(ZonedDateTime.parse(timestamp));
-        } catch (Exception ex) {
+        final long utcTimestamp = TimestampUtil.parseIsoToUtcTimestamp(timestamp);
+        if (utcTimestamp == TimestampUtil.INVALID_TIMESTAMP) {
             throw new SensorApiException(HttpStatus.BAD_REQUEST, "time " + timestamp + " is in invalid format.");
         }
+        return utcTimestamp;
+    }
+
+    private ZonedDateTime parseQueryTime(String parameterName, String timestamp) {
+        try {
+            return ZonedDateTime.parse(timestamp);
+        } catch (DateTimeParseException ex) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, parameterName + " " + timestamp + " is in invalid format.");
+        }
+    }
+
+    /**
+     * The cursor of a page is the start time of its last episode, the next page starts before it.
+     */
+    private long parseCursor(String cursor) {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException ex) {
+            throw new SensorApiException(HttpStatus.BAD_REQUEST, "cursor " + cursor + " is invalid.");
+        }
+    }
+
+    /**
+     * Returns true if the new reading was taken in a minute before the last reading of its sensor.
+     */
+    private boolean isLate(final long lastMeasurementTime, final long newMeasurementTime) {
+        return newMeasurementTime / 100 < lastMeasurementTime / 100;
+    }
+
+    /**
+     * Places a reading older than the last one of its sensor among the readings around it, instead of treating it as
+     * the newest one. Only the alert flags of the trigger windows it joins are recomputed: its own and the ones of the
+     * (trigger count - 1) readings after it, and the ones that changed are stored. The status is only re-evaluated
+     * if the late reading is in the newest trigger window of the sensor, and only changes of it are recorded.
+     * <p>
+     * Returns the state of the sensor re-evaluated from its newest trigger window, or null if its status was not
+     * re-evaluated. Throws {@link SensorApiException} if the reading is older than the lateness window, or if the
+     * sensor already has a reading in the same minute.
+     */
+    private SensorReadingFold applyLateMeasurement(final Measurement lateMeasurement, final long lastTime,
+                                                   final SensorStatus status,
+                                                   final Map<String, SensorStatus> previousStatuses) {
+        final long latenessSeconds = TimestampUtil.toEpochSecond(lastTime) - TimestampUtil.toEpochSecond(lateMeasurement.getTime());
+        if (latenessSeconds > TimeUnit.MINUTES.toSeconds(maxLatenessMinutes)) {
+            throw new SensorApiException(HttpStatus.UNPROCESSABLE_ENTITY, "Measurement is more than "
+                    + maxLatenessMinutes + " minutes older than the last one of the sensor.");
+        }
+
+        final String sensorUuid = lateMeasurement.getSensorUUID();
+        final List<Measurement> before = sensorDao.getMeasurementsBefore(sensorUuid, lateMeasurement.getTime(), co2AlertTriggerCount - 1);
+        final List<Measurement> after = sensorDao.getMeasurementsAfter(sensorUuid, lateMeasurement.getTime(), co2AlertTriggerCount);
+        if (!before.isEmpty()) {
+            ensureNewReadingBelongsToNewMinute(before.get(0).getTime(), lateMeasurement.getTime());
+        }
+        if (!after.isEmpty()) {
+            ensureNewReadingBelongsToNewMinute(after.get(0).getTime(), lateMeasurement.getTime());
+        }
+
+        // Oldest first: the readings before, the late one, then the readings after it.
+        final List<Measurement> readings = new ArrayList<>(before.size() + 1 + after.size());
+        for (int i = before.size() - 1; i >= 0; i--) {
+            readings.add(before.get(i));
+        }
+        final int latePosition = readings.size();
+        readings.add(lateMeasurement);
+        readings.addAll(after);
+
+        lateMeasurement.setAlert(isAlertWindow(readings, latePosition));
+        final List<Measurement> changedAlertFlags = new ArrayList<>();
+        for (int i = latePosition + 1; i < readings.size() && i < latePosition + co2AlertTriggerCount; i++) {
+            final boolean isAlert = isAlertWindow(readings, i);
+            if (readings.get(i).isAlert() != isAlert) {
+                readings.get(i).setAlert(isAlert);
+                changedAlertFlags.add(readings.get(i));
+            }
+        }
+        if (!changedAlertFlags.isEmpty()) {
+            sensorDao.updateAlertFlags(changedAlertFlags);
+        }
+
+        if (after.size() >= co2AlertTriggerCount) {
+            return null;
+        }
+        // The newest window, most recent first as SensorReadingFold#resume takes it, re-evaluated as if its most
+        // recent reading had just arrived.
+        final List<Measurement> newestWindow = new ArrayList<>(
+                readings.subList(Math.max(0, readings.size() - co2AlertTriggerCount), readings.size()));
+        Collections.reverse(newestWindow);
+        final Measurement newest = newestWindow.get(0);
+        final SensorReadingFold reevaluatedState = SensorReadingFold.resume(co2LevelThreshold, co2AlertTriggerCount,
+                status, newestWindow.subList(1, newestWindow.size()));
+        reevaluatedState.accept(newest.getTime(), newest.getCo2Level());
+        if (reevaluatedState.getStatus() != status) {
+            sensorDao.updateSensorStatus(sensorUuid, reevaluatedState.getStatus());
+            recordStatusChange(status, reevaluatedState.getStatus(), newest, previousStatuses);
+        }
+        return reevaluatedState;
+    }
+
+    /**
+     * Returns true if the reading at the given position and the (trigger count - 1) ones before it are all above
+     * {@link this#co2LevelThreshold}.
+     */
+    private boolean isAlertWindow(final List<Measurement> readings, final int position) {
+        if (position < co2AlertTriggerCount - 1) {
+            return false;
+        }
+        for (int i = position - co2AlertTriggerCount + 1; i <= position; i++) {
+            if (readings.get(i).getCo2Level() <= co2LevelThreshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens, extends or closes the alert episode of the sensor, from its status before and after the new measurement,
+     * and keeps the previous status for the location aggregates if it changed.
+     */
+    private void recordStatusChange(final SensorStatus previousStatus, final SensorStatus status,
+                                    final Measurement newMeasurement, final Map<String, SensorStatus> previousStatuses) {
+        if (previousStatus != status) {
+            previousStatuses.put(newMeasurement.getSensorUUID(), previousStatus);
+        }
+        if (status == SensorStatus.ALERT && previousStatus == SensorStatus.ALERT) {
+            sensorDao.extendAlertEpisode(newMeasurement.getSensorUUID(), newMeasurement.getCo2Level());
+        } else if (status == SensorStatus.ALERT) {
+            sensorDao.openAlertEpisode(newMeasurement.getSensorUUID(), newMeasurement.getTime(), newMeasurement.getCo2Level());
+        } else if (previousStatus == SensorStatus.ALERT) {
+            sensorDao.closeAlertEpisode(newMeasurement.getSensorUUID(), newMeasurement.getTime());
+        }
     }
 
     /**
      * Throws {@link SensorApiException} if lastMeasurementTime and newMeasurementTime belongs on the same minute of the day.
      */
     private void ensureNewReadingBelongsToNewMinute(final Long lastMeasurementTime, final Long newMeasurementTime) {
-        final ZonedDateTime lastReading = TimestampUtil.toZonedDateTime(lastMeasurementTime);
-        final ZonedDateTime newReading = TimestampUtil.toZonedDateTime(newMeasurementTime);
-
-        final boolean belongsOnSameMinute = lastReading.toLocalDate().isEqual(newReading.toLocalDate())
-                && lastReading.toLocalTime().withSecond(0).withNano(0).equals(
-                        newReading.toLocalTime().withSecond(0).withNano(0)
-                );
+        // Both are yyyyMMddHHmmss, so dropping the seconds leaves the minute of the day.
+        final boolean belongsOnSameMinute = lastMeasurementTime / 100 == newMeasurementTime / 100;
 
         if (belongsOnSameMinute) {
-            throw new SensorApiException(HttpStatus.CONFLICT, "New measurement should not be recorded on the same minute.");
+            throw SAME_MINUTE_CONFLICT;
         }
     }
 
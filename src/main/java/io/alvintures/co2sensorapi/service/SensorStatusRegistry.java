@@ -0,0 +1,257 @@
+package io.alvintures.co2sensorapi.service;
+
+import io.alvintures.co2sensorapi.cluster.SensorOwnershipChangedEvent;
+import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Status of every sensor, kept in memory so status reads never go to the database.
+ * <p>
+ * It is loaded once at start-up from the {@code sensor} table and then kept up to date by whoever changes a status,
+ * right after the change is committed. Sensor ids in the canonical lower case UUID form, i.e. all of them in
+ * practice, are stored as two longs and a status int in an open-addressing table, 20 bytes per slot.
+ * Any other id is kept in a plain map.
+ * <p>
+ * Reads are lock-free. Writes are serialized; a status is updated in place and a new sensor is inserted by writing
+ * its key, then publishing its status with a release store ({@link AtomicIntegerArray#lazySet}). Reads load the
+ * status with a volatile read before the key, so a read seeing the status also sees the key: a concurrent read
+ * either sees the sensor or not, never half of it. A read returns the status it loaded before matching the key, a
+ * free slot it probed being possibly claimed by another sensor right after. A grown table is published through the volatile field. The table
+ * never shrinks since sensors are never deleted.
+ * <p>
+ * In cluster mode, the statuses of the sensors this node takes over are reloaded from the shared database: they were
+ * changed by their previous owner, or even created there since this node started.
+ */
+@Component
+public class SensorStatusRegistry implements ApplicationListener<SensorOwnershipChangedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorStatusRegistry.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int NOT_A_UUID = -1;
+
+    private static final byte[] HEX_DIGIT_VALUES = hexDigitValues();
+
+    private static final SensorStatus[] STATUSES = SensorStatus.values();
+
+    /**
+     * Returned as is by {@link #get} so a read allocates nothing.
+     */
+    private static final Optional<SensorStatus>[] PRESENT_STATUSES = presentStatuses();
+
+    @Autowired
+    private SensorDao sensorDao;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    private final ConcurrentHashMap<String, SensorStatus> statusByOtherId = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void load() {
+        final long start = System.nanoTime();
+        sensorDao.forEachSensorStatus(this::put);
+        LOGGER.info("Loaded the status of {} sensors in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void onApplicationEvent(SensorOwnershipChangedEvent event) {
+        final long start = System.nanoTime();
+        final int[] reloadedCount = {0};
+        sensorDao.forEachSensorStatus((sensorUuid, status) -> {
+            if (event.isTakenOver(sensorUuid)) {
+                put(sensorUuid, status);
+                reloadedCount[0]++;
+            }
+        });
+        LOGGER.info("Reloaded the status of {} sensors taken over in {} ms", reloadedCount[0],
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public Optional<SensorStatus> get(final String sensorUuid) {
+        final int status = table.statusOf(sensorUuid);
+        if (status == NOT_A_UUID) {
+            return Optional.ofNullable(statusByOtherId.get(sensorUuid));
+        }
+        return status == 0 ? Optional.empty() : PRESENT_STATUSES[status - 1];
+    }
+
+    /**
+     * Records the status of the sensor. Only call it once the status is committed.
+     */
+    public void put(final String sensorUuid, final SensorStatus status) {
+        synchronized (this) {
+            Table current = table;
+            int slot = current.find(sensorUuid);
+            if (slot == NOT_A_UUID) {
+                statusByOtherId.put(sensorUuid, status);
+                return;
+            }
+            if (current.statuses.get(slot) == 0) {
+                if ((current.size + 1) * 4L > current.statuses.length() * 3L) {
+                    current = current.grow();
+                    slot = current.find(sensorUuid);
+                }
+                current.keys[2 * slot] = mostSigBits(sensorUuid);
+                current.keys[2 * slot + 1] = leastSigBits(sensorUuid);
+                current.size++;
+            }
+            current.statuses.lazySet(slot, status.ordinal() + 1);
+            table = current;
+        }
+    }
+
+    public int size() {
+        return table.size + statusByOtherId.size();
+    }
+
+    /**
+     * Parses hexadecimal digits, lower case only so that the id maps back to a single string. Returns -1 if there is
+     * any other character; there are at most 12 digits so a valid value is never negative.
+     */
+    private static long parseHex(final String id, final int from, final int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            final char c = id.charAt(i);
+            final int digit = c < HEX_DIGIT_VALUES.length ? HEX_DIGIT_VALUES[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static boolean isCanonicalUuid(final String id) {
+        if (id == null || id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            final char c = id.charAt(i);
+            final boolean valid = i == 8 || i == 13 || i == 18 || i == 23
+                    ? c == '-'
+                    : c < HEX_DIGIT_VALUES.length && HEX_DIGIT_VALUES[c] >= 0;
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mostSigBits(final String uuid) {
+        return parseHex(uuid, 0, 8) << 32 | parseHex(uuid, 9, 13) << 16 | parseHex(uuid, 14, 18);
+    }
+
+    private static long leastSigBits(final String uuid) {
+        return parseHex(uuid, 19, 23) << 48 | parseHex(uuid, 24, 36);
+    }
+
+    private static byte[] hexDigitValues() {
+        final byte[] hexDigitValues = new byte[128];
+        Arrays.fill(hexDigitValues, (byte) -1);
+        for (int digit = 0; digit < 16; digit++) {
+            hexDigitValues[Character.forDigit(digit, 16)] = (byte) digit;
+        }
+        return hexDigitValues;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Optional<SensorStatus>[] presentStatuses() {
+        final Optional<SensorStatus>[] presentStatuses = new Optional[STATUSES.length];
+        for (int i = 0; i < STATUSES.length; i++) {
+            presentStatuses[i] = Optional.of(STATUSES[i]);
+        }
+        return presentStatuses;
+    }
+
+    /**
+     * Linear probing table; a status of 0 marks a free slot, otherwise it is the ordinal of the status plus one.
+     * The capacity is a power of two and the table is kept at most three quarters full, so a probe always ends.
+     */
+    private static final class Table {
+        private final long[] keys;
+        private final AtomicIntegerArray statuses;
+        private final int mask;
+        private int size;
+
+        Table(final int capacity) {
+            this.keys = new long[2 * capacity];
+            this.statuses = new AtomicIntegerArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Returns the slot holding the sensor, or the free slot where it would be inserted, or {@link #NOT_A_UUID}
+         * if the id is not a UUID as {@link java.util.UUID#toString()} writes it.
+         */
+        int find(final String id) {
+            return isCanonicalUuid(id) ? find(mostSigBits(id), leastSigBits(id)) : NOT_A_UUID;
+        }
+
+        /**
+         * Returns the status of the sensor as loaded while probing, 0 if there is none, or {@link #NOT_A_UUID} if the
+         * id is not a UUID as {@link java.util.UUID#toString()} writes it.
+         */
+        int statusOf(final String id) {
+            if (!isCanonicalUuid(id)) {
+                return NOT_A_UUID;
+            }
+            final long mostSigBits = mostSigBits(id);
+            final long leastSigBits = leastSigBits(id);
+            int slot = hash(mostSigBits, leastSigBits) & mask;
+            int status;
+            while ((status = statuses.get(slot)) != 0
+                    && (keys[2 * slot] != mostSigBits || keys[2 * slot + 1] != leastSigBits)) {
+                slot = (slot + 1) & mask;
+            }
+            return status;
+        }
+
+        /**
+         * Returns the slot holding the key, or the free slot where it would be inserted.
+         */
+        int find(final long mostSigBits, final long leastSigBits) {
+            int slot = hash(mostSigBits, leastSigBits) & mask;
+            while (statuses.get(slot) != 0
+                    && (keys[2 * slot] != mostSigBits || keys[2 * slot + 1] != leastSigBits)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        Table grow() {
+            final Table grown = new Table(statuses.length() * 2);
+            for (int slot = 0; slot < statuses.length(); slot++) {
+                final int status = statuses.get(slot);
+                if (status != 0) {
+                    final int newSlot = grown.find(keys[2 * slot], keys[2 * slot + 1]);
+                    grown.keys[2 * newSlot] = keys[2 * slot];
+                    grown.keys[2 * newSlot + 1] = keys[2 * slot + 1];
+                    grown.statuses.lazySet(newSlot, status);
+                }
+            }
+            grown.size = size;
+            return grown;
+        }
+
+        private static int hash(final long mostSigBits, final long leastSigBits) {
+            // Random UUIDs are already well spread, the mixing only protects against sequential ids.
+            long h = mostSigBits * 0x9E3779B97F4A7C15L ^ leastSigBits;
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.alvintures.co2sensorapi.startup;
+
+import io.alvintures.co2sensorapi.controller.SensorApiController;
+import io.alvintures.co2sensorapi.service.SensorService;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Touches the ingest path once the application is ready so the first real request does not pay for lazy bean
+ * creation, connection pool start-up and class loading of the time API.
+ * <p>
+ * Normally this runs on a background thread. For the AppCDS training run ({@code app.startup.exit-on-ready=true})
+ * it runs synchronously and then shuts the application down, so the archive contains the classes of the hot path.
+ */
+@Component
+public class StartupPrewarmer implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupPrewarmer.class);
+
+    /**
+     * Random id so prewarming only ever reads and never matches a real sensor.
+     */
+    private static final String PREWARM_SENSOR_UUID = UUID.randomUUID().toString();
+
+    @Value("${app.startup.prewarm.enabled:false}")
+    private boolean prewarmEnabled;
+
+    @Value("${app.startup.exit-on-ready:false}")
+    private boolean exitOnReady;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        final ApplicationContext context = event.getApplicationContext();
+
+        if (exitOnReady) {
+            prewarm(context);
+            LOGGER.info("Training run finished, shutting down.");
+            System.exit(SpringApplication.exit(context));
+        } else if (prewarmEnabled) {
+            final Thread prewarmThread = new Thread(() -> prewarm(context), "startup-prewarm");
+            prewarmThread.setDaemon(true);
+            prewarmThread.start();
+        }
+    }
+
+    private void prewarm(ApplicationContext context) {
+        final long start = System.nanoTime();
+        try {
+            // Resolving the controller initializes the whole ingest chain when lazy initialization is on.
+            context.getBean(SensorApiController.class);
+            context.getBean(SensorService.class).getStatus(PREWARM_SENSOR_UUID);
+
+            final Long utcTimestamp = TimestampUtil.toUtcTimestamp(ZonedDateTime.parse("2020-07-13T12:55:19+01:00"));
+            TimestampUtil.toIsoDateTime(utcTimestamp);
+
+            LOGGER.info("Prewarmed ingest path in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Prewarming the ingest path failed, the first request will initialize it instead.", ex);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.alvintures.co2sensorapi.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logs how long the application took from JVM start until it was ready to serve requests, together with the beans
+ * that were the slowest to create.
+ * <p>
+ * Bean timings are inclusive: a bean that triggers the creation of its dependencies is charged for them as well.
+ * With lazy initialization only the beans created before the application is ready are reported.
+ */
+@Component
+@ConditionalOnProperty(name = "app.startup.report.enabled", havingValue = "true")
+public class StartupTimingReporter implements InstantiationAwareBeanPostProcessor,
+        ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupTimingReporter.class);
+
+    private static final int REPORTED_BEAN_COUNT = 10;
+
+    private final Map<String, Long> creationStartByBean = new ConcurrentHashMap<>();
+    private final Map<String, Long> creationTimeByBean = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+        creationStartByBean.put(beanName, System.nanoTime());
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        final Long start = creationStartByBean.remove(beanName);
+        if (start != null) {
+            creationTimeByBean.put(beanName, System.nanoTime() - start);
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        LOGGER.info("Application ready {} ms after JVM start ({} beans created)",
+                ManagementFactory.getRuntimeMXBean().getUptime(), creationTimeByBean.size());
+
+        creationTimeByBean.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(REPORTED_BEAN_COUNT)
+                .forEach(entry -> LOGGER.info("  {} ms  {}", entry.getValue() / 1_000_000, entry.getKey()));
+    }
+}
@@ -0,0 +1,233 @@
+package io.alvintures.co2sensorapi.state;
+
+import io.alvintures.co2sensorapi.cluster.SensorOwnershipChangedEvent;
+import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.dto.Sensor;
+import io.alvintures.co2sensorapi.service.SensorReadingFold;
+import io.alvintures.co2sensorapi.service.SensorStatusRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The state the status rules need for each sensor (see {@link SensorReadingFold}), kept in memory so that storing
+ * a measurement does not read the recent measurements and the sensor back from the database.
+ * <p>
+ * Only enabled with {@code app.sensor-state.enabled=true}. The sensors of a change are logged to a
+ * {@link StateJournal} as pending before it is committed and their new states once it is, and a snapshot is written in the background every {@code app.sensor-state.snapshot-every} changes and
+ * on shutdown, so a restart recovers all the states from one snapshot and a short log whatever the history size.
+ * A sensor with no saved state, e.g. the first time it is seen after the journal was discarded, is resumed from its
+ * last readings in the database.
+ * <p>
+ * Installed states are never modified: {@link #getForUpdate} returns a copy, which is installed back once the
+ * change is committed.
+ * <p>
+ * In cluster mode, the states of the sensors changing owner are dropped: a sensor taken over was changed by its
+ * previous owner and is resumed from the shared database, and the state of a sensor given away would be stale if it
+ * ever came back.
+ */
+@Component
+public class SensorStateStore implements ApplicationListener<SensorOwnershipChangedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorStateStore.class);
+
+    @Value("${app.sensor-state.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.sensor-state.directory:data/state}")
+    private String directory;
+
+    @Value("${app.sensor-state.snapshot-every:100000}")
+    private long snapshotEvery;
+
+    @Value("${app.sensor-state.fsync:false}")
+    private boolean fsync;
+
+    @Value("${app.sensor.threshold:2000}")
+    private long co2LevelThreshold;
+
+    @Value("${app.sensor.alert.trigger.count:3}")
+    private int co2AlertTriggerCount;
+
+    @Autowired
+    private SensorDao sensorDao;
+
+    @Autowired
+    private SensorStatusRegistry sensorStatusRegistry;
+
+    private final Map<String, SensorReadingFold> states = new ConcurrentHashMap<>();
+
+    /**
+     * Number of uncommitted changes of each sensor, logged again as pending in every new log.
+     */
+    private final Map<String, Integer> pendingChanges = new HashMap<>();
+
+    private final AtomicBoolean snapshotInProgress = new AtomicBoolean();
+
+    private StateJournal journal;
+    private ExecutorService snapshotExecutor;
+    private long changesSinceSnapshot;
+
+    @PostConstruct
+    void recover() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        final long start = System.nanoTime();
+        journal = new StateJournal(Paths.get(directory), fsync, co2LevelThreshold, co2AlertTriggerCount);
+        final Map<String, SensorReadingFold> recoveredStates = journal.recover();
+        if (!recoveredStates.isEmpty() && sensorStatusRegistry.size() == 0) {
+            // The saved states belong to sensors the database no longer has, e.g. an in-memory database.
+            LOGGER.warn("Ignoring the saved states of {} sensors, the sensor table is empty", recoveredStates.size());
+        } else {
+            states.putAll(recoveredStates);
+        }
+        snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "sensor-state-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOGGER.info("Recovered the state of {} sensors in {} ms", states.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        snapshotExecutor.shutdown();
+        snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        snapshot();
+        journal.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a copy of the state of the sensor to apply a new reading to, then to {@link #install} once committed.
+     */
+    public SensorReadingFold getForUpdate(final String sensorUuid) {
+        final SensorReadingFold state = states.get(sensorUuid);
+        return state != null ? new SensorReadingFold(state) : loadFromDatabase(sensorUuid);
+    }
+
+    /**
+     * Logs the sensors as pending before a change to them is committed. It has to be followed by {@link #install},
+     * whether the change is committed or not.
+     */
+    public void markPending(final Collection<String> sensorUuids) {
+        synchronized (this) {
+            try {
+                journal.markPending(sensorUuids);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to log the pending sensors", ex);
+            }
+            sensorUuids.forEach(sensorUuid -> pendingChanges.merge(sensorUuid, 1, Integer::sum));
+        }
+    }
+
+    /**
+     * Ends the change of the pending sensors, then makes the committed states current and logs them.
+     */
+    public void install(final Collection<String> pendingSensorUuids,
+                        final Map<String, SensorReadingFold> committedStates) {
+        synchronized (this) {
+            pendingSensorUuids.forEach(sensorUuid ->
+                    pendingChanges.computeIfPresent(sensorUuid, (uuid, count) -> count == 1 ? null : count - 1));
+            if (committedStates.isEmpty()) {
+                return;
+            }
+            try {
+                journal.append(committedStates);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to log the sensor states", ex);
+            }
+            states.putAll(committedStates);
+            changesSinceSnapshot += committedStates.size();
+            if (changesSinceSnapshot >= snapshotEvery && snapshotInProgress.compareAndSet(false, true)) {
+                changesSinceSnapshot = 0;
+                snapshotExecutor.execute(this::snapshotInBackground);
+            }
+        }
+    }
+
+    /**
+     * Drops the states of the sensors changing owner, and snapshots the remaining ones so a restart does not recover
+     * the dropped states from the log.
+     */
+    @Override
+    public void onApplicationEvent(SensorOwnershipChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        final int previousSize = states.size();
+        states.keySet().removeIf(event::isMoved);
+        LOGGER.info("Dropped the state of {} sensors changing owner", previousSize - states.size());
+        synchronized (this) {
+            if (snapshotInProgress.compareAndSet(false, true)) {
+                changesSinceSnapshot = 0;
+                snapshotExecutor.execute(this::snapshotInBackground);
+            } else {
+                // The snapshot in progress may have copied the dropped states, the next one replaces it.
+                changesSinceSnapshot = snapshotEvery;
+            }
+        }
+    }
+
+    private SensorReadingFold loadFromDatabase(final String sensorUuid) {
+        final Optional<Sensor> sensor = sensorDao.getSensor(sensorUuid);
+        if (!sensor.isPresent()) {
+            return new SensorReadingFold(co2LevelThreshold, co2AlertTriggerCount);
+        }
+        return SensorReadingFold.resume(co2LevelThreshold, co2AlertTriggerCount, sensor.get().getStatus(),
+                sensorDao.getRecentMeasurements(sensorUuid, co2AlertTriggerCount - 1));
+    }
+
+    private void snapshotInBackground() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Failed to snapshot the sensor states, the log keeps growing until the next one", ex);
+        } finally {
+            snapshotInProgress.set(false);
+        }
+    }
+
+    /**
+     * Starts a new log and saves the states as of its start. Only the switch to the new log holds up ingest. The
+     * snapshot is written from a copy of the map taken after it, whose states are never modified: a state installed
+     * while copying is in the new log as well, which is replayed over the snapshot.
+     */
+    private void snapshot() throws IOException {
+        final long logSequence;
+        synchronized (this) {
+            logSequence = journal.rotate();
+            // The snapshot may hold the old state of the sensors being changed, which the new log has to override.
+            journal.markPending(pendingChanges.keySet());
+        }
+        final Map<String, SensorReadingFold> snapshotStates = new HashMap<>(states);
+        final long start = System.nanoTime();
+        journal.writeSnapshot(logSequence, snapshotStates);
+        LOGGER.info("Saved the state of {} sensors in {} ms", snapshotStates.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
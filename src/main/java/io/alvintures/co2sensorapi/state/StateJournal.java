@@ -0,0 +1,348 @@
+package io.alvintures.co2sensorapi.state;
+
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.service.SensorReadingFold;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persists the state of every sensor on local disk as a snapshot plus a write-ahead log of the changes since.
+ * <p>
+ * The log is split in numbered files. {@code snapshot-N.bin} holds the state of all the sensors when
+ * {@code wal-N.log} was started, so recovering reads the latest snapshot and replays the logs from N onwards, in
+ * order. Each log record is the whole new state of one sensor rather than the reading that changed it, so replaying
+ * is a plain overwrite and does not depend on the status rules. Before a change is committed to the database, its
+ * sensors are logged as pending: a pending sensor with no state logged after it may be behind the database, so it is
+ * left out of the recovered states. Records carry a CRC; a torn record at the end of a log, left by a crash in the
+ * middle of a write, ends the replay of that log.
+ * <p>
+ * Both files start with the threshold and alert trigger count the states were computed with. If either changed
+ * since, nothing is recovered and the states are rebuilt from the database instead.
+ */
+public class StateJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StateJournal.class);
+
+    private static final int MAGIC = 0x434F3254; // "CO2T"
+    private static final int VERSION = 1;
+
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    private static final byte STATE_RECORD = 1;
+    private static final byte PENDING_RECORD = 2;
+
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final Pattern LOG_NAME = Pattern.compile("wal-(\\d+)\\.log");
+
+    private final Path directory;
+    private final boolean fsync;
+    private final long co2LevelThreshold;
+    private final int co2AlertTriggerCount;
+
+    private FileChannel log;
+    private long sequence;
+
+    public StateJournal(final Path directory, final boolean fsync, final long co2LevelThreshold,
+                        final int co2AlertTriggerCount) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.co2LevelThreshold = co2LevelThreshold;
+        this.co2AlertTriggerCount = co2AlertTriggerCount;
+    }
+
+    /**
+     * Returns the states saved by the previous run, then starts a new log for this one with a fresh snapshot.
+     * Returns no state at all if part of it is missing or was saved with other settings.
+     */
+    public Map<String, SensorReadingFold> recover() throws IOException {
+        Files.createDirectories(directory);
+        final TreeMap<Long, Path> snapshots = listFiles(SNAPSHOT_NAME);
+        final TreeMap<Long, Path> logs = listFiles(LOG_NAME);
+
+        final long firstLog = snapshots.isEmpty() ? 1 : snapshots.lastKey();
+        Map<String, SensorReadingFold> states = snapshots.isEmpty() ? new HashMap<>() : readSnapshot(snapshots.lastEntry().getValue());
+        long expectedLog = firstLog;
+        for (Map.Entry<Long, Path> logFile : logs.tailMap(firstLog, true).entrySet()) {
+            if (states == null || logFile.getKey() != expectedLog++ || !replayLog(logFile.getValue(), states)) {
+                states = null;
+                break;
+            }
+        }
+        if (states == null || snapshots.isEmpty() && !logs.isEmpty() && logs.firstKey() != 1) {
+            LOGGER.warn("Discarding the saved sensor states in {}, they are incomplete or were saved with other settings",
+                    directory);
+            states = new HashMap<>();
+        }
+
+        // Starting from a snapshot of what was recovered leaves a single snapshot and log to read on the next start.
+        sequence = Math.max(firstLog, logs.isEmpty() ? 0 : logs.lastKey()) + 1;
+        log = openLog(sequence);
+        writeSnapshot(sequence, states);
+        return states;
+    }
+
+    /**
+     * Logs the sensors as pending, before their new states are committed.
+     */
+    public void markPending(final Collection<String> sensorUuids) throws IOException {
+        final RecordWriter records = new RecordWriter(sensorUuids.size() * 48);
+        for (String sensorUuid : sensorUuids) {
+            final DataOutputStream payload = records.startRecord();
+            payload.writeByte(PENDING_RECORD);
+            payload.writeUTF(sensorUuid);
+            records.endRecord();
+        }
+        write(records);
+    }
+
+    /**
+     * Appends the new states to the log, with a single write.
+     */
+    public void append(final Map<String, SensorReadingFold> states) throws IOException {
+        final RecordWriter records = new RecordWriter(states.size() * 80);
+        for (Map.Entry<String, SensorReadingFold> state : states.entrySet()) {
+            final DataOutputStream payload = records.startRecord();
+            payload.writeByte(STATE_RECORD);
+            writeState(payload, state.getKey(), state.getValue());
+            records.endRecord();
+        }
+        write(records);
+    }
+
+    /**
+     * Closes the current log and starts the next one. Returns the number of the new log, the states at this point
+     * are then saved with {@link #writeSnapshot}.
+     */
+    public long rotate() throws IOException {
+        log.close();
+        sequence++;
+        log = openLog(sequence);
+        return sequence;
+    }
+
+    /**
+     * Saves the states as of the start of the given log, then deletes the snapshots and logs it replaces.
+     * The snapshot is only used once fully written and synced.
+     */
+    public void writeSnapshot(final long logSequence, final Map<String, SensorReadingFold> states) throws IOException {
+        final Path file = directory.resolve("snapshot-" + logSequence + ".bin");
+        final Path temporaryFile = directory.resolve(file.getFileName() + ".tmp");
+        final CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(temporaryFile), crc), 1 << 16))) {
+            writeHeader(out);
+            out.writeInt(states.size());
+            for (Map.Entry<String, SensorReadingFold> state : states.entrySet()) {
+                writeState(out, state.getKey(), state.getValue());
+            }
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Path older : listFiles(SNAPSHOT_NAME).headMap(logSequence).values()) {
+            Files.deleteIfExists(older);
+        }
+        for (Path older : listFiles(LOG_NAME).headMap(logSequence).values()) {
+            Files.deleteIfExists(older);
+        }
+    }
+
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * Returns the states of the snapshot, or null if it is corrupted or was saved with other settings.
+     */
+    private Map<String, SensorReadingFold> readSnapshot(final Path file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, Math.max(0, bytes.length - 8));
+        if (bytes.length < 8 || crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong()) {
+            LOGGER.warn("Sensor state snapshot {} is corrupted", file);
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8))) {
+            if (!readHeader(in)) {
+                return null;
+            }
+            final int count = in.readInt();
+            final Map<String, SensorReadingFold> states = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                final String sensorUuid = in.readUTF();
+                states.put(sensorUuid, readState(in));
+            }
+            return states;
+        } catch (EOFException truncated) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies the records of the log to the states. Returns false if the log was saved with other settings.
+     */
+    private boolean replayLog(final Path file, final Map<String, SensorReadingFold> states) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            try {
+                if (!readHeader(in)) {
+                    return false;
+                }
+            } catch (EOFException emptyLog) {
+                return true;
+            }
+            final CRC32 crc = new CRC32();
+            long recordCount = 0;
+            while (true) {
+                final byte[] payload;
+                final int expectedCrc;
+                try {
+                    final int length = in.readInt();
+                    expectedCrc = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException endOfLog) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    LOGGER.warn("Ignoring the torn end of sensor state log {} after {} records", file, recordCount);
+                    break;
+                }
+                final DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                final byte recordType = record.readByte();
+                final String sensorUuid = record.readUTF();
+                if (recordType == STATE_RECORD) {
+                    states.put(sensorUuid, readState(record));
+                } else {
+                    states.remove(sensorUuid);
+                }
+                recordCount++;
+            }
+            return true;
+        }
+    }
+
+    private void write(final RecordWriter records) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(records.bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        if (fsync) {
+            log.force(false);
+        }
+    }
+
+    private FileChannel openLog(final long logSequence) throws IOException {
+        final FileChannel channel = FileChannel.open(directory.resolve("wal-" + logSequence + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(header));
+        channel.write(ByteBuffer.wrap(header.toByteArray()));
+        return channel;
+    }
+
+    private void writeHeader(final DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(co2LevelThreshold);
+        out.writeInt(co2AlertTriggerCount);
+    }
+
+    private boolean readHeader(final DataInputStream in) throws IOException {
+        return in.readInt() == MAGIC && in.readByte() == VERSION
+                && in.readLong() == co2LevelThreshold && in.readInt() == co2AlertTriggerCount;
+    }
+
+    private static void writeState(final DataOutputStream out, final String sensorUuid, final SensorReadingFold state)
+            throws IOException {
+        out.writeUTF(sensorUuid);
+        out.writeByte(state.getStatus() == null ? 0 : state.getStatus().ordinal() + 1);
+        out.writeInt(state.getConsecutiveAboveThreshold());
+        out.writeInt(state.getConsecutiveAtOrBelowThreshold());
+        out.writeLong(state.getReadingCount());
+        out.writeLong(state.getLastTime());
+    }
+
+    private SensorReadingFold readState(final DataInputStream in) throws IOException {
+        final int status = in.readByte();
+        return new SensorReadingFold(co2LevelThreshold, co2AlertTriggerCount,
+                status == 0 ? null : SensorStatus.values()[status - 1],
+                in.readInt(), in.readInt(), in.readLong(), in.readLong());
+    }
+
+    private TreeMap<Long, Path> listFiles(final Pattern namePattern) throws IOException {
+        final TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                final Matcher matcher = namePattern.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), path);
+                }
+            });
+        }
+        return files;
+    }
+
+    /**
+     * Frames log records as [payload length][payload CRC][payload].
+     */
+    private static final class RecordWriter {
+        private final ByteArrayOutputStream bytes;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream payload = new ByteArrayOutputStream(80);
+        private final DataOutputStream payloadOut = new DataOutputStream(payload);
+        private final CRC32 crc = new CRC32();
+
+        RecordWriter(final int expectedSize) {
+            bytes = new ByteArrayOutputStream(expectedSize);
+            out = new DataOutputStream(bytes);
+        }
+
+        DataOutputStream startRecord() {
+            payload.reset();
+            return payloadOut;
+        }
+
+        void endRecord() throws IOException {
+            crc.reset();
+            crc.update(payload.toByteArray(), 0, payload.size());
+            out.writeInt(payload.size());
+            out.writeInt((int) crc.getValue());
+            payload.writeTo(out);
+        }
+    }
+}
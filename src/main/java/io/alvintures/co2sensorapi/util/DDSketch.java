@@ -0,0 +1,102 @@
+package io.alvintures.co2sensorapi.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A mergeable quantile sketch (DDSketch) with a relative accuracy guarantee.
+ * <p>
+ * Values are counted in logarithmically sized bins: bin {@code i} holds the values in {@code (gamma^(i-2), gamma^(i-1)]}
+ * and bin 0 holds the values below 1. Any quantile is then returned within {@link #relativeAccuracy} of the exact
+ * value, and two sketches are merged by adding up the counts of their bins. Since CO2 levels span a few orders of
+ * magnitude, a sketch never has more than a few hundred bins whatever the number of readings.
+ */
+public class DDSketch {
+
+    /**
+     * Accuracy of the CO2 sketches. The bins are persisted, so changing it requires rebuilding them.
+     */
+    public static final double CO2_RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * Accuracy of the latency sketches, in microseconds. Latencies span more orders of magnitude than CO2 levels, from
+     * tens of microseconds to seconds, and 2% keeps them to a few hundred bins.
+     */
+    public static final double LATENCY_RELATIVE_ACCURACY = 0.02;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> countByBin = new TreeMap<>();
+    private long count;
+
+    public DDSketch(final double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy should be between 0 and 1 but was " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public static DDSketch forCo2() {
+        return new DDSketch(CO2_RELATIVE_ACCURACY);
+    }
+
+    public static DDSketch forLatencies() {
+        return new DDSketch(LATENCY_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Returns the bin the value is counted in.
+     */
+    public int binOf(final double value) {
+        return value < 1 ? 0 : (int) Math.ceil(Math.log(value) / logGamma) + 1;
+    }
+
+    public void add(final double value) {
+        addToBin(binOf(value), 1);
+    }
+
+    public void addToBin(final int bin, final long binCount) {
+        countByBin.merge(bin, binCount, Long::sum);
+        count += binCount;
+    }
+
+    public void merge(final DDSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Only sketches with the same relative accuracy can be merged.");
+        }
+        other.countByBin.forEach(this::addToBin);
+    }
+
+    /**
+     * Returns the estimated value at the given quantile (between 0 and 1), or null if the sketch is empty.
+     */
+    public Long quantile(final double quantile) {
+        if (count == 0) {
+            return null;
+        }
+        final double rank = quantile * (count - 1);
+        long cumulativeCount = 0;
+        for (Map.Entry<Integer, Long> bin : countByBin.entrySet()) {
+            cumulativeCount += bin.getValue();
+            if (cumulativeCount > rank) {
+                return Math.round(valueOf(bin.getKey()));
+            }
+        }
+        return Math.round(valueOf(countByBin.lastKey()));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Map<Integer, Long> getCountByBin() {
+        return countByBin;
+    }
+
+    private double valueOf(final int bin) {
+        return bin == 0 ? 0 : 2 * Math.pow(gamma, bin - 1) / (gamma + 1);
+    }
+}
@@ -0,0 +1,67 @@
+package io.alvintures.co2sensorapi.util;
+
+import java.util.stream.IntStream;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling: picks the points of a series that best preserve its visual shape.
+ * <p>
+ * The first and last points are always kept. The points in between are split in equal buckets and from each bucket
+ * the point forming the largest triangle with the previously picked point and the average of the next bucket is kept.
+ */
+public class Lttb {
+
+    /**
+     * Returns the indexes, in ascending order, of at most {@code threshold} points to keep.
+     * All the indexes are returned if the series already has {@code threshold} points or less.
+     */
+    public static int[] downsample(final double[] x, final double[] y, final int threshold) {
+        final int length = x.length;
+        if (threshold >= length || length <= 2) {
+            return IntStream.range(0, length).toArray();
+        }
+        if (threshold < 3) {
+            throw new IllegalArgumentException("threshold should be at least 3 but was " + threshold);
+        }
+
+        final int[] sampled = new int[threshold];
+        final double bucketSize = (double) (length - 2) / (threshold - 2);
+        int sampledIndex = 0;
+        int previous = 0;
+        sampled[sampledIndex++] = previous;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket, the third corner of the triangle.
+            final int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            final int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, length);
+            double nextAverageX = 0;
+            double nextAverageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                nextAverageX += x[i];
+                nextAverageY += y[i];
+            }
+            final int nextCount = nextEnd - nextStart;
+            nextAverageX /= nextCount;
+            nextAverageY /= nextCount;
+
+            final int currentStart = (int) Math.floor(bucket * bucketSize) + 1;
+            final int currentEnd = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int picked = currentStart;
+            for (int i = currentStart; i < currentEnd; i++) {
+                // Twice the triangle area, the factor does not change which point is the largest.
+                final double area = Math.abs((x[previous] - nextAverageX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (nextAverageY - y[previous]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    picked = i;
+                }
+            }
+
+            sampled[sampledIndex++] = picked;
+            previous = picked;
+        }
+
+        sampled[sampledIndex] = length - 1;
+        return sampled;
+    }
+}
@@ -1,15 +1,31 @@
 package io.alvintures.co2sensorapi.util;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
 
 /**
  * This is a helper class to transform or manipulate timestamp.
  */
 public class TimestampUtil {
+    /**
+     * Returned by {@link this#parseIsoToUtcTimestamp} when the text is not a valid ISO-8601 date time.
+     */
+    public static final long INVALID_TIMESTAMP = -1L;
+
+    /**
+     * Returned internally when the text is not in the common ISO-8601 form and the full parser has to decide.
+     */
+    private static final long UNSUPPORTED_FORMAT = -2L;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
     /**
      * Formats date time to a human readable timestamp which can be converted to Long data type for ease of comparison.
      */
@@ -48,4 +64,140 @@ public class TimestampUtil {
     public static ZonedDateTime toZonedDateTime(final Long utcDateTime) {
         return LocalDateTime.parse(String.valueOf(utcDateTime), UTC_TIMESTAMP_FORMATTER).atZone(ZoneOffset.UTC);
     }
+
+    /**
+     * Examples:
+     * 1) 19700101000100 will return 60
+     * 2) 20200713125519 will return 1594644919
+     */
+    public static long toEpochSecond(final Long utcDateTime) {
+        return toZonedDateTime(utcDateTime).toEpochSecond();
+    }
+
+    /**
+     * Reverse of {@link this#toEpochSecond}.
+     * Example: 1594644919 will return 20200713125519
+     */
+    public static long fromEpochSecond(final long epochSecond) {
+        final LocalDateTime dateTime = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        return dateTime.getYear() * 10_000_000_000L + dateTime.getMonthValue() * 100_000_000L
+                + dateTime.getDayOfMonth() * 1_000_000L + dateTime.getHour() * 10_000L
+                + dateTime.getMinute() * 100L + dateTime.getSecond();
+    }
+
+    /**
+     * Same with {@link ZonedDateTime#parse} followed by {@link this#toUtcTimestamp} but returns
+     * {@link this#INVALID_TIMESTAMP} instead of throwing when the text is invalid.
+     * <p>
+     * The common form (e.g. 2020-07-13T12:55:19.123+01:00 or 2020-07-13T12:55Z) is parsed without allocating.
+     * Anything else, e.g. a zone region suffix like [Europe/Berlin], is left to {@link ZonedDateTime#parse}.
+     */
+    public static long parseIsoToUtcTimestamp(final String text) {
+        if (text == null) {
+            return INVALID_TIMESTAMP;
+        }
+        final long utcTimestamp = parseCommonIsoFormat(text);
+        if (utcTimestamp != UNSUPPORTED_FORMAT) {
+            return utcTimestamp;
+        }
+        try {
+            return toUtcTimestamp(ZonedDateTime.parse(text));
+        } catch (DateTimeParseException ex) {
+            return INVALID_TIMESTAMP;
+        }
+    }
+
+    private static long parseCommonIsoFormat(final String text) {
+        final int length = text.length();
+        if (length > 0 && (text.charAt(0) == '+' || text.charAt(0) == '-')) {
+            return UNSUPPORTED_FORMAT; // years beyond 9999 or before 0000
+        }
+        if (length < 17 || text.charAt(4) != '-' || text.charAt(7) != '-' || !isDateTimeSeparator(text.charAt(10))
+                || text.charAt(13) != ':') {
+            return INVALID_TIMESTAMP;
+        }
+
+        final int year = digits(text, 0, 4);
+        final int month = digits(text, 5, 2);
+        final int day = digits(text, 8, 2);
+        final int hour = digits(text, 11, 2);
+        final int minute = digits(text, 14, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return INVALID_TIMESTAMP;
+        }
+
+        int position = 16;
+        int second = 0;
+        if (position < length && text.charAt(position) == ':') {
+            second = digits(text, position + 1, 2);
+            if (second < 0 || second > 59) {
+                return INVALID_TIMESTAMP;
+            }
+            position += 3;
+            if (position < length && text.charAt(position) == '.') {
+                position++;
+                final int fractionStart = position;
+                while (position < length && Character.isDigit(text.charAt(position))) {
+                    position++;
+                }
+                if (position - fractionStart > 9) {
+                    return INVALID_TIMESTAMP;
+                }
+            }
+        }
+
+        final int offsetSeconds;
+        if (position == length - 1 && (text.charAt(position) == 'Z' || text.charAt(position) == 'z')) {
+            offsetSeconds = 0;
+        } else if (position == length - 6 && (text.charAt(position) == '+' || text.charAt(position) == '-')
+                && text.charAt(position + 3) == ':') {
+            final int offsetHours = digits(text, position + 1, 2);
+            final int offsetMinutes = digits(text, position + 4, 2);
+            if (offsetHours < 0 || offsetHours > 17 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return UNSUPPORTED_FORMAT;
+            }
+            final int sign = text.charAt(position) == '-' ? -1 : 1;
+            offsetSeconds = sign * (offsetHours * 3600 + offsetMinutes * 60);
+        } else {
+            return UNSUPPORTED_FORMAT;
+        }
+
+        final long epochSecond = LocalDate.of(year, month, day).toEpochDay() * SECONDS_PER_DAY
+                + hour * 3600 + minute * 60 + second - offsetSeconds;
+        final LocalDate utcDate = LocalDate.ofEpochDay(Math.floorDiv(epochSecond, SECONDS_PER_DAY));
+        final int utcSecondOfDay = (int) Math.floorMod(epochSecond, (long) SECONDS_PER_DAY);
+        if (utcDate.getYear() < 1) {
+            return UNSUPPORTED_FORMAT; // the UTC timestamp uses the year of era
+        }
+
+        return utcDate.getYear() * 10_000_000_000L
+                + utcDate.getMonthValue() * 100_000_000L
+                + utcDate.getDayOfMonth() * 1_000_000L
+                + (utcSecondOfDay / 3600) * 10_000L
+                + (utcSecondOfDay / 60 % 60) * 100L
+                + utcSecondOfDay % 60;
+    }
+
+    private static boolean isDateTimeSeparator(final char character) {
+        return character == 'T' || character == 't';
+    }
+
+    /**
+     * Returns the number formed by the count digits at the given offset, or -1 if one of them is not a digit.
+     */
+    private static int digits(final String text, final int offset, final int count) {
+        if (offset + count > text.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            final char character = text.charAt(i);
+            if (character < '0' || character > '9') {
+                return -1;
+            }
+            value = value * 10 + (character - '0');
+        }
+        return value;
+    }
 }
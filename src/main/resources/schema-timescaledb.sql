@@ -0,0 +1,29 @@
+-- Run after schema.sql with the timescaledb profile. Every statement can run again on an existing database.
+
+CREATE EXTENSION IF NOT EXISTS timescaledb;
+
+-- measurement is partitioned by minute (yyyyMMddHHmm), one chunk per day: the unique sensor minute index includes
+-- the partition column, and the retention of the maintenance drops the chunks of old readings a day at a time.
+SELECT create_hypertable('measurement', 'minute_utc', chunk_time_interval => BIGINT '10000',
+                         if_not_exists => TRUE, migrate_data => TRUE);
+
+-- The current minute as yyyyMMddHHmm, the "now" of the policies of an integer time column.
+CREATE OR REPLACE FUNCTION measurement_now() RETURNS BIGINT LANGUAGE SQL STABLE AS
+'SELECT CAST(to_char(now() AT TIME ZONE ''UTC'', ''YYYYMMDDHH24MI'') AS BIGINT)';
+
+SELECT set_integer_now_func('measurement', 'measurement_now', replace_if_exists => TRUE);
+
+-- Per sensor and hour (yyyyMMddHH00), the number, sum, max and min of the CO2 levels. Hours after the last refresh are
+-- computed from measurement at query time, so the series never miss recent readings.
+CREATE MATERIALIZED VIEW IF NOT EXISTS measurement_hourly
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT sensor_uuid, time_bucket(BIGINT '100', minute_utc) AS hour_minute, COUNT(*) AS reading_count,
+       SUM(co2_level) AS co2_sum, MAX(co2_level) AS co2_max, MIN(co2_level) AS co2_min
+FROM measurement
+GROUP BY sensor_uuid, time_bucket(BIGINT '100', minute_utc)
+WITH NO DATA;
+
+-- Refreshes every hour up to a day ago. Over the whole history, but only the hours whose readings were inserted,
+-- updated or deleted since, e.g. by an import. The retention drops its old chunks along with the ones of measurement.
+SELECT add_continuous_aggregate_policy('measurement_hourly', start_offset => NULL, end_offset => BIGINT '10000',
+                                       schedule_interval => INTERVAL '1 hour', if_not_exists => TRUE);
@@ -9,6 +9,71 @@ CREATE TABLE IF NOT EXISTS measurement
 (
     sensor_uuid VARCHAR(36) NOT NULL,
     timestamp_utc BIGINT NOT NULL,
+    minute_utc BIGINT NOT NULL,
     co2_level INTEGER NOT NULL,
-    is_alert VARCHAR(5)
-);
\ No newline at end of file
+    is_alert BOOLEAN DEFAULT FALSE NOT NULL
+);
+
+-- A sensor reads at most once a minute (timestamp_utc / 100, yyyyMMddHHmm). The in-memory checks reject a second
+-- reading of the same minute, this makes sure one racing them is never stored twice.
+CREATE UNIQUE INDEX IF NOT EXISTS measurement_sensor_minute_idx ON measurement (sensor_uuid, minute_utc);
+
+-- Both indexes hold every column the per-sensor reads select, in the order they are read: the recent readings and
+-- the readings over a period by time, the alerts by flag then time.
+CREATE INDEX IF NOT EXISTS measurement_sensor_time_idx ON measurement (sensor_uuid, timestamp_utc, co2_level, is_alert);
+CREATE INDEX IF NOT EXISTS measurement_sensor_alert_idx ON measurement (sensor_uuid, is_alert, timestamp_utc, co2_level);
+
+-- Per sensor and hour, the number of readings in each bin of a DDSketch (see DDSketch), merged at query time
+-- to compute percentiles over any period.
+CREATE TABLE IF NOT EXISTS measurement_sketch
+(
+    sensor_uuid VARCHAR(36) NOT NULL,
+    bucket_start BIGINT NOT NULL,
+    bin_index INTEGER NOT NULL,
+    bin_count BIGINT NOT NULL,
+    PRIMARY KEY(sensor_uuid, bucket_start, bin_index)
+);
+
+-- One row per period a sensor spent in ALERT, opened when its status switches to ALERT and closed (end_utc set) when
+-- it switches back, so the alert history reads a few rows instead of the flagged readings.
+CREATE TABLE IF NOT EXISTS alert_episode
+(
+    sensor_uuid VARCHAR(36) NOT NULL,
+    start_utc BIGINT NOT NULL,
+    end_utc BIGINT,
+    peak_co2_level INTEGER NOT NULL,
+    reading_count INTEGER NOT NULL,
+    PRIMARY KEY(sensor_uuid, start_utc)
+);
+
+-- The site, building and room of the sensors placed in one. A location is identified by its path: "site",
+-- "site/building" or "site/building/room".
+CREATE TABLE IF NOT EXISTS sensor_location
+(
+    sensor_uuid VARCHAR(36) NOT NULL,
+    site VARCHAR(64) NOT NULL,
+    building VARCHAR(64) NOT NULL,
+    room VARCHAR(64) NOT NULL,
+    PRIMARY KEY(sensor_uuid)
+);
+
+-- Per location, the number of its sensors in each status, kept up to date as statuses change.
+CREATE TABLE IF NOT EXISTS location_status_count
+(
+    location_path VARCHAR(200) NOT NULL,
+    ok_count BIGINT NOT NULL,
+    warn_count BIGINT NOT NULL,
+    alert_count BIGINT NOT NULL,
+    PRIMARY KEY(location_path)
+);
+
+-- Per location and day, the number, sum and maximum of the CO2 levels read by its sensors, added to as readings arrive.
+CREATE TABLE IF NOT EXISTS location_daily_total
+(
+    location_path VARCHAR(200) NOT NULL,
+    day_start BIGINT NOT NULL,
+    reading_count BIGINT NOT NULL,
+    co2_sum BIGINT NOT NULL,
+    co2_max INTEGER NOT NULL,
+    PRIMARY KEY(location_path, day_start)
+);
@@ -0,0 +1,117 @@
+package io.alvintures.co2sensorapi.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A locally started instance of the API in its own JVM, used by the benchmarks in this source set.
+ * <p>
+ * The classpath of the application is passed by Gradle via the {@code app.classpath} system property.
+ */
+public class AppProcess implements AutoCloseable {
+
+    private static final String MAIN_CLASS = "io.alvintures.co2sensorapi.Co2SensorApiApplication";
+
+    private final Process process;
+    private final int port;
+    private final long startNanos;
+
+    private AppProcess(Process process, int port, long startNanos) {
+        this.process = process;
+        this.port = port;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Starts the application on a free port with the given extra JVM and application arguments.
+     */
+    public static AppProcess start(List<String> jvmArgs, List<String> appArgs) throws IOException {
+        final int port = findFreePort();
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(requiredProperty("app.classpath"));
+        command.add(MAIN_CLASS);
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+
+        final long startNanos = System.nanoTime();
+        final Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.to(new File(System.getProperty("java.io.tmpdir"), "co2-sensor-api-" + port + ".log")))
+                .start();
+        return new AppProcess(process, port, startNanos);
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    /**
+     * Polls the ingest endpoint until a measurement is accepted and returns the time since the process was started.
+     */
+    public long awaitFirstMeasurement(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with code " + process.exitValue());
+            }
+            if (postMeasurement(sensorUuid) == 200) {
+                return System.nanoTime() - startNanos;
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("Application did not accept a measurement within " + timeout + " " + unit);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private int postMeasurement(String sensorUuid) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(
+                    getBaseUrl() + "/" + sensorUuid + "/measurements").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStream body = connection.getOutputStream()) {
+                body.write(("{\"co2\":1000,\"time\":\"" + ZonedDateTime.now() + "\"}").getBytes(StandardCharsets.UTF_8));
+            }
+            return connection.getResponseCode();
+        } catch (IOException notYetListening) {
+            return -1;
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    static String requiredProperty(String name) {
+        final String value = System.getProperty(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalStateException("System property " + name + " is required, run this through Gradle.");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,203 @@
+package io.alvintures.co2sensorapi.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates a fleet of sensors posting one reading per simulated minute, mixed with status, metrics, alerts and
+ * series queries, and reports the throughput, latency percentiles and error rate of each kind of request.
+ * <p>
+ * The readings start 30 days ago and the simulated clock runs as fast as the API accepts them, so the queries run
+ * against a history that keeps growing. Each sensor belongs to one worker, which keeps its readings in order.
+ * Without {@code load.target} a local instance is started with the jar being tested.
+ * Run it with {@code ./gradlew loadTest}, e.g. {@code ./gradlew loadTest -Psensors=1000 -Pduration=120 -PqueryRatio=0.3}.
+ */
+public class LoadGenerator {
+
+    enum RequestKind {
+        INGEST, STATUS, METRICS, ALERTS, SERIES
+    }
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final String baseUrl;
+    private final int workerCount;
+    private final double queryRatio;
+    private final long durationNanos;
+    private final List<List<SimulatedSensor>> sensorsByWorker = new ArrayList<>();
+    private long elapsedNanos;
+
+    LoadGenerator(String baseUrl, int sensorCount, int workerCount, double queryRatio, long durationSeconds) {
+        this.baseUrl = baseUrl;
+        this.workerCount = workerCount;
+        this.queryRatio = queryRatio;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        final ZonedDateTime start = ZonedDateTime.now(ZoneOffset.UTC).minusDays(30).truncatedTo(ChronoUnit.MINUTES);
+        for (int worker = 0; worker < workerCount; worker++) {
+            sensorsByWorker.add(new ArrayList<>());
+        }
+        for (int i = 0; i < sensorCount; i++) {
+            sensorsByWorker.get(i % workerCount).add(new SimulatedSensor(i, start));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final String target = System.getProperty("load.target", "");
+        final int sensorCount = Integer.getInteger("load.sensors", 100);
+        final int workerCount = Math.min(Integer.getInteger("load.workers", 16), sensorCount);
+        final double queryRatio = Double.parseDouble(System.getProperty("load.query-ratio", "0.2"));
+        final long durationSeconds = Long.getLong("load.duration", 60);
+        final long warmupSeconds = Long.getLong("load.warmup", 10);
+
+        if (!target.isEmpty()) {
+            run(target, sensorCount, workerCount, queryRatio, warmupSeconds, durationSeconds);
+            return;
+        }
+        // The simulated clock runs much faster than real sensors, so the per-sensor rate limit is lifted.
+        try (AppProcess app = AppProcess.start(Collections.emptyList(),
+                Collections.singletonList("--app.rate-limit.enabled=false"))) {
+            app.awaitFirstMeasurement(2, TimeUnit.MINUTES);
+            run(app.getBaseUrl(), sensorCount, workerCount, queryRatio, warmupSeconds, durationSeconds);
+        }
+    }
+
+    private static void run(String baseUrl, int sensorCount, int workerCount, double queryRatio,
+                            long warmupSeconds, long durationSeconds) throws Exception {
+        System.out.printf("Simulating %d sensors with %d workers against %s, %.0f%% queries%n",
+                sensorCount, workerCount, baseUrl, queryRatio * 100);
+        final LoadGenerator generator = new LoadGenerator(baseUrl, sensorCount, workerCount, queryRatio, durationSeconds);
+        if (warmupSeconds > 0) {
+            new LoadGenerator(baseUrl, Math.min(sensorCount, workerCount), workerCount, queryRatio, warmupSeconds).execute();
+        }
+        generator.report(generator.execute());
+    }
+
+    /**
+     * Runs the workers until the duration is over and returns their merged stats.
+     */
+    private Map<RequestKind, LoadStats> execute() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        final long start = System.nanoTime();
+        final long deadline = start + durationNanos;
+        final List<Future<Map<RequestKind, LoadStats>>> results = new ArrayList<>();
+        for (int worker = 0; worker < workerCount; worker++) {
+            final List<SimulatedSensor> sensors = sensorsByWorker.get(worker);
+            final long seed = worker;
+            results.add(executor.submit(() -> work(sensors, new Random(seed), deadline)));
+        }
+
+        final Map<RequestKind, LoadStats> total = newStats();
+        for (Future<Map<RequestKind, LoadStats>> result : results) {
+            result.get().forEach((kind, stats) -> total.get(kind).merge(stats));
+        }
+        elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+        return total;
+    }
+
+    private Map<RequestKind, LoadStats> work(List<SimulatedSensor> sensors, Random random, long deadline) {
+        final Map<RequestKind, LoadStats> stats = newStats();
+        final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+        int next = 0;
+        while (System.nanoTime() < deadline) {
+            final SimulatedSensor sensor = sensors.get(next);
+            if (random.nextDouble() < queryRatio) {
+                final RequestKind kind = RequestKind.values()[1 + random.nextInt(RequestKind.values().length - 1)];
+                final long start = System.nanoTime();
+                final int statusCode = send("GET", queryPath(kind, sensor), null, readBuffer);
+                stats.get(kind).record(statusCode, System.nanoTime() - start);
+            } else {
+                final ZonedDateTime time = sensor.nextTime();
+                final String body = "{\"co2\":" + sensor.nextCo2Level() + ",\"time\":\"" + time + "\"}";
+                final long start = System.nanoTime();
+                final int statusCode = send("POST", "/" + sensor.getUuid() + "/measurements", body, readBuffer);
+                stats.get(RequestKind.INGEST).record(statusCode, System.nanoTime() - start);
+                next = (next + 1) % sensors.size();
+            }
+        }
+        return stats;
+    }
+
+    private static String queryPath(RequestKind kind, SimulatedSensor sensor) {
+        switch (kind) {
+            case STATUS:
+                return "/" + sensor.getUuid();
+            case METRICS:
+                return "/" + sensor.getUuid() + "/metrics";
+            case ALERTS:
+                return "/" + sensor.getUuid() + "/alerts";
+            default:
+                return "/" + sensor.getUuid() + "/series?bucket=1h&agg=avg&agg=max&from=" + ZonedDateTime.now(ZoneOffset.UTC).minusDays(30);
+        }
+    }
+
+    /**
+     * Sends the request and returns its status code, or -1 if it failed. The response is read fully so the
+     * connection goes back to the keep-alive pool.
+     */
+    private int send(String method, String path, String body, byte[] readBuffer) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            final int statusCode = connection.getResponseCode();
+            try (InputStream in = statusCode < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    while (in.read(readBuffer) != -1) {
+                        // drain
+                    }
+                }
+            }
+            return statusCode;
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    private void report(Map<RequestKind, LoadStats> statsByKind) {
+        final double elapsedSeconds = elapsedNanos / 1e9;
+        final LoadStats queries = new LoadStats();
+        final LoadStats all = new LoadStats();
+        statsByKind.forEach((kind, stats) -> {
+            System.out.println(stats.format(kind.name().toLowerCase(), elapsedSeconds));
+            all.merge(stats);
+            if (kind != RequestKind.INGEST) {
+                queries.merge(stats);
+            }
+        });
+        System.out.println(queries.format("queries", elapsedSeconds));
+        System.out.println(all.format("total", elapsedSeconds));
+    }
+
+    private static Map<RequestKind, LoadStats> newStats() {
+        final Map<RequestKind, LoadStats> stats = new EnumMap<>(RequestKind.class);
+        for (RequestKind kind : RequestKind.values()) {
+            stats.put(kind, new LoadStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,56 @@
+package io.alvintures.co2sensorapi.perf;
+
+import io.alvintures.co2sensorapi.util.DDSketch;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and response codes of one kind of request. Each worker records into its own instance, which are merged
+ * once the run is over, so recording needs no synchronisation.
+ */
+class LoadStats {
+
+    private final DDSketch latencyMicros = DDSketch.forLatencies();
+    private final Map<Integer, Long> countByStatusCode = new TreeMap<>();
+    private long count;
+    private long errorCount;
+    private long maxLatencyMicros;
+
+    /**
+     * Records a request; statusCode is -1 if no response was received.
+     */
+    void record(int statusCode, long latencyNanos) {
+        final long micros = latencyNanos / 1_000;
+        latencyMicros.add(micros);
+        maxLatencyMicros = Math.max(maxLatencyMicros, micros);
+        countByStatusCode.merge(statusCode, 1L, Long::sum);
+        count++;
+        if (statusCode < 200 || statusCode >= 300) {
+            errorCount++;
+        }
+    }
+
+    void merge(LoadStats other) {
+        latencyMicros.merge(other.latencyMicros);
+        other.countByStatusCode.forEach((statusCode, statusCount) -> countByStatusCode.merge(statusCode, statusCount, Long::sum));
+        count += other.count;
+        errorCount += other.errorCount;
+        maxLatencyMicros = Math.max(maxLatencyMicros, other.maxLatencyMicros);
+    }
+
+    String format(String name, double elapsedSeconds) {
+        if (count == 0) {
+            return String.format("%-8s no requests", name);
+        }
+        return String.format("%-8s %8d req %9.1f req/s  p50 %7.2f ms  p95 %7.2f ms  p99 %7.2f ms  max %8.2f ms  errors %5.2f%%  %s",
+                name, count, count / elapsedSeconds,
+                millis(latencyMicros.quantile(0.5)), millis(latencyMicros.quantile(0.95)),
+                millis(latencyMicros.quantile(0.99)), maxLatencyMicros / 1000.0,
+                100.0 * errorCount / count, countByStatusCode);
+    }
+
+    private static double millis(Long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,63 @@
+package io.alvintures.co2sensorapi.perf;
+
+import java.time.ZonedDateTime;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A sensor of the simulated fleet, producing one reading per simulated minute.
+ * <p>
+ * The CO2 level follows the occupancy of the room: close to the outdoor level at night, rising during office hours
+ * up to a level that depends on how crowded the room is, plus some noise. Now and then a spike (a meeting, a closed
+ * window) pushes it above the alert threshold for a few minutes.
+ */
+class SimulatedSensor {
+
+    private static final double OUTDOOR_LEVEL = 420;
+    private static final double SPIKE_PROBABILITY = 0.003;
+
+    private final String uuid = UUID.randomUUID().toString();
+    private final Random random;
+    private final double peakLevel;
+    private ZonedDateTime time;
+    private int spikeMinutesLeft;
+    private double spikeLevel;
+
+    SimulatedSensor(long seed, ZonedDateTime start) {
+        this.random = new Random(seed);
+        this.peakLevel = 800 + random.nextDouble() * 1000;
+        this.time = start;
+    }
+
+    String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Time of the next reading, one minute after the previous one.
+     */
+    ZonedDateTime nextTime() {
+        time = time.plusMinutes(1);
+        return time;
+    }
+
+    /**
+     * CO2 level at the time of the last reading.
+     */
+    long nextCo2Level() {
+        final double hour = time.getHour() + time.getMinute() / 60.0;
+        // Occupancy rises from 8h, peaks in the afternoon and is gone by 19h.
+        final double occupancy = hour < 8 || hour > 19 ? 0 : Math.sin(Math.PI * (hour - 8) / 11);
+        double level = OUTDOOR_LEVEL + (peakLevel - OUTDOOR_LEVEL) * occupancy + random.nextGaussian() * 25;
+
+        if (spikeMinutesLeft == 0 && random.nextDouble() < SPIKE_PROBABILITY) {
+            spikeMinutesLeft = 3 + random.nextInt(8);
+            spikeLevel = 800 + random.nextDouble() * 1200;
+        }
+        if (spikeMinutesLeft > 0) {
+            spikeMinutesLeft--;
+            level += spikeLevel;
+        }
+        return Math.max(0, Math.round(level));
+    }
+}
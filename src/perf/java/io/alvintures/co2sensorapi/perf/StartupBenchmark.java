@@ -0,0 +1,44 @@
+package io.alvintures.co2sensorapi.perf;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time-to-first-request: the time from launching the JVM until the first measurement is accepted.
+ * <p>
+ * Each configuration is started {@code benchmark.iterations} times in a fresh JVM and the min/median/max are printed.
+ * Run it with {@code ./gradlew startupBenchmark}.
+ */
+public class StartupBenchmark {
+
+    private static final List<String> FAST_STARTUP_PROFILE = Collections.singletonList("--spring.profiles.active=fast-startup");
+
+    public static void main(String[] args) throws Exception {
+        final int iterations = Integer.getInteger("benchmark.iterations", 5);
+        final File cdsArchive = new File(AppProcess.requiredProperty("app.cds.archive"));
+
+        run("default", iterations, Collections.emptyList(), Collections.emptyList());
+        run("fast-startup", iterations, Collections.emptyList(), FAST_STARTUP_PROFILE);
+        if (cdsArchive.isFile()) {
+            run("fast-startup + AppCDS", iterations,
+                    Collections.singletonList("-XX:SharedArchiveFile=" + cdsArchive.getAbsolutePath()), FAST_STARTUP_PROFILE);
+        } else {
+            System.out.println("Skipping AppCDS run, no archive found at " + cdsArchive + " (requires JDK 13+).");
+        }
+    }
+
+    private static void run(String name, int iterations, List<String> jvmArgs, List<String> appArgs) throws Exception {
+        final long[] timesMillis = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            try (AppProcess app = AppProcess.start(jvmArgs, appArgs)) {
+                timesMillis[i] = TimeUnit.NANOSECONDS.toMillis(app.awaitFirstMeasurement(2, TimeUnit.MINUTES));
+            }
+        }
+        Arrays.sort(timesMillis);
+        System.out.printf("%-24s time-to-first-request min %5d ms, median %5d ms, max %5d ms (%d runs)%n",
+                name, timesMillis[0], timesMillis[iterations / 2], timesMillis[iterations - 1], iterations);
+    }
+}
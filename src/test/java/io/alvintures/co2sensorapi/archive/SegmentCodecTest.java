@@ -0,0 +1,96 @@
+package io.alvintures.co2sensorapi.archive;
+
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.util.TimestampUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentCodecTest {
+
+    private static final String SENSOR_UUID = UUID.randomUUID().toString();
+
+    @Test
+    void decode_returnsTheEncodedReadings() throws IOException {
+        final Random random = new Random(42);
+        final List<Measurement> measurements = new ArrayList<>();
+        ZonedDateTime time = ZonedDateTime.parse("2019-12-31T23:58:07Z");
+        for (int i = 0; i < 1_000; i++) {
+            // Mostly every minute, with some gaps and jitter, levels going up and down.
+            time = time.plusSeconds(i % 97 == 0 ? 3_600 + random.nextInt(100) : 60 + random.nextInt(3) - 1);
+            measurements.add(measurement(time, 400 + random.nextInt(2_000), random.nextInt(10) == 0));
+        }
+
+        final List<Measurement> decoded = SegmentCodec.decode(SegmentCodec.encode(SENSOR_UUID, measurements));
+
+        assertThat(decoded).hasSize(measurements.size());
+        for (int i = 0; i < measurements.size(); i++) {
+            assertThat(decoded.get(i))
+                    .matches(measurement -> measurement.getSensorUUID().equals(SENSOR_UUID))
+                    .isEqualToComparingFieldByField(measurements.get(i));
+        }
+    }
+
+    @Test
+    void readHeader_summarizesTheReadings() throws IOException {
+        final ZonedDateTime start = ZonedDateTime.parse("2020-07-13T12:00:00Z");
+        final List<Measurement> measurements = new ArrayList<>();
+        measurements.add(measurement(start, 1000, false));
+        measurements.add(measurement(start.plusMinutes(1), 2500, true));
+        measurements.add(measurement(start.plusMinutes(2), 1500, false));
+
+        final ArchiveSegment header = SegmentCodec.readHeader(
+                new ByteArrayInputStream(SegmentCodec.encode(SENSOR_UUID, measurements)));
+
+        assertThat(header.getSensorUuid()).isEqualTo(SENSOR_UUID);
+        assertThat(header.getFirstTime()).isEqualTo(20200713120000L);
+        assertThat(header.getLastTime()).isEqualTo(20200713120200L);
+        assertThat(header.getCount()).isEqualTo(3);
+        assertThat(header.getCo2Sum()).isEqualTo(5000L);
+        assertThat(header.getCo2Max()).isEqualTo(2500L);
+        assertThat(header.getAlertCount()).isEqualTo(1);
+    }
+
+    @Test
+    void encode_readingsEveryMinuteTakeAboutOneByte() {
+        final List<Measurement> measurements = new ArrayList<>();
+        ZonedDateTime time = ZonedDateTime.parse("2020-07-01T00:00:00Z");
+        final Random random = new Random(7);
+        long level = 800;
+        for (int i = 0; i < 43_200; i++) { // a month
+            time = time.plusMinutes(1);
+            level = Math.max(400, level + random.nextInt(21) - 10);
+            measurements.add(measurement(time, level, false));
+        }
+
+        final byte[] encoded = SegmentCodec.encode(SENSOR_UUID, measurements);
+
+        assertThat(encoded.length)
+                .as("a row of the measurement table takes more than 50 bytes, a reading should take less than 2")
+                .isLessThan(measurements.size() * 2);
+    }
+
+    @Test
+    void encode_noReadings() {
+        assertThatThrownBy(() -> SegmentCodec.encode(SENSOR_UUID, new ArrayList<>()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Measurement measurement(ZonedDateTime time, long co2Level, boolean isAlert) {
+        final Measurement measurement = new Measurement();
+        measurement.setSensorUUID(SENSOR_UUID);
+        measurement.setTime(TimestampUtil.toUtcTimestamp(time));
+        measurement.setCo2Level(co2Level);
+        measurement.setAlert(isAlert);
+        return measurement;
+    }
+}
@@ -0,0 +1,61 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "app.cluster.enabled=true",
+        "app.cluster.self-url=http://node-a:8080",
+        "app.cluster.nodes=http://node-b:8080",
+        "app.cluster.secret=test-secret",
+        "app.cluster.shared-database=true"
+})
+@AutoConfigureMockMvc
+class ClusterControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Test
+    void joinNode_withoutTheClusterSecret_isUnauthorized() throws Exception {
+        mockMvc.perform(put("/cluster/nodes").param("url", "http://intruder:8080"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(put("/cluster/nodes").param("url", "http://intruder:8080")
+                .header(SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, "guessed"))
+                .andExpect(status().isUnauthorized());
+
+        assertThat(clusterMembership.getNodes()).doesNotContain("http://intruder:8080");
+    }
+
+    @Test
+    void leaveNode_withoutTheClusterSecret_isUnauthorized() throws Exception {
+        mockMvc.perform(delete("/cluster/nodes").param("url", "http://node-b:8080"))
+                .andExpect(status().isUnauthorized());
+
+        assertThat(clusterMembership.getNodes()).contains("http://node-b:8080");
+    }
+
+    @Test
+    void joinAndLeaveNode_withTheClusterSecret() throws Exception {
+        mockMvc.perform(put("/cluster/nodes").param("url", "http://node-c:8080")
+                .header(SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, "test-secret"))
+                .andExpect(status().isOk());
+        assertThat(clusterMembership.getNodes()).contains("http://node-c:8080");
+
+        mockMvc.perform(delete("/cluster/nodes").param("url", "http://node-c:8080")
+                .header(SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, "test-secret"))
+                .andExpect(status().isOk());
+        assertThat(clusterMembership.getNodes()).doesNotContain("http://node-c:8080");
+    }
+}
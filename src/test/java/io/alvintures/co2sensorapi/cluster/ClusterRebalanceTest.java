@@ -0,0 +1,125 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import io.alvintures.co2sensorapi.Co2SensorApiApplication;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.service.SensorStatusRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two nodes of a cluster sharing one in-memory database, on random ports.
+ */
+class ClusterRebalanceTest {
+
+    private static final String CLUSTER_SECRET = "test-secret";
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static String nodeAUrl;
+    private static String nodeBUrl;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        final int portA = freePort();
+        final int portB = freePort();
+        nodeAUrl = "http://localhost:" + portA;
+        nodeBUrl = "http://localhost:" + portB;
+        final String databaseUrl = "jdbc:h2:mem:shared-" + portA + ";DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=64";
+        nodeA = startNode(portA, nodeBUrl, databaseUrl);
+        nodeB = startNode(portB, nodeAUrl, databaseUrl);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+    }
+
+    @Test
+    void sensorMovedToAnotherNode_isReloadedByItsNewOwner() {
+        final String sensorUuid = sensorOwnedBy(nodeAUrl);
+        final ZonedDateTime time = ZonedDateTime.now();
+        postMeasurement(nodeAUrl, sensorUuid, 2100, time.minusMinutes(3));
+        postMeasurement(nodeAUrl, sensorUuid, 2200, time.minusMinutes(2));
+        assertThat(nodeB.getBean(SensorStatusRegistry.class).get(sensorUuid))
+                .as("created on node A after node B loaded its registry")
+                .isEmpty();
+
+        // Node A stops: the orchestrator removes it from the view of node B.
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, CLUSTER_SECRET);
+        restTemplate.exchange(nodeBUrl + "/cluster/nodes?url=" + nodeAUrl, HttpMethod.DELETE,
+                new HttpEntity<>(headers), String.class);
+
+        assertThat(nodeB.getBean(SensorStatusRegistry.class).get(sensorUuid))
+                .as("reloaded from the shared database")
+                .contains(SensorStatus.WARN);
+
+        postMeasurement(nodeBUrl, sensorUuid, 2300, time.minusMinutes(1));
+        final ResponseEntity<Map> status = restTemplate.getForEntity(nodeBUrl + "/" + sensorUuid, Map.class);
+        assertThat(status.getBody())
+                .as("the third reading over the threshold, counted from the readings stored by node A")
+                .containsEntry("status", "ALERT");
+    }
+
+    private void postMeasurement(final String nodeUrl, final String sensorUuid, final int co2Level,
+                                 final ZonedDateTime time) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.postForEntity(nodeUrl + "/" + sensorUuid + "/measurements",
+                new HttpEntity<>("{\"co2\":" + co2Level + ",\"time\":\"" + time + "\"}", headers), Void.class);
+    }
+
+    private static ConfigurableApplicationContext startNode(final int port, final String otherNodeUrl,
+                                                            final String databaseUrl) {
+        return new SpringApplicationBuilder(Co2SensorApiApplication.class)
+                .properties(
+                        "server.port=" + port,
+                        "spring.datasource.url=" + databaseUrl,
+                        "app.cluster.enabled=true",
+                        "app.cluster.self-url=http://localhost:" + port,
+                        "app.cluster.secret=" + CLUSTER_SECRET,
+                        "app.cluster.shared-database=true",
+                        "app.cluster.nodes=" + otherNodeUrl
+                )
+                .run();
+    }
+
+    private static String sensorOwnedBy(final String nodeUrl) {
+        final ClusterMembership clusterMembership = nodeA.getBean(ClusterMembership.class);
+        String sensorUuid;
+        do {
+            sensorUuid = UUID.randomUUID().toString();
+        } while (!clusterMembership.ownerOf(sensorUuid).equals(nodeUrl));
+        return sensorUuid;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
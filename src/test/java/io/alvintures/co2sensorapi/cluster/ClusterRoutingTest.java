@@ -0,0 +1,119 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import io.alvintures.co2sensorapi.Co2SensorApiApplication;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.service.SensorStatusRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two nodes of a cluster, each with its own in-memory database, on random ports.
+ */
+class ClusterRoutingTest {
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static String nodeAUrl;
+    private static String nodeBUrl;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        final int portA = freePort();
+        final int portB = freePort();
+        nodeAUrl = "http://localhost:" + portA;
+        nodeBUrl = "http://localhost:" + portB;
+        nodeA = startNode(portA, nodeBUrl);
+        nodeB = startNode(portB, nodeAUrl);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+    }
+
+    @Test
+    void readingPostedToTheNonOwner_isStoredByTheOwner() {
+        final String sensorUuid = sensorOwnedBy(nodeBUrl);
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        restTemplate.postForEntity(nodeAUrl + "/" + sensorUuid + "/measurements",
+                new HttpEntity<>("{\"co2\":1200,\"time\":\"" + ZonedDateTime.now() + "\"}", headers), Void.class);
+
+        assertThat(nodeB.getBean(SensorStatusRegistry.class).get(sensorUuid))
+                .as("the owner stored the reading")
+                .contains(SensorStatus.OK);
+        assertThat(nodeA.getBean(SensorStatusRegistry.class).get(sensorUuid))
+                .as("the node which received it did not")
+                .isEmpty();
+    }
+
+    @Test
+    void statusReadFromTheNonOwner_isTheOwnersStatus() {
+        final String sensorUuid = sensorOwnedBy(nodeBUrl);
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.postForEntity(nodeBUrl + "/" + sensorUuid + "/measurements",
+                new HttpEntity<>("{\"co2\":1200,\"time\":\"" + ZonedDateTime.now() + "\"}", headers), Void.class);
+
+        final ResponseEntity<Map> status = restTemplate.getForEntity(nodeAUrl + "/" + sensorUuid, Map.class);
+        final ResponseEntity<Map> statuses = restTemplate.postForEntity(nodeAUrl + "/status:batchGet",
+                new HttpEntity<>(Collections.singletonMap("uuids", Collections.singletonList(sensorUuid)), headers),
+                Map.class);
+
+        assertThat(status.getBody()).containsEntry("status", "OK");
+        assertThat(statuses.getBody()).containsEntry(sensorUuid, "OK");
+    }
+
+    private static ConfigurableApplicationContext startNode(final int port, final String otherNodeUrl) {
+        return new SpringApplicationBuilder(Co2SensorApiApplication.class)
+                .properties(
+                        "server.port=" + port,
+                        "spring.datasource.url=jdbc:h2:mem:node-" + port + ";QUERY_CACHE_SIZE=64",
+                        "app.cluster.enabled=true",
+                        "app.cluster.self-url=http://localhost:" + port,
+                        "app.cluster.secret=test-secret",
+                        "app.cluster.nodes=" + otherNodeUrl
+                )
+                .run();
+    }
+
+    private static String sensorOwnedBy(final String nodeUrl) {
+        final ClusterMembership clusterMembership = nodeA.getBean(ClusterMembership.class);
+        String sensorUuid;
+        do {
+            sensorUuid = UUID.randomUUID().toString();
+        } while (!clusterMembership.ownerOf(sensorUuid).equals(nodeUrl));
+        return sensorUuid;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
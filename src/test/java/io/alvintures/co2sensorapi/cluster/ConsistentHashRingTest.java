@@ -0,0 +1,96 @@
+package io.alvintures.co2sensorapi.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> NODES = Arrays.asList(
+            "http://localhost:8081", "http://localhost:8082", "http://localhost:8083"
+    );
+
+    private static final List<String> SENSORS = IntStream.range(0, 10_000)
+            .mapToObj(i -> UUID.randomUUID().toString())
+            .collect(Collectors.toList());
+
+    @Test
+    void ownerOf_isTheSameOnEveryInstance() {
+        final ConsistentHashRing ring1 = new ConsistentHashRing(NODES, 128);
+        final ConsistentHashRing ring2 = new ConsistentHashRing(Arrays.asList(NODES.get(2), NODES.get(0), NODES.get(1)), 128);
+
+        assertThat(SENSORS)
+                .as("every node should agree on the owner regardless of the order the nodes were configured")
+                .allMatch(sensor -> ring1.ownerOf(sensor).equals(ring2.ownerOf(sensor)));
+    }
+
+    @Test
+    void ownerOf_spreadsSensorsEvenly() {
+        final ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+
+        final Map<String, Long> sensorCountByNode = SENSORS.stream()
+                .collect(Collectors.groupingBy(ring::ownerOf, Collectors.counting()));
+
+        assertThat(sensorCountByNode).containsOnlyKeys(NODES);
+        assertThat(sensorCountByNode.values())
+                .as("each of the 3 nodes should own roughly a third of the sensors")
+                .allMatch(count -> count > 2_500 && count < 4_200);
+    }
+
+    @Test
+    void withNode_onlyMovesSensorsToTheNewNode() {
+        final ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+        final Map<String, String> ownerBefore = owners(ring);
+        final String newNode = "http://localhost:8084";
+
+        final ConsistentHashRing grownRing = ring.withNode(newNode);
+
+        final List<String> movedSensors = SENSORS.stream()
+                .filter(sensor -> !grownRing.ownerOf(sensor).equals(ownerBefore.get(sensor)))
+                .collect(Collectors.toList());
+        assertThat(movedSensors)
+                .as("sensors should only move to the new node")
+                .allMatch(sensor -> grownRing.ownerOf(sensor).equals(newNode));
+        assertThat(movedSensors.size())
+                .as("only about a quarter of the sensors should move")
+                .isBetween(1_500, 3_500);
+    }
+
+    @Test
+    void withoutNode_onlyMovesSensorsOfTheLeavingNode() {
+        final ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+        final Map<String, String> ownerBefore = owners(ring);
+        final String leavingNode = NODES.get(1);
+
+        final ConsistentHashRing shrunkRing = ring.withoutNode(leavingNode);
+
+        assertThat(shrunkRing.getNodes()).doesNotContain(leavingNode);
+        assertThat(SENSORS)
+                .as("sensors of the remaining nodes should keep their owner")
+                .filteredOn(sensor -> !ownerBefore.get(sensor).equals(leavingNode))
+                .allMatch(sensor -> shrunkRing.ownerOf(sensor).equals(ownerBefore.get(sensor)));
+    }
+
+    @Test
+    void ownerOf_emptyRing() {
+        final ConsistentHashRing ring = new ConsistentHashRing(NODES.subList(0, 1), 16).withoutNode(NODES.get(0));
+
+        assertThatThrownBy(() -> ring.ownerOf(SENSORS.get(0)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private Map<String, String> owners(ConsistentHashRing ring) {
+        final Map<String, String> owners = new HashMap<>();
+        SENSORS.forEach(sensor -> owners.put(sensor, ring.ownerOf(sensor)));
+        return owners;
+    }
+}
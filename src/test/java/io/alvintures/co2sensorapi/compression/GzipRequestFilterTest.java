@@ -0,0 +1,137 @@
+package io.alvintures.co2sensorapi.compression;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GzipRequestFilterTest {
+
+    private static final String BODY = "{\"co2\":2000,\"time\":\"2020-07-13T10:15:30+01:00\"}";
+
+    private final GzipRequestFilter filter = new GzipRequestFilter(1024);
+
+    @Test
+    void doFilter_gzippedBody_isPassedOnInflated() throws ServletException, IOException {
+        final MockHttpServletRequest request = request("gzip", gzip(BODY.getBytes(StandardCharsets.UTF_8)));
+        final MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        final HttpServletRequest inflated = (HttpServletRequest) chain.getRequest();
+        assertThat(StreamUtils.copyToString(inflated.getInputStream(), StandardCharsets.UTF_8)).isEqualTo(BODY);
+        assertThat(inflated.getContentLength()).isEqualTo(BODY.length());
+        assertThat(inflated.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+    }
+
+    @Test
+    void doFilter_gzippedBody_canBeReadWithAReadListener() throws ServletException, IOException {
+        final MockHttpServletRequest request = request("gzip", gzip(BODY.getBytes(StandardCharsets.UTF_8)));
+        final MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        final ServletInputStream in = chain.getRequest().getInputStream();
+        final ByteArrayOutputStream read = new ByteArrayOutputStream();
+        final List<String> events = new ArrayList<>();
+
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                events.add("dataAvailable");
+                final byte[] buffer = new byte[16];
+                int count;
+                while (in.isReady() && (count = in.read(buffer)) != -1) {
+                    read.write(buffer, 0, count);
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                events.add("allDataRead");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                events.add("error");
+            }
+        });
+
+        assertThat(events).containsExactly("dataAvailable", "allDataRead");
+        assertThat(new String(read.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(BODY);
+    }
+
+    @Test
+    void doFilter_noContentEncoding_passesTheRequestOn() throws ServletException, IOException {
+        final MockHttpServletRequest request = request(null, BODY.getBytes(StandardCharsets.UTF_8));
+        final MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isSameAs(request);
+    }
+
+    @Test
+    void doFilter_inflatesBeyondTheLimit_returnsPayloadTooLarge() throws ServletException, IOException {
+        final MockHttpServletRequest request = request("gzip", gzip(new byte[4096]));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE.value());
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    void doFilter_notGzip_returnsBadRequest() throws ServletException, IOException {
+        final MockHttpServletRequest request = request("gzip", BODY.getBytes(StandardCharsets.UTF_8));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    void doFilter_otherEncoding_returnsUnsupportedMediaType() throws ServletException, IOException {
+        final MockHttpServletRequest request = request("br", BODY.getBytes(StandardCharsets.UTF_8));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+    }
+
+    private static MockHttpServletRequest request(final String contentEncoding, final byte[] body) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/measurements");
+        if (contentEncoding != null) {
+            request.addHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+        request.setContentType("application/json");
+        request.setContent(body);
+        return request;
+    }
+
+    private static byte[] gzip(final byte[] body) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,8 +1,15 @@
 package io.alvintures.co2sensorapi.controller;
 
 import com.github.javafaker.Faker;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import io.alvintures.co2sensorapi.dto.SensorAlertsResponse;
+import io.alvintures.co2sensorapi.dto.SensorMetrics;
+import io.alvintures.co2sensorapi.dto.SensorMetricsBatchGetParams;
+import io.alvintures.co2sensorapi.dto.SensorMetricsResponse;
+import io.alvintures.co2sensorapi.dto.SensorSeries;
 import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.dto.SensorStatusBatchGetParams;
 import io.alvintures.co2sensorapi.dto.StoreMeasurementParams;
 import io.alvintures.co2sensorapi.exception.SensorApiException;
 import io.alvintures.co2sensorapi.service.SensorService;
@@ -12,14 +19,19 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
 import java.time.ZonedDateTime;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -41,9 +53,9 @@ class SensorApiControllerTest {
         requestBody.setCo2(FAKER.number().randomNumber());
         requestBody.setTime(ZonedDateTime.now().toString());
 
-        sensorApiController.collectMeasurement(uuid, requestBody);
+        sensorApiController.collectMeasurement(uuid, null, requestBody);
 
-        verify(sensorServiceMock).storeMeasurement(eq(uuid), eq(requestBody.getCo2()), eq(requestBody.getTime()));
+        verify(sensorServiceMock).storeMeasurement(eq(uuid), eq(requestBody.getCo2()), eq(requestBody.getTime()), isNull());
     }
 
     @Test
@@ -66,24 +78,83 @@ class SensorApiControllerTest {
                 .hasMessage("No records found for sensor with ID " + uuid);
     }
 
+    @Test
+    void getSensorStatuses() {
+        final List<String> uuids = Arrays.asList(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        final SensorStatusBatchGetParams requestBody = new SensorStatusBatchGetParams();
+        requestBody.setUuids(uuids);
+        when(sensorServiceMock.getStatuses(uuids)).thenReturn(ImmutableMap.of(uuids.get(0), SensorStatus.ALERT));
+
+        assertThat(sensorApiController.getSensorStatuses(null, requestBody))
+                .as("should return the statuses returned by the service")
+                .containsOnly(entry(uuids.get(0), SensorStatus.ALERT));
+    }
+
+    @Test
+    void getSensorStatuses_forwardedByAnotherNode() {
+        final List<String> uuids = Collections.singletonList(UUID.randomUUID().toString());
+        final SensorStatusBatchGetParams requestBody = new SensorStatusBatchGetParams();
+        requestBody.setUuids(uuids);
+        when(sensorServiceMock.getLocalStatuses(uuids)).thenReturn(ImmutableMap.of(uuids.get(0), SensorStatus.OK));
+
+        assertThat(sensorApiController.getSensorStatuses("http://node-b:8080", requestBody))
+                .as("a node answers the requests forwarded to it from its own statuses")
+                .containsOnly(entry(uuids.get(0), SensorStatus.OK));
+    }
+
     @Test
     void getSensorMetrics() {
         final String uuid = UUID.randomUUID().toString();
-        final Map<String, Long> sampleResponse = Maps.newHashMap();
-        when(sensorServiceMock.getMetrics(eq(uuid), anyInt())).thenReturn(sampleResponse);
+        final SensorMetricsResponse sampleResponse = new SensorMetricsResponse(30, new SensorMetrics());
+        when(sensorServiceMock.getMetrics(eq(uuid), anyList())).thenReturn(sampleResponse);
 
-        assertThat(sensorApiController.getSensorMetrics(uuid))
+        assertThat(sensorApiController.getSensorMetrics(uuid, Collections.singletonList(30)))
                 .as("should return the actual object returned by the service")
                 .isEqualTo(sampleResponse);
     }
 
+    @Test
+    void getSensorsMetrics() {
+        final List<String> uuids = Arrays.asList(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        final List<Integer> periods = Arrays.asList(1, 7, 30);
+        final SensorMetricsBatchGetParams requestBody = new SensorMetricsBatchGetParams();
+        requestBody.setUuids(uuids);
+        requestBody.setPeriodInDays(periods);
+        final SensorMetricsResponse sampleResponse = new SensorMetricsResponse(periods,
+                Arrays.asList(new SensorMetrics(), new SensorMetrics(), new SensorMetrics()));
+        when(sensorServiceMock.getMetricsOfSensors(uuids, periods)).thenReturn(ImmutableMap.of(uuids.get(0), sampleResponse));
+
+        assertThat(sensorApiController.getSensorsMetrics(requestBody))
+                .containsOnly(entry(uuids.get(0), sampleResponse));
+    }
+
+    @Test
+    void getFleetMetrics() {
+        final SensorMetricsResponse sampleResponse = new SensorMetricsResponse(7, new SensorMetrics());
+        when(sensorServiceMock.getFleetMetrics(Collections.singletonList(7))).thenReturn(sampleResponse);
+
+        assertThat(sensorApiController.getFleetMetrics(Collections.singletonList(7)))
+                .isEqualTo(sampleResponse);
+    }
+
     @Test
     void getSensorAlerts() {
         final String uuid = UUID.randomUUID().toString();
-        final Map<String, Object> sampleResponse = Maps.newHashMap();
+        final SensorAlertsResponse sampleResponse = SensorAlertsResponse.empty();
         when(sensorServiceMock.getAlerts(eq(uuid), anyInt())).thenReturn(sampleResponse);
 
         assertThat(sensorApiController.getSensorAlerts(uuid))
                 .isEqualTo(sampleResponse);
     }
+
+    @Test
+    void getSensorSeries() {
+        final String uuid = UUID.randomUUID().toString();
+        final SensorSeries sampleResponse = new SensorSeries();
+        final List<String> aggregations = Lists.newArrayList("avg", "max");
+        when(sensorServiceMock.getSeries(uuid, null, null, "1h", aggregations, 500)).thenReturn(sampleResponse);
+
+        assertThat(sensorApiController.getSensorSeries(uuid, null, null, "1h", aggregations, 500))
+                .isEqualTo(sampleResponse);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package io.alvintures.co2sensorapi.dao;
+
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs the tests of {@link SensorDaoTest} against a locally started database with the postgresql profile, or the
+ * timescaledb one, e.g.
+ * {@code APP_TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/co2 APP_TEST_DB_PROFILE=timescaledb ./gradlew test}.
+ * Skipped without APP_TEST_POSTGRES_URL.
+ */
+@EnabledIfEnvironmentVariable(named = "APP_TEST_POSTGRES_URL", matches = ".+")
+@SpringBootTest(properties = {
+        "spring.profiles.active=${APP_TEST_DB_PROFILE:postgresql}",
+        "spring.datasource.url=${APP_TEST_POSTGRES_URL}",
+        "app.archive.directory=build/test-archive"
+})
+class PostgresSensorDaoTest extends SensorDaoTest {
+}
@@ -1,23 +1,37 @@
 package io.alvintures.co2sensorapi.dao;
 
 import com.github.javafaker.Faker;
+import io.alvintures.co2sensorapi.archive.ArchiveStore;
+import io.alvintures.co2sensorapi.dto.AlertEpisode;
 import io.alvintures.co2sensorapi.dto.Measurement;
 import io.alvintures.co2sensorapi.dto.Sensor;
 import io.alvintures.co2sensorapi.dto.SensorMetrics;
 import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.dto.SeriesBucket;
+import io.alvintures.co2sensorapi.dto.SeriesPoint;
 import io.alvintures.co2sensorapi.util.TimestampUtil;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.io.IOException;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
-@SpringBootTest
+@SpringBootTest(properties = "app.archive.directory=build/test-archive")
 class SensorDaoTest {
 
     private static final Faker FAKER = new Faker();
@@ -25,6 +39,9 @@ class SensorDaoTest {
     @Autowired
     private SensorDao daoToTest;
 
+    @Autowired
+    private ArchiveStore archiveStore;
+
     @Test
     void testCreationAndRetrievalOfSensor() {
         final Sensor sensorToSave = randomSensor(SensorStatus.WARN);
@@ -76,6 +93,54 @@ class SensorDaoTest {
                 .matches(measurement -> lastMatchingMeasurement.getCo2Level().equals(measurement.getCo2Level()));
     }
 
+    @Test
+    void createMeasurement_sameMinute() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime minute = ZonedDateTime.parse("2020-07-13T12:00:00Z");
+        daoToTest.createMeasurement(randomMeasurement(sensorUuid, minute));
+
+        assertThatThrownBy(() -> daoToTest.createMeasurement(randomMeasurement(sensorUuid, minute.plusSeconds(30))))
+                .isInstanceOf(DuplicateKeyException.class);
+        daoToTest.createMeasurement(randomMeasurement(UUID.randomUUID().toString(), minute));
+    }
+
+    @Test
+    void createMeasurementsOfNewMinutes_skipsMinutesAlreadyRead() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime minute = ZonedDateTime.parse("2020-07-13T12:00:00Z");
+        daoToTest.createMeasurement(randomMeasurement(sensorUuid, minute));
+
+        final List<Measurement> inserted = daoToTest.createMeasurementsOfNewMinutes(Arrays.asList(
+                randomMeasurement(sensorUuid, minute.plusSeconds(10)),
+                randomMeasurement(sensorUuid, minute.plusMinutes(1)),
+                randomMeasurement(sensorUuid, minute.plusMinutes(1).plusSeconds(10))
+        ));
+
+        assertThat(inserted)
+                .as("the two others are duplicates")
+                .extracting(Measurement::getTime)
+                .containsExactly(20200713120100L);
+        assertThat(daoToTest.getRecentMeasurements(sensorUuid, 10))
+                .extracting(Measurement::getTime)
+                .containsExactly(20200713120100L, 20200713120000L);
+    }
+
+    @Test
+    void getMeasurementsBeforeAndAfter() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime start = ZonedDateTime.parse("2020-07-13T12:00:00Z");
+        for (int minute = 0; minute < 5; minute++) {
+            daoToTest.createMeasurement(randomMeasurement(sensorUuid, start.plusMinutes(minute)));
+        }
+
+        assertThat(daoToTest.getMeasurementsBefore(sensorUuid, 20200713120230L, 2))
+                .extracting(Measurement::getTime)
+                .containsExactly(20200713120200L, 20200713120100L);
+        assertThat(daoToTest.getMeasurementsAfter(sensorUuid, 20200713120230L, 3))
+                .extracting(Measurement::getTime)
+                .containsExactly(20200713120300L, 20200713120400L);
+    }
+
     @Test
     void getMetrics() {
         final String sensorUuid = UUID.randomUUID().toString();
@@ -102,13 +167,117 @@ class SensorDaoTest {
                 .isEqualTo(1500L);
     }
 
+    @Test
+    void getMetrics_severalSensorsAndPeriods() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final String otherSensorUuid = UUID.randomUUID().toString();
+        final String sensorWithoutReadingsUuid = UUID.randomUUID().toString();
+        final ZonedDateTime now = ZonedDateTime.parse("2020-07-20T12:00:00Z");
+        for (int day = 0; day < 10; day++) {
+            final Measurement measurement = randomMeasurement(sensorUuid, now.minusDays(day));
+            measurement.setCo2Level(1000L + day * 100);
+            daoToTest.createMeasurement(measurement);
+            daoToTest.addToSketch(sensorUuid, measurement.getTime(), measurement.getCo2Level());
+        }
+        final Measurement otherMeasurement = randomMeasurement(otherSensorUuid, now.minusDays(3));
+        otherMeasurement.setCo2Level(800L);
+        daoToTest.createMeasurement(otherMeasurement);
+        final long[] startDates = {
+                TimestampUtil.toUtcTimestamp(now.minusDays(1)), TimestampUtil.toUtcTimestamp(now.minusDays(5).minusMinutes(1))
+        };
+
+        final Map<String, List<SensorMetrics>> metrics = daoToTest.getMetrics(
+                Arrays.asList(sensorUuid, otherSensorUuid, sensorWithoutReadingsUuid), startDates, TimestampUtil.toUtcTimestamp(now));
+
+        assertThat(metrics).containsOnlyKeys(sensorUuid, otherSensorUuid, sensorWithoutReadingsUuid);
+        assertThat(metrics.get(sensorUuid))
+                .as("the last day holds the readings of today and yesterday, the last 5 days 6 readings")
+                .extracting(SensorMetrics::getMax, SensorMetrics::getAverage)
+                .containsExactly(tuple(1100L, 1050L), tuple(1500L, 1250L));
+        assertThat(metrics.get(sensorUuid))
+                .as("each period has its own percentiles")
+                .extracting(SensorMetrics::getP99)
+                .doesNotContainNull()
+                .doesNotHaveDuplicates();
+        assertThat(metrics.get(otherSensorUuid))
+                .extracting(SensorMetrics::getMax)
+                .containsExactly(0L, 800L);
+        assertThat(metrics.get(sensorWithoutReadingsUuid))
+                .extracting(SensorMetrics::getMax, SensorMetrics::getP50)
+                .containsExactly(tuple(0L, null), tuple(0L, null));
+        assertThat(daoToTest.getMetrics(sensorUuid, startDates[1], TimestampUtil.toUtcTimestamp(now)))
+                .as("the same as the period on its own")
+                .isEqualToComparingFieldByField(metrics.get(sensorUuid).get(1));
+    }
+
+    @Test
+    void getMetrics_percentilesFromSketches() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime now = ZonedDateTime.now();
+        for (int minute = 0; minute < 100; minute++) {
+            final Long time = TimestampUtil.toUtcTimestamp(now.minusMinutes(minute));
+            daoToTest.addToSketch(sensorUuid, time, 1000L + minute * 10);
+        }
+
+        final SensorMetrics metrics = daoToTest.getMetrics(
+                sensorUuid, TimestampUtil.toUtcTimestamp(now.minusDays(1)), TimestampUtil.toUtcTimestamp(now)
+        );
+
+        assertThat(metrics.getP50())
+                .as("p50 of 1000..1990 should be about 1490")
+                .isBetween(1475L, 1505L);
+        assertThat(metrics.getP99())
+                .as("p99 of 1000..1990 should be about 1980")
+                .isBetween(1960L, 2000L);
+    }
+
+    @Test
+    void rollUpSketchesOfDay_keepsTheMetricsOfTheDay() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime dayStart = ZonedDateTime.parse("2020-07-13T00:00:00Z");
+        for (int minute = 0; minute < 24 * 60; minute += 10) {
+            daoToTest.addToSketch(sensorUuid, TimestampUtil.toUtcTimestamp(dayStart.plusMinutes(minute)), 400L + minute);
+        }
+        final Long startDate = TimestampUtil.toUtcTimestamp(dayStart);
+        final Long endDate = TimestampUtil.toUtcTimestamp(dayStart.plusDays(1).minusSeconds(1));
+        final SensorMetrics hourlyMetrics = daoToTest.getMetrics(sensorUuid, startDate, endDate);
+
+        assertThat(daoToTest.getDaysWithHourlySketchesBefore(20200714000000L)).contains(20200713000000L);
+        assertThat(daoToTest.rollUpSketchesOfDay(sensorUuid, startDate))
+                .as("the bins of the 23 hours after midnight are merged into the first hour")
+                .isGreaterThan(23);
+
+        final SensorMetrics dailyMetrics = daoToTest.getMetrics(sensorUuid, startDate, endDate);
+        assertThat(daoToTest.getSensorUuidsWithHourlySketches(startDate)).doesNotContain(sensorUuid);
+        assertThat(dailyMetrics.getP50()).isEqualTo(hourlyMetrics.getP50());
+        assertThat(dailyMetrics.getP99()).isEqualTo(hourlyMetrics.getP99());
+    }
+
+    @Test
+    void deleteMeasurementsBefore_deletesInBatches() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime cutoff = ZonedDateTime.parse("2020-07-13T00:00:00Z");
+        for (int day = 1; day <= 5; day++) {
+            daoToTest.createMeasurement(randomMeasurement(sensorUuid, cutoff.minusDays(day)));
+        }
+        final Measurement recentMeasurement = randomMeasurement(sensorUuid, cutoff);
+        daoToTest.createMeasurement(recentMeasurement);
+
+        assertThat(daoToTest.deleteMeasurementsBefore(sensorUuid, TimestampUtil.toUtcTimestamp(cutoff), 2)).isEqualTo(2);
+        assertThat(daoToTest.deleteMeasurementsBefore(sensorUuid, TimestampUtil.toUtcTimestamp(cutoff), 2)).isEqualTo(2);
+        assertThat(daoToTest.deleteMeasurementsBefore(sensorUuid, TimestampUtil.toUtcTimestamp(cutoff), 2)).isEqualTo(1);
+        assertThat(daoToTest.getRecentMeasurements(sensorUuid, 10))
+                .extracting(Measurement::getTime)
+                .containsExactly(recentMeasurement.getTime());
+    }
+
     @Test
     void getAlerts() {
         final String sensorUuid = UUID.randomUUID().toString();
         final ZonedDateTime now = ZonedDateTime.now();
         final Measurement firstAlert = randomMeasurement(sensorUuid, now, true);
         final Measurement lastAlert = randomMeasurement(sensorUuid, now.plusMinutes(1), true);
-        final Measurement nonAlert = randomMeasurement(sensorUuid, now);
+        final Measurement nonAlert = randomMeasurement(sensorUuid, now.plusMinutes(2));
         daoToTest.createMeasurement(lastAlert);
         daoToTest.createMeasurement(firstAlert);
         daoToTest.createMeasurement(nonAlert);
@@ -124,6 +293,180 @@ class SensorDaoTest {
                 .matches(measurement -> lastAlert.getCo2Level().equals(measurement.getCo2Level()));
     }
 
+    @Test
+    void alertEpisodes_openExtendCloseThenPage() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        daoToTest.openAlertEpisode(sensorUuid, 20200711120000L, 2100L);
+        daoToTest.closeAlertEpisode(sensorUuid, 20200711123000L);
+        daoToTest.openAlertEpisode(sensorUuid, 20200712120000L, 2200L);
+        daoToTest.extendAlertEpisode(sensorUuid, 2900L);
+        daoToTest.extendAlertEpisode(sensorUuid, 2400L);
+
+        final List<AlertEpisode> episodes = daoToTest.getAlertEpisodes(sensorUuid, Long.MAX_VALUE, 0L, 10);
+
+        assertThat(episodes)
+                .as("most recent first, the ongoing one without end")
+                .extracting(AlertEpisode::getStartTime, AlertEpisode::getEndTime, AlertEpisode::getPeakCo2Level,
+                        AlertEpisode::getReadingCount)
+                .containsExactly(tuple(20200712120000L, null, 2900L, 3), tuple(20200711120000L, 20200711123000L, 2100L, 1));
+        assertThat(daoToTest.getAlertEpisodes(sensorUuid, 20200712120000L, 0L, 10))
+                .as("the next page starts before the cursor")
+                .extracting(AlertEpisode::getStartTime)
+                .containsExactly(20200711120000L);
+        assertThat(daoToTest.getAlertEpisodes(sensorUuid, Long.MAX_VALUE, 20200711123000L, 10))
+                .as("episodes ended before the period are left out")
+                .extracting(AlertEpisode::getStartTime)
+                .containsExactly(20200712120000L);
+    }
+
+    @Test
+    void deleteAlertEpisodesEndedBefore_keepsOngoingEpisodes() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        daoToTest.openAlertEpisode(sensorUuid, 20010711120000L, 2100L);
+        daoToTest.closeAlertEpisode(sensorUuid, 20010711123000L);
+        daoToTest.openAlertEpisode(sensorUuid, 20010712120000L, 2200L);
+
+        assertThat(daoToTest.deleteAlertEpisodesEndedBefore(20010713000000L, 100)).isEqualTo(1);
+        assertThat(daoToTest.getAlertEpisodes(sensorUuid, Long.MAX_VALUE, 0L, 10))
+                .as("the ongoing episode has no end yet")
+                .extracting(AlertEpisode::getStartTime)
+                .containsExactly(20010712120000L);
+    }
+
+    @Test
+    void getSeries() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime bucketStart = ZonedDateTime.parse("2020-07-13T12:15:00Z");
+        final Measurement measurement1 = randomMeasurement(sensorUuid, bucketStart.plusMinutes(1));
+        measurement1.setCo2Level(1000L);
+        final Measurement measurement2 = randomMeasurement(sensorUuid, bucketStart.plusMinutes(14).plusSeconds(59));
+        measurement2.setCo2Level(2000L);
+        final Measurement measurement3 = randomMeasurement(sensorUuid, bucketStart.plusMinutes(15));
+        measurement3.setCo2Level(3000L);
+        daoToTest.createMeasurement(measurement1);
+        daoToTest.createMeasurement(measurement2);
+        daoToTest.createMeasurement(measurement3);
+
+        final List<SeriesPoint> series = daoToTest.getSeries(
+                sensorUuid, TimestampUtil.toUtcTimestamp(bucketStart), TimestampUtil.toUtcTimestamp(bucketStart.plusHours(1)),
+                SeriesBucket.FIFTEEN_MINUTES
+        );
+
+        assertThat(series).hasSize(2);
+        assertThat(series.get(0))
+                .as("the first two measurements fall in the 12:15 bucket")
+                .matches(point -> point.getTime() == 20200713121500L)
+                .matches(point -> point.getAverage() == 1500L && point.getMax() == 2000L && point.getMin() == 1000L);
+        assertThat(series.get(1))
+                .matches(point -> point.getTime() == 20200713123000L)
+                .matches(point -> point.getAverage() == 3000L);
+    }
+
+    @Test
+    void getSeries_hourlyOverPartialHours() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime hour = ZonedDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS).minusHours(3);
+        final long[][] minutesAndLevels = {{20, 500}, {40, 1000}, {60 + 10, 2000}, {60 + 20, 3000}, {120 + 10, 4000},
+                {120 + 30, 5000}};
+        for (long[] minuteAndLevel : minutesAndLevels) {
+            final Measurement measurement = randomMeasurement(sensorUuid, hour.plusMinutes(minuteAndLevel[0]));
+            measurement.setCo2Level(minuteAndLevel[1]);
+            daoToTest.createMeasurement(measurement);
+        }
+
+        final List<SeriesPoint> series = daoToTest.getSeries(sensorUuid, TimestampUtil.toUtcTimestamp(hour.plusMinutes(30)),
+                TimestampUtil.toUtcTimestamp(hour.plusMinutes(120 + 20)), SeriesBucket.ONE_HOUR);
+
+        assertThat(series)
+                .as("only the readings in the period count in the first and last hours")
+                .extracting(SeriesPoint::getTime, SeriesPoint::getAverage, SeriesPoint::getMax, SeriesPoint::getMin,
+                        SeriesPoint::getCount)
+                .containsExactly(
+                        tuple(TimestampUtil.toUtcTimestamp(hour), 1000L, 1000L, 1000L, 1L),
+                        tuple(TimestampUtil.toUtcTimestamp(hour.plusHours(1)), 2500L, 3000L, 2000L, 2L),
+                        tuple(TimestampUtil.toUtcTimestamp(hour.plusHours(2)), 4000L, 4000L, 4000L, 1L));
+    }
+
+    @Test
+    void readsAcrossLiveAndArchivedReadings() throws IOException {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime start = ZonedDateTime.parse("2020-07-01T00:00:00Z");
+        final Measurement archived1 = randomMeasurement(sensorUuid, start, true);
+        archived1.setCo2Level(3000L);
+        final Measurement archived2 = randomMeasurement(sensorUuid, start.plusMinutes(1));
+        archived2.setCo2Level(1000L);
+        final Measurement live = randomMeasurement(sensorUuid, start.plusDays(1));
+        live.setCo2Level(2000L);
+        archiveStore.write(sensorUuid, Arrays.asList(archived1, archived2));
+        daoToTest.createMeasurement(live);
+        final Long startDate = TimestampUtil.toUtcTimestamp(start.minusDays(1));
+        final Long endDate = TimestampUtil.toUtcTimestamp(start.plusDays(2));
+
+        final SensorMetrics metrics = daoToTest.getMetrics(sensorUuid, startDate, endDate);
+        assertThat(metrics.getMax()).isEqualTo(3000L);
+        assertThat(metrics.getAverage()).isEqualTo(2000L);
+
+        assertThat(daoToTest.getRecentMeasurements(sensorUuid, 3))
+                .as("the most recent readings, whichever tier they are in")
+                .extracting(Measurement::getTime)
+                .containsExactly(live.getTime(), archived2.getTime(), archived1.getTime());
+        assertThat(daoToTest.getAlerts(sensorUuid, 3))
+                .extracting(Measurement::getTime)
+                .containsExactly(archived1.getTime());
+        assertThat(daoToTest.getRawSeries(sensorUuid, startDate, endDate))
+                .extracting(SeriesPoint::getAverage)
+                .containsExactly(3000L, 1000L, 2000L);
+        assertThat(daoToTest.getSeries(sensorUuid, startDate, endDate, SeriesBucket.ONE_DAY))
+                .extracting(SeriesPoint::getTime, SeriesPoint::getAverage)
+                .containsExactly(tuple(20200701000000L, 2000L), tuple(20200702000000L, 2000L));
+    }
+
+    @Test
+    void getSeries_bucketInBothTiers_averagesAllItsReadings() throws IOException {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime start = ZonedDateTime.parse("2020-07-05T00:00:00Z");
+        final List<Measurement> archived = new ArrayList<>();
+        for (long co2Level : new long[]{1000L, 1001L}) {
+            final Measurement measurement = randomMeasurement(sensorUuid, start.plusMinutes(archived.size()));
+            measurement.setCo2Level(co2Level);
+            archived.add(measurement);
+        }
+        archiveStore.write(sensorUuid, archived);
+        final long[] liveLevels = {1001L, 1002L, 1002L};
+        for (int i = 0; i < liveLevels.length; i++) {
+            final Measurement measurement = randomMeasurement(sensorUuid, start.plusMinutes(archived.size() + i));
+            measurement.setCo2Level(liveLevels[i]);
+            daoToTest.createMeasurement(measurement);
+        }
+
+        assertThat(daoToTest.getSeries(sensorUuid, TimestampUtil.toUtcTimestamp(start),
+                TimestampUtil.toUtcTimestamp(start.plusHours(1)), SeriesBucket.ONE_DAY))
+                .as("(1000 + 1001 + 1001 + 1002 + 1002) / 5, not an average of the averages of the tiers")
+                .extracting(SeriesPoint::getTime, SeriesPoint::getAverage, SeriesPoint::getCount)
+                .containsExactly(tuple(20200705000000L, 1001L, 5L));
+    }
+
+    @Test
+    void getFleetMetrics_readingsLeftBehindByTheArchiverCountOnce() throws IOException {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime start = ZonedDateTime.parse("2011-03-05T00:00:00Z");
+        final Measurement archived = randomMeasurement(sensorUuid, start);
+        archived.setCo2Level(1000L);
+        final Measurement live = randomMeasurement(sensorUuid, start.plusMinutes(1));
+        live.setCo2Level(3000L);
+        archiveStore.write(sensorUuid, Collections.singletonList(archived));
+        daoToTest.createMeasurement(archived);
+        daoToTest.createMeasurement(live);
+
+        final SensorMetrics metrics = daoToTest.getFleetMetrics(TimestampUtil.toUtcTimestamp(start),
+                TimestampUtil.toUtcTimestamp(start.plusHours(1)));
+
+        assertThat(metrics.getAverage())
+                .as("the archived reading still in the table is only counted from the archive")
+                .isEqualTo(2000L);
+        assertThat(metrics.getMax()).isEqualTo(3000L);
+    }
+
     private Sensor randomSensor(SensorStatus sensorStatus) {
         final Sensor sensorToSave = new Sensor();
         sensorToSave.setUuid(UUID.randomUUID().toString());
@@ -0,0 +1,107 @@
+package io.alvintures.co2sensorapi.dao.dialect;
+
+import io.alvintures.co2sensorapi.dto.SeriesBucket;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class SqlDialectTest {
+
+    @Test
+    void upsert() {
+        assertThat(new H2Dialect().upsert("sensor_location", Arrays.asList("sensor_uuid", "room"),
+                Collections.singletonList("sensor_uuid")))
+                .isEqualTo("MERGE INTO sensor_location (sensor_uuid, room) KEY (sensor_uuid) VALUES (?, ?)");
+        assertThat(new PostgresDialect().upsert("sensor_location", Arrays.asList("sensor_uuid", "room"),
+                Collections.singletonList("sensor_uuid")))
+                .isEqualTo("INSERT INTO sensor_location (sensor_uuid, room) VALUES (?, ?) "
+                        + "ON CONFLICT (sensor_uuid) DO UPDATE SET room = EXCLUDED.room");
+    }
+
+    @Test
+    void deleteLimited() {
+        assertThat(new H2Dialect().deleteLimited("measurement", Arrays.asList("sensor_uuid", "minute_utc"),
+                "timestamp_utc < ?"))
+                .isEqualTo("DELETE FROM measurement WHERE timestamp_utc < ? LIMIT ?");
+        assertThat(new PostgresDialect().deleteLimited("measurement", Arrays.asList("sensor_uuid", "minute_utc"),
+                "timestamp_utc < ?"))
+                .isEqualTo("DELETE FROM measurement WHERE (sensor_uuid, minute_utc) IN "
+                        + "(SELECT sensor_uuid, minute_utc FROM measurement WHERE timestamp_utc < ? LIMIT ?)");
+    }
+
+    @Test
+    void dropPartitionsBefore_dropsChunksOnlyOnTimescale() {
+        final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+        new PostgresDialect().dropPartitionsBefore(jdbcTemplate, "measurement", 202007130000L);
+        verifyNoInteractions(jdbcTemplate);
+
+        new TimescaleDialect().dropPartitionsBefore(jdbcTemplate, "measurement", 202007130000L);
+        verify(jdbcTemplate).queryForList("SELECT drop_chunks('measurement', older_than => CAST(? AS BIGINT))",
+                String.class, 202007130000L);
+    }
+
+    @Test
+    void analyze_vacuumsEachTableOnPostgres() {
+        final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+        new H2Dialect().analyze(jdbcTemplate, Arrays.asList("sensor", "measurement"));
+        verify(jdbcTemplate).execute("ANALYZE");
+
+        new TimescaleDialect().analyze(jdbcTemplate, Arrays.asList("sensor", "measurement"));
+        verify(jdbcTemplate).execute("VACUUM (ANALYZE) sensor");
+        verify(jdbcTemplate).execute("VACUUM (ANALYZE) measurement");
+    }
+
+    @Test
+    void bucketStart_timeBucketOnlyForWidthsDividingTheNextUnit() {
+        final TimescaleDialect dialect = new TimescaleDialect();
+
+        assertThat(dialect.bucketStart(SeriesBucket.FIVE_MINUTES, "t")).isEqualTo("time_bucket(CAST(500 AS BIGINT), t)");
+        assertThat(dialect.bucketStart(SeriesBucket.ONE_DAY, "t")).isEqualTo("time_bucket(CAST(1000000 AS BIGINT), t)");
+        assertThat(dialect.bucketStart(SeriesBucket.FIFTEEN_MINUTES, "t"))
+                .isEqualTo(SeriesBucket.FIFTEEN_MINUTES.toSqlExpression("t"));
+        assertThat(dialect.bucketStart(SeriesBucket.SIX_HOURS, "t"))
+                .isEqualTo(SeriesBucket.SIX_HOURS.toSqlExpression("t"));
+    }
+
+    @Test
+    void seriesQuery_wholeHoursFromTheHourlyAggregate() {
+        final SqlDialect.Query query = new TimescaleDialect().seriesQuery("s1", 20200713123000L, 20200713152000L,
+                0L, SeriesBucket.ONE_HOUR);
+
+        assertThat(query.getSql()).contains("FROM measurement_hourly");
+        assertThat(query.getArgs())
+                .as("hours 13:00 and 14:00 from the aggregate, the readings before 13:00 and from 15:00 on from measurement")
+                .containsExactly("s1", 202007131300L, 202007131500L,
+                        "s1", 20200713123000L, 20200713152000L, 20200713130000L, 20200713150000L);
+    }
+
+    @Test
+    void seriesQuery_readingsOnlyForMinuteBucketsOrArchivedPeriods() {
+        final TimescaleDialect dialect = new TimescaleDialect();
+
+        assertThat(dialect.seriesQuery("s1", 20200713000000L, 20200714000000L, 0L, SeriesBucket.THIRTY_MINUTES).getSql())
+                .doesNotContain("measurement_hourly");
+        assertThat(dialect.seriesQuery("s1", 20200713000000L, 20200714000000L, 20200713120000L, SeriesBucket.ONE_HOUR)
+                .getSql())
+                .doesNotContain("measurement_hourly");
+        assertThat(dialect.seriesQuery("s1", 20200713121000L, 20200713125000L, 0L, SeriesBucket.ONE_HOUR).getSql())
+                .as("no whole hour in the period")
+                .doesNotContain("measurement_hourly");
+    }
+
+    @Test
+    void sqlDialect_unknown() {
+        assertThatThrownBy(() -> new SqlDialectConfig().sqlDialect("mysql"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
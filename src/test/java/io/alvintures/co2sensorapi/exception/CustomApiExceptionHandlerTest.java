@@ -0,0 +1,43 @@
+package io.alvintures.co2sensorapi.exception;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomApiExceptionHandlerTest {
+
+    private final CustomApiExceptionHandler handlerToTest = new CustomApiExceptionHandler(new ObjectMapper());
+
+    @Test
+    void handleSensorApiException() throws Exception {
+        final SensorApiException exception = new SensorApiException(HttpStatus.CONFLICT, "Same minute.");
+
+        final ResponseEntity<Object> response = handlerToTest.handleSensorApiException(exception);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(new String((byte[]) response.getBody(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"status\":\"Conflict\",\"message\":\"Same minute.\"}");
+    }
+
+    @Test
+    void handleSensorApiException_reusesBodyOfPreallocatedException() throws Exception {
+        final SensorApiException exception = new SensorApiException(HttpStatus.CONFLICT, "Same minute.");
+
+        final Object firstBody = handlerToTest.handleSensorApiException(exception).getBody();
+        final Object secondBody = handlerToTest.handleSensorApiException(exception).getBody();
+
+        assertThat(secondBody).isSameAs(firstBody);
+    }
+
+    @Test
+    void sensorApiException_hasNoStackTrace() {
+        assertThat(new SensorApiException(HttpStatus.BAD_REQUEST, "Invalid.").getStackTrace()).isEmpty();
+    }
+}
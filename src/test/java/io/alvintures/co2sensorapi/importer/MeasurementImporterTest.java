@@ -0,0 +1,180 @@
+package io.alvintures.co2sensorapi.importer;
+
+import io.alvintures.co2sensorapi.archive.ArchiveStore;
+import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.dto.AlertEpisode;
+import io.alvintures.co2sensorapi.dto.LocationSummary;
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.dto.Sensor;
+import io.alvintures.co2sensorapi.dto.SensorLocation;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.service.LocationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = "app.archive.directory=build/test-archive")
+class MeasurementImporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Autowired
+    private MeasurementImporter importerToTest;
+
+    @Autowired
+    private SensorDao sensorDao;
+
+    @Autowired
+    private ArchiveStore archiveStore;
+
+    @Autowired
+    private LocationService locationService;
+
+    @Test
+    void importFile_csv() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final Path csv = tempDir.resolve("readings.csv");
+        Files.write(csv, Arrays.asList(
+                "sensor_uuid,time,co2",
+                sensorUuid + ",2020-07-13T12:03:00+00:00,1000",
+                sensorUuid + ",2020-07-13T12:00:00+00:00,2500",
+                sensorUuid + ",2020-07-13T12:01:00+00:00,2600",
+                sensorUuid + ",2020-07-13T12:02:00+00:00,2700",
+                sensorUuid + ",not-a-time,2700"
+        ), StandardCharsets.UTF_8);
+
+        final ImportReport report = importerToTest.importFile(csv);
+
+        assertThat(report.getRowCount()).isEqualTo(4);
+        assertThat(report.getSkippedRowCount()).isEqualTo(1);
+        final List<Measurement> alerts = sensorDao.getAlerts(sensorUuid, 3);
+        assertThat(alerts)
+                .as("rows should be evaluated in time order, not file order, so only the 12:02 reading is an alert")
+                .hasSize(1)
+                .allMatch(alert -> alert.getTime() == 20200713120200L);
+        final Optional<Sensor> sensor = sensorDao.getSensor(sensorUuid);
+        assertThat(sensor).isNotEmpty();
+        assertThat(sensor.get().getStatus())
+                .as("one reading below threshold after an alert keeps the ALERT status")
+                .isEqualTo(SensorStatus.ALERT);
+        assertThat(sensorDao.getAlertEpisodes(sensorUuid, Long.MAX_VALUE, 0L, 10))
+                .as("one episode from the reading that switched the sensor to ALERT, still ongoing")
+                .extracting(AlertEpisode::getStartTime, AlertEpisode::getEndTime, AlertEpisode::getPeakCo2Level,
+                        AlertEpisode::getReadingCount)
+                .containsExactly(tuple(20200713120100L, null, 2700L, 3));
+    }
+
+    @Test
+    void importFile_addsReadingsAndStatusToTheLocationOfTheSensor() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final String site = UUID.randomUUID().toString();
+        locationService.assignLocation(sensorUuid, new SensorLocation(site, "north", "r1"));
+        final ZonedDateTime today = ZonedDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+        final Path csv = tempDir.resolve("located.csv");
+        Files.write(csv, Arrays.asList(
+                sensorUuid + "," + today + ",2500",
+                sensorUuid + "," + today.plusMinutes(1) + ",2600",
+                sensorUuid + "," + today.plusMinutes(2) + ",2700"
+        ), StandardCharsets.UTF_8);
+
+        importerToTest.importFile(csv);
+
+        final LocationSummary summary = locationService.getSummary(site + "/north/r1", 0);
+        assertThat(summary.getSensorCounts())
+                .as("the status of the sensor created by the import")
+                .containsEntry(SensorStatus.ALERT, 1L)
+                .containsEntry(SensorStatus.OK, 0L);
+        assertThat(summary.getReadingCount()).isEqualTo(3);
+        assertThat(summary.getMax()).isEqualTo(2700L);
+    }
+
+    @Test
+    void importFile_ndjson() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final Path ndjson = tempDir.resolve("readings.ndjson");
+        Files.write(ndjson, Arrays.asList(
+                "{\"sensorUuid\":\"" + sensorUuid + "\",\"time\":\"2020-07-13T12:00:00+00:00\",\"co2\":1000}",
+                "{\"sensorUuid\":\"" + sensorUuid + "\",\"time\":\"2020-07-13T12:01:00+00:00\",\"co2\":2100}"
+        ), StandardCharsets.UTF_8);
+
+        final ImportReport report = importerToTest.importFile(ndjson);
+
+        assertThat(report.getRowCount()).isEqualTo(2);
+        assertThat(report.getSensorCount()).isEqualTo(1);
+        assertThat(sensorDao.getSensor(sensorUuid).map(Sensor::getStatus))
+                .as("a reading above threshold after OK readings switches the sensor to WARN")
+                .contains(SensorStatus.WARN);
+    }
+
+    @Test
+    void importFile_skipsRowsOfTheArchivedPeriod() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final Measurement archived = new Measurement();
+        archived.setSensorUUID(sensorUuid);
+        archived.setTime(20200713120100L);
+        archived.setCo2Level(1000L);
+        archiveStore.write(sensorUuid, Collections.singletonList(archived));
+        final Path csv = tempDir.resolve("readings.csv");
+        Files.write(csv, Arrays.asList(
+                sensorUuid + ",2020-07-13T12:00:00+00:00,1100",
+                sensorUuid + ",2020-07-13T12:01:00+00:00,1200",
+                sensorUuid + ",2020-07-13T12:02:00+00:00,1300"
+        ), StandardCharsets.UTF_8);
+
+        final ImportReport report = importerToTest.importFile(csv);
+
+        assertThat(report.getArchivedRowCount()).isEqualTo(2);
+        assertThat(sensorDao.getMeasurementsBetween(sensorUuid, 0L, Long.MAX_VALUE, 10))
+                .extracting(Measurement::getTime)
+                .containsExactly(20200713120200L);
+    }
+
+    @Test
+    void importFile_continuesTheEpisodeOpenAtTheEndOfTheArchive() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final List<Measurement> archived = new ArrayList<>();
+        for (int minute = 0; minute < 3; minute++) {
+            final Measurement measurement = new Measurement();
+            measurement.setSensorUUID(sensorUuid);
+            measurement.setTime(20200713120000L + minute * 100);
+            measurement.setCo2Level(2500L);
+            archived.add(measurement);
+        }
+        archiveStore.write(sensorUuid, archived);
+        sensorDao.openAlertEpisode(sensorUuid, 20200713120200L, 2500L);
+        final Path csv = tempDir.resolve("after-archive.csv");
+        Files.write(csv, Arrays.asList(
+                sensorUuid + ",2020-07-13T12:03:00+00:00,2600",
+                sensorUuid + ",2020-07-13T12:04:00+00:00,1000",
+                sensorUuid + ",2020-07-13T12:05:00+00:00,1000",
+                sensorUuid + ",2020-07-13T12:06:00+00:00,1000"
+        ), StandardCharsets.UTF_8);
+
+        importerToTest.importFile(csv);
+
+        assertThat(sensorDao.getAlertEpisodes(sensorUuid, Long.MAX_VALUE, 0L, 10))
+                .as("the archived episode is extended by the live readings, then closed, and no other one is opened")
+                .extracting(AlertEpisode::getStartTime, AlertEpisode::getEndTime, AlertEpisode::getPeakCo2Level,
+                        AlertEpisode::getReadingCount)
+                .containsExactly(tuple(20200713120200L, 20200713120600L, 2600L, 4));
+        assertThat(sensorDao.getSensor(sensorUuid).map(Sensor::getStatus)).contains(SensorStatus.OK);
+    }
+}
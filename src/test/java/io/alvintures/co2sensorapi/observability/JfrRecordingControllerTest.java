@@ -0,0 +1,83 @@
+package io.alvintures.co2sensorapi.observability;
+
+import io.alvintures.co2sensorapi.exception.SensorApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "app.admin.jfr.enabled=true")
+@AutoConfigureMockMvc
+class JfrRecordingControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JfrRecordingController jfrRecordingController;
+
+    @AfterEach
+    void stopLeftOverRecording() throws Exception {
+        try {
+            // Written out, so that its temporary file is deleted.
+            jfrRecordingController.stopRecording().getBody().writeTo(new ByteArrayOutputStream());
+        } catch (SensorApiException noRecording) {
+            // Already stopped by the test.
+        }
+    }
+
+    @Test
+    void stopRecording_returnsTheRecording() throws Exception {
+        mockMvc.perform(post("/admin/jfr/start").param("settings", "default").param("maxDurationSeconds", "60"))
+                .andExpect(status().isOk());
+
+        final MvcResult stopped = mockMvc.perform(post("/admin/jfr/stop"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        final MvcResult downloaded = mockMvc.perform(asyncDispatch(stopped))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, endsWith(".jfr\"")))
+                .andReturn();
+
+        final byte[] recording = downloaded.getResponse().getContentAsByteArray();
+        assertThat(new String(Arrays.copyOf(recording, 3), StandardCharsets.US_ASCII))
+                .as("JFR files start with the FLR magic")
+                .isEqualTo("FLR");
+    }
+
+    @Test
+    void startRecording_twice_isAConflict() throws Exception {
+        mockMvc.perform(post("/admin/jfr/start")).andExpect(status().isOk());
+
+        mockMvc.perform(post("/admin/jfr/start")).andExpect(status().isConflict());
+    }
+
+    @Test
+    void startRecording_unknownSettings() throws Exception {
+        mockMvc.perform(post("/admin/jfr/start").param("settings", "verbose")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void stopRecording_noneStarted_isAConflict() throws Exception {
+        mockMvc.perform(post("/admin/jfr/stop")).andExpect(status().isConflict());
+    }
+}
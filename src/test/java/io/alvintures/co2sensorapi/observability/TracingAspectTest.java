@@ -0,0 +1,70 @@
+package io.alvintures.co2sensorapi.observability;
+
+import io.alvintures.co2sensorapi.service.SensorService;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.tracing.enabled=true",
+        "app.tracing.exporter=file"
+})
+class TracingAspectTest {
+
+    /**
+     * A new file for every run, so spans written by an earlier run cannot make the test pass.
+     */
+    private static final Path SPANS_FILE = newSpansFile();
+
+    @DynamicPropertySource
+    static void spansFile(DynamicPropertyRegistry registry) {
+        registry.add("app.tracing.file", SPANS_FILE::toString);
+    }
+
+    @Autowired
+    private SensorService sensorService;
+
+    @Autowired
+    private SdkTracerProvider sdkTracerProvider;
+
+    @Test
+    void storeMeasurement_recordsASpanPerPhase() throws IOException {
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        sensorService.storeMeasurement(sensorUuid, 1000L, ZonedDateTime.now(ZoneOffset.UTC).toString());
+        sdkTracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+
+        final List<String> spans = Files.readAllLines(SPANS_FILE, StandardCharsets.UTF_8);
+        assertThat(spans)
+                .anyMatch(span -> span.contains("\"name\":\"SensorService.storeMeasurement\""))
+                .anyMatch(span -> span.contains("\"name\":\"SensorService.applyMeasurements\""))
+                .anyMatch(span -> span.contains("\"name\":\"SensorDao.createMeasurements\""))
+                .anyMatch(span -> span.contains("\"name\":\"DataSourceTransactionManager.commit\""));
+    }
+
+    private static Path newSpansFile() {
+        try {
+            final Path directory = Files.createDirectories(Paths.get("build/test-traces"));
+            return Files.createTempFile(directory, "spans-", ".jsonl");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
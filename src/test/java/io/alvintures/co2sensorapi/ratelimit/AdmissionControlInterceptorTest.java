@@ -0,0 +1,121 @@
+package io.alvintures.co2sensorapi.ratelimit;
+
+import io.alvintures.co2sensorapi.cluster.SensorOwnershipInterceptor;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.service.SensorService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "app.rate-limit.enabled=true",
+        "app.rate-limit.sensor.burst=2",
+        "app.rate-limit.max-concurrent-requests=1",
+        "app.cluster.enabled=true",
+        "app.cluster.self-url=" + AdmissionControlInterceptorTest.SELF_URL,
+        "app.cluster.secret=" + AdmissionControlInterceptorTest.CLUSTER_SECRET
+})
+@AutoConfigureMockMvc
+class AdmissionControlInterceptorTest {
+
+    static final String SELF_URL = "http://localhost:8080";
+    static final String CLUSTER_SECRET = "test-secret";
+
+    @MockBean
+    private SensorService sensorServiceMock;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void ingest_beyondTheSensorBurst_isRejectedWithRetryAfter() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        mockMvc.perform(measurement(sensorUuid)).andExpect(status().isOk());
+        mockMvc.perform(measurement(sensorUuid)).andExpect(status().isOk());
+        mockMvc.perform(measurement(sensorUuid))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+        // Other sensors are not limited.
+        mockMvc.perform(measurement(UUID.randomUUID().toString())).andExpect(status().isOk());
+    }
+
+    @Test
+    void ingest_forwardedByAnUnknownNode_isStillLimited() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(measurement(sensorUuid)
+                    .header(SensorOwnershipInterceptor.FORWARDED_BY_HEADER, "http://not-a-node:8080"))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(measurement(sensorUuid)
+                .header(SensorOwnershipInterceptor.FORWARDED_BY_HEADER, "http://not-a-node:8080"))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void ingest_forwardedWithoutTheClusterSecret_isStillLimited() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(measurement(sensorUuid)
+                    .header(SensorOwnershipInterceptor.FORWARDED_BY_HEADER, SELF_URL)
+                    .header(SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, "guessed"))
+                    .andExpect(status().is(i < 2 ? 200 : 429));
+        }
+    }
+
+    @Test
+    void ingest_forwardedByANodeOfTheCluster_isNotLimitedAgain() throws Exception {
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(measurement(sensorUuid)
+                    .header(SensorOwnershipInterceptor.FORWARDED_BY_HEADER, SELF_URL)
+                    .header(SensorOwnershipInterceptor.CLUSTER_SECRET_HEADER, CLUSTER_SECRET))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void afterCompletion_releasesThePermit() throws Exception {
+        when(sensorServiceMock.getStatus(anyString())).thenReturn(Optional.empty());
+        mockMvc.perform(get("/" + UUID.randomUUID())).andExpect(status().isNotFound());
+
+        when(sensorServiceMock.getStatus(anyString())).thenReturn(Optional.of(SensorStatus.OK));
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/" + UUID.randomUUID())).andExpect(status().isOk());
+        }
+
+        assertThat(meterRegistry.get("sensor.api.requests.in-progress").gauge().value())
+                .as("the only permit is released after each request, failed or not")
+                .isZero();
+    }
+
+    private static MockHttpServletRequestBuilder measurement(final String sensorUuid) {
+        return post("/" + sensorUuid + "/measurements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"co2\":1000,\"time\":\"2020-07-13T10:15:30+01:00\"}");
+    }
+}
@@ -0,0 +1,74 @@
+package io.alvintures.co2sensorapi.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_admitsTheBurstThenTheRate() {
+        final long start = 1_000 * SECOND;
+        final TokenBucket bucket = new TokenBucket(2, 5, start);
+
+        int admitted = 0;
+        for (int i = 0; i < 10; i++) {
+            admitted += bucket.tryAcquire(start) ? 1 : 0;
+        }
+        assertThat(admitted)
+                .as("a full bucket admits the burst at once")
+                .isEqualTo(5);
+        assertThat(bucket.tryAcquire(start + SECOND / 2))
+                .as("one token is back after half a second at 2 per second")
+                .isTrue();
+        assertThat(bucket.tryAcquire(start + SECOND / 2)).isFalse();
+    }
+
+    @Test
+    void tryAcquire_doesNotSaveMoreThanTheBurst() {
+        final long start = 1_000 * SECOND;
+        final TokenBucket bucket = new TokenBucket(1, 3, start);
+
+        final long muchLater = start + 3_600 * SECOND;
+        int admitted = 0;
+        for (int i = 0; i < 10; i++) {
+            admitted += bucket.tryAcquire(muchLater) ? 1 : 0;
+        }
+
+        assertThat(admitted).isEqualTo(3);
+    }
+
+    @Test
+    void tryAcquire_concurrentCallersNeverExceedTheBurst() throws InterruptedException {
+        final long now = System.nanoTime();
+        final TokenBucket bucket = new TokenBucket(0.001, 100, now);
+        final AtomicInteger admitted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int thread = 0; thread < 8; thread++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1_000; i++) {
+                    if (bucket.tryAcquire(now)) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(admitted.get()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,181 @@
+package io.alvintures.co2sensorapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GroupCommitCoordinatorTest {
+
+    private static final Function<String, String> SENSOR_OF = request -> request.split("/")[0];
+
+    @Test
+    void submit_aloneIsHandledRightAway() {
+        final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        final GroupCommitCoordinator<String> coordinator = new GroupCommitCoordinator<>(64,
+                TimeUnit.MILLISECONDS.toNanos(2), SENSOR_OF, batch -> succeed(batches, batch));
+
+        coordinator.submit("sensor1/1");
+        coordinator.submit("sensor1/2");
+
+        assertThat(batches).containsExactly(Collections.singletonList("sensor1/1"), Collections.singletonList("sensor1/2"));
+        assertThat(coordinator.getWaitNanos())
+                .as("no waiting for more requests at low traffic")
+                .isZero();
+    }
+
+    @Test
+    void submit_concurrentRequestsAreBatchedAndEachCallerGetsItsResult() throws Exception {
+        final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        final GroupCommitCoordinator<String> coordinator = new GroupCommitCoordinator<>(16,
+                TimeUnit.MILLISECONDS.toNanos(2), SENSOR_OF, batch -> {
+                    batches.add(new ArrayList<>(batch));
+                    final List<RuntimeException> errors = new ArrayList<>();
+                    batch.forEach(request -> errors.add(request.endsWith("/7") ? new IllegalArgumentException(request) : null));
+                    sleep(1); // the commit
+                    return errors;
+                });
+        final ExecutorService executor = Executors.newFixedThreadPool(32);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<List<String>>> rejectedBySensor = new ArrayList<>();
+
+        for (int sensor = 0; sensor < 32; sensor++) {
+            final int sensorId = sensor;
+            rejectedBySensor.add(executor.submit(() -> {
+                start.await();
+                final List<String> rejected = new ArrayList<>();
+                for (int reading = 0; reading < 20; reading++) {
+                    try {
+                        coordinator.submit("sensor" + sensorId + "/" + reading);
+                    } catch (IllegalArgumentException ex) {
+                        rejected.add(ex.getMessage());
+                    }
+                }
+                return rejected;
+            }));
+        }
+        start.countDown();
+
+        for (int sensor = 0; sensor < 32; sensor++) {
+            assertThat(rejectedBySensor.get(sensor).get(30, TimeUnit.SECONDS))
+                    .as("each caller gets the result of its own request")
+                    .containsExactly("sensor" + sensor + "/7");
+        }
+        executor.shutdown();
+
+        assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(32 * 20);
+        assertThat(batches.size())
+                .as("concurrent requests should share transactions")
+                .isLessThan(32 * 20 / 2);
+        assertThat(batches)
+                .as("a batch never holds two requests of the same sensor")
+                .allMatch(batch -> new HashSet<>(sensorsOf(batch)).size() == batch.size());
+    }
+
+    @Test
+    void submit_failedBatchIsRetriedRequestByRequest() throws Exception {
+        final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        final CountDownLatch othersQueued = new CountDownLatch(1);
+        final GroupCommitCoordinator<String> coordinator = new GroupCommitCoordinator<>(16,
+                TimeUnit.MILLISECONDS.toNanos(2), SENSOR_OF, batch -> {
+                    if (batch.contains("sensor0/0")) {
+                        firstBatchStarted.countDown();
+                        await(othersQueued);
+                    }
+                    batches.add(new ArrayList<>(batch));
+                    if (batch.contains("sensor2/0")) {
+                        throw new IllegalStateException("constraint violated by sensor2");
+                    }
+                    return succeed(new ArrayList<>(), batch);
+                });
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        final Future<?> first = executor.submit(() -> coordinator.submit("sensor0/0"));
+        firstBatchStarted.await();
+        final Future<?> second = executor.submit(() -> coordinator.submit("sensor1/0"));
+        final Future<?> third = executor.submit(() -> coordinator.submit("sensor2/0"));
+        sleep(50);
+        othersQueued.countDown();
+
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> third.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("constraint violated by sensor2");
+        executor.shutdown();
+        assertThat(batches)
+                .as("the failed batch is retried one request at a time")
+                .contains(Collections.singletonList("sensor1/0"), Collections.singletonList("sensor2/0"));
+    }
+
+    @Test
+    void submit_errorInABatchCompletesAllItsRequests() throws Exception {
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        final CountDownLatch othersQueued = new CountDownLatch(1);
+        final GroupCommitCoordinator<String> coordinator = new GroupCommitCoordinator<>(16,
+                TimeUnit.MILLISECONDS.toNanos(2), SENSOR_OF, batch -> {
+                    if (batch.contains("sensor0/0")) {
+                        firstBatchStarted.countDown();
+                        await(othersQueued);
+                        return succeed(new ArrayList<>(), batch);
+                    }
+                    throw new AssertionError("broken batch");
+                });
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        final Future<?> first = executor.submit(() -> coordinator.submit("sensor0/0"));
+        firstBatchStarted.await();
+        final Future<?> second = executor.submit(() -> coordinator.submit("sensor1/0"));
+        final Future<?> third = executor.submit(() -> coordinator.submit("sensor2/0"));
+        sleep(50);
+        othersQueued.countDown();
+
+        first.get(10, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> second.get(10, TimeUnit.SECONDS))
+                .as("the leader rethrows the error, the other caller gets it wrapped, neither waits forever")
+                .isInstanceOf(ExecutionException.class);
+        assertThatThrownBy(() -> third.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        executor.shutdown();
+    }
+
+    private static List<RuntimeException> succeed(List<List<String>> batches, List<String> batch) {
+        batches.add(new ArrayList<>(batch));
+        return new ArrayList<>(Collections.nCopies(batch.size(), (RuntimeException) null));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<String> sensorsOf(List<String> batch) {
+        final List<String> sensors = new ArrayList<>();
+        batch.forEach(request -> sensors.add(SENSOR_OF.apply(request)));
+        return sensors;
+    }
+}
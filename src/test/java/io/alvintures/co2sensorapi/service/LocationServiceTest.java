@@ -0,0 +1,88 @@
+package io.alvintures.co2sensorapi.service;
+
+import io.alvintures.co2sensorapi.dto.LocationSummary;
+import io.alvintures.co2sensorapi.dto.SensorLocation;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.exception.SensorApiException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+@SpringBootTest
+class LocationServiceTest {
+
+    @Autowired
+    private LocationService serviceToTest;
+
+    @Autowired
+    private SensorService sensorService;
+
+    @Test
+    void getSummary_aggregatesEachLevelAsReadingsArrive() {
+        final String site = UUID.randomUUID().toString();
+        final String sensor1 = UUID.randomUUID().toString();
+        final String sensor2 = UUID.randomUUID().toString();
+        final String sensor3 = UUID.randomUUID().toString();
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        serviceToTest.assignLocation(sensor1, new SensorLocation(site, "north", "r1"));
+        serviceToTest.assignLocation(sensor3, new SensorLocation(site, "south", "r1"));
+        sensorService.storeMeasurement(sensor2, 2500L, now.minusMinutes(2).toString());
+        serviceToTest.assignLocation(sensor2, new SensorLocation(site, "north", "r2"));
+
+        sensorService.storeMeasurement(sensor1, 1000L, now.minusMinutes(1).toString());
+        sensorService.storeMeasurement(sensor2, 2600L, now.minusMinutes(1).toString());
+        sensorService.storeMeasurement(sensor3, 1500L, now.minusMinutes(1).toString());
+
+        final LocationSummary building = serviceToTest.getSummary(site + "/north", 1);
+        assertThat(building.getSensorCounts())
+                .as("sensor2 was counted as WARN when placed, then moved to ALERT")
+                .containsOnly(entry(SensorStatus.OK, 1L), entry(SensorStatus.WARN, 0L), entry(SensorStatus.ALERT, 1L));
+        assertThat(building.getReadingCount())
+                .as("the reading of sensor2 before it was placed is not counted")
+                .isEqualTo(2);
+        assertThat(building.getMax()).isEqualTo(2600L);
+        assertThat(building.getAverage()).isEqualTo(1800L);
+
+        final LocationSummary wholeSite = serviceToTest.getSummary(site, 1);
+        assertThat(wholeSite.getSensorCounts()).containsEntry(SensorStatus.OK, 2L).containsEntry(SensorStatus.ALERT, 1L);
+        assertThat(wholeSite.getReadingCount()).isEqualTo(3);
+        assertThat(wholeSite.getAverage()).isEqualTo(1700L);
+
+        assertThat(serviceToTest.getSummary(site + "/south/r1", 1).getMax()).isEqualTo(1500L);
+    }
+
+    @Test
+    void assignLocation_movesTheStatusToTheNewLocation() {
+        final String site = UUID.randomUUID().toString();
+        final String sensorUuid = UUID.randomUUID().toString();
+        sensorService.storeMeasurement(sensorUuid, 1000L, ZonedDateTime.now(ZoneOffset.UTC).toString());
+        serviceToTest.assignLocation(sensorUuid, new SensorLocation(site, "north", "r1"));
+
+        serviceToTest.assignLocation(sensorUuid, new SensorLocation(site, "north", "r2"));
+
+        assertThat(serviceToTest.getSummary(site + "/north/r1", 0).getSensorCounts()).containsEntry(SensorStatus.OK, 0L);
+        assertThat(serviceToTest.getSummary(site + "/north/r2", 0).getSensorCounts()).containsEntry(SensorStatus.OK, 1L);
+        assertThat(serviceToTest.getSummary(site + "/north", 0).getSensorCounts()).containsEntry(SensorStatus.OK, 1L);
+    }
+
+    @Test
+    void assignLocation_invalidName() {
+        assertThatThrownBy(() -> serviceToTest.assignLocation(UUID.randomUUID().toString(),
+                new SensorLocation("hq", "north/south", "r1")))
+                .isInstanceOf(SensorApiException.class);
+    }
+
+    @Test
+    void getSummary_unknownLocation() {
+        assertThatThrownBy(() -> serviceToTest.getSummary(UUID.randomUUID().toString(), 0))
+                .isInstanceOf(SensorApiException.class);
+    }
+}
@@ -0,0 +1,96 @@
+package io.alvintures.co2sensorapi.service;
+
+import io.alvintures.co2sensorapi.dto.Measurement;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorReadingFoldTest {
+
+    private final SensorReadingFold foldToTest = new SensorReadingFold(2000, 3);
+
+    @Test
+    void accept_firstReadingAboveThreshold_initialStatusIsWarn() {
+        assertThat(foldToTest.accept(2500)).isFalse();
+
+        assertThat(foldToTest.getStatus()).isEqualTo(SensorStatus.WARN);
+    }
+
+    @Test
+    void accept_firstReadingAtThreshold_initialStatusIsOk() {
+        assertThat(foldToTest.accept(2000)).isFalse();
+
+        assertThat(foldToTest.getStatus()).isEqualTo(SensorStatus.OK);
+    }
+
+    @Test
+    void accept_threeReadingsAboveThreshold_triggerAlert() {
+        assertThat(foldToTest.accept(2500)).isFalse();
+        assertThat(foldToTest.accept(2600)).isFalse();
+        assertThat(foldToTest.accept(2700))
+                .as("the third consecutive reading above threshold is the alert")
+                .isTrue();
+
+        assertThat(foldToTest.getStatus()).isEqualTo(SensorStatus.ALERT);
+    }
+
+    @Test
+    void accept_mixedReadingsAfterOk_switchToWarn() {
+        foldToTest.accept(1000);
+        foldToTest.accept(1000);
+        foldToTest.accept(2100);
+
+        assertThat(foldToTest.getStatus()).isEqualTo(SensorStatus.WARN);
+    }
+
+    @Test
+    void accept_alertStaysUntilThreeReadingsAtOrBelowThreshold() {
+        foldToTest.accept(3000);
+        foldToTest.accept(2500);
+        foldToTest.accept(2100);
+        foldToTest.accept(1000);
+        foldToTest.accept(1900);
+        assertThat(foldToTest.getStatus())
+                .as("mixed readings should keep the ALERT status")
+                .isEqualTo(SensorStatus.ALERT);
+
+        foldToTest.accept(1700);
+
+        assertThat(foldToTest.getStatus()).isEqualTo(SensorStatus.OK);
+    }
+
+    @Test
+    void resume_fromStoredStatusAndRecentReadings_continuesLikeTheFullHistory() {
+        final SensorReadingFold resumed = SensorReadingFold.resume(2000, 3, SensorStatus.WARN,
+                Arrays.asList(measurement(20200101000200L, 2600), measurement(20200101000100L, 2500)));
+
+        assertThat(resumed.getLastTime()).isEqualTo(20200101000200L);
+        assertThat(resumed.getStatus()).isEqualTo(SensorStatus.WARN);
+        assertThat(resumed.accept(20200101000300L, 2700))
+                .as("the third consecutive reading above threshold is the alert")
+                .isTrue();
+        assertThat(resumed.getStatus()).isEqualTo(SensorStatus.ALERT);
+    }
+
+    @Test
+    void copy_isNotChangedByTheOriginal() {
+        foldToTest.accept(20200101000100L, 2500);
+        final SensorReadingFold copy = new SensorReadingFold(foldToTest);
+
+        foldToTest.accept(20200101000200L, 2600);
+
+        assertThat(copy.getReadingCount()).isEqualTo(1);
+        assertThat(copy.getLastTime()).isEqualTo(20200101000100L);
+        assertThat(copy.getConsecutiveAboveThreshold()).isEqualTo(1);
+    }
+
+    private static Measurement measurement(final long time, final long co2Level) {
+        final Measurement measurement = new Measurement();
+        measurement.setTime(time);
+        measurement.setCo2Level(co2Level);
+        return measurement;
+    }
+}
@@ -0,0 +1,83 @@
+package io.alvintures.co2sensorapi.service;
+
+import com.google.common.collect.ImmutableMap;
+import io.alvintures.co2sensorapi.cluster.ClusterClient;
+import io.alvintures.co2sensorapi.cluster.ClusterMembership;
+import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "app.cluster.enabled=true",
+        "app.cluster.self-url=http://node-a:8080",
+        "app.cluster.nodes=http://node-b:8080",
+        "app.cluster.secret=test-secret"
+})
+class SensorServiceClusterTest {
+
+    private static final String NODE_B = "http://node-b:8080";
+
+    @MockBean
+    private SensorDao sensorDaoMock;
+
+    @MockBean
+    private ClusterClient clusterClientMock;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private SensorService serviceToTest;
+
+    @Test
+    void getStatuses_readsTheSensorsOfOtherNodesFromTheirOwner() {
+        final String localSensorUuid = sensorOwnedBy(clusterMembership.getSelfUrl());
+        final String remoteSensorUuid = sensorOwnedBy(NODE_B);
+        final String unknownSensorUuid = sensorOwnedBy(NODE_B);
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.empty());
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(new ArrayList<>());
+        serviceToTest.storeMeasurement(localSensorUuid, 1000, ZonedDateTime.now().toString());
+        when(clusterClientMock.getStatuses(NODE_B, Arrays.asList(remoteSensorUuid, unknownSensorUuid)))
+                .thenReturn(ImmutableMap.of(remoteSensorUuid, SensorStatus.ALERT));
+
+        assertThat(serviceToTest.getStatuses(Arrays.asList(remoteSensorUuid, localSensorUuid, unknownSensorUuid)))
+                .as("one request to node B, the statuses in the order requested")
+                .containsExactly(entry(remoteSensorUuid, SensorStatus.ALERT), entry(localSensorUuid, SensorStatus.OK));
+        verify(clusterClientMock).getStatuses(NODE_B, Arrays.asList(remoteSensorUuid, unknownSensorUuid));
+    }
+
+    @Test
+    void getLocalStatuses_neverAsksOtherNodes() {
+        final String remoteSensorUuid = sensorOwnedBy(NODE_B);
+
+        assertThat(serviceToTest.getLocalStatuses(Collections.singletonList(remoteSensorUuid))).isEmpty();
+        verify(clusterClientMock, never()).getStatuses(anyString(), anyList());
+    }
+
+    private String sensorOwnedBy(final String node) {
+        String sensorUuid;
+        do {
+            sensorUuid = UUID.randomUUID().toString();
+        } while (!clusterMembership.ownerOf(sensorUuid).equals(node));
+        return sensorUuid;
+    }
+}
@@ -1,10 +1,18 @@
 package io.alvintures.co2sensorapi.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.alvintures.co2sensorapi.dao.SensorDao;
+import io.alvintures.co2sensorapi.dto.AlertEpisode;
+import io.alvintures.co2sensorapi.dto.AlertHistoryResponse;
 import io.alvintures.co2sensorapi.dto.Measurement;
 import io.alvintures.co2sensorapi.dto.Sensor;
 import io.alvintures.co2sensorapi.dto.SensorMetrics;
+import io.alvintures.co2sensorapi.dto.SensorMetricsResponse;
+import io.alvintures.co2sensorapi.dto.SensorSeries;
 import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.dto.SeriesBucket;
+import io.alvintures.co2sensorapi.dto.SeriesPoint;
 import io.alvintures.co2sensorapi.exception.SensorApiException;
 import io.alvintures.co2sensorapi.util.TimestampUtil;
 import org.assertj.core.util.Lists;
@@ -14,21 +22,36 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
+import java.time.Duration;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -41,6 +64,9 @@ class SensorServiceTest {
     @Autowired
     private SensorService serviceToTest;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Test
     void storeMeasurement_createSensorIfNotYetExisting_initialStatusIsOk() {
         when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.empty());
@@ -53,7 +79,7 @@ class SensorServiceTest {
         assertThat(sensorArgCaptor.getValue().getStatus())
                 .as("if c02 level <= 2000, initial status of sensor should be OK")
                 .isEqualTo(SensorStatus.OK);
-        verify(sensorDaoMock).createMeasurement(any()); // Check if store measurement is called as well
+        verify(sensorDaoMock).createMeasurements(anyList()); // Check if store measurement is called as well
     }
 
     @Test
@@ -68,7 +94,7 @@ class SensorServiceTest {
         assertThat(sensorArgCaptor.getValue().getStatus())
                 .as("if c02 level > 2000, initial status of sensor should be WARN")
                 .isEqualTo(SensorStatus.WARN);
-        verify(sensorDaoMock).createMeasurement(any()); // Check if store measurement is called as well
+        verify(sensorDaoMock).createMeasurements(anyList()); // Check if store measurement is called as well
     }
 
     @Test
@@ -93,6 +119,80 @@ class SensorServiceTest {
                 .hasMessage("time 2020-12-12 is in invalid format.");
     }
 
+    @Test
+    void storeMeasurement_retryWithIdempotencyKey_isStoredOnce() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final String time = ZonedDateTime.now(ZoneOffset.UTC).toString();
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.empty());
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(new ArrayList<>());
+
+        serviceToTest.storeMeasurement(sensorUuid, 1000L, time, "reading-1");
+        serviceToTest.storeMeasurement(sensorUuid, 1000L, time, "reading-1");
+
+        verify(sensorDaoMock, times(1)).createMeasurements(anyList());
+    }
+
+    @Test
+    void storeMeasurement_retryWithIdempotencyKey_getsTheSameRejection() {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        final String sensorUuid = UUID.randomUUID().toString();
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt()))
+                .thenReturn(Lists.newArrayList(buildMeasurement(now, sensorUuid, 3000L)));
+        assertThatThrownBy(() -> serviceToTest.storeMeasurement(sensorUuid, 1000L, now.toString(), "reading-1"))
+                .isInstanceOf(SensorApiException.class);
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(new ArrayList<>());
+
+        assertThatThrownBy(() -> serviceToTest.storeMeasurement(sensorUuid, 1000L, now.toString(), "reading-1"))
+                .as("the retry is not evaluated again")
+                .isInstanceOf(SensorApiException.class)
+                .hasMessage("New measurement should not be recorded on the same minute.");
+        verify(sensorDaoMock, never()).createMeasurements(anyList());
+    }
+
+    @Test
+    void storeMeasurement_retryWithForgottenIdempotencyKey_isAbsorbedIfAlreadyStored() {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        final String sensorUuid = UUID.randomUUID().toString();
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt()))
+                .thenReturn(Lists.newArrayList(buildMeasurement(now, sensorUuid, 1000L)));
+        when(sensorDaoMock.getMeasurementsBefore(anyString(), anyLong(), anyInt()))
+                .thenReturn(Lists.newArrayList(buildMeasurement(now, sensorUuid, 1000L)));
+
+        serviceToTest.storeMeasurement(sensorUuid, 1000L, now.toString(), "reading-1");
+
+        verify(sensorDaoMock, never()).createMeasurements(anyList());
+    }
+
+    @Test
+    void storeMeasurement_retryWithIdempotencyKeyAfterAnError_isStored() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final String time = ZonedDateTime.now(ZoneOffset.UTC).toString();
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.empty());
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(new ArrayList<>());
+        doThrow(new OutOfMemoryError("Java heap space")).doNothing().when(sensorDaoMock).createMeasurements(anyList());
+
+        assertThatThrownBy(() -> serviceToTest.storeMeasurement(sensorUuid, 1000L, time, "reading-1"))
+                .isInstanceOf(Error.class);
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> serviceToTest.storeMeasurement(sensorUuid, 1000L, time, "reading-1"),
+                "the retry does not wait for the failed attempt");
+
+        verify(sensorDaoMock, times(2)).createMeasurements(anyList());
+    }
+
+    @Test
+    void storeMeasurement_idempotencyKeyReusedForAnotherReading() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.empty());
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(new ArrayList<>());
+        serviceToTest.storeMeasurement(sensorUuid, 1000L, now.toString(), "reading-1");
+
+        assertThatThrownBy(() -> serviceToTest.storeMeasurement(sensorUuid, 1000L, now.plusMinutes(1).toString(), "reading-1"))
+                .isInstanceOf(SensorApiException.class)
+                .hasMessage("Idempotency-Key reading-1 was already used for another reading.");
+    }
+
     @Test
     void storeMeasurement_hasExistingMeasurement_testWarnTrigger() {
         final ZonedDateTime now = ZonedDateTime.now();
@@ -106,7 +206,7 @@ class SensorServiceTest {
         serviceToTest.storeMeasurement(sensorUuid, 2100L, now.plusMinutes(1).toString());
 
         verify(sensorDaoMock).updateSensorStatus(eq(sensorUuid), eq(SensorStatus.WARN));
-        verify(sensorDaoMock).createMeasurement(any()); // Check if store measurement is called as well
+        verify(sensorDaoMock).createMeasurements(anyList()); // Check if store measurement is called as well
     }
 
     @Test
@@ -123,7 +223,8 @@ class SensorServiceTest {
         serviceToTest.storeMeasurement(sensorUuid, 2100L, now.plusMinutes(2).toString());
 
         verify(sensorDaoMock).updateSensorStatus(eq(sensorUuid), eq(SensorStatus.ALERT));
-        verify(sensorDaoMock).createMeasurement(any()); // Check if store measurement is called as well
+        verify(sensorDaoMock).openAlertEpisode(eq(sensorUuid), eq(TimestampUtil.toUtcTimestamp(now.plusMinutes(2))), eq(2100L));
+        verify(sensorDaoMock).createMeasurements(anyList()); // Check if store measurement is called as well
     }
 
     @Test
@@ -140,49 +241,153 @@ class SensorServiceTest {
         serviceToTest.storeMeasurement(sensorUuid, 1700L, now.plusMinutes(2).toString());
 
         verify(sensorDaoMock).updateSensorStatus(eq(sensorUuid), eq(SensorStatus.OK));
-        verify(sensorDaoMock).createMeasurement(any()); // Check if store measurement is called as well
+        verify(sensorDaoMock).closeAlertEpisode(eq(sensorUuid), eq(TimestampUtil.toUtcTimestamp(now.plusMinutes(2))));
+        verify(sensorDaoMock).createMeasurements(anyList()); // Check if store measurement is called as well
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void storeMeasurement_lateMeasurementInTheTriggerWindow_reevaluatesTheStatus() {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC).withSecond(0);
+        final String sensorUuid = UUID.randomUUID().toString();
+        final Measurement before = buildMeasurement(now, sensorUuid, 2500L);
+        final Measurement after = buildMeasurement(now.plusMinutes(2), sensorUuid, 2500L);
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(Lists.newArrayList(after, before));
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.of(buildSensor(sensorUuid, SensorStatus.WARN)));
+        when(sensorDaoMock.getMeasurementsBefore(anyString(), anyLong(), anyInt())).thenReturn(Lists.newArrayList(before));
+        when(sensorDaoMock.getMeasurementsAfter(anyString(), anyLong(), anyInt())).thenReturn(Lists.newArrayList(after));
+
+        serviceToTest.storeMeasurement(sensorUuid, 2600L, now.plusMinutes(1).toString());
+
+        final ArgumentCaptor<List<Measurement>> changedFlagsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(sensorDaoMock).updateAlertFlags(changedFlagsCaptor.capture());
+        assertThat(changedFlagsCaptor.getValue())
+                .as("the reading after the late one now ends a window of 3 readings above threshold")
+                .extracting(Measurement::getTime, Measurement::isAlert)
+                .containsExactly(tuple(after.getTime(), true));
+        verify(sensorDaoMock).updateSensorStatus(eq(sensorUuid), eq(SensorStatus.ALERT));
+        verify(sensorDaoMock).openAlertEpisode(eq(sensorUuid), eq(after.getTime()), eq(2500L));
+        verify(sensorDaoMock).createMeasurements(anyList());
+    }
+
+    @Test
+    void storeMeasurement_lateMeasurementBeforeTheTriggerWindow_keepsTheStatus() {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC).withSecond(0);
+        final String sensorUuid = UUID.randomUUID().toString();
+        final List<Measurement> after = Lists.newArrayList(buildMeasurement(now.plusMinutes(2), sensorUuid, 1000L),
+                buildMeasurement(now.plusMinutes(3), sensorUuid, 1000L), buildMeasurement(now.plusMinutes(4), sensorUuid, 1000L));
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(Lists.newArrayList(after.get(2)));
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.of(buildSensor(sensorUuid, SensorStatus.OK)));
+        when(sensorDaoMock.getMeasurementsBefore(anyString(), anyLong(), anyInt())).thenReturn(new ArrayList<>());
+        when(sensorDaoMock.getMeasurementsAfter(anyString(), anyLong(), anyInt())).thenReturn(after);
+
+        serviceToTest.storeMeasurement(sensorUuid, 2600L, now.plusMinutes(1).toString());
+
+        verify(sensorDaoMock, never()).updateSensorStatus(anyString(), any());
+        verify(sensorDaoMock, never()).updateAlertFlags(anyList());
+        verify(sensorDaoMock).createMeasurements(anyList());
+    }
+
+    @Test
+    void storeMeasurement_lateMeasurementOlderThanTheLatenessWindow() {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        final String sensorUuid = UUID.randomUUID().toString();
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt()))
+                .thenReturn(Lists.newArrayList(buildMeasurement(now, sensorUuid, 1000L)));
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.of(buildSensor(sensorUuid, SensorStatus.OK)));
+
+        assertThatThrownBy(() -> serviceToTest.storeMeasurement(sensorUuid, 1000L, now.minusHours(2).toString()))
+                .isInstanceOf(SensorApiException.class)
+                .hasMessage("Measurement is more than 60 minutes older than the last one of the sensor.");
+        verify(sensorDaoMock, never()).createMeasurements(anyList());
     }
 
     @Test
     void getStatus_whenSensorExists() {
         final String sensorUuid = UUID.randomUUID().toString();
-        final Sensor sensor = buildSensor(sensorUuid, SensorStatus.WARN);
-        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.of(sensor));
+        final ZonedDateTime now = ZonedDateTime.now();
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.empty());
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(new ArrayList<>());
+        serviceToTest.storeMeasurement(sensorUuid, 3000, now.toString());
 
         final Optional<SensorStatus> sensorStatus = serviceToTest.getStatus(sensorUuid);
 
         assertThat(sensorStatus.isPresent()).isTrue();
-        assertThat(sensorStatus.get()).isEqualTo(sensor.getStatus());
+        assertThat(sensorStatus.get())
+                .as("the status should reflect the measurement just stored")
+                .isEqualTo(SensorStatus.WARN);
     }
 
     @Test
-    void getStatus_whenSensorDoesNotExists() {
-        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.empty());
+    void getStatus_reflectsStatusUpdates() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final String sensorUuid = UUID.randomUUID().toString();
+        final Measurement existingMeasurement1 = buildMeasurement(now, sensorUuid, 3000L);
+        final Measurement existingMeasurement2 = buildMeasurement(now.plusMinutes(1), sensorUuid, 2500L);
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt()))
+                .thenReturn(Lists.newArrayList(existingMeasurement1, existingMeasurement2));
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.of(buildSensor(sensorUuid, SensorStatus.WARN)));
 
+        serviceToTest.storeMeasurement(sensorUuid, 2100L, now.plusMinutes(2).toString());
+
+        assertThat(serviceToTest.getStatus(sensorUuid)).contains(SensorStatus.ALERT);
+    }
+
+    @Test
+    void getStatus_whenSensorDoesNotExists() {
         final Optional<SensorStatus> sensorStatus = serviceToTest.getStatus(UUID.randomUUID().toString());
 
         assertThat(sensorStatus.isPresent()).isFalse();
     }
 
+    @Test
+    void getStatuses_leavesOutUnknownSensors() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final String unknownSensorUuid = UUID.randomUUID().toString();
+        when(sensorDaoMock.getSensor(anyString())).thenReturn(Optional.empty());
+        when(sensorDaoMock.getRecentMeasurements(anyString(), anyInt())).thenReturn(new ArrayList<>());
+        serviceToTest.storeMeasurement(sensorUuid, 1000, ZonedDateTime.now().toString());
+
+        assertThat(serviceToTest.getStatuses(Arrays.asList(sensorUuid, unknownSensorUuid)))
+                .containsOnly(entry(sensorUuid, SensorStatus.OK));
+    }
+
+    @Test
+    void getStatuses_tooManySensors() {
+        final List<String> sensorUuids = IntStream.range(0, 1001)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .collect(Collectors.toList());
+
+        assertThatThrownBy(() -> serviceToTest.getStatuses(sensorUuids))
+                .isInstanceOf(SensorApiException.class);
+    }
+
     @Test
     void getMetrics_for1Day() {
         final SensorMetrics sensorMetrics = new SensorMetrics();
         sensorMetrics.setAverage(100L);
         sensorMetrics.setMax(200L);
-        when(sensorDaoMock.getMetrics(anyString(), anyLong(), anyLong())).thenReturn(sensorMetrics);
+        sensorMetrics.setP50(90L);
+        sensorMetrics.setP95(180L);
+        sensorMetrics.setP99(195L);
         final String sensorUuid = UUID.randomUUID().toString();
+        when(sensorDaoMock.getMetrics(anyList(), any(long[].class), anyLong()))
+                .thenReturn(Collections.singletonMap(sensorUuid, Collections.singletonList(sensorMetrics)));
         final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
 
-        final Map<String, Long> metrics = serviceToTest.getMetrics(sensorUuid, 1);
+        final Map<String, Object> metrics = toJsonMap(serviceToTest.getMetrics(sensorUuid, 1));
 
         assertThat(metrics)
                 .as("should properly construct/map metrics")
-                .containsEntry("maxLast1Day", 200L)
-                .containsEntry("avgLast1Day", 100L);
+                .containsEntry("maxLast1Day", 200)
+                .containsEntry("avgLast1Day", 100)
+                .containsEntry("p50Last1Day", 90)
+                .containsEntry("p95Last1Day", 180)
+                .containsEntry("p99Last1Day", 195);
         // Check if passed start and end date were correct
         verify(sensorDaoMock).getMetrics(
-                eq(sensorUuid),
-                eq(TimestampUtil.toUtcTimestamp(now.minusDays(1).toLocalDate().atStartOfDay(now.getZone()))),
+                eq(Collections.singletonList(sensorUuid)),
+                aryEq(new long[]{TimestampUtil.toUtcTimestamp(now.minusDays(1).toLocalDate().atStartOfDay(now.getZone()))}),
                 anyLong()
                 // longThat(arg -> arg > TimestampUtil.toUtcTimestamp(now))
         );
@@ -193,25 +398,103 @@ class SensorServiceTest {
         final SensorMetrics sensorMetrics = new SensorMetrics();
         sensorMetrics.setAverage(100L);
         sensorMetrics.setMax(200L);
-        when(sensorDaoMock.getMetrics(anyString(), anyLong(), anyLong())).thenReturn(sensorMetrics);
         final String sensorUuid = UUID.randomUUID().toString();
+        when(sensorDaoMock.getMetrics(anyList(), any(long[].class), anyLong()))
+                .thenReturn(Collections.singletonMap(sensorUuid, Collections.singletonList(sensorMetrics)));
         final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
 
-        final Map<String, Long> metrics = serviceToTest.getMetrics(sensorUuid, 5);
+        final Map<String, Object> metrics = toJsonMap(serviceToTest.getMetrics(sensorUuid, 5));
 
         assertThat(metrics)
                 .as("should properly construct/map metrics")
-                .containsEntry("maxLast5Days", 200L)
-                .containsEntry("avgLast5Days", 100L);
+                .containsEntry("maxLast5Days", 200)
+                .containsEntry("avgLast5Days", 100)
+                .as("metrics without readings should still be sent as null")
+                .containsEntry("p50Last5Days", null);
         // Check if passed start and end date were correct
         verify(sensorDaoMock).getMetrics(
-                eq(sensorUuid),
-                eq(TimestampUtil.toUtcTimestamp(now.minusDays(5).toLocalDate().atStartOfDay(now.getZone()))),
+                eq(Collections.singletonList(sensorUuid)),
+                aryEq(new long[]{TimestampUtil.toUtcTimestamp(now.minusDays(5).toLocalDate().atStartOfDay(now.getZone()))}),
                 anyLong()
                 // longThat(arg -> arg > TimestampUtil.toUtcTimestamp(now))
         );
     }
 
+    @Test
+    void getMetrics_severalPeriods_oneCallForAll() {
+        final SensorMetrics lastDayMetrics = new SensorMetrics();
+        lastDayMetrics.setMax(1200L);
+        final SensorMetrics lastWeekMetrics = new SensorMetrics();
+        lastWeekMetrics.setMax(2400L);
+        final String sensorUuid = UUID.randomUUID().toString();
+        when(sensorDaoMock.getMetrics(anyList(), any(long[].class), anyLong()))
+                .thenReturn(Collections.singletonMap(sensorUuid, Arrays.asList(lastDayMetrics, lastWeekMetrics)));
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+
+        final Map<String, Object> metrics = toJsonMap(serviceToTest.getMetrics(sensorUuid, Arrays.asList(1, 7, 1)));
+
+        assertThat(metrics)
+                .containsEntry("maxLast1Day", 1200)
+                .containsEntry("maxLast7Days", 2400)
+                .hasSize(10);
+        verify(sensorDaoMock).getMetrics(
+                eq(Collections.singletonList(sensorUuid)),
+                aryEq(new long[]{
+                        TimestampUtil.toUtcTimestamp(now.minusDays(1).toLocalDate().atStartOfDay(now.getZone())),
+                        TimestampUtil.toUtcTimestamp(now.minusDays(7).toLocalDate().atStartOfDay(now.getZone()))}),
+                anyLong()
+        );
+    }
+
+    @Test
+    void getMetrics_negativePeriod() {
+        assertThatThrownBy(() -> serviceToTest.getMetrics(UUID.randomUUID().toString(), Arrays.asList(7, -1)))
+                .isInstanceOf(SensorApiException.class);
+    }
+
+    @Test
+    void getMetricsOfSensors_keyedBySensor() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final String otherSensorUuid = UUID.randomUUID().toString();
+        final SensorMetrics sensorMetrics = new SensorMetrics();
+        sensorMetrics.setMax(1500L);
+        final Map<String, List<SensorMetrics>> metricsBySensor = new LinkedHashMap<>();
+        metricsBySensor.put(sensorUuid, Collections.singletonList(sensorMetrics));
+        metricsBySensor.put(otherSensorUuid, Collections.singletonList(new SensorMetrics()));
+        when(sensorDaoMock.getMetrics(anyList(), any(long[].class), anyLong())).thenReturn(metricsBySensor);
+
+        final Map<String, SensorMetricsResponse> responses =
+                serviceToTest.getMetricsOfSensors(Arrays.asList(sensorUuid, otherSensorUuid), Collections.singletonList(30));
+
+        assertThat(responses).containsOnlyKeys(sensorUuid, otherSensorUuid);
+        assertThat(toJsonMap(responses.get(sensorUuid))).containsEntry("maxLast30Days", 1500);
+    }
+
+    @Test
+    void getMetricsOfSensors_tooManySensors() {
+        final List<String> sensorUuids = IntStream.range(0, 101)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .collect(Collectors.toList());
+
+        assertThatThrownBy(() -> serviceToTest.getMetricsOfSensors(sensorUuids, Collections.singletonList(30)))
+                .isInstanceOf(SensorApiException.class);
+    }
+
+    @Test
+    void getFleetMetrics() {
+        final SensorMetrics sensorMetrics = new SensorMetrics();
+        sensorMetrics.setAverage(100L);
+        sensorMetrics.setMax(200L);
+        sensorMetrics.setP95(180L);
+        when(sensorDaoMock.getFleetMetrics(any(long[].class), anyLong())).thenReturn(Collections.singletonList(sensorMetrics));
+
+        final Map<String, Object> metrics = toJsonMap(serviceToTest.getFleetMetrics(7));
+
+        assertThat(metrics)
+                .containsEntry("maxLast7Days", 200)
+                .containsEntry("p95Last7Days", 180);
+    }
+
     @Test
     void getAlerts_hasAlerts() {
         final ZonedDateTime now = ZonedDateTime.now();
@@ -222,7 +505,7 @@ class SensorServiceTest {
         alert2.setAlert(true);
         when(sensorDaoMock.getAlerts(anyString(), anyInt())).thenReturn(Lists.newArrayList(alert1, alert2));
 
-        final Map<String, Object> alertList = serviceToTest.getAlerts(sensorUuid, 3);
+        final Map<String, Object> alertList = toJsonMap(serviceToTest.getAlerts(sensorUuid, 3));
 
         assertThat(alertList)
                 .as("should contain the starting time of all alerts")
@@ -230,19 +513,109 @@ class SensorServiceTest {
                 .as("should contain the ending time of all alerts")
                 .containsEntry("endTime", TimestampUtil.toIsoDateTime(alert2.getTime()))
                 .as("should contain all the CO2 levels that triggers the alert")
-                .containsEntry("measurement1", alert1.getCo2Level())
-                .containsEntry("measurement2", alert2.getCo2Level());
+                .containsEntry("measurement1", alert1.getCo2Level().intValue())
+                .containsEntry("measurement2", alert2.getCo2Level().intValue());
     }
 
     @Test
     void getAlerts_emptyAlerts() {
         when(sensorDaoMock.getAlerts(anyString(), anyInt())).thenReturn(Collections.emptyList());
 
-        final Map<String, Object> alertList = serviceToTest.getAlerts(UUID.randomUUID().toString(), 3);
+        final Map<String, Object> alertList = toJsonMap(serviceToTest.getAlerts(UUID.randomUUID().toString(), 3));
 
         assertThat(alertList).isEmpty();
     }
 
+    @Test
+    void getAlertHistory_pagesWithTheStartOfTheLastEpisode() {
+        final String sensorUuid = UUID.randomUUID().toString();
+        final AlertEpisode ongoing = buildAlertEpisode(sensorUuid, 20200713120000L, null);
+        final AlertEpisode closed = buildAlertEpisode(sensorUuid, 20200712120000L, 20200712123000L);
+        final AlertEpisode older = buildAlertEpisode(sensorUuid, 20200711120000L, 20200711123000L);
+        when(sensorDaoMock.getAlertEpisodes(eq(sensorUuid), eq(Long.MAX_VALUE), eq(0L), eq(3)))
+                .thenReturn(Lists.newArrayList(ongoing, closed, older));
+        when(sensorDaoMock.getAlertEpisodes(eq(sensorUuid), eq(20200712120000L), eq(0L), eq(3)))
+                .thenReturn(Lists.newArrayList(older));
+
+        final AlertHistoryResponse firstPage = serviceToTest.getAlertHistory(sensorUuid, null, null, null, 2);
+        final AlertHistoryResponse lastPage =
+                serviceToTest.getAlertHistory(sensorUuid, null, null, firstPage.getNextCursor(), 2);
+
+        assertThat(firstPage.getEpisodes()).extracting(AlertHistoryResponse.Episode::getEndTime)
+                .as("the ongoing episode has no end yet")
+                .containsExactly(null, "2020-07-12T12:30:00+00:00");
+        assertThat(firstPage.getNextCursor()).isEqualTo("20200712120000");
+        assertThat(lastPage.getEpisodes()).extracting(AlertHistoryResponse.Episode::getStartTime)
+                .containsExactly("2020-07-11T12:00:00+00:00");
+        assertThat(lastPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    void getAlertHistory_invalidCursor() {
+        assertThatThrownBy(() -> serviceToTest.getAlertHistory(UUID.randomUUID().toString(), null, null, "abc", 20))
+                .isInstanceOf(SensorApiException.class);
+    }
+
+    @Test
+    void getSeries_bucketed() {
+        final SeriesPoint point = buildSeriesPoint(20200713121500L, 1500L);
+        when(sensorDaoMock.getSeries(anyString(), anyLong(), anyLong(), eq(SeriesBucket.FIFTEEN_MINUTES)))
+                .thenReturn(Lists.newArrayList(point));
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        final SensorSeries series = serviceToTest.getSeries(sensorUuid, "2020-07-13T12:00:00Z", "2020-07-13T13:00:00+01:00",
+                "15m", Lists.newArrayList("avg", "max"), 1000);
+
+        assertThat(series.getBucket()).isEqualTo("15m");
+        assertThat(series.getColumns()).containsExactly("time", "avg", "max");
+        assertThat(series.getPoints())
+                .hasSize(1)
+                .allMatch(values -> Arrays.equals(values, new Object[]{"2020-07-13T12:15:00+00:00", 1500L, 1500L}));
+        verify(sensorDaoMock).getSeries(eq(sensorUuid), eq(20200713120000L), eq(20200713120000L), eq(SeriesBucket.FIFTEEN_MINUTES));
+    }
+
+    @Test
+    void getSeries_downsampledToMaxPoints() {
+        final ZonedDateTime start = ZonedDateTime.parse("2020-07-13T00:00:00Z");
+        final List<SeriesPoint> rawPoints = IntStream.range(0, 1440)
+                .mapToObj(minute -> buildSeriesPoint(TimestampUtil.toUtcTimestamp(start.plusMinutes(minute)), 1000L + minute % 7))
+                .collect(Collectors.toList());
+        when(sensorDaoMock.getRawSeries(anyString(), anyLong(), anyLong())).thenReturn(rawPoints);
+
+        final SensorSeries series = serviceToTest.getSeries(UUID.randomUUID().toString(), null, null,
+                null, Lists.newArrayList("avg"), 100);
+
+        assertThat(series.getBucket()).isNull();
+        assertThat(series.getPoints()).hasSize(100);
+    }
+
+    @Test
+    void getSeries_unsupportedBucket() {
+        assertThatThrownBy(() -> serviceToTest.getSeries(UUID.randomUUID().toString(), null, null,
+                "7m", Lists.newArrayList("avg"), 100))
+                .isInstanceOf(SensorApiException.class)
+                .hasMessage("bucket 7m is not supported.");
+    }
+
+    private SeriesPoint buildSeriesPoint(long time, long co2Level) {
+        final SeriesPoint point = new SeriesPoint();
+        point.setTime(time);
+        point.setAverage(co2Level);
+        point.setMax(co2Level);
+        point.setMin(co2Level);
+        return point;
+    }
+
+    private AlertEpisode buildAlertEpisode(String sensorUuid, long startTime, Long endTime) {
+        final AlertEpisode episode = new AlertEpisode();
+        episode.setSensorUuid(sensorUuid);
+        episode.setStartTime(startTime);
+        episode.setEndTime(endTime);
+        episode.setPeakCo2Level(2500L);
+        episode.setReadingCount(3);
+        return episode;
+    }
+
     private Sensor buildSensor(String sensorUuid, SensorStatus status) {
         final Sensor sensor = new Sensor();
         sensor.setUuid(sensorUuid);
@@ -257,4 +630,15 @@ class SensorServiceTest {
         existingMeasurement1.setTime(TimestampUtil.toUtcTimestamp(now));
         return existingMeasurement1;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the response as it is sent to the client, so the wire format is asserted and not only the model.
+     */
+    private Map<String, Object> toJsonMap(final Object response) {
+        try {
+            return objectMapper.readValue(objectMapper.writeValueAsString(response), new TypeReference<Map<String, Object>>() {});
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.alvintures.co2sensorapi.service;
+
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorStatusRegistryTest {
+
+    private final SensorStatusRegistry registryToTest = new SensorStatusRegistry();
+
+    @Test
+    void get_returnsTheLastStatusPut() {
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        registryToTest.put(sensorUuid, SensorStatus.WARN);
+        registryToTest.put(sensorUuid, SensorStatus.ALERT);
+
+        assertThat(registryToTest.get(sensorUuid)).contains(SensorStatus.ALERT);
+        assertThat(registryToTest.get(UUID.randomUUID().toString())).isEmpty();
+        assertThat(registryToTest.size()).isEqualTo(1);
+    }
+
+    @Test
+    void get_keepsNonCanonicalIdsApart() {
+        final String sensorUuid = UUID.randomUUID().toString();
+
+        registryToTest.put(sensorUuid, SensorStatus.OK);
+        registryToTest.put(sensorUuid.toUpperCase(), SensorStatus.ALERT);
+        registryToTest.put("sensor-1", SensorStatus.WARN);
+
+        assertThat(registryToTest.get(sensorUuid)).contains(SensorStatus.OK);
+        assertThat(registryToTest.get(sensorUuid.toUpperCase()))
+                .as("ids are case sensitive like in the sensor table")
+                .contains(SensorStatus.ALERT);
+        assertThat(registryToTest.get("sensor-1")).contains(SensorStatus.WARN);
+        assertThat(registryToTest.get("sensor-2")).isEmpty();
+    }
+
+    @Test
+    void put_growsPastTheInitialCapacity() {
+        final List<String> sensorUuids = IntStream.range(0, 10_000)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .collect(Collectors.toList());
+
+        for (int i = 0; i < sensorUuids.size(); i++) {
+            registryToTest.put(sensorUuids.get(i), SensorStatus.values()[i % 3]);
+        }
+
+        assertThat(registryToTest.size()).isEqualTo(10_000);
+        for (int i = 0; i < sensorUuids.size(); i++) {
+            assertThat(registryToTest.get(sensorUuids.get(i))).contains(SensorStatus.values()[i % 3]);
+        }
+    }
+
+    @Test
+    void get_whileAnotherThreadWrites() throws Exception {
+        final List<String> sensorUuids = IntStream.range(0, 20_000)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .collect(Collectors.toList());
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<String> inconsistency = new AtomicReference<>();
+
+        final Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                for (int i = 0; i < sensorUuids.size(); i += 97) {
+                    registryToTest.get(sensorUuids.get(i))
+                            .filter(status -> status != SensorStatus.WARN && status != SensorStatus.ALERT)
+                            .ifPresent(status -> inconsistency.set(status + " read for a sensor only put as WARN or ALERT"));
+                }
+            }
+        });
+        reader.start();
+        sensorUuids.forEach(sensorUuid -> registryToTest.put(sensorUuid, SensorStatus.WARN));
+        sensorUuids.forEach(sensorUuid -> registryToTest.put(sensorUuid, SensorStatus.ALERT));
+        writing.set(false);
+        reader.join();
+
+        assertThat(inconsistency.get()).isNull();
+        assertThat(sensorUuids).allMatch(sensorUuid -> registryToTest.get(sensorUuid).equals(Optional.of(SensorStatus.ALERT)));
+    }
+
+    @Test
+    void get_absentSensorWhileOthersAreInserted_isEmpty() throws Exception {
+        final List<String> insertedUuids = IntStream.range(0, 20_000)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .collect(Collectors.toList());
+        final List<String> absentUuids = IntStream.range(0, 200)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .collect(Collectors.toList());
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<String> inconsistency = new AtomicReference<>();
+
+        final Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                for (String absentUuid : absentUuids) {
+                    registryToTest.get(absentUuid)
+                            .ifPresent(status -> inconsistency.set(status + " read for a sensor never put"));
+                }
+            }
+        });
+        reader.start();
+        insertedUuids.forEach(sensorUuid -> registryToTest.put(sensorUuid, SensorStatus.OK));
+        writing.set(false);
+        reader.join();
+
+        assertThat(inconsistency.get()).isNull();
+    }
+}
@@ -0,0 +1,121 @@
+package io.alvintures.co2sensorapi.state;
+
+import io.alvintures.co2sensorapi.dto.SensorStatus;
+import io.alvintures.co2sensorapi.service.SensorReadingFold;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StateJournalTest {
+
+    private static final String SENSOR_UUID = UUID.randomUUID().toString();
+    private static final String OTHER_SENSOR_UUID = UUID.randomUUID().toString();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recover_nothingSaved_returnsNoState() throws IOException {
+        final StateJournal journal = new StateJournal(directory, false, 2000, 3);
+
+        assertThat(journal.recover()).isEmpty();
+        journal.close();
+    }
+
+    @Test
+    void recover_returnsTheLastLoggedStates() throws IOException {
+        final StateJournal journal = new StateJournal(directory, false, 2000, 3);
+        journal.recover();
+        journal.append(Collections.singletonMap(SENSOR_UUID, state(20200101000100L, 2500)));
+        journal.append(Collections.singletonMap(SENSOR_UUID, state(20200101000100L, 2500, 20200101000200L, 2600)));
+        journal.append(Collections.singletonMap(OTHER_SENSOR_UUID, state(20200101000100L, 1000)));
+        journal.close();
+
+        final Map<String, SensorReadingFold> recovered = new StateJournal(directory, false, 2000, 3).recover();
+
+        assertThat(recovered).containsOnlyKeys(SENSOR_UUID, OTHER_SENSOR_UUID);
+        assertThat(recovered.get(SENSOR_UUID)).isEqualToComparingFieldByField(
+                state(20200101000100L, 2500, 20200101000200L, 2600));
+        assertThat(recovered.get(OTHER_SENSOR_UUID).getStatus()).isEqualTo(SensorStatus.OK);
+    }
+
+    @Test
+    void recover_fromSnapshotAndLogsAfterIt() throws IOException {
+        final StateJournal journal = new StateJournal(directory, false, 2000, 3);
+        journal.recover();
+        journal.append(Collections.singletonMap(SENSOR_UUID, state(20200101000100L, 2500)));
+        final long logSequence = journal.rotate();
+        journal.append(Collections.singletonMap(OTHER_SENSOR_UUID, state(20200101000100L, 1000)));
+        journal.writeSnapshot(logSequence, Collections.singletonMap(SENSOR_UUID, state(20200101000100L, 2500)));
+        journal.close();
+
+        assertThat(new StateJournal(directory, false, 2000, 3).recover())
+                .containsOnlyKeys(SENSOR_UUID, OTHER_SENSOR_UUID);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(file -> file.getFileName().toString().startsWith("snapshot-")))
+                    .as("older snapshots are deleted")
+                    .hasSize(1);
+        }
+    }
+
+    @Test
+    void recover_pendingSensorWithoutNewState_isLeftOut() throws IOException {
+        final StateJournal journal = new StateJournal(directory, false, 2000, 3);
+        journal.recover();
+        journal.append(Collections.singletonMap(SENSOR_UUID, state(20200101000100L, 2500)));
+        journal.append(Collections.singletonMap(OTHER_SENSOR_UUID, state(20200101000100L, 1000)));
+        journal.markPending(Arrays.asList(SENSOR_UUID, OTHER_SENSOR_UUID));
+        journal.append(Collections.singletonMap(OTHER_SENSOR_UUID, state(20200101000100L, 1000, 20200101000200L, 1100)));
+        journal.close();
+
+        final Map<String, SensorReadingFold> recovered = new StateJournal(directory, false, 2000, 3).recover();
+
+        assertThat(recovered).containsOnlyKeys(OTHER_SENSOR_UUID);
+        assertThat(recovered.get(OTHER_SENSOR_UUID).getLastTime()).isEqualTo(20200101000200L);
+    }
+
+    @Test
+    void recover_tornRecordAtTheEnd_isIgnored() throws IOException {
+        final StateJournal journal = new StateJournal(directory, false, 2000, 3);
+        journal.recover();
+        journal.append(Collections.singletonMap(SENSOR_UUID, state(20200101000100L, 2500)));
+        journal.append(Collections.singletonMap(OTHER_SENSOR_UUID, state(20200101000100L, 1000)));
+        journal.close();
+        final Path log = directory.resolve("wal-2.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(log) - 5);
+        }
+
+        assertThat(new StateJournal(directory, false, 2000, 3).recover()).containsOnlyKeys(SENSOR_UUID);
+    }
+
+    @Test
+    void recover_savedWithOtherThreshold_returnsNoState() throws IOException {
+        final StateJournal journal = new StateJournal(directory, false, 2000, 3);
+        journal.recover();
+        journal.append(Collections.singletonMap(SENSOR_UUID, state(20200101000100L, 2500)));
+        journal.close();
+
+        assertThat(new StateJournal(directory, false, 1500, 3).recover()).isEmpty();
+    }
+
+    private static SensorReadingFold state(final long... timesAndLevels) {
+        final SensorReadingFold state = new SensorReadingFold(2000, 3);
+        for (int i = 0; i < timesAndLevels.length; i += 2) {
+            state.accept(timesAndLevels[i], timesAndLevels[i + 1]);
+        }
+        return state;
+    }
+}
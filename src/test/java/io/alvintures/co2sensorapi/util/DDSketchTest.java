@@ -0,0 +1,78 @@
+package io.alvintures.co2sensorapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DDSketchTest {
+
+    @Test
+    void quantile_withinRelativeAccuracy() {
+        final Random random = new Random(42);
+        final DDSketch sketch = DDSketch.forCo2();
+        final long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 400 + (long) Math.abs(random.nextGaussian() * 800);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double quantile : new double[]{0.5, 0.95, 0.99}) {
+            final long exact = values[(int) (quantile * (values.length - 1))];
+            assertThat((double) sketch.quantile(quantile))
+                    .as("p%s should be within 1%% of the exact value", quantile * 100)
+                    .isCloseTo(exact, within(exact * DDSketch.CO2_RELATIVE_ACCURACY + 1));
+        }
+        assertThat(sketch.getCountByBin().size())
+                .as("the number of bins should stay small whatever the number of readings")
+                .isLessThan(500);
+    }
+
+    @Test
+    void quantile_latenciesWithinRelativeAccuracy() {
+        final Random random = new Random(42);
+        final DDSketch sketch = DDSketch.forLatencies();
+        final long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 50 + (long) Math.exp(7 + 2 * random.nextGaussian());
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double quantile : new double[]{0.5, 0.95, 0.99}) {
+            final long exact = values[(int) (quantile * (values.length - 1))];
+            assertThat((double) sketch.quantile(quantile))
+                    .as("p%s should be within 2%% of the exact value", quantile * 100)
+                    .isCloseTo(exact, within(exact * DDSketch.LATENCY_RELATIVE_ACCURACY + 1));
+        }
+        assertThat(sketch.getCountByBin().size())
+                .as("latencies from microseconds to seconds should stay in a few hundred bins")
+                .isLessThan(500);
+    }
+
+    @Test
+    void merge_isTheSameAsOneSketch() {
+        final DDSketch whole = DDSketch.forCo2();
+        final DDSketch firstHalf = DDSketch.forCo2();
+        final DDSketch secondHalf = DDSketch.forCo2();
+        for (int co2Level = 400; co2Level < 5000; co2Level += 3) {
+            whole.add(co2Level);
+            (co2Level < 2000 ? firstHalf : secondHalf).add(co2Level);
+        }
+
+        firstHalf.merge(secondHalf);
+
+        assertThat(firstHalf.getCount()).isEqualTo(whole.getCount());
+        assertThat(firstHalf.quantile(0.95)).isEqualTo(whole.quantile(0.95));
+        assertThat(firstHalf.getCountByBin()).isEqualTo(whole.getCountByBin());
+    }
+
+    @Test
+    void quantile_emptySketch() {
+        assertThat(DDSketch.forCo2().quantile(0.5)).isNull();
+    }
+}
@@ -0,0 +1,47 @@
+package io.alvintures.co2sensorapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LttbTest {
+
+    @Test
+    void downsample_keepsShortSeries() {
+        final int[] indexes = Lttb.downsample(new double[]{1, 2, 3}, new double[]{10, 20, 30}, 100);
+
+        assertThat(indexes).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void downsample_boundsPointsAndKeepsEndsAndSpikes() {
+        final double[] x = new double[10_000];
+        final double[] y = new double[10_000];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i * 60;
+            y[i] = 1000 + 500 * Math.sin(i / 300.0);
+        }
+        y[5_000] = 9_000;
+
+        final int[] indexes = Lttb.downsample(x, y, 100);
+
+        assertThat(indexes).hasSize(100);
+        assertThat(indexes[0]).isEqualTo(0);
+        assertThat(indexes[99]).isEqualTo(9_999);
+        assertThat(indexes)
+                .as("a single spike should survive the downsampling")
+                .contains(5_000);
+        final int[] sorted = indexes.clone();
+        Arrays.sort(sorted);
+        assertThat(indexes).as("indexes should be in ascending order").containsExactly(sorted);
+    }
+
+    @Test
+    void downsample_thresholdTooSmall() {
+        assertThatThrownBy(() -> Lttb.downsample(new double[]{1, 2, 3, 4}, new double[]{1, 2, 3, 4}, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
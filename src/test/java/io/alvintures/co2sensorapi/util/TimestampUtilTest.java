@@ -52,4 +52,52 @@ class TimestampUtilTest {
                 .as("should be converted to correct instance of ZonedDateTime")
                 .isEqualTo("1990-10-03T12:34:56+00:00");
     }
+
+    @Test
+    void toEpochSecond() {
+        final Long germanUnityDay = 19901003123456L; // yyyyMMddHHmmss
+
+        assertThat(TimestampUtil.toEpochSecond(germanUnityDay))
+                .isEqualTo(ZonedDateTime.parse("1990-10-03T12:34:56Z").toEpochSecond());
+    }
+
+    @Test
+    void fromEpochSecond() {
+        final long epochSecond = ZonedDateTime.parse("1990-10-03T12:34:56Z").toEpochSecond();
+
+        assertThat(TimestampUtil.fromEpochSecond(epochSecond)).isEqualTo(19901003123456L);
+    }
+
+    @Test
+    void parseIsoToUtcTimestamp_sameAsZonedDateTimeParse() {
+        final String[] isoDateTimes = {
+                "2020-07-13T12:55:19+01:00",
+                "2020-07-13T12:55Z",
+                "2020-07-13T00:10:00.123456789+02:00",
+                "2020-12-31T23:30:00-01:00",
+                "2020-02-29T12:00:00Z",
+                "2020-07-13T12:55:19+01:00[Europe/Paris]",
+                ZonedDateTime.now().toString()
+        };
+
+        for (String isoDateTime : isoDateTimes) {
+            assertThat(TimestampUtil.parseIsoToUtcTimestamp(isoDateTime))
+                    .as("should parse %s like ZonedDateTime.parse", isoDateTime)
+                    .isEqualTo(TimestampUtil.toUtcTimestamp(ZonedDateTime.parse(isoDateTime)));
+        }
+    }
+
+    @Test
+    void parseIsoToUtcTimestamp_invalidDoesNotThrow() {
+        final String[] invalidDateTimes = {
+                null, "", "2020-12-12", "garbage", "2019-02-29T12:00:00Z", "2020-07-13T25:00:00Z",
+                "2020-07-13T12:55:60Z", "2020-07-13T12:55:19+0100", "2020-07-13T12:55:19"
+        };
+
+        for (String invalidDateTime : invalidDateTimes) {
+            assertThat(TimestampUtil.parseIsoToUtcTimestamp(invalidDateTime))
+                    .as("%s should be rejected", invalidDateTime)
+                    .isEqualTo(TimestampUtil.INVALID_TIMESTAMP);
+        }
+    }
 }
\ No newline at end of file